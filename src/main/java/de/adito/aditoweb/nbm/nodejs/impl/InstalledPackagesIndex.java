@@ -0,0 +1,913 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.*;
+import com.google.gson.stream.*;
+import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.INodeJSExecBase;
+import de.adito.aditoweb.nbm.nodejs.impl.parser.PackageParser;
+import de.adito.aditoweb.nbm.nodejs.impl.version.VersionRange;
+import lombok.*;
+import org.jetbrains.annotations.Nullable;
+import org.openide.filesystems.*;
+import org.openide.modules.Places;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.*;
+import java.util.stream.Collectors;
+
+/**
+ * Index of all packages, that are installed in a single node_modules folder.
+ * It contains the name, version, folder, binaries and the hash of the package.json of each package, so that questions like
+ * "is typescript@^4.5 installed" or "where is the binary tsc" can be answered without starting npm or reading any file.
+ * <p>
+ * The index is persisted in the userdir. When it is loaded, the persisted packages are available immediately, while the node_modules folder
+ * is scanned in the background - only the package.json files that changed their modification time or size are read again.
+ * Afterwards, the node_modules folder (and all scope folders) are watched. Every change schedules a refresh, that only checks the packages
+ * of the changed folders, or the packages whose version changed in the .package-lock.json. The folders are not watched recursively,
+ * because node_modules may contain thousands of folders.
+ * <p>
+ * The indices of a project are released when the project is closed, persisted indices that were not used for a long time are deleted.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class InstalledPackagesIndex
+{
+
+  private static final Logger _LOGGER = Logger.getLogger(InstalledPackagesIndex.class.getName());
+  private static final long _REFRESH_DELAY_MS = 500;
+  private static final int _MAX_CHANGES = 4096;
+  private static final long _MAX_UNUSED_MS = TimeUnit.DAYS.toMillis(30);
+  private static final String _LOCK_FILE = ".package-lock.json";
+  private static final String _NODE_MODULES_PREFIX = "node_modules/";
+  private static final AtomicBoolean _PRUNED = new AtomicBoolean(false);
+  private static final Map<File, InstalledPackagesIndex> _INSTANCES = new ConcurrentHashMap<>();
+  private static final ScheduledExecutorService _SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                                                                                                          .setDaemon(true)
+                                                                                                          .setNameFormat("tNodeJSPackagesIndex-%d")
+                                                                                                          .build());
+
+  private final File nodeModules;
+  private final File file;
+  private final boolean watch;
+  private final Deque<Change> changes = new ArrayDeque<>();
+  private final Set<File> watched = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean loadStarted = new AtomicBoolean(false);
+  private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+  private final Set<String> changedPackages = new HashSet<>();
+  private final FileChangeListener listener = new FileChangeAdapter()
+  {
+    @Override
+    public void fileFolderCreated(FileEvent fe)
+    {
+      notifyChanged(FileUtil.toFile(fe.getFile()));
+    }
+
+    @Override
+    public void fileDataCreated(FileEvent fe)
+    {
+      notifyChanged(FileUtil.toFile(fe.getFile()));
+    }
+
+    @Override
+    public void fileChanged(FileEvent fe)
+    {
+      notifyChanged(FileUtil.toFile(fe.getFile()));
+    }
+
+    @Override
+    public void fileDeleted(FileEvent fe)
+    {
+      notifyChanged(FileUtil.toFile(fe.getFile()));
+    }
+
+    @Override
+    public void fileRenamed(FileRenameEvent fe)
+    {
+      File renamed = FileUtil.toFile(fe.getFile());
+      notifyChanged(renamed);
+
+      // the package with the former name does not exist anymore
+      String ext = fe.getExt();
+      String formerName = ext == null || ext.isEmpty() ? fe.getName() : fe.getName() + "." + ext;
+      notifyChanged(renamed == null ? null : new File(renamed.getParentFile(), formerName));
+    }
+  };
+  private volatile Map<String, InstalledPackage> packages = Map.of();
+  private volatile Map<String, INodeJSExecBase> binaries = Map.of();
+  private volatile long generation = 0;
+  private volatile boolean available = false;
+  private boolean loaded = false;
+  private boolean closed = false;
+  private boolean lockFileChanged = false;
+  private boolean fullRefreshRequested = false;
+
+  /**
+   * Returns the index of the given node_modules folder.
+   * The index is created and loaded on first access and kept up to date afterwards.
+   * The first scan of the folder runs in the background, see {@link #isAvailable()}.
+   *
+   * @param pNodeModules node_modules folder
+   * @return the index, that is shared by all callers
+   */
+  @NonNull
+  public static InstalledPackagesIndex forRoot(@NonNull File pNodeModules)
+  {
+    File nodeModules = FileUtil.normalizeFile(pNodeModules.getAbsoluteFile());
+    InstalledPackagesIndex index = _INSTANCES.computeIfAbsent(nodeModules, pKey -> {
+      String name = Hashing.sha256().hashString(pKey.getPath(), StandardCharsets.UTF_8).toString();
+      return new InstalledPackagesIndex(pKey, new File(_getIndexDirectory(), name + ".json"), true);
+    });
+    index.load();
+    if (_PRUNED.compareAndSet(false, true))
+      _SCHEDULER.execute(InstalledPackagesIndex::_pruneIndexFiles);
+    return index;
+  }
+
+  /**
+   * Releases the indices of all node_modules folders within the given folder, e.g. because the project was closed.
+   * The folders are not watched anymore, the persisted indices are kept for the next access.
+   *
+   * @param pDirectory folder, that contains the node_modules folders
+   */
+  public static void release(@NonNull File pDirectory)
+  {
+    Path directory = FileUtil.normalizeFile(pDirectory.getAbsoluteFile()).toPath();
+    for (File nodeModules : new ArrayList<>(_INSTANCES.keySet()))
+    {
+      if (!nodeModules.toPath().startsWith(directory))
+        continue;
+
+      InstalledPackagesIndex index = _INSTANCES.remove(nodeModules);
+      if (index != null)
+        index._close();
+    }
+  }
+
+  @VisibleForTesting
+  InstalledPackagesIndex(@NonNull File pNodeModules, @NonNull File pFile, boolean pWatch)
+  {
+    nodeModules = pNodeModules;
+    file = pFile;
+    watch = pWatch;
+  }
+
+  /**
+   * Checks, if a package is installed
+   *
+   * @param pSpec package in the format of npm, e.g. "typescript", "typescript@^4.5.0" or "@scope/name@1.x"
+   * @return true, if the package is installed and its version matches the range of the spec
+   */
+  public boolean isInstalled(@NonNull String pSpec)
+  {
+    String name = PackageParser.getPackageName(pSpec);
+    return isInstalled(name, name.length() < pSpec.length() ? pSpec.substring(name.length() + 1) : null);
+  }
+
+  /**
+   * Checks, if a package is installed
+   *
+   * @param pName  name of the package
+   * @param pRange version range, null to accept any version
+   * @return true, if the package is installed and its version matches the range
+   */
+  public boolean isInstalled(@NonNull String pName, @Nullable String pRange)
+  {
+    InstalledPackage installed = packages.get(pName);
+    return installed != null && matches(installed.getVersion(), pRange);
+  }
+
+  /**
+   * Checks, if an installed version satisfies the range of a package spec
+   *
+   * @param pVersion installed version, null if it is unknown
+   * @param pRange   version range, null to accept any version
+   * @return true, if the version matches the range
+   */
+  public static boolean matches(@Nullable String pVersion, @Nullable String pRange)
+  {
+    if (pRange == null || pVersion == null)
+      return pRange == null;
+
+    try
+    {
+      return VersionRange.parse(pRange).matches(pVersion);
+    }
+    catch (IllegalArgumentException e)
+    {
+      // tags, urls and git references can not be verified without npm, so the package is installed in any version
+      return true;
+    }
+  }
+
+  /**
+   * @param pName name of the package
+   * @return the installed package
+   */
+  @NonNull
+  public Optional<InstalledPackage> getPackage(@NonNull String pName)
+  {
+    return Optional.ofNullable(packages.get(pName));
+  }
+
+  /**
+   * @return all installed packages, by their name
+   */
+  @NonNull
+  public Map<String, InstalledPackage> getPackages()
+  {
+    return packages;
+  }
+
+  /**
+   * @param pBinary name of the binary, e.g. "tsc"
+   * @return the execution base of the binary
+   */
+  @NonNull
+  public Optional<INodeJSExecBase> findBinary(@NonNull String pBinary)
+  {
+    return Optional.ofNullable(binaries.get(pBinary));
+  }
+
+  /**
+   * @return all binaries of all installed packages, by their name
+   */
+  @NonNull
+  public Map<String, INodeJSExecBase> getBinaries()
+  {
+    return binaries;
+  }
+
+  /**
+   * The index is available, as soon as the persisted index was loaded or the first scan has finished.
+   * Until the running scan has finished, the results may be outdated.
+   *
+   * @return true, if the index contains the packages of a scan
+   */
+  public boolean isAvailable()
+  {
+    return available;
+  }
+
+  /**
+   * @return the current generation, that is increased with every refresh that changed something
+   */
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  /**
+   * Returns all changes, that happened after the given generation.
+   * If these changes are not remembered anymore, every installed package is reported as updated.
+   *
+   * @param pGeneration generation of the last scan of the caller, see {@link #getGeneration()}
+   * @return the changes, oldest first
+   */
+  @NonNull
+  public synchronized List<Change> getChangesSince(long pGeneration)
+  {
+    if (pGeneration >= generation)
+      return List.of();
+
+    if (changes.isEmpty() || changes.getFirst().getGeneration() > pGeneration + 1)
+      return packages.keySet().stream()
+          .sorted()
+          .map(pName -> new Change(generation, pName, ChangeType.UPDATED))
+          .collect(Collectors.toList());
+
+    return changes.stream()
+        .filter(pChange -> pChange.getGeneration() > pGeneration)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Compares the index with the node_modules folder and reads all packages again, whose package.json changed.
+   * This is done automatically in the background, when the index is loaded.
+   */
+  public synchronized void refresh()
+  {
+    if (!loaded)
+    {
+      loaded = true;
+      _read();
+    }
+
+    changedPackages.clear();
+    lockFileChanged = false;
+    fullRefreshRequested = false;
+
+    Map<String, InstalledPackage> previous = packages;
+    Map<String, InstalledPackage> current = _listPackages(nodeModules).parallelStream()
+        .map(pName -> _readPackage(pName, previous.get(pName)))
+        .filter(Objects::nonNull)
+        .collect(Collectors.toMap(InstalledPackage::getName, pPackage -> pPackage));
+    _apply(previous, current);
+  }
+
+  /**
+   * Loads the persisted index on first call and scans the node_modules folder in the background.
+   * The persisted packages can be queried immediately.
+   */
+  @VisibleForTesting
+  void load()
+  {
+    if (!loadStarted.compareAndSet(false, true))
+      return;
+
+    synchronized (this)
+    {
+      if (!loaded)
+      {
+        loaded = true;
+        _read();
+      }
+    }
+
+    _SCHEDULER.execute(() -> {
+      try
+      {
+        refresh();
+      }
+      catch (RuntimeException e)
+      {
+        _LOGGER.log(Level.WARNING, "Failed to scan the installed packages of " + nodeModules, e);
+      }
+    });
+  }
+
+  /**
+   * Remembers a changed file within the node_modules folder and schedules a refresh of the affected packages
+   *
+   * @param pFile changed file, null if it is unknown
+   */
+  @VisibleForTesting
+  void notifyChanged(@Nullable File pFile)
+  {
+    synchronized (this)
+    {
+      if (pFile == null)
+        fullRefreshRequested = true;
+      else if (pFile.equals(new File(nodeModules, _LOCK_FILE)))
+        lockFileChanged = true;
+      else if (!pFile.getName().startsWith("."))
+      {
+        String name = _getPackageName(pFile);
+        if (name == null)
+          fullRefreshRequested = true;
+        else
+          changedPackages.add(name);
+      }
+    }
+
+    _scheduleRefresh();
+  }
+
+  /**
+   * Reads the packages again, that changed since the last refresh
+   *
+   * @see #notifyChanged(File)
+   */
+  @VisibleForTesting
+  synchronized void refreshChanged()
+  {
+    if (closed)
+      return;
+    if (!loaded || fullRefreshRequested)
+    {
+      refresh();
+      return;
+    }
+
+    Set<String> names = new HashSet<>(changedPackages);
+    if (lockFileChanged)
+    {
+      Set<String> changedInLockFile = _readChangedFromLockFile();
+      if (changedInLockFile == null)
+      {
+        refresh();
+        return;
+      }
+      names.addAll(changedInLockFile);
+    }
+    changedPackages.clear();
+    lockFileChanged = false;
+    if (names.isEmpty())
+      return;
+
+    Map<String, InstalledPackage> previous = packages;
+    Map<String, InstalledPackage> current = new HashMap<>(previous);
+    for (String name : names)
+    {
+      InstalledPackage read = _readPackage(name, previous.get(name));
+      if (read == null)
+        current.remove(name);
+      else
+        current.put(name, read);
+    }
+    _apply(previous, current);
+  }
+
+  /**
+   * Replaces the packages of the index and records the changes
+   *
+   * @param pPrevious packages before the refresh
+   * @param pCurrent  packages after the refresh
+   */
+  private void _apply(@NonNull Map<String, InstalledPackage> pPrevious, @NonNull Map<String, InstalledPackage> pCurrent)
+  {
+    List<Change> detected = new ArrayList<>();
+    long next = generation + 1;
+    pCurrent.forEach((pName, pPackage) -> {
+      InstalledPackage old = pPrevious.get(pName);
+      if (old == null)
+        detected.add(new Change(next, pName, ChangeType.ADDED));
+      else if (!old.getHash().equals(pPackage.getHash()))
+        detected.add(new Change(next, pName, ChangeType.UPDATED));
+    });
+    pPrevious.keySet().stream()
+        .filter(pName -> !pCurrent.containsKey(pName))
+        .forEach(pName -> detected.add(new Change(next, pName, ChangeType.REMOVED)));
+
+    packages = Collections.unmodifiableMap(pCurrent);
+    binaries = Collections.unmodifiableMap(_collectBinaries(pCurrent));
+    available = true;
+    if (watch && !closed)
+      _watch();
+
+    if (!detected.isEmpty())
+    {
+      detected.sort(Comparator.comparing(Change::getName));
+      changes.addAll(detected);
+      while (changes.size() > _MAX_CHANGES)
+        changes.removeFirst();
+      generation = next;
+    }
+
+    // touched package.json files change the persisted attributes, even if their content did not change
+    if (!detected.isEmpty() || !pCurrent.equals(pPrevious))
+      _write();
+  }
+
+  /**
+   * Schedules a refresh, multiple changes in a short time (e.g. while npm is installing) result in a single refresh
+   */
+  private void _scheduleRefresh()
+  {
+    if (refreshScheduled.compareAndSet(false, true))
+      _SCHEDULER.schedule(() -> {
+        refreshScheduled.set(false);
+        try
+        {
+          refreshChanged();
+        }
+        catch (RuntimeException e)
+        {
+          _LOGGER.log(Level.WARNING, "Failed to refresh the installed packages of " + nodeModules, e);
+        }
+      }, _REFRESH_DELAY_MS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops watching the node_modules folder
+   */
+  private synchronized void _close()
+  {
+    closed = true;
+    for (File folder : watched)
+    {
+      try
+      {
+        FileUtil.removeFileChangeListener(listener, folder);
+      }
+      catch (RuntimeException e)
+      {
+        _LOGGER.log(Level.FINE, "Failed to stop watching " + folder, e);
+      }
+    }
+    watched.clear();
+  }
+
+  /**
+   * Watches the node_modules folder and all of its scope folders, that are not watched yet
+   */
+  private void _watch()
+  {
+    Set<File> folders = new LinkedHashSet<>();
+    folders.add(nodeModules);
+    // .package-lock.json is rewritten by npm after every installation, even if only nested packages changed
+    folders.add(new File(nodeModules, _LOCK_FILE));
+    packages.keySet().stream()
+        .filter(pName -> pName.startsWith("@"))
+        .map(pName -> new File(nodeModules, pName.substring(0, pName.indexOf('/'))))
+        .forEach(folders::add);
+
+    for (File folder : folders)
+    {
+      if (!watched.add(folder))
+        continue;
+
+      try
+      {
+        FileUtil.addFileChangeListener(listener, folder);
+      }
+      catch (RuntimeException e)
+      {
+        // without a watch, the index is only refreshed manually
+        _LOGGER.log(Level.FINE, "Failed to watch " + folder, e);
+      }
+    }
+  }
+
+  /**
+   * @param pFile file or folder within the node_modules folder
+   * @return the name of the package, that contains the file, or null if the file may affect several packages (e.g. a scope folder)
+   */
+  @Nullable
+  private String _getPackageName(@NonNull File pFile)
+  {
+    File parent = pFile.getParentFile();
+    if (nodeModules.equals(parent))
+      return pFile.getName().startsWith("@") ? null : pFile.getName();
+    if (parent != null && nodeModules.equals(parent.getParentFile()) && parent.getName().startsWith("@"))
+      return parent.getName() + "/" + pFile.getName();
+    return null;
+  }
+
+  /**
+   * Compares the versions of the top level packages in the .package-lock.json of npm with the index
+   *
+   * @return the names of all packages, whose version differs from the index, or null if the file could not be read
+   */
+  @Nullable
+  private Set<String> _readChangedFromLockFile()
+  {
+    File lockFile = new File(nodeModules, _LOCK_FILE);
+    Map<String, String> locked = new HashMap<>();
+    try (JsonReader reader = new JsonReader(Files.newBufferedReader(lockFile.toPath(), StandardCharsets.UTF_8)))
+    {
+      reader.beginObject();
+      while (reader.hasNext())
+      {
+        if (!"packages".equals(reader.nextName()))
+        {
+          reader.skipValue();
+          continue;
+        }
+
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+          String path = reader.nextName();
+          String name = path.startsWith(_NODE_MODULES_PREFIX) ? path.substring(_NODE_MODULES_PREFIX.length()) : null;
+          // nested packages are not part of the index
+          if (name == null || name.contains("/" + _NODE_MODULES_PREFIX))
+            reader.skipValue();
+          else
+            locked.put(name, _readVersion(reader));
+        }
+        reader.endObject();
+      }
+      reader.endObject();
+    }
+    catch (IOException | RuntimeException e)
+    {
+      _LOGGER.log(Level.FINE, "Failed to read " + lockFile, e);
+      return null;
+    }
+
+    Set<String> changed = new HashSet<>();
+    packages.forEach((pName, pPackage) -> {
+      if (!locked.containsKey(pName) || !Objects.equals(locked.get(pName), pPackage.getVersion()))
+        changed.add(pName);
+    });
+    locked.keySet().stream()
+        .filter(pName -> !packages.containsKey(pName))
+        .forEach(changed::add);
+    return changed;
+  }
+
+  /**
+   * Reads the version of a package entry in the .package-lock.json
+   *
+   * @param pReader reader, positioned at the value of the package entry
+   * @return the version, or null if the entry does not contain a version (e.g. a link)
+   */
+  @Nullable
+  private static String _readVersion(@NonNull JsonReader pReader) throws IOException
+  {
+    String version = null;
+    pReader.beginObject();
+    while (pReader.hasNext())
+    {
+      if ("version".equals(pReader.nextName()) && pReader.peek() == JsonToken.STRING)
+        version = pReader.nextString();
+      else
+        pReader.skipValue();
+    }
+    pReader.endObject();
+    return version;
+  }
+
+  /**
+   * Reads a single package, if its package.json changed
+   *
+   * @param pName  name of the package
+   * @param pKnown package, that is currently in the index
+   * @return the package, or null if it is not a valid package
+   */
+  @Nullable
+  private InstalledPackage _readPackage(@NonNull String pName, @Nullable InstalledPackage pKnown)
+  {
+    File packageJson = new File(nodeModules, pName + "/package.json");
+    long lastModified = packageJson.lastModified();
+    long size = packageJson.length();
+    if (pKnown != null && pKnown.getLastModified() == lastModified && pKnown.getSize() == size)
+      return pKnown;
+    if (!packageJson.isFile())
+      return null;
+
+    try
+    {
+      byte[] content = Files.readAllBytes(packageJson.toPath());
+      String version = null;
+      Map<String, String> bin = Map.of();
+      try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8)))
+      {
+        reader.setLenient(true);
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+          String key = reader.nextName();
+          if ("version".equals(key) && reader.peek() == JsonToken.STRING)
+            version = reader.nextString();
+          else if ("bin".equals(key))
+            bin = _readBin(pName, reader);
+          else
+            reader.skipValue();
+        }
+      }
+
+      return new InstalledPackage(pName, version, new File(nodeModules, pName), bin, Hashing.sha256().hashBytes(content).toString(),
+                                  lastModified, size);
+    }
+    catch (IOException | RuntimeException e)
+    {
+      // not a valid package
+      _LOGGER.log(Level.FINE, "Failed to read " + packageJson, e);
+      return null;
+    }
+  }
+
+  /**
+   * Reads the value of a "bin" field
+   *
+   * @param pPackageName name of the package, used as name of the binary if the "bin" field only contains a path
+   * @param pReader      reader, positioned at the value of the "bin" field
+   * @return the name of each binary and its path, relative to the package
+   */
+  @NonNull
+  private static Map<String, String> _readBin(@NonNull String pPackageName, @NonNull JsonReader pReader) throws IOException
+  {
+    if (pReader.peek() == JsonToken.STRING)
+      return Map.of(pPackageName.substring(pPackageName.lastIndexOf('/') + 1), pReader.nextString());
+    if (pReader.peek() != JsonToken.BEGIN_OBJECT)
+    {
+      pReader.skipValue();
+      return Map.of();
+    }
+
+    Map<String, String> binaries = new HashMap<>();
+    pReader.beginObject();
+    while (pReader.hasNext())
+    {
+      String name = pReader.nextName();
+      if (pReader.peek() == JsonToken.STRING)
+        binaries.put(name, pReader.nextString());
+      else
+        pReader.skipValue();
+    }
+    pReader.endObject();
+    return binaries;
+  }
+
+  /**
+   * Lists the names of all packages in the given folder
+   *
+   * @param pNodeModules node_modules folder
+   * @return the names of the packages, scoped packages are named "@scope/name"
+   */
+  @NonNull
+  private static List<String> _listPackages(@NonNull File pNodeModules)
+  {
+    List<String> packages = new ArrayList<>();
+    String[] entries = pNodeModules.list();
+    if (entries == null)
+      return packages;
+
+    for (String entry : entries)
+    {
+      if (entry.startsWith("@"))
+      {
+        String[] scopedEntries = new File(pNodeModules, entry).list();
+        if (scopedEntries != null)
+          for (String scopedEntry : scopedEntries)
+            packages.add(entry + "/" + scopedEntry);
+      }
+      else if (!entry.startsWith("."))
+        packages.add(entry);
+    }
+
+    return packages;
+  }
+
+  /**
+   * @param pPackages all installed packages
+   * @return the binaries of all packages, the alphabetically first package wins like in the .bin folder
+   */
+  @NonNull
+  private static Map<String, INodeJSExecBase> _collectBinaries(@NonNull Map<String, InstalledPackage> pPackages)
+  {
+    Map<String, INodeJSExecBase> result = new HashMap<>();
+    pPackages.values().stream()
+        .sorted(Comparator.comparing(InstalledPackage::getName))
+        .forEach(pPackage -> pPackage.getBin().forEach((pBinary, pPath) -> result.putIfAbsent(pBinary, INodeJSExecBase.module(pPackage.getName(), pPath))));
+    return result;
+  }
+
+  /**
+   * Reads the persisted index
+   */
+  private void _read()
+  {
+    if (!file.isFile())
+      return;
+
+    try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+    {
+      JsonObject content = JsonParser.parseReader(reader).getAsJsonObject();
+      Map<String, InstalledPackage> read = new HashMap<>();
+      for (JsonElement element : content.getAsJsonArray("packages"))
+      {
+        JsonObject object = element.getAsJsonObject();
+        Map<String, String> bin = new HashMap<>();
+        object.getAsJsonObject("bin").entrySet().forEach(pEntry -> bin.put(pEntry.getKey(), pEntry.getValue().getAsString()));
+        String name = object.get("name").getAsString();
+        read.put(name, new InstalledPackage(name, object.has("version") ? object.get("version").getAsString() : null,
+                                            new File(nodeModules, name), bin, object.get("hash").getAsString(),
+                                            object.get("lastModified").getAsLong(), object.get("size").getAsLong()));
+      }
+      packages = read;
+      binaries = Collections.unmodifiableMap(_collectBinaries(read));
+      generation = content.get("generation").getAsLong();
+      available = true;
+
+      // the modification time is the time of the last use, unused indices are pruned
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(System.currentTimeMillis());
+    }
+    catch (IOException | RuntimeException e)
+    {
+      // a broken index is just an empty index, that is built from scratch
+      _LOGGER.log(Level.FINE, "Failed to read installed packages index " + file, e);
+      packages = Map.of();
+    }
+  }
+
+  /**
+   * @return the folder, that contains the persisted indices of all node_modules folders
+   */
+  @NonNull
+  private static File _getIndexDirectory()
+  {
+    return new File(Places.getUserDirectory(), "var/cache/nodejs/packages");
+  }
+
+  /**
+   * Deletes the persisted indices, that were not used for a long time (e.g. because the project was deleted)
+   */
+  private static void _pruneIndexFiles()
+  {
+    File[] files = _getIndexDirectory().listFiles(File::isFile);
+    if (files == null)
+      return;
+
+    long oldest = System.currentTimeMillis() - _MAX_UNUSED_MS;
+    for (File indexFile : files)
+      if (indexFile.lastModified() < oldest)
+        //noinspection ResultOfMethodCallIgnored
+        indexFile.delete();
+  }
+
+  /**
+   * Persists the index
+   */
+  private void _write()
+  {
+    JsonArray array = new JsonArray();
+    packages.values().stream()
+        .sorted(Comparator.comparing(InstalledPackage::getName))
+        .forEach(pPackage -> {
+          JsonObject object = new JsonObject();
+          object.addProperty("name", pPackage.getName());
+          if (pPackage.getVersion() != null)
+            object.addProperty("version", pPackage.getVersion());
+          JsonObject bin = new JsonObject();
+          pPackage.getBin().forEach(bin::addProperty);
+          object.add("bin", bin);
+          object.addProperty("hash", pPackage.getHash());
+          object.addProperty("lastModified", pPackage.getLastModified());
+          object.addProperty("size", pPackage.getSize());
+          array.add(object);
+        });
+
+    JsonObject content = new JsonObject();
+    content.addProperty("root", nodeModules.getPath());
+    content.addProperty("generation", generation);
+    content.add("packages", array);
+
+    try
+    {
+      Files.createDirectories(file.getParentFile().toPath());
+
+      // write into a temporary file first, so that the index never gets corrupted
+      Path temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+      Files.write(temp, new Gson().toJson(content).getBytes(StandardCharsets.UTF_8));
+      Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e)
+    {
+      _LOGGER.log(Level.FINE, "Failed to write installed packages index " + file, e);
+    }
+  }
+
+  /**
+   * A single installed package
+   */
+  @Value
+  public static class InstalledPackage
+  {
+    @NonNull
+    String name;
+
+    /**
+     * Version of the package, null if the package.json does not contain a version
+     */
+    @Nullable
+    String version;
+
+    /**
+     * Folder of the package
+     */
+    @NonNull
+    File directory;
+
+    /**
+     * Binaries of the package, with their paths relative to the folder of the package
+     */
+    @NonNull
+    Map<String, String> bin;
+
+    /**
+     * SHA-256 of the package.json
+     */
+    @NonNull
+    String hash;
+
+    /**
+     * Attributes of the package.json at the time it was read
+     */
+    long lastModified;
+    long size;
+  }
+
+  /**
+   * A change of an installed package
+   */
+  @Value
+  public static class Change
+  {
+    long generation;
+    @NonNull
+    String name;
+    @NonNull
+    ChangeType type;
+  }
+
+  /**
+   * Type of a change
+   */
+  public enum ChangeType
+  {
+    ADDED,
+    UPDATED,
+    REMOVED
+  }
+
+}
@@ -1,13 +1,18 @@
 package de.adito.aditoweb.nbm.nodejs.impl;
 
+import com.google.gson.*;
 import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.*;
 import de.adito.aditoweb.nbm.nodejs.impl.parser.PackageParser;
+import de.adito.aditoweb.nbm.nodejs.impl.util.*;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+import org.openide.util.BaseUtilities;
 
-import java.io.IOException;
+import java.io.*;
 import java.util.*;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 /**
  * Helper for executing certain npm commands
@@ -18,6 +23,11 @@ import java.util.concurrent.TimeoutException;
 public class NPMCommandExecutor
 {
 
+  // new versions may be published at any time, so the result of "npm outdated" does not only depend on the installation
+  private static final long _OUTDATED_TTL = TimeUnit.HOURS.toMillis(12);
+  // "npm outdated" exits with 1, if there are outdated packages
+  private static final Set<Integer> _OUTDATED_EXIT_CODES = Set.of(0, 1);
+
   private final INodeJSExecutor executor;
   private final INodeJSEnvironment environment;
   private final boolean isGlobal;
@@ -32,6 +42,7 @@ public class NPMCommandExecutor
   {
     String[] arguments = createArguments("install", pPackages);
     executor.executeSync(environment, INodeJSExecBase.packageManager(), -1, arguments);
+    _refreshIndex();
   }
 
   /**
@@ -43,6 +54,7 @@ public class NPMCommandExecutor
   {
     String[] arguments = createArguments("update", pPackages);
     executor.executeSync(environment, INodeJSExecBase.packageManager(), -1, arguments);
+    _refreshIndex();
   }
 
   /**
@@ -52,12 +64,31 @@ public class NPMCommandExecutor
    */
   public boolean outdated(@NonNull String... pPackages) throws IOException, InterruptedException, TimeoutException
   {
-    String[] arguments = createArguments("outdated", pPackages);
-    String result = executor.executeSync(environment, INodeJSExecBase.packageManager(), -1, false, arguments);
-    return Arrays.stream(result.split("\n"))
-        //the first line is the command line, that should be skipped
-        .skip(1)
-        .count() == pPackages.length;
+    return outdatedPackages(pPackages).size() == pPackages.length;
+  }
+
+  /**
+   * Executes the "npm outdated" command once for all given packages and returns the outdated ones.
+   *
+   * @param pPackages packages that should be checked
+   * @return the outdated packages by their name
+   */
+  @NonNull
+  public Map<String, PackageParser.OutdatedPackage> outdatedPackages(@NonNull String... pPackages) throws IOException, InterruptedException, TimeoutException
+  {
+    if (pPackages.length == 0)
+      return Map.of();
+
+    List<String> arguments = new ArrayList<>();
+    arguments.add("--json");
+    arguments.addAll(List.of(pPackages));
+    try (CapturedOutput output = _executeCached(-1, _OUTDATED_TTL, _OUTDATED_EXIT_CODES, createArguments("outdated", arguments.toArray(new String[0])));
+         BufferedReader reader = new BufferedReader(output.openReader()))
+    {
+      // the first line is the command line, that should be skipped
+      reader.readLine();
+      return PackageParser.parseOutdated(reader);
+    }
   }
 
   /**
@@ -68,21 +99,66 @@ public class NPMCommandExecutor
    */
   public boolean list(@NonNull String... pPackages) throws IOException, InterruptedException, TimeoutException
   {
+    // the index answers without starting npm, if the node_modules folder is known and has been scanned before
+    InstalledPackagesIndex index = _getIndex();
+    if (index != null)
+      return Arrays.stream(pPackages).allMatch(index::isInstalled);
+
+    // a warm worker reads the package.json files a lot faster than npm starts
+    Map<String, String> installed = _installedFromWorker(pPackages);
+    if (installed != null)
+      return Arrays.stream(pPackages).allMatch(pPackage -> _isInstalled(installed, pPackage));
+
     String[] arguments = createArguments("list", pPackages);
-    String result = executor.executeSync(environment, INodeJSExecBase.packageManager(), -1, false, arguments);
-    return Arrays.stream(result.split("\n"))
-        // the first line is the command line, that should be skipped
-        .skip(1)
-        .count() == pPackages.length;
+    try (CapturedOutput output = _executeCached(-1, CommandResultCache.DEFAULT_TTL, Set.of(0), arguments))
+    {
+      return _countResultLines(output) == pPackages.length;
+    }
+  }
+
+  /**
+   * Determines, which of the given packages are not installed.
+   * If the node_modules folder is known, this is answered by the index without starting npm.
+   *
+   * @param pPackages packages that should be checked
+   * @return the packages that are not installed - if npm has to be asked, all packages are returned if one of them is missing
+   */
+  @NonNull
+  public List<String> missing(@NonNull String... pPackages) throws IOException, InterruptedException, TimeoutException
+  {
+    InstalledPackagesIndex index = _getIndex();
+    if (index != null)
+      return Arrays.stream(pPackages)
+          .filter(pPackage -> !index.isInstalled(pPackage))
+          .collect(Collectors.toList());
+
+    Map<String, String> installed = _installedFromWorker(pPackages);
+    if (installed != null)
+      return Arrays.stream(pPackages)
+          .filter(pPackage -> !_isInstalled(installed, pPackage))
+          .collect(Collectors.toList());
+
+    return list(pPackages) ? List.of() : List.of(pPackages);
   }
 
   public Map<String, INodeJSExecBase> binaries()
   {
-    try
+    // the index of the package.json files is a lot faster than starting npm
+    InstalledPackagesIndex index = _getIndex();
+    if (index != null)
+      return index.getBinaries();
+
+    Map<String, INodeJSExecBase> workerResult = _binariesFromWorker();
+    if (workerResult != null)
+      return workerResult;
+
+    String[] arguments = createArguments("list", "-j", "-l");
+    try (CapturedOutput output = _executeCaptured(8000, arguments);
+         BufferedReader reader = new BufferedReader(output.openReader()))
     {
-      String[] arguments = createArguments("list", "-j", "-l");
-      String stdout = executor.executeSync(environment, INodeJSExecBase.packageManager(), 8000, false, arguments);
-      return PackageParser.parseBinaries(stdout.substring(stdout.indexOf('\n')));
+      // the first line is the command line, that should be skipped
+      reader.readLine();
+      return PackageParser.parseBinaries(reader);
     }
     catch (IOException | InterruptedException | TimeoutException pE)
     {
@@ -90,6 +166,210 @@ public class NPMCommandExecutor
     }
   }
 
+  /**
+   * Reads the installed versions of the given packages with a warm nodejs worker
+   *
+   * @param pPackages packages in the format of npm, e.g. "typescript@^4.5.0"
+   * @return the installed packages with their version (null if unknown), or null if they could not be determined by a worker
+   */
+  @Nullable
+  private Map<String, String> _installedFromWorker(@NonNull String... pPackages)
+  {
+    List<String> arguments = new ArrayList<>();
+    for (String spec : pPackages)
+      arguments.add(PackageParser.getPackageName(spec));
+    JsonElement result = _executeInWorker("installed", arguments);
+    if (result == null || !result.isJsonObject())
+      return null;
+
+    Map<String, String> installed = new HashMap<>();
+    for (Map.Entry<String, JsonElement> entry : result.getAsJsonObject().entrySet())
+    {
+      String version = entry.getValue().isJsonPrimitive() ? entry.getValue().getAsString() : "";
+      installed.put(entry.getKey(), version.isEmpty() ? null : version);
+    }
+    return installed;
+  }
+
+  /**
+   * Reads the binaries of all packages with a warm nodejs worker
+   *
+   * @return the binaries, or null if they could not be determined by a worker
+   */
+  @Nullable
+  private Map<String, INodeJSExecBase> _binariesFromWorker()
+  {
+    JsonElement result = _executeInWorker("binaries", List.of());
+    if (result == null || !result.isJsonObject())
+      return null;
+
+    try
+    {
+      Map<String, INodeJSExecBase> binaries = new HashMap<>();
+      for (Map.Entry<String, JsonElement> binary : result.getAsJsonObject().entrySet())
+      {
+        JsonArray location = binary.getValue().getAsJsonArray();
+        binaries.put(binary.getKey(), INodeJSExecBase.module(location.get(0).getAsString(), location.get(1).getAsString()));
+      }
+      return binaries;
+    }
+    catch (RuntimeException e)
+    {
+      // a result in an unexpected format, npm has to answer
+      return null;
+    }
+  }
+
+  /**
+   * Executes a command of the worker script for the node_modules folder of this executor
+   *
+   * @param pCommand   command of the worker script
+   * @param pArguments arguments, that follow the node_modules folder
+   * @return the result, or null if the node_modules folder is unknown or no worker was able to execute the command
+   */
+  @Nullable
+  private JsonElement _executeInWorker(@NonNull String pCommand, @NonNull List<String> pArguments)
+  {
+    File nodeModules = getNodeModules();
+    if (nodeModules == null || !nodeModules.isDirectory() || !(executor instanceof NodeJSExecutorImpl))
+      return null;
+
+    List<String> arguments = new ArrayList<>();
+    arguments.add(nodeModules.getAbsolutePath());
+    arguments.addAll(pArguments);
+    try
+    {
+      return ((NodeJSExecutorImpl) executor).executeInWorker(environment, 8000, pCommand, arguments.toArray(new String[0]));
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * @param pInstalled installed packages with their version
+   * @param pSpec      package in the format of npm, e.g. "typescript@^4.5.0"
+   * @return true, if the package is installed in a version, that matches the spec
+   */
+  private static boolean _isInstalled(@NonNull Map<String, String> pInstalled, @NonNull String pSpec)
+  {
+    String name = PackageParser.getPackageName(pSpec);
+    String range = name.length() < pSpec.length() ? pSpec.substring(name.length() + 1) : null;
+    return pInstalled.containsKey(name) && InstalledPackagesIndex.matches(pInstalled.get(name), range);
+  }
+
+  /**
+   * Refreshes the index of the installed packages immediately, so that subsequent queries do not have to wait for the file events
+   */
+  private void _refreshIndex()
+  {
+    File nodeModules = getNodeModules();
+    if (nodeModules != null && nodeModules.isDirectory())
+      InstalledPackagesIndex.forRoot(nodeModules).refresh();
+  }
+
+  /**
+   * Returns the index of the installed packages. The index of an unknown node_modules folder is scanned in the background,
+   * so npm has to answer until the scan has finished.
+   *
+   * @return the index, or null if the node_modules folder is unknown or has not been scanned yet
+   */
+  @Nullable
+  private InstalledPackagesIndex _getIndex()
+  {
+    File nodeModules = getNodeModules();
+    if (nodeModules == null || !nodeModules.isDirectory())
+      return null;
+
+    InstalledPackagesIndex index = InstalledPackagesIndex.forRoot(nodeModules);
+    return index.isAvailable() ? index : null;
+  }
+
+  /**
+   * @return the node_modules folder, that is used by this executor, or null if it is unknown
+   */
+  @Nullable
+  public File getNodeModules()
+  {
+    if (isGlobal)
+      return _getGlobalNodeModules();
+    return prefix == null ? null : new File(prefix, "node_modules");
+  }
+
+  /**
+   * @return the global node_modules folder, that is used by this executor, or null if this executor does not work globally
+   */
+  @Nullable
+  private File _getGlobalNodeModules()
+  {
+    if (!isGlobal)
+      return null;
+
+    // the folder structure is described in NodeJSEnvironmentFactory
+    File root = prefix != null ? new File(prefix) : environment.getPath().getAbsoluteFile().getParentFile();
+    if (BaseUtilities.isWindows())
+      return new File(root, "node_modules");
+    if (prefix == null)
+      root = root.getParentFile();
+    return root == null ? null : new File(root, "lib/node_modules");
+  }
+
+  /**
+   * Executes npm synchronously without the error output and captures the output,
+   * so that it can be streamed instead of being converted to a string
+   *
+   * @param pTimeout   timeout in milliseconds, -1 for no timeout
+   * @param pArguments arguments for npm
+   * @return the captured output, has to be closed
+   */
+  @NonNull
+  private CapturedOutput _executeCaptured(long pTimeout, @NonNull String... pArguments) throws IOException, InterruptedException, TimeoutException
+  {
+    if (executor instanceof NodeJSExecutorImpl)
+      return ((NodeJSExecutorImpl) executor).executeSyncCaptured(environment, INodeJSExecBase.packageManager(), pTimeout, false, pArguments);
+    return CapturedOutput.of(executor.executeSync(environment, INodeJSExecBase.packageManager(), pTimeout, false, pArguments));
+  }
+
+  /**
+   * Executes an idempotent npm command synchronously, like {@link #_executeCaptured(long, String...)}.
+   * The result is cached until the node_modules folder changes, if the folder is known.
+   *
+   * @param pTimeout   timeout in milliseconds, -1 for no timeout
+   * @param pTtl       time in milliseconds, how long the result is valid
+   * @param pExitCodes exit codes of successful executions, only their results are cached
+   * @param pArguments arguments for npm
+   * @return the captured output, has to be closed
+   */
+  @NonNull
+  private CapturedOutput _executeCached(long pTimeout, long pTtl, @NonNull Set<Integer> pExitCodes, @NonNull String... pArguments) throws IOException, InterruptedException, TimeoutException
+  {
+    File nodeModules = getNodeModules();
+    if (nodeModules == null || !(executor instanceof NodeJSExecutorImpl))
+      return _executeCaptured(pTimeout, pArguments);
+    return ((NodeJSExecutorImpl) executor).executeSyncCached(environment, INodeJSExecBase.packageManager(), pTimeout, false, pTtl,
+                                                             List.of(nodeModules), pExitCodes, pArguments);
+  }
+
+  /**
+   * Counts the lines of the given output, that contain a result
+   *
+   * @param pOutput output of a npm command
+   * @return the number of non-empty lines, without the first line
+   */
+  private static long _countResultLines(@NonNull CapturedOutput pOutput) throws IOException
+  {
+    try (BufferedReader reader = new BufferedReader(pOutput.openReader()))
+    {
+      return reader.lines()
+          //the first line is the command line, that should be skipped
+          .skip(1)
+          .filter(pLine -> !pLine.trim().isEmpty())
+          .count();
+    }
+  }
+
   /**
    * Helper method to build the arguments needed for a npm command.
    * It automatically adds the global flag and the prefix argument if required.
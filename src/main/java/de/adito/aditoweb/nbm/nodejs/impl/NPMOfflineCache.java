@@ -0,0 +1,462 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.*;
+import de.adito.aditoweb.nbm.nodejs.impl.parser.PackageParser;
+import lombok.*;
+import org.jetbrains.annotations.Nullable;
+import org.openide.modules.Places;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.logging.*;
+import java.util.stream.*;
+
+/**
+ * Cache for the packages, that are required by this plugin, so that they can be installed without network access.
+ * <p>
+ * The cache is a npm cache folder (passed via "--cache"), so the tarballs of all packages and their dependencies are stored
+ * content-addressed by their integrity hash. In addition, a lock file pins the installed version and integrity of each required package
+ * and of all of its dependencies. If all required packages are pinned and all of their tarballs match the pinned integrities,
+ * they are installed with "--offline".
+ * <p>
+ * Fresh userdirs (e.g. on build agents or offline machines) can be pre-seeded with a copy of a filled cache folder,
+ * that is given via the system property {@link #SEED_PROPERTY}.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class NPMOfflineCache
+{
+
+  /**
+   * Folder of the cache, defaults to a folder in the userdir
+   */
+  static final String CACHE_PROPERTY = "adito.nodejs.npm.cache";
+
+  /**
+   * Folder with a filled cache, that is imported if the cache does not contain all required packages
+   */
+  static final String SEED_PROPERTY = "adito.nodejs.npm.seed";
+
+  private static final Logger _LOGGER = Logger.getLogger(NPMOfflineCache.class.getName());
+  private static final String _LOCK_FILE = "required-packages.lock.json";
+  private static final String _HIDDEN_LOCK_FILE = ".package-lock.json";
+  private static final String _NODE_MODULES = "node_modules/";
+  private static NPMOfflineCache _INSTANCE;
+
+  private final File directory;
+  private final File seed;
+  private final Set<String> verified = new HashSet<>();
+  private Map<String, PinnedPackage> pinned;
+
+  /**
+   * @return the shared instance
+   */
+  @NonNull
+  public static synchronized NPMOfflineCache getInstance()
+  {
+    if (_INSTANCE == null)
+    {
+      String cache = System.getProperty(CACHE_PROPERTY);
+      String seed = System.getProperty(SEED_PROPERTY);
+      _INSTANCE = new NPMOfflineCache(cache != null ? new File(cache) : new File(Places.getUserDirectory(), "var/cache/nodejs/npm"),
+                                      seed != null ? new File(seed) : null);
+    }
+    return _INSTANCE;
+  }
+
+  @VisibleForTesting
+  NPMOfflineCache(@NonNull File pDirectory, @Nullable File pSeed)
+  {
+    directory = pDirectory.getAbsoluteFile();
+    seed = pSeed;
+  }
+
+  /**
+   * @return the folder of the cache
+   */
+  @NonNull
+  public File getDirectory()
+  {
+    return directory;
+  }
+
+  /**
+   * Returns the arguments for npm, so that packages are installed from this cache
+   *
+   * @param pOffline true, if the registry must not be contacted at all
+   * @return the arguments
+   */
+  @NonNull
+  public List<String> getArguments(boolean pOffline)
+  {
+    return List.of("--cache", directory.getAbsolutePath(), pOffline ? "--offline" : "--prefer-offline");
+  }
+
+  /**
+   * Imports the seed folder, if there is one and the cache does not contain all of the given packages yet.
+   * Existing files are kept, because the content files of the cache never change.
+   *
+   * @param pPackages package specifications, e.g. "typescript@4.5.2"
+   */
+  public synchronized void seed(@NonNull List<String> pPackages)
+  {
+    if (seed == null || !seed.isDirectory() || isAvailable(pPackages))
+      return;
+
+    Path source = seed.toPath();
+    try (Stream<Path> files = Files.walk(source))
+    {
+      for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList()))
+      {
+        Path target = directory.toPath().resolve(source.relativize(file).toString());
+        if (!Files.exists(target) && !_LOCK_FILE.equals(file.getFileName().toString()))
+        {
+          Files.createDirectories(target.getParent());
+          Files.copy(file, target);
+        }
+      }
+
+      // pins of the seed are only used, if this cache does not know better
+      Map<String, PinnedPackage> seedPins = _readLock(new File(seed, _LOCK_FILE));
+      seedPins.forEach(_getPinned()::putIfAbsent);
+      _writeLock();
+    }
+    catch (IOException e)
+    {
+      _LOGGER.log(Level.WARNING, "Failed to import the npm cache seed " + seed, e);
+    }
+  }
+
+  /**
+   * Checks, if all given packages can be installed from this cache
+   *
+   * @param pPackages package specifications, e.g. "typescript@4.5.2"
+   * @return true, if all packages are pinned and the tarballs of the packages and their dependencies match the pinned integrities
+   */
+  public synchronized boolean isAvailable(@NonNull List<String> pPackages)
+  {
+    return pPackages.stream().allMatch(pPackage -> {
+      PinnedPackage pin = _getPinned().get(pPackage);
+      return pin != null && _verify(pin.getIntegrity()) && pin.getDependencies().values().stream().allMatch(this::_verify);
+    });
+  }
+
+  /**
+   * @param pPackage package specification, e.g. "typescript@4.5.2"
+   * @return the pinned version of the package
+   */
+  @NonNull
+  public synchronized Optional<PinnedPackage> getPinned(@NonNull String pPackage)
+  {
+    return Optional.ofNullable(_getPinned().get(pPackage));
+  }
+
+  /**
+   * Pins the installed versions of the given packages.
+   * The versions and integrities of the packages and all of their dependencies are read from the hidden lock file,
+   * that npm writes into the node_modules folder. Packages, whose tarballs or the tarballs of their dependencies
+   * are not contained in this cache, are not pinned.
+   *
+   * @param pNodeModules node_modules folder, the packages were installed into
+   * @param pPackages    package specifications, e.g. "typescript@4.5.2"
+   */
+  public synchronized void pin(@NonNull File pNodeModules, @NonNull List<String> pPackages)
+  {
+    File hiddenLock = new File(pNodeModules, _HIDDEN_LOCK_FILE);
+    if (!hiddenLock.isFile())
+      return;
+
+    boolean changed = false;
+    try (Reader reader = Files.newBufferedReader(hiddenLock.toPath(), StandardCharsets.UTF_8))
+    {
+      JsonObject installed = JsonParser.parseReader(reader).getAsJsonObject().getAsJsonObject("packages");
+      for (String spec : pPackages)
+      {
+        String path = _NODE_MODULES + PackageParser.getPackageName(spec);
+        JsonElement entry = installed == null ? null : installed.get(path);
+        if (entry == null || !entry.isJsonObject() || !entry.getAsJsonObject().has("integrity") || !entry.getAsJsonObject().has("version"))
+          continue;
+
+        PinnedPackage pin = new PinnedPackage(PackageParser.getPackageName(spec), entry.getAsJsonObject().get("version").getAsString(),
+                                              entry.getAsJsonObject().get("integrity").getAsString(), _collectDependencies(installed, path));
+        boolean stored = _verify(pin.getIntegrity()) && pin.getDependencies().values().stream().allMatch(this::_verify);
+        if (stored && !pin.equals(_getPinned().put(spec, pin)))
+          changed = true;
+      }
+    }
+    catch (IOException | RuntimeException e)
+    {
+      _LOGGER.log(Level.FINE, "Failed to read " + hiddenLock, e);
+    }
+
+    if (changed)
+      _writeLock();
+  }
+
+  /**
+   * Checks, if the tarball with the given integrity is contained in this cache and not corrupted
+   *
+   * @param pIntegrity integrity in the format of npm, e.g. "sha512-..."
+   * @return true, if the tarball is valid
+   */
+  private boolean _verify(@NonNull String pIntegrity)
+  {
+    if (verified.contains(pIntegrity))
+      return true;
+
+    // there may be multiple hashes, separated by whitespace - the tarball is valid, if it is stored and matches any of them
+    for (String hash : pIntegrity.trim().split("\\s+"))
+    {
+      int separator = hash.indexOf('-');
+      if (separator < 0)
+        continue;
+
+      String algorithm = hash.substring(0, separator);
+      String digestAlgorithm = _getDigestAlgorithm(algorithm);
+      if (digestAlgorithm == null)
+        continue;
+
+      try
+      {
+        byte[] expected = Base64.getDecoder().decode(hash.substring(separator + 1));
+        File content = _getContentFile(algorithm, expected);
+        if (!content.isFile())
+          continue;
+
+        MessageDigest digest = MessageDigest.getInstance(digestAlgorithm);
+        try (InputStream in = new DigestInputStream(new BufferedInputStream(new FileInputStream(content)), digest))
+        {
+          in.transferTo(OutputStream.nullOutputStream());
+        }
+
+        if (MessageDigest.isEqual(expected, digest.digest()))
+        {
+          verified.add(pIntegrity);
+          return true;
+        }
+      }
+      catch (IOException | NoSuchAlgorithmException | IllegalArgumentException e)
+      {
+        _LOGGER.log(Level.FINE, "Failed to verify " + hash, e);
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Collects the integrities of all dependencies of an installed package, including the transitive ones.
+   * Dependencies are resolved like node does: in the node_modules folder of the package first, then in the folders above.
+   * Bundled and linked dependencies have no integrity of their own, so they are skipped.
+   *
+   * @param pInstalled packages of the hidden lock file, by their path
+   * @param pPath      path of the package, e.g. "node_modules/typescript"
+   * @return the integrity of each dependency, by its path
+   */
+  @NonNull
+  private static Map<String, String> _collectDependencies(@NonNull JsonObject pInstalled, @NonNull String pPath)
+  {
+    Map<String, String> result = new TreeMap<>();
+    Set<String> visited = new HashSet<>(Set.of(pPath));
+    Deque<String> queue = new ArrayDeque<>(List.of(pPath));
+    while (!queue.isEmpty())
+    {
+      String path = queue.removeFirst();
+      JsonObject entry = pInstalled.getAsJsonObject(path);
+      for (String field : List.of("dependencies", "optionalDependencies"))
+      {
+        JsonObject dependencies = entry.has(field) ? entry.getAsJsonObject(field) : null;
+        if (dependencies == null)
+          continue;
+
+        for (String name : dependencies.keySet())
+        {
+          String resolved = _resolveDependency(pInstalled, path, name);
+          if (resolved == null || !visited.add(resolved))
+            continue;
+
+          queue.addLast(resolved);
+          JsonObject dependency = pInstalled.getAsJsonObject(resolved);
+          if (dependency.has("integrity"))
+            result.put(resolved, dependency.get("integrity").getAsString());
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Resolves a dependency of an installed package
+   *
+   * @param pInstalled packages of the hidden lock file, by their path
+   * @param pPath      path of the package, that depends on the dependency
+   * @param pName      name of the dependency
+   * @return the path of the installed dependency, or null if it is not installed (e.g. an optional dependency of another platform)
+   */
+  @Nullable
+  private static String _resolveDependency(@NonNull JsonObject pInstalled, @NonNull String pPath, @NonNull String pName)
+  {
+    String parent = pPath;
+    while (true)
+    {
+      String candidate = parent + "/" + _NODE_MODULES + pName;
+      if (pInstalled.has(candidate) && pInstalled.get(candidate).isJsonObject())
+        return candidate;
+
+      int nested = parent.lastIndexOf("/" + _NODE_MODULES);
+      if (nested < 0)
+        break;
+      parent = parent.substring(0, nested);
+    }
+
+    String topLevel = _NODE_MODULES + pName;
+    return pInstalled.has(topLevel) && pInstalled.get(topLevel).isJsonObject() ? topLevel : null;
+  }
+
+  /**
+   * Returns the file of a tarball, according to the content-addressed layout of the npm cache
+   *
+   * @param pAlgorithm algorithm of the hash, e.g. "sha512"
+   * @param pHash      the hash
+   * @return the file, may not exist
+   */
+  @NonNull
+  private File _getContentFile(@NonNull String pAlgorithm, @NonNull byte[] pHash)
+  {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : pHash)
+      hex.append(String.format("%02x", b));
+    return new File(directory, "_cacache/content-v2/" + pAlgorithm + "/" + hex.substring(0, 2) + "/" + hex.substring(2, 4) + "/" + hex.substring(4));
+  }
+
+  /**
+   * @param pAlgorithm algorithm of an integrity
+   * @return the name of the algorithm for {@link MessageDigest}, or null if it is not supported
+   */
+  @Nullable
+  private static String _getDigestAlgorithm(@NonNull String pAlgorithm)
+  {
+    switch (pAlgorithm)
+    {
+      case "sha512":
+        return "SHA-512";
+      case "sha384":
+        return "SHA-384";
+      case "sha256":
+        return "SHA-256";
+      case "sha1":
+        return "SHA-1";
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return all pinned packages, they are read from the lock file on first access
+   */
+  @NonNull
+  private Map<String, PinnedPackage> _getPinned()
+  {
+    if (pinned == null)
+      pinned = _readLock(new File(directory, _LOCK_FILE));
+    return pinned;
+  }
+
+  /**
+   * Reads a lock file
+   *
+   * @param pFile lock file
+   * @return the pinned packages by their specification
+   */
+  @NonNull
+  private static Map<String, PinnedPackage> _readLock(@NonNull File pFile)
+  {
+    Map<String, PinnedPackage> result = new HashMap<>();
+    if (!pFile.isFile())
+      return result;
+
+    try (Reader reader = Files.newBufferedReader(pFile.toPath(), StandardCharsets.UTF_8))
+    {
+      for (Map.Entry<String, JsonElement> entry : JsonParser.parseReader(reader).getAsJsonObject().entrySet())
+      {
+        JsonObject value = entry.getValue().getAsJsonObject();
+
+        // pins of former versions do not contain the dependencies, so they can not guarantee an offline installation
+        if (!value.has("dependencies"))
+          continue;
+
+        Map<String, String> dependencies = new TreeMap<>();
+        value.getAsJsonObject("dependencies").entrySet().forEach(pDependency -> dependencies.put(pDependency.getKey(), pDependency.getValue().getAsString()));
+        result.put(entry.getKey(), new PinnedPackage(value.get("name").getAsString(), value.get("version").getAsString(),
+                                                     value.get("integrity").getAsString(), dependencies));
+      }
+    }
+    catch (IOException | RuntimeException e)
+    {
+      // a broken lock file just pins nothing
+      _LOGGER.log(Level.FINE, "Failed to read " + pFile, e);
+      result.clear();
+    }
+
+    return result;
+  }
+
+  /**
+   * Writes the lock file of this cache
+   */
+  private void _writeLock()
+  {
+    JsonObject content = new JsonObject();
+    new TreeMap<>(_getPinned()).forEach((pSpec, pPin) -> {
+      JsonObject value = new JsonObject();
+      value.addProperty("name", pPin.getName());
+      value.addProperty("version", pPin.getVersion());
+      value.addProperty("integrity", pPin.getIntegrity());
+      JsonObject dependencies = new JsonObject();
+      pPin.getDependencies().forEach(dependencies::addProperty);
+      value.add("dependencies", dependencies);
+      content.add(pSpec, value);
+    });
+
+    File file = new File(directory, _LOCK_FILE);
+    try
+    {
+      Files.createDirectories(directory.toPath());
+
+      // write into a temporary file first, so that the lock file never gets corrupted
+      Path temp = Files.createTempFile(directory.toPath(), _LOCK_FILE, ".tmp");
+      Files.write(temp, new GsonBuilder().setPrettyPrinting().create().toJson(content).getBytes(StandardCharsets.UTF_8));
+      Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e)
+    {
+      _LOGGER.log(Level.WARNING, "Failed to write " + file, e);
+    }
+  }
+
+  /**
+   * A package, that is pinned to a version and the integrity of its tarball
+   */
+  @Value
+  public static class PinnedPackage
+  {
+    @NonNull
+    String name;
+    @NonNull
+    String version;
+    @NonNull
+    String integrity;
+
+    /**
+     * Integrities of the tarballs of all dependencies, by their path in the node_modules folder
+     */
+    @NonNull
+    Map<String, String> dependencies;
+  }
+
+}
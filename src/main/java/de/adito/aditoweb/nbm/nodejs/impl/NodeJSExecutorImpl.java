@@ -1,25 +1,28 @@
 package de.adito.aditoweb.nbm.nodejs.impl;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonElement;
 import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.*;
+import de.adito.aditoweb.nbm.nodejs.impl.util.*;
 import de.adito.notification.INotificationFacade;
-import lombok.NonNull;
+import io.reactivex.rxjava3.core.*;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import lombok.*;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.io.output.*;
-import org.buildobjects.process.*;
 import org.jetbrains.annotations.Nullable;
 import org.netbeans.api.project.Project;
 import org.openide.filesystems.FileUtil;
-import org.openide.modules.Places;
-import org.openide.util.BaseUtilities;
 import org.openide.util.lookup.ServiceProvider;
 
-import java.io.ByteArrayOutputStream;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
+import java.util.function.Function;
+import java.util.logging.*;
 
 /**
  * @author w.glanzer, 08.03.2021
@@ -27,22 +30,48 @@ import java.util.concurrent.atomic.*;
 @ServiceProvider(service = INodeJSExecutor.class, path = "Projects/de-adito-project/StaticLookup")
 public class NodeJSExecutorImpl implements INodeJSExecutor
 {
-  private static final String _PATH_ENVIRONMENT = "PATH";
 
+  /**
+   * Maximum number of processes, that are executed concurrently by all executors.
+   * Additional executions wait, until a running process has finished.
+   */
+  static final String MAX_THREADS_PROPERTY = "adito.nodejs.executor.maxThreads";
+
+  private static final Logger _LOGGER = Logger.getLogger(NodeJSExecutorImpl.class.getName());
+  private static final ProcessExecutorService _PROCESS_EXECUTOR = new ProcessExecutorService(Integer.getInteger(MAX_THREADS_PROPERTY, 128));
+  private static final ExecutorService _STREAM_PUMPS = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                                                                                        .setNameFormat("tNodeJSStreamPump-%d")
+                                                                                        .setDaemon(true)
+                                                                                        .build());
+  private static final NodeJSWorkerPool _WORKER_POOL = new NodeJSWorkerPool(_PROCESS_EXECUTOR, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+  private static final Map<File, NodeJSExecutorImpl> _UNBOUND_EXECUTORS = new ConcurrentHashMap<>();
   private final File workingDir;
-  private final ExecutorService processExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
-                                                                                    .setDaemon(true)
-                                                                                    .setNameFormat("tNodeJSExecutor-%d")
-                                                                                    .build());
 
   /**
    * @param pDirectory Directory to execute commands in
-   * @return an executor that is not bound to a project
+   * @return an executor that is not bound to a project, shared for all callers with the same directory
    */
   @NonNull
   public static INodeJSExecutor getInternalUnboundExecutor(@NonNull File pDirectory)
   {
-    return new NodeJSExecutorImpl(pDirectory);
+    return _UNBOUND_EXECUTORS.computeIfAbsent(pDirectory.getAbsoluteFile(), NodeJSExecutorImpl::new);
+  }
+
+  /**
+   * @return the current statistics of the thread pool, that is shared by all executors
+   */
+  @NonNull
+  public static ProcessExecutorService.PoolStatistics getPoolStatistics()
+  {
+    return _PROCESS_EXECUTOR.getStatistics();
+  }
+
+  /**
+   * Stops all idle nodejs workers, e.g. because the designer closes
+   */
+  public static void shutdownWorkers()
+  {
+    _WORKER_POOL.shutdown();
   }
 
   @SuppressWarnings("unused") // ServiceProvider
@@ -75,36 +104,181 @@ public class NodeJSExecutorImpl implements INodeJSExecutor
   public String executeSync(@NonNull INodeJSEnvironment pEnv, @NonNull INodeJSExecBase pBase, long pTimeout, boolean pIncludeStdErr, @NonNull String... pParams)
       throws IOException, InterruptedException, TimeoutException
   {
-    try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); // regular output as bytes, needed as return value
-         ByteArrayOutputStream errBaos = new ByteArrayOutputStream(); // error output as bytes, needed for exception handling
+    try (CapturedOutput output = executeSyncCaptured(pEnv, pBase, pTimeout, pIncludeStdErr, pParams))
+    {
+      // Copy result to string and trim trailing linebreak
+      return output.toString().trim();
+    }
+  }
+
+  /**
+   * Executes the given command synchronously, like {@link #executeSync(INodeJSEnvironment, INodeJSExecBase, long, boolean, String...)}.
+   * The output is not converted to a string, so that large outputs can be streamed by the caller.
+   * The returned capture has to be closed by the caller.
+   *
+   * @param pEnv           Environment
+   * @param pBase          Base for the command
+   * @param pTimeout       Timeout in milliseconds, -1 for no timeout
+   * @param pIncludeStdErr true, if the error output should be included in the captured output
+   * @param pParams        Parameters
+   * @return the captured output, the first line contains the executed command
+   */
+  @NonNull
+  public CapturedOutput executeSyncCaptured(@NonNull INodeJSEnvironment pEnv, @NonNull INodeJSExecBase pBase, long pTimeout, boolean pIncludeStdErr,
+                                            @NonNull String... pParams) throws IOException, InterruptedException, TimeoutException
+  {
+    // the version of nodejs only changes together with its binary
+    if (_isVersionCommand(pBase, pParams))
+      return executeSyncCached(pEnv, pBase, pTimeout, pIncludeStdErr, CommandResultCache.DEFAULT_TTL, List.of(), Set.of(0), pParams);
+    return _executeSyncCaptured(pEnv, pBase, pTimeout, pIncludeStdErr, pParams).getOutput();
+  }
+
+  /**
+   * Executes an idempotent command synchronously, like {@link #executeSyncCaptured(INodeJSEnvironment, INodeJSExecBase, long, boolean, String...)}.
+   * The result is cached in the {@link CommandResultCache}, until the binary or one of the given fingerprint files changes,
+   * or the time to live expires. Only executions, that exited with one of the given exit codes, are cached.
+   *
+   * @param pEnv              Environment
+   * @param pBase             Base for the command
+   * @param pTimeout          Timeout in milliseconds, -1 for no timeout
+   * @param pIncludeStdErr    true, if the error output should be included in the captured output
+   * @param pTtl              time in milliseconds, how long the result is valid
+   * @param pFingerprintFiles files and folders (e.g. node_modules), the result depends on
+   * @param pCachedExitCodes  exit codes of successful executions, whose result may be cached (e.g. 0 and 1 for "npm outdated")
+   * @param pParams           Parameters
+   * @return the captured output, the first line contains the executed command
+   */
+  @NonNull
+  public CapturedOutput executeSyncCached(@NonNull INodeJSEnvironment pEnv, @NonNull INodeJSExecBase pBase, long pTimeout, boolean pIncludeStdErr,
+                                          long pTtl, @NonNull List<File> pFingerprintFiles, @NonNull Set<Integer> pCachedExitCodes,
+                                          @NonNull String... pParams) throws IOException, InterruptedException, TimeoutException
+  {
+    // nothing to cache, the execution reports the invalid environment
+    if (!pEnv.isValid())
+      return _executeSyncCaptured(pEnv, pBase, pTimeout, pIncludeStdErr, pParams).getOutput();
+
+    List<File> fingerprintFiles = new ArrayList<>(pFingerprintFiles);
+    File commandPath = _getCommandPath(pEnv, pBase);
+    fingerprintFiles.add(0, commandPath);
+    fingerprintFiles.add(0, pEnv.getPath());
+    List<String> command = new ArrayList<>(Arrays.asList(pParams));
+    command.add(0, commandPath.getAbsolutePath());
+    command.add(String.valueOf(workingDir));
+    command.add(String.valueOf(pIncludeStdErr));
+
+    CommandResultCache cache = CommandResultCache.getInstance();
+    String key = CommandResultCache.key(command, fingerprintFiles);
+    CapturedOutput cached = cache.get(key);
+    if (cached != null)
+      return cached;
+
+    _CapturedExecution execution = _executeSyncCaptured(pEnv, pBase, pTimeout, pIncludeStdErr, pParams);
+    if (pCachedExitCodes.contains(execution.getExitCode()))
+      cache.put(key, execution.getOutput(), pTtl);
+    return execution.getOutput();
+  }
 
-         // Now combine the "errBaos" and the outter output stream
-         OutputStream erros = new TeeOutputStream(pIncludeStdErr ? baos : NullOutputStream.NULL_OUTPUT_STREAM, errBaos))
+  /**
+   * Executes the given command synchronously without any cache
+   *
+   * @return the captured output and the exit code of the process
+   * @see #executeSyncCaptured(INodeJSEnvironment, INodeJSExecBase, long, boolean, String...)
+   */
+  @NonNull
+  private _CapturedExecution _executeSyncCaptured(@NonNull INodeJSEnvironment pEnv, @NonNull INodeJSExecBase pBase, long pTimeout, boolean pIncludeStdErr,
+                                                  @NonNull String... pParams) throws IOException, InterruptedException, TimeoutException
+  {
+    // a warm worker knows the version without starting a new process, the output looks like the output of a separate process
+    if (_isVersionCommand(pBase, pParams))
+    {
+      JsonElement version = executeInWorker(pEnv, pTimeout, "version");
+      if (version != null)
+        return new _CapturedExecution(CapturedOutput.of(_getCommandPath(pEnv, pBase).getAbsolutePath() + " --version\n" + version.getAsString() + "\n"), 0);
+    }
+
+    CapturedOutput output = new CapturedOutput(); // regular output, needed as return value
+    try (CapturedOutput errOutput = new CapturedOutput(); // error output, needed for exception handling
+
+         // Now combine the "errOutput" and the outter output stream
+         OutputStream erros = new TeeOutputStream(pIncludeStdErr ? output.getOutputStream() : NullOutputStream.NULL_OUTPUT_STREAM,
+                                                  errOutput.getOutputStream()))
     {
       // create and start
-      Future<Integer> process = _executeAsync(pEnv, pBase, baos, erros, null, false, pParams);
+      CompletableFuture<Void> started = new CompletableFuture<>();
+      Future<Integer> process = _executeAsync(pEnv, pBase, output.getOutputStream(), erros, null, false, started, pParams);
       Integer exitCode;
 
-      // wait until finished
-      if (pTimeout > -1)
-        exitCode = process.get(pTimeout, TimeUnit.MILLISECONDS);
-      else
-        exitCode = process.get();
-
-      // Copy result to string and trim trailing linebreak
-      String result = baos.toString(StandardCharsets.UTF_8).trim();
+      // wait until finished, the timeout of the execution starts as soon as the execution got a thread of the pool -
+      // otherwise it could expire while the execution is still queued behind other processes. Waiting for the thread is limited by the timeout, too
+      try
+      {
+        if (pTimeout > -1)
+        {
+          started.get(pTimeout, TimeUnit.MILLISECONDS);
+          exitCode = process.get(pTimeout, TimeUnit.MILLISECONDS);
+        }
+        else
+          exitCode = process.get();
+      }
+      catch (TimeoutException e)
+      {
+        // cancelling terminates the process and its descendants, or prevents the start of an execution, that is still queued
+        process.cancel(true);
+        ProcessExecutorService.PoolStatistics statistics = getPoolStatistics();
+        _LOGGER.log(Level.WARNING, "Execution timed out after {0} ms, process pool: {1}", new Object[]{pTimeout, statistics});
+        throw new TimeoutException("Execution timed out after " + pTimeout + " ms (" + statistics + ")");
+      }
+      catch (InterruptedException e)
+      {
+        process.cancel(true);
+        throw e;
+      }
 
       // Throw an exception, if something failed and we do not include the stderr in the result output.
       // Do not throw anything, if we were able to execute *something*
-      if (exitCode != 0 && !pIncludeStdErr && !result.contains("\n"))
-        throw new IOException(errBaos.toString(StandardCharsets.UTF_8));
+      if (exitCode != 0 && !pIncludeStdErr && !output.hasMultipleLines())
+        throw new IOException(errOutput.toString());
 
-      return result;
+      return new _CapturedExecution(output, exitCode);
     }
     catch (ExecutionException e)
     {
+      output.close();
       throw new IOException(e);
     }
+    catch (IOException | InterruptedException | TimeoutException | RuntimeException e)
+    {
+      output.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Executes a command of the helper script (see worker.js) in a warm nodejs worker of the given environment,
+   * so that no new process has to be started for small jobs (e.g. reading the version or the installed packages)
+   *
+   * @param pEnv     Environment, whose node binary executes the command
+   * @param pTimeout Timeout in milliseconds, -1 for no timeout
+   * @param pCommand command of the helper script
+   * @param pArgs    arguments of the command
+   * @return the result of the command, or null if no worker was able to execute it - the caller should start a separate process in this case
+   */
+  @Nullable
+  public JsonElement executeInWorker(@NonNull INodeJSEnvironment pEnv, long pTimeout, @NonNull String pCommand, @NonNull String... pArgs)
+      throws InterruptedException
+  {
+    if (!pEnv.isValid())
+      return null;
+
+    try
+    {
+      return _WORKER_POOL.call(pEnv, pTimeout, pCommand, pArgs);
+    }
+    catch (IOException | TimeoutException | RuntimeException e)
+    {
+      // start a separate process instead
+      return null;
+    }
   }
 
   @NonNull
@@ -120,17 +294,125 @@ public class NodeJSExecutorImpl implements INodeJSExecutor
 
     ProcessBuilder builder = new ProcessBuilder(params)
         .directory(workingDir);
+    NodeJSProcessEnvironment.getInstance().applyTo(builder, pEnv);
+
+    long spawnStart = System.nanoTime();
+    Process process = builder.start();
+    ProcessMetrics.Tracker tracker = ProcessMetrics.getInstance().track(process, params, spawnStart);
+    process.onExit().thenAccept(pProcess -> tracker.finish(pProcess.exitValue(), -1, -1));
+
+    // the error output has to be read continuously, otherwise the process blocks randomly as soon as the pipe is full.
+    // Every process gets its own log, so that the output can be inspected afterwards (e.g. if the language server crashed)
+    try
+    {
+      ProcessErrorLogs.getInstance().attach(process, params);
+    }
+    catch (IOException e)
+    {
+      process.destroy();
+      throw e;
+    }
+
+    return process;
+  }
+
+  /**
+   * Executes the given command and redirects its default and error output directly into the given file.
+   * The output is written by the operating system, so it does not have to be copied and decoded by java.
+   * Cancelling the returned future terminates the process.
+   *
+   * @param pEnv        Environment
+   * @param pBase       Base for the command
+   * @param pOutputFile File to write the output to, will be overwritten
+   * @param pParams     Parameters
+   * @return a future that completes with the exit code of the process
+   */
+  @NonNull
+  public CompletableFuture<Integer> executeToFile(@NonNull INodeJSEnvironment pEnv, @NonNull INodeJSExecBase pBase, @NonNull File pOutputFile,
+                                                  @NonNull String... pParams) throws IOException
+  {
+    // Invalid Environment
+    _checkValid(pEnv);
+
+    // Prepare Process
+    List<String> params = new ArrayList<>(Arrays.asList(pParams));
+    params.add(0, _getCommandPath(pEnv, pBase).getAbsolutePath());
+    ProcessBuilder builder = new ProcessBuilder(params)
+        .directory(workingDir)
+        .redirectOutput(ProcessBuilder.Redirect.appendTo(pOutputFile))
+        .redirectErrorStream(true);
+    NodeJSProcessEnvironment.getInstance().applyTo(builder, pEnv);
+
+    // log command, this also truncates the output of previous executions
+    Files.createDirectories(pOutputFile.getAbsoluteFile().getParentFile().toPath());
+    Files.write(pOutputFile.toPath(), (String.join(" ", params) + "\n").getBytes(StandardCharsets.UTF_8));
+
+    long spawnStart = System.nanoTime();
+    Process process = builder.start();
+    process.getOutputStream().close();
+    ProcessMetrics.Tracker tracker = ProcessMetrics.getInstance().track(process, params, spawnStart);
+    process.onExit().thenAccept(pProcess -> tracker.finish(pProcess.exitValue(), -1, -1));
+
+    CompletableFuture<Integer> resultFuture = process.onExit().thenApply(Process::exitValue);
+    resultFuture.whenComplete((pExit, pThrowable) -> {
+      if (pThrowable instanceof CancellationException)
+        _terminate(process, null);
+    });
+    return resultFuture;
+  }
+
+  /**
+   * Executes the given command and emits the decoded lines of the default and the error output, followed by the exit code.
+   * The process is started on subscription. The output is only read as fast as the subscriber requests the events,
+   * so a slow subscriber pauses the process (as soon as the pipe buffer is full) instead of buffering its output.
+   * The outputs are read by threads of the pool, that is shared by all executors. Cancelling the subscription terminates the process.
+   *
+   * @param pEnv    Environment
+   * @param pBase   Base for the command
+   * @param pParams Parameters
+   * @return the events, the last event is always of type {@link ProcessEvent.Type#EXIT}
+   */
+  @NonNull
+  public Flowable<ProcessEvent> executeStreaming(@NonNull INodeJSEnvironment pEnv, @NonNull INodeJSExecBase pBase, @NonNull String... pParams)
+  {
+    return Flowable.using(() -> _startStreamingProcess(pEnv, pBase, pParams), _StreamingProcess::events, pStarted -> {
+      // the process is still alive, if the subscription was cancelled
+      if (pStarted.process.isAlive())
+        _terminate(pStarted.process, null);
+    });
+  }
 
-    // redirect error stream to prevent randomly blocking ui...
-    // I dont know exactly why this fix works, but .. hey, it works
-    File err_log = new File(Places.getUserDirectory(), "var/log/npm_err.log");
+  /**
+   * Starts the process for {@link #executeStreaming(INodeJSEnvironment, INodeJSExecBase, String...)}
+   *
+   * @param pEnv    Environment
+   * @param pBase   Base for the command
+   * @param pParams Parameters
+   * @return the started process
+   */
+  @NonNull
+  private _StreamingProcess _startStreamingProcess(@NonNull INodeJSEnvironment pEnv, @NonNull INodeJSExecBase pBase, @NonNull String... pParams)
+      throws IOException
+  {
+    // Invalid Environment
+    _checkValid(pEnv);
 
-    //noinspection ResultOfMethodCallIgnored
-    err_log.createNewFile();
+    // Prepare Process
+    List<String> params = new ArrayList<>(Arrays.asList(pParams));
+    params.add(0, _getCommandPath(pEnv, pBase).getAbsolutePath());
+    ProcessBuilder builder = new ProcessBuilder(params)
+        .directory(workingDir);
+    NodeJSProcessEnvironment.getInstance().applyTo(builder, pEnv);
 
-    builder = builder.redirectError(err_log);
+    // the process does not get any input
+    long spawnStart = System.nanoTime();
+    Process process = builder.start();
+    process.getOutputStream().close();
 
-    return builder.start();
+    _StreamingProcess started = new _StreamingProcess(process);
+    ProcessMetrics.Tracker tracker = ProcessMetrics.getInstance().track(process, params, spawnStart);
+    process.onExit().thenAccept(pProcess -> tracker.finish(pProcess.exitValue(), started.stdout.getByteCount(), started.stderr.getByteCount()));
+    return started;
   }
 
   @NonNull
@@ -139,12 +421,13 @@ public class NodeJSExecutorImpl implements INodeJSExecutor
                                                  @NonNull OutputStream pDefaultOut, @Nullable OutputStream pErrorOut, @Nullable InputStream pDefaultIn,
                                                  @NonNull String... pParams)
   {
-    return _executeAsync(pEnv, pBase, pDefaultOut, pErrorOut, pDefaultIn, true, pParams);
+    return _executeAsync(pEnv, pBase, pDefaultOut, pErrorOut, pDefaultIn, true, new CompletableFuture<>(), pParams);
   }
 
   private CompletableFuture<Integer> _executeAsync(@NonNull INodeJSEnvironment pEnv, @NonNull INodeJSExecBase pBase,
                                                    @NonNull OutputStream pDefaultOut, @Nullable OutputStream pErrorOut, @Nullable InputStream pDefaultIn,
-                                                   boolean pFlushDuringExecution, @NonNull String... pParams)
+                                                   boolean pFlushDuringExecution, @NonNull CompletableFuture<Void> pStarted,
+                                                   @NonNull String... pParams)
   {
     if (pErrorOut == null)
       pErrorOut = pDefaultOut;
@@ -154,26 +437,10 @@ public class NodeJSExecutorImpl implements INodeJSExecutor
     // 1. Flushing output
     if (pFlushDuringExecution)
     {
-      // flush output every 500 ms
-      ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
-                                                                                          .setDaemon(true)
-                                                                                          .setNameFormat("tNodeJsExecutorFlusher-" +
-                                                                                                             String.join(" ", pParams) + "-%d")
-                                                                                          .build());
-
-      finalDefaultOut = new OutputStreamWrapper(pDefaultOut, scheduler::shutdownNow);
-      finalErrorOut = new OutputStreamWrapper(pErrorOut, scheduler::shutdownNow);
-      scheduler.scheduleWithFixedDelay(() -> {
-        try
-        {
-          finalDefaultOut.flush();
-          finalErrorOut.flush();
-        }
-        catch (IOException pE)
-        {
-          INotificationFacade.INSTANCE.error(pE);
-        }
-      }, 500, 500, TimeUnit.MILLISECONDS);
+      // flush output periodically, the streams unregister themselves when they get closed
+      OutputFlushScheduler flushScheduler = OutputFlushScheduler.getInstance();
+      finalDefaultOut = flushScheduler.register(pDefaultOut);
+      finalErrorOut = flushScheduler.register(pErrorOut);
     }
     else
     {
@@ -181,88 +448,85 @@ public class NodeJSExecutorImpl implements INodeJSExecutor
       finalErrorOut = pErrorOut;
     }
 
-    // 2. execute
+    // count the output for the metrics
+    CountingOutputStream countingDefaultOut = new CountingOutputStream(finalDefaultOut);
+    CountingOutputStream countingErrorOut = new CountingOutputStream(finalErrorOut);
+    AtomicReference<ProcessMetrics.Tracker> trackerRef = new AtomicReference<>(null);
+
+    // 2. execute - this is the only thread of the pool that blocks for the whole lifetime of the process, because it has to pump the streams
     AtomicReference<Thread> executionThreadRef = new AtomicReference<>(null);
     AtomicReference<Process> processRef = new AtomicReference<>(null);
-    AtomicBoolean isRunning = new AtomicBoolean(true);
+    AtomicBoolean cancelled = new AtomicBoolean(false);
     CompletableFuture<Integer> executionFuture = CompletableFuture.supplyAsync(() -> {
       executionThreadRef.set(Thread.currentThread());
+      pStarted.complete(null);
       // Invalid Environment
       _checkValid(pEnv);
 
       // Prepare Process
-      ProcBuilder builder = new ProcBuilder(_getCommandPath(pEnv, pBase).getAbsolutePath(), pParams);
+      List<String> command = new ArrayList<>(Arrays.asList(pParams));
+      command.add(0, _getCommandPath(pEnv, pBase).getAbsolutePath());
+      ProcessBuilder builder = new ProcessBuilder(command)
+          .directory(workingDir);
 
-      // set all environments variables
-      for (Map.Entry<String, String> entry : System.getenv().entrySet())
-      {
-        String key = entry.getKey();
-        // modify path with our node environment
-        if (key.equalsIgnoreCase(_PATH_ENVIRONMENT))
-          builder.withVar(_PATH_ENVIRONMENT, pEnv.getPath().getParent() + _getSeparator() + entry.getValue());
-        else
-          builder.withVar(entry.getKey(), entry.getValue());
-      }
+      // set all environments variables, cached per environment
+      NodeJSProcessEnvironment.getInstance().applyTo(builder, pEnv);
 
-      // add all system properties
-      System.getProperties()
-          // dots are not allowed as key => replacing with underscore
-          .forEach((pKey, pValue) -> builder.withVar(((String) pKey).replaceAll("\\.", "_").toUpperCase(), (String) pValue));
+      // log command
+      _logCommand(command, finalDefaultOut);
 
-      builder.withWorkingDirectory(workingDir)
-          .withOutputStream(finalDefaultOut)
-          .withErrorStream(finalErrorOut)
-          .withInputStream(pDefaultIn)
-          .withNoTimeout()
-          .withOnCreationHandler(processRef::set)
-          .ignoreExitStatus();
+      try
+      {
+        // the returned future was cancelled before the process was created
+        if (cancelled.get())
+          throw new CancellationException();
 
-      // log command
-      _logCommand(builder, finalDefaultOut);
+        long spawnStart = System.nanoTime();
+        Process process = builder.start();
+        processRef.set(process);
+        trackerRef.set(ProcessMetrics.getInstance().track(process, command, spawnStart));
 
-      ProcResult res = builder.run();
-      isRunning.set(false);
-      return res.getExitValue();
-    }, processExecutor);
+        // the returned future was cancelled while the process was created
+        if (cancelled.get())
+          _terminate(process, null);
 
-    // 3. future which is returned. If this future is cancelled, the thread of the execution future is interrupted, so the execution future finishes
-    // normally
-    CompletableFuture<Integer> waitingFuture = CompletableFuture.supplyAsync(() -> {
-      while (true)
+        return _pumpStreams(process, countingDefaultOut, countingErrorOut, pDefaultIn);
+      }
+      catch (IOException e)
       {
-        try
-        {
-          if (executionFuture.isDone())
-            return executionFuture.get();
-
-          //noinspection BusyWait
-          Thread.sleep(50);
-        }
-        catch (Exception e) // NOSONAR thread should not be interrupted
-        {
-          INotificationFacade.INSTANCE.error(e);
-          return Integer.MAX_VALUE; // return max -> we do not know the exit value, because something bad happened during creation time of our process
-        }
+        throw new UncheckedIOException(e);
       }
-    }, processExecutor);
+    }, _PROCESS_EXECUTOR);
+
+    executionFuture.whenComplete((pExit, pThrowable) -> {
+      pStarted.complete(null);
+      ProcessMetrics.Tracker tracker = trackerRef.get();
+      if (tracker != null)
+        tracker.finish(pExit == null ? Integer.MAX_VALUE : pExit, countingDefaultOut.getByteCount(), countingErrorOut.getByteCount());
+    });
 
-    waitingFuture.handle((pExit, pThrowable) -> {
-      if (executionThreadRef.get() != null && executionThreadRef.get().isAlive() && isRunning.get())
+    // 3. future which is returned. It is completed by the execution future directly, so no additional thread has to wait for the process.
+    //    If this future is cancelled, the execution future is not affected - the process gets terminated and the execution future finishes normally
+    CompletableFuture<Integer> resultFuture = executionFuture.handle((pExit, pThrowable) -> {
+      if (pThrowable != null)
       {
-        try
-        {
-          if (processRef.get() != null)
-            SendCtrlC.getInstance().send(processRef.get().pid());
-        }
-        catch (IOException ex)
-        {
-          executionThreadRef.get().interrupt();
-        }
+        // a cancelled execution is not an error
+        if (!cancelled.get())
+          INotificationFacade.INSTANCE.error(pThrowable);
+        return Integer.MAX_VALUE; // return max -> we do not know the exit value, because something bad happened during creation time of our process
       }
 
       return pExit;
     });
 
+    resultFuture.whenComplete((pExit, pThrowable) -> {
+      if (pThrowable instanceof CancellationException)
+      {
+        cancelled.set(true);
+        _terminate(processRef.get(), executionThreadRef.get());
+      }
+    });
+
     // 4. Cleaning up future
     CompletableFuture<Integer> cleanUpFuture = executionFuture;
     if (pFlushDuringExecution)
@@ -288,7 +552,7 @@ public class NodeJSExecutorImpl implements INodeJSExecutor
       });
     }
 
-    // 5. shutdown scheduler and close streams
+    // 5. close streams, this also stops flushing them
     cleanUpFuture.whenComplete((pExit, pThrowable) -> {
       try
       {
@@ -303,17 +567,45 @@ public class NodeJSExecutorImpl implements INodeJSExecutor
       }
     });
 
-    return waitingFuture;
+    return resultFuture;
   }
 
-  @NonNull
-  private String _getSeparator()
+  /**
+   * Determines, if the given command requests the version of nodejs
+   *
+   * @param pBase   Base for the command
+   * @param pParams Parameters
+   * @return true, if it is "node --version"
+   */
+  private static boolean _isVersionCommand(@NonNull INodeJSExecBase pBase, @NonNull String... pParams)
   {
-    if (BaseUtilities.isWindows())
-      return ";";
-    return ":";
+    return !pBase.isRelativeToWorkingDir() && INodeJSExecBase.node().getBasePath().equals(pBase.getBasePath())
+        && Arrays.equals(pParams, new String[]{"--version"});
   }
 
+  /**
+   * Terminates the given process and all of its descendants, because the future of the execution was cancelled.
+   * The process handle is used to determine, if the process is still running.
+   *
+   * @param pProcess         Process to terminate, NULL if the process was not created yet
+   * @param pExecutionThread Thread that executes the process, NULL if the execution was not started yet
+   */
+  private void _terminate(@Nullable Process pProcess, @Nullable Thread pExecutionThread)
+  {
+    if (pProcess != null)
+    {
+      ProcessHandle handle = pProcess.toHandle();
+      if (handle.isAlive())
+        ProcessTreeTerminator.getInstance().terminate(handle);
+      return;
+    }
+
+    // interrupt the execution thread, so that it does not start the process
+    if (pExecutionThread != null && pExecutionThread.isAlive())
+      pExecutionThread.interrupt();
+  }
+
+
   /**
    * Checks if the given environment is valid
    *
@@ -339,16 +631,81 @@ public class NodeJSExecutorImpl implements INodeJSExecutor
   }
 
   /**
-   * Logs the command of the given proc builder to the given output stream
+   * Copies the outputs of the given process to the given streams and the given input to the process, until the process exits.
+   * The default output is copied by the calling thread, the error output and the input by separate pump threads,
+   * so that none of the pipes is able to block the process.
    *
-   * @param pBuilder Builder
+   * @param pProcess  Process
+   * @param pOut      Stream for the default output
+   * @param pErr      Stream for the error output
+   * @param pIn       Input of the process, NULL if the process does not get any input
+   * @return the exit code of the process
+   */
+  private int _pumpStreams(@NonNull Process pProcess, @NonNull OutputStream pOut, @NonNull OutputStream pErr, @Nullable InputStream pIn)
+      throws IOException
+  {
+    boolean finished = false;
+    try
+    {
+      Future<?> errorPump = _STREAM_PUMPS.submit(() -> {
+        try (InputStream errorStream = pProcess.getErrorStream())
+        {
+          errorStream.transferTo(pErr);
+        }
+        return null;
+      });
+
+      if (pIn == null)
+        pProcess.getOutputStream().close();
+      else
+        _STREAM_PUMPS.execute(() -> {
+          try (OutputStream processIn = pProcess.getOutputStream())
+          {
+            pIn.transferTo(processIn);
+          }
+          catch (IOException e)
+          {
+            // the process does not read any more input
+          }
+        });
+
+      try (InputStream outputStream = pProcess.getInputStream())
+      {
+        outputStream.transferTo(pOut);
+      }
+      errorPump.get();
+      int exitCode = pProcess.waitFor();
+      finished = true;
+      return exitCode;
+    }
+    catch (ExecutionException e)
+    {
+      throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    finally
+    {
+      // the process would block forever, if one of its outputs is not read any more
+      if (!finished)
+        _terminate(pProcess, null);
+    }
+  }
+
+  /**
+   * Logs the given command to the given output stream
+   *
+   * @param pCommand Command and its parameters
    * @param pOut     Stream to log to
    */
-  private void _logCommand(@NonNull ProcBuilder pBuilder, @NonNull OutputStream pOut)
+  private void _logCommand(@NonNull List<String> pCommand, @NonNull OutputStream pOut)
   {
     try
     {
-      pOut.write(pBuilder.getCommandLine().getBytes(StandardCharsets.UTF_8));
+      pOut.write(String.join(" ", pCommand).getBytes(StandardCharsets.UTF_8));
       pOut.write('\n');
       pOut.flush();
     }
@@ -359,53 +716,84 @@ public class NodeJSExecutorImpl implements INodeJSExecutor
   }
 
   /**
-   * Delegating OutputStream, which executes a runnable if the stream is closed
+   * Process, that was started by {@link #executeStreaming(INodeJSEnvironment, INodeJSExecBase, String...)}
    */
-  private static class OutputStreamWrapper extends OutputStream
+  private static class _StreamingProcess
   {
-    private final OutputStream delegate;
-    private Runnable onClosed;
-
-    public OutputStreamWrapper(@NonNull OutputStream pDelegate, @NonNull Runnable pOnClosed)
-    {
-      delegate = pDelegate;
-      onClosed = pOnClosed;
-    }
+    private final Process process;
+    private final CountingInputStream stdout;
+    private final CountingInputStream stderr;
 
-    @Override
-    public void write(byte @NonNull [] b) throws IOException
+    public _StreamingProcess(@NonNull Process pProcess)
     {
-      delegate.write(b);
+      process = pProcess;
+      stdout = new CountingInputStream(pProcess.getInputStream());
+      stderr = new CountingInputStream(pProcess.getErrorStream());
     }
 
-    @Override
-    public void write(byte @NonNull [] b, int off, int len) throws IOException
+    /**
+     * @return the lines of both outputs, followed by the exit code
+     */
+    @NonNull
+    public Flowable<ProcessEvent> events()
     {
-      delegate.write(b, off, len);
+      return Flowable.merge(_readLines(stdout, ProcessEvent::stdout), _readLines(stderr, ProcessEvent::stderr))
+          .concatWith(Single.fromCompletionStage(process.onExit())
+                          .map(pExited -> ProcessEvent.exit(pExited.exitValue())));
     }
 
-    @Override
-    public void flush() throws IOException
+    /**
+     * Reads the lines of the given stream. The next line is only read, if it was requested by the subscriber.
+     *
+     * @param pStream stream to read
+     * @param pMapper creates the event for a line
+     * @return the events, that complete when the stream is closed
+     */
+    @NonNull
+    private Flowable<ProcessEvent> _readLines(@NonNull InputStream pStream, @NonNull Function<String, ProcessEvent> pMapper)
     {
-      delegate.flush();
+      return Flowable.<ProcessEvent, BufferedReader>generate(() -> new BufferedReader(new InputStreamReader(pStream, StandardCharsets.UTF_8)),
+                                                             (pReader, pEmitter) -> _emitNextLine(pReader, pEmitter, pMapper),
+                                                             BufferedReader::close)
+          .subscribeOn(Schedulers.from(_PROCESS_EXECUTOR));
     }
 
-    @Override
-    public void close() throws IOException
+    /**
+     * Reads the next line of the given reader and emits it
+     *
+     * @param pReader  reader of the output
+     * @param pEmitter emitter for the line
+     * @param pMapper  creates the event for a line
+     */
+    private void _emitNextLine(@NonNull BufferedReader pReader, @NonNull Emitter<ProcessEvent> pEmitter, @NonNull Function<String, ProcessEvent> pMapper)
     {
-      if (onClosed != null)
-        onClosed.run();
-
-      onClosed = null;
-      flush();
-      delegate.close();
+      try
+      {
+        String line = pReader.readLine();
+        if (line == null)
+          pEmitter.onComplete();
+        else
+          pEmitter.onNext(pMapper.apply(line));
+      }
+      catch (IOException e)
+      {
+        // the stream gets closed, if the process was terminated
+        if (process.isAlive())
+          pEmitter.onError(e);
+        else
+          pEmitter.onComplete();
+      }
     }
+  }
 
-    @Override
-    public void write(int b) throws IOException
-    {
-      delegate.write(b);
-    }
+  /**
+   * Result of a synchronous execution
+   */
+  @Value
+  private static class _CapturedExecution
+  {
+    CapturedOutput output;
+    int exitCode;
   }
 
 }
@@ -1,17 +1,24 @@
 package de.adito.aditoweb.nbm.nodejs.impl;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.*;
 import de.adito.aditoweb.nbm.nodejs.impl.options.NodeJSOptions;
 import de.adito.aditoweb.nbm.nodejs.impl.options.downloader.INodeJSDownloader;
 import de.adito.aditoweb.nbm.nodejs.impl.version.NodeJSEnvironmentFactory;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.subjects.BehaviorSubject;
 import lombok.*;
+import lombok.experimental.NonFinal;
 import org.jetbrains.annotations.*;
 
 import java.io.File;
+import java.util.logging.*;
 
 /**
  * Represents a NodeJS installation.
+ * The current installation is a snapshot, that is only determined again if the options or the installation change.
+ * The environment of an installation is resolved once and reused, as long as it stays valid.
  *
  * @author p.neub, 07.11.2022
  */
@@ -19,6 +26,7 @@ import java.io.File;
 public class NodeJSInstallation
 {
 
+  private static final Logger _LOGGER = Logger.getLogger(NodeJSInstallation.class.getName());
   private static final IInstallationProvider _PROVIDER = new OptionsInstallationProvider(new BundledInstallationProvider());
 
   /**
@@ -33,6 +41,21 @@ public class NodeJSInstallation
    */
   boolean isInternal;
 
+  /**
+   * The resolved and valid environment of this installation, null if it was not resolved yet
+   */
+  @NonFinal
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  @Getter(AccessLevel.NONE)
+  volatile INodeJSEnvironment environment;
+
+  public NodeJSInstallation(@NonNull File pRootFolder, boolean pIsInternal)
+  {
+    rootFolder = pRootFolder;
+    isInternal = pIsInternal;
+  }
+
   /**
    * Returns the current {@link NodeJSInstallation} that should be used to perform NodeJS tasks.
    *
@@ -41,7 +64,19 @@ public class NodeJSInstallation
   @NonNull
   public static NodeJSInstallation getCurrent()
   {
-    return _PROVIDER.get();
+    return _CurrentHolder.CURRENT.get();
+  }
+
+  /**
+   * Observes the current {@link NodeJSInstallation}.
+   * A new snapshot is emitted, if the options or the installation itself have changed.
+   *
+   * @return the {@link Observable}, that emits the current installation immediately
+   */
+  @NonNull
+  public static Observable<NodeJSInstallation> observeCurrent()
+  {
+    return _CurrentHolder.CURRENT.observe();
   }
 
   /**
@@ -63,6 +98,9 @@ public class NodeJSInstallation
   @Nullable
   public File getBinary()
   {
+    INodeJSEnvironment resolved = environment;
+    if (resolved != null && resolved.isValid())
+      return resolved.getPath();
     return INodeJSDownloader.getInstance().findNodeExecutableInInstallation(rootFolder);
   }
 
@@ -76,13 +114,19 @@ public class NodeJSInstallation
   @NonNull
   public INodeJSEnvironment getEnvironment()
   {
-    File binary = getBinary();
+    // an environment that is not available is not remembered, because it may be installed in the meantime
+    INodeJSEnvironment resolved = environment;
+    if (resolved != null && resolved.isValid())
+      return resolved;
+
+    File binary = INodeJSDownloader.getInstance().findNodeExecutableInInstallation(rootFolder);
     if (binary == null)
       throw new IllegalStateException("global nodejs environment is not available, because node binary could not be found");
-    INodeJSEnvironment environment = NodeJSEnvironmentFactory.create(binary);
-    if (environment == null || !environment.isValid())
+    resolved = NodeJSEnvironmentFactory.create(binary);
+    if (resolved == null || !resolved.isValid())
       throw new IllegalStateException("global nodejs environment is invalid");
-    return environment;
+    environment = resolved;
+    return resolved;
   }
 
   /**
@@ -103,6 +147,90 @@ public class NodeJSInstallation
     }
   }
 
+  /**
+   * Holds the snapshot of the current installation. It is created on first access,
+   * so that the options are not read before they are needed.
+   */
+  private static class _CurrentHolder
+  {
+    private static final CurrentSnapshot CURRENT = new CurrentSnapshot(_PROVIDER);
+  }
+
+  /**
+   * Snapshot of the current installation, that is determined again if the options or the installation change
+   */
+  @VisibleForTesting
+  static final class CurrentSnapshot
+  {
+    private final IInstallationProvider provider;
+    private final BehaviorSubject<NodeJSInstallation> current;
+
+    @VisibleForTesting
+    CurrentSnapshot(@NonNull IInstallationProvider pProvider)
+    {
+      provider = pProvider;
+      current = BehaviorSubject.createDefault(_getInitial());
+
+      //noinspection ResultOfMethodCallIgnored the snapshot lives as long as the module
+      Observable.merge(NodeJSOptions.observe(), NodeJSInstaller.observeInstallation())
+          .subscribe(pChange -> _update(), pError -> _LOGGER.log(Level.WARNING, "Failed to observe the current nodejs installation", pError));
+    }
+
+    /**
+     * @return the current installation
+     */
+    @NonNull
+    NodeJSInstallation get()
+    {
+      return current.getValue();
+    }
+
+    /**
+     * @return the {@link Observable}, that emits the current installation immediately and every changed snapshot
+     */
+    @NonNull
+    Observable<NodeJSInstallation> observe()
+    {
+      return current;
+    }
+
+    /**
+     * Determines the first snapshot. If the provider fails, there is no previous snapshot to keep, so the bundled installation is used
+     *
+     * @return the first snapshot
+     */
+    @NonNull
+    private NodeJSInstallation _getInitial()
+    {
+      try
+      {
+        return provider.get();
+      }
+      catch (RuntimeException e)
+      {
+        // the next change will try again
+        _LOGGER.log(Level.WARNING, "Failed to determine the current nodejs installation, using the bundled installation", e);
+        return new BundledInstallationProvider().get();
+      }
+    }
+
+    /**
+     * Determines the current installation again
+     */
+    private void _update()
+    {
+      try
+      {
+        current.onNext(provider.get());
+      }
+      catch (RuntimeException e)
+      {
+        // keep the previous snapshot, the next change will try again
+        _LOGGER.log(Level.WARNING, "Failed to update the current nodejs installation", e);
+      }
+    }
+  }
+
   /**
    * Provider that provides a {@link NodeJSInstallation}.
    */
@@ -110,7 +238,8 @@ public class NodeJSInstallation
   {
     /**
      * Method that returns the {@link NodeJSInstallation}.
-     * Instances may be shared, since {@link NodeJSInstallation} is immutable.
+     * Instances may be shared. The root folder of an installation never changes, only its resolved environment is cached
+     * (in a volatile field) - so callers, that share an instance, also share the resolved environment.
      *
      * @return an instance of the {@link NodeJSInstallation}
      */
@@ -7,6 +7,7 @@ import de.adito.aditoweb.nbm.metrics.api.types.Counted;
 import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.*;
 import de.adito.aditoweb.nbm.nodejs.impl.options.NodeJSOptions;
 import de.adito.aditoweb.nbm.nodejs.impl.options.downloader.INodeJSDownloader;
+import de.adito.aditoweb.nbm.nodejs.impl.parser.PackageParser;
 import de.adito.notification.INotificationFacade;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.subjects.BehaviorSubject;
@@ -19,9 +20,10 @@ import org.openide.windows.OnShowing;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.*;
-import java.util.logging.Logger;
+import java.util.logging.*;
+import java.util.stream.*;
 
 /**
  * @author w.glanzer, 10.05.2021
@@ -35,13 +37,17 @@ public class NodeJSInstaller implements Runnable
 
   private static final String _INSTALLER_INTEGRITYCHECK_FILE = ".installer_integrity";
   private static final Logger _LOGGER = Logger.getLogger(NodeJSInstaller.class.getName());
-  private static final ExecutorService _EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
-                                                                                         .setDaemon(true)
-                                                                                         .setNameFormat("tNodeJSInstaller-%d")
-                                                                                         .setPriority(Thread.MIN_PRIORITY)
-                                                                                         .build());
+  private static final long _DEBOUNCE_MS = 500;
+  // the tasks of the installer form a small graph, that never has more than a handful of tasks running at the same time
+  private static final ExecutorService _EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                                                                                     .setDaemon(true)
+                                                                                     .setNameFormat("tNodeJSInstaller-%d")
+                                                                                     .setPriority(Thread.MIN_PRIORITY)
+                                                                                     .build());
   private static final BehaviorSubject<Long> installSubject = BehaviorSubject.createDefault(System.currentTimeMillis());
   private final _NodeJSDownloadRetryHandler retryHandler = IMetricProxyFactory.proxy(new _NodeJSDownloadRetryHandler());
+  private CompletableFuture<Void> currentRun;
+  private boolean rerunRequested = false;
 
   /**
    * Observes the installation.
@@ -58,37 +64,134 @@ public class NodeJSInstaller implements Runnable
   public void run()
   {
     //noinspection ResultOfMethodCallIgnored doesn't need to be disponsed since there is only one NodeJSInstaller
-    NodeJSOptions.observe().subscribe(pOptions -> _downloadLibraries());
+    NodeJSOptions.observe()
+        // multiple changes in a short time (e.g. while the options are edited) result in a single run
+        .debounce(_DEBOUNCE_MS, TimeUnit.MILLISECONDS)
+        .subscribe(pOptions -> {
+          NodeJSProcessEnvironment.getInstance().invalidate();
+          downloadLibraries();
+        });
   }
 
   /**
-   * Downloads all necessary libraries asynchronously
+   * Downloads all necessary libraries asynchronously.
+   * If a run is already in progress, another run is started as soon as it has finished.
    */
-  @NbBundle.Messages("LBL_Progress_DownloadLibraries=Downloading Libraries...")
-  private void _downloadLibraries()
+  @VisibleForTesting
+  synchronized void downloadLibraries()
   {
-    _EXECUTOR.execute(() -> {
-      try
+    if (currentRun != null)
+    {
+      rerunRequested = true;
+      return;
+    }
+
+    CompletableFuture<Void> run = runTasks();
+    currentRun = run;
+    run.whenComplete((pResult, pError) -> {
+      if (pError != null)
+        INotificationFacade.INSTANCE.error(pError instanceof CompletionException && pError.getCause() != null ? pError.getCause() : pError);
+      _onRunCompleted();
+    });
+  }
+
+  /**
+   * Starts another run, if it was requested while the last run was in progress
+   */
+  private synchronized void _onRunCompleted()
+  {
+    // the run is reset before the request is checked, so that a request can not get lost in between
+    currentRun = null;
+    if (rerunRequested)
+    {
+      rerunRequested = false;
+      downloadLibraries();
+    }
+  }
+
+  /**
+   * Runs all tasks of the installer, independent tasks are executed in parallel:
+   * <pre>
+   * validate + download nodejs ---+--> symlink check
+   *                                +--> required packages (package check --> install / update)
+   * seed + verify offline cache ---------^
+   * </pre>
+   *
+   * @return a future, that completes when all tasks are done
+   */
+  @NonNull
+  @VisibleForTesting
+  CompletableFuture<Void> runTasks()
+  {
+    long started = System.currentTimeMillis();
+
+    // validate and fix the installation (switch to the bundled installation), if the specified installation is invalid
+    CompletableFuture<Boolean> nodeAvailable = _task("nodejs", () -> {
+      if (isInvalidInstallation())
       {
-        // validate and fix the installation (switch to the bundled installation),
-        // if the specified installation is invalid
-        if (isInvalidInstallation())
-        {
-          NodeJSOptions.update(NodeJSOptions.getInstance().toBuilder().path(null).build());
-          return;
-        }
+        NodeJSOptions.update(NodeJSOptions.getInstance().toBuilder().path(null).build());
+        return false;
+      }
 
-        // download and / or install
-        downloadBundledNodeJS();
-        downloadRequiredGlobalPackages();
+      downloadBundledNodeJS();
+      return true;
+    });
+
+    // the offline cache does not need nodejs, so it is seeded and verified while nodejs is validated and downloaded
+    CompletableFuture<Boolean> cacheVerified = _task("cache", this::verifyOfflineCache);
+
+    CompletableFuture<Void> packages = nodeAvailable.thenCompose(pAvailable -> _taskIf(pAvailable, "packages", () -> {
+      downloadRequiredGlobalPackages(cacheVerified);
+      return null;
+    }));
+    CompletableFuture<Void> symlinks = nodeAvailable.thenCompose(pAvailable -> _taskIf(pAvailable, "symlinks", () -> {
+      disableSymlinksIfNodeMeetsTheRequiredVersion();
+      return null;
+    }));
+
+    return CompletableFuture.allOf(packages, symlinks, cacheVerified)
+        .whenComplete((pResult, pError) -> _LOGGER.fine(() -> "NodeJS installer finished after " + (System.currentTimeMillis() - started) + " ms"));
+  }
+
+  /**
+   * Executes a single task of the installer asynchronously, if the condition is met
+   *
+   * @param pCondition true, if the task should be executed
+   * @param pName      name of the task
+   * @param pTask      the task
+   * @return the future of the result, completed with null if the task is not executed
+   */
+  @NonNull
+  private static <T> CompletableFuture<T> _taskIf(boolean pCondition, @NonNull String pName, @NonNull Callable<T> pTask)
+  {
+    return pCondition ? _task(pName, pTask) : CompletableFuture.completedFuture(null);
+  }
 
-        disableSymlinksIfNodeMeetsTheRequiredVersion();
+  /**
+   * Executes a single task of the installer asynchronously and logs its duration
+   *
+   * @param pName name of the task
+   * @param pTask the task
+   * @return the future of the result
+   */
+  @NonNull
+  private static <T> CompletableFuture<T> _task(@NonNull String pName, @NonNull Callable<T> pTask)
+  {
+    return CompletableFuture.supplyAsync(() -> {
+      long started = System.currentTimeMillis();
+      try
+      {
+        return pTask.call();
       }
       catch (Exception e)
       {
-        INotificationFacade.INSTANCE.error(e);
+        throw new CompletionException(e);
       }
-    });
+      finally
+      {
+        _LOGGER.fine(() -> "NodeJS installer task " + pName + " took " + (System.currentTimeMillis() - started) + " ms");
+      }
+    }, _EXECUTOR);
   }
 
   /**
@@ -131,7 +234,8 @@ public class NodeJSInstaller implements Runnable
    *
    * @return boolean indicating if the installation is invalid
    */
-  private boolean isInvalidInstallation()
+  @VisibleForTesting
+  boolean isInvalidInstallation()
   {
     NodeJSInstallation installation = NodeJSInstallation.getCurrent();
 
@@ -153,7 +257,12 @@ public class NodeJSInstaller implements Runnable
   /**
    * Downloads the nodejs version specified via {@link NodeJSInstaller#DEFAULT_VERSION}, if no version is specified
    */
-  @NbBundle.Messages("LBL_Progress_Download_Execute=Downloading NodeJS {0}...")
+  @NbBundle.Messages({
+      "LBL_Progress_DownloadLibraries=Downloading Libraries...",
+      "LBL_Progress_Download_Execute=Downloading NodeJS {0}...",
+      "LBL_Progress_Download_Move=Moving NodeJS {0}...",
+      "LBL_Progress_Download_Integrity=Verifying NodeJS {0}..."
+  })
   protected void downloadBundledNodeJS() throws IOException
   {
     NodeJSInstallation installation = NodeJSInstallation.getCurrent();
@@ -178,44 +287,74 @@ public class NodeJSInstaller implements Runnable
 
     try (ProgressHandle handle = ProgressHandle.createSystemHandle(Bundle.LBL_Progress_DownloadLibraries(), null))
     {
-      // handle progress
-      handle.start();
-      handle.switchToIndeterminate();
+      _Phases phases = new _Phases(handle, 3);
 
       // download
       handle.setDisplayName(Bundle.LBL_Progress_Download_Execute(DEFAULT_VERSION));
+      phases.next(Bundle.LBL_Progress_Download_Execute(DEFAULT_VERSION));
 
       INodeJSDownloader downloader = INodeJSDownloader.getInstance();
       File binFile = downloader.downloadVersion(DEFAULT_VERSION, rootFolder.getParentFile());
       File nodeVersionContainer = downloader.findInstallationFromNodeExecutable(binFile);
 
       // rename to target
+      phases.next(Bundle.LBL_Progress_Download_Move(DEFAULT_VERSION));
       if (nodeVersionContainer != null)
         FileUtils.moveDirectory(nodeVersionContainer, rootFolder);
       else
         throw new IllegalStateException("Could not found nodeVersionContainer in " + binFile);
 
       // update integrity
+      phases.next(Bundle.LBL_Progress_Download_Integrity(DEFAULT_VERSION));
       _updateIntegrity(rootFolder, DEFAULT_VERSION);
+      phases.finish();
     }
+
+    // the current installation snapshot has to be determined again
+    installSubject.onNext(System.currentTimeMillis());
   }
 
   /**
    * Downloads the latest typescript-language-server
    */
+  protected void downloadRequiredGlobalPackages() throws IOException, InterruptedException, TimeoutException
+  {
+    downloadRequiredGlobalPackages(CompletableFuture.completedFuture(verifyOfflineCache()));
+  }
+
+  /**
+   * Seeds the offline cache and verifies, that it contains all required packages
+   *
+   * @return true, if all required packages can be installed from the offline cache
+   */
+  @VisibleForTesting
+  boolean verifyOfflineCache()
+  {
+    List<String> requiredPackages = getRequiredGlobalPackages();
+    NPMOfflineCache cache = NPMOfflineCache.getInstance();
+    cache.seed(requiredPackages);
+    return cache.isAvailable(requiredPackages);
+  }
+
+  /**
+   * Downloads the latest typescript-language-server
+   *
+   * @param pCacheVerified completes, when the offline cache was seeded and verified
+   */
   @NbBundle.Messages({
       "LBL_Progress_Checking=Checking NodeJS installation...",
       "LBL_Progress_Download=Downloading {0}...",
       "LBL_Progress_Update=Updating {0}...",
       "LBL_Progress_Analyze=Analyzing {0}..."
   })
-  protected void downloadRequiredGlobalPackages() throws IOException, InterruptedException, TimeoutException
+  @VisibleForTesting
+  void downloadRequiredGlobalPackages(@NonNull CompletableFuture<Boolean> pCacheVerified) throws IOException, InterruptedException, TimeoutException
   {
     try (ProgressHandle handle = ProgressHandle.createSystemHandle(Bundle.LBL_Progress_Checking(), null))
     {
-      // handle progress
-      handle.start();
-      handle.switchToIndeterminate();
+      // check, install, update
+      _Phases phases = new _Phases(handle, 3);
+      phases.next(Bundle.LBL_Progress_Checking());
 
       // verify that a node installation is present
       NodeJSInstallation installation = NodeJSInstallation.getCurrent();
@@ -236,40 +375,122 @@ public class NodeJSInstaller implements Runnable
 
       INodeJSEnvironment environment = installation.getEnvironment();
 
-      List<String> packagesToInstall = getRequiredGlobalPackages();
+      List<String> requiredPackages = getRequiredGlobalPackages();
       NPMCommandExecutor npm = new NPMCommandExecutor(executor, environment, true, rootFolder.getAbsolutePath());
 
-      boolean install = !npm.list(packagesToInstall.toArray(new String[0]));
+      // packages are installed from the offline cache, so that no network is necessary if the cache was seeded.
+      // the tarballs of the cache are verified in a task of their own, so it only has to be finished before the cache is used
+      NPMOfflineCache cache = NPMOfflineCache.getInstance();
+      List<String> missingPackages = npm.missing(requiredPackages.toArray(new String[0]));
+      pCacheVerified.join();
+      // pinned packages were installed in their pinned version, so they do not have to be checked for updates
+      List<String> installedPackages = requiredPackages.stream()
+          .filter(pPackage -> !missingPackages.contains(pPackage))
+          .filter(pPackage -> cache.getPinned(pPackage).isEmpty())
+          .collect(Collectors.toList());
+
+      // the registry is asked for updates of the installed packages, while the missing packages are installed.
+      // freshly installed packages are up-to-date anyway
+      CompletableFuture<Map<String, PackageParser.OutdatedPackage>> outdatedPackages =
+          CompletableFuture.supplyAsync(() -> _getOutdatedPackages(npm, installedPackages), _EXECUTOR);
 
       boolean changes = false;
 
-      if (install)
+      phases.next(Bundle.LBL_Progress_Download(String.join(", ", missingPackages)));
+      if (!missingPackages.isEmpty())
       {
         changes = true;
-        String display = String.join(", ", packagesToInstall);
+        String display = String.join(", ", missingPackages);
         _LOGGER.info(Bundle.LBL_Progress_Download(display));
         handle.setDisplayName(Bundle.LBL_Progress_Download(display));
-        npm.install(packagesToInstall.toArray(new String[0]));
+        _install(npm, cache, missingPackages);
       }
 
-      // download and install all "preinstalled" packages, so they will be available at runtime
-      for (String pkg : packagesToInstall)
+      // update all outdated packages at once
+      phases.next(Bundle.LBL_Progress_Update(String.join(", ", installedPackages)));
+      Map<String, PackageParser.OutdatedPackage> outdated = outdatedPackages.join();
+      List<String> packagesToUpdate = installedPackages.stream()
+          .filter(pPackage -> outdated.containsKey(PackageParser.getPackageName(pPackage)))
+          .collect(Collectors.toList());
+      if (!packagesToUpdate.isEmpty())
       {
-        // Update if installed but outdated
-        if (npm.outdated(pkg))
-        {
-          changes = true;
-          _LOGGER.info(Bundle.LBL_Progress_Update(pkg));
-          handle.setDisplayName(Bundle.LBL_Progress_Update(pkg));
-          npm.update(pkg);
-        }
+        changes = true;
+        String display = String.join(", ", packagesToUpdate);
+        _LOGGER.info(Bundle.LBL_Progress_Update(display));
+        handle.setDisplayName(Bundle.LBL_Progress_Update(display));
+        npm.update(_withArguments(cache.getArguments(false), packagesToUpdate));
       }
 
       if (changes)
       {
+        File nodeModules = npm.getNodeModules();
+        if (nodeModules != null)
+          cache.pin(nodeModules, requiredPackages);
         DesignerBusUtils.fireModuleChange();
         installSubject.onNext(System.currentTimeMillis());
       }
+
+      phases.finish();
+    }
+  }
+
+  /**
+   * Installs the given packages from the offline cache. If the cache does not contain all of them,
+   * the missing parts are downloaded from the registry and stored in the cache.
+   *
+   * @param pNpm      executor for npm commands
+   * @param pCache    offline cache
+   * @param pPackages packages to install
+   */
+  private static void _install(@NonNull NPMCommandExecutor pNpm, @NonNull NPMOfflineCache pCache, @NonNull List<String> pPackages)
+      throws IOException, InterruptedException, TimeoutException
+  {
+    boolean offline = pCache.isAvailable(pPackages);
+    pNpm.install(_withArguments(pCache.getArguments(offline), pPackages));
+
+    // npm does not fail, if a dependency is not contained in the cache - so it has to be checked afterwards
+    if (offline && !pNpm.missing(pPackages.toArray(new String[0])).isEmpty())
+    {
+      _LOGGER.info("Offline installation of " + pPackages + " failed, using the registry");
+      pNpm.install(_withArguments(pCache.getArguments(false), pPackages));
+    }
+  }
+
+  /**
+   * @param pArguments arguments for npm
+   * @param pPackages  packages
+   * @return the arguments, followed by the packages
+   */
+  @NonNull
+  private static String[] _withArguments(@NonNull List<String> pArguments, @NonNull List<String> pPackages)
+  {
+    return Stream.concat(pArguments.stream(), pPackages.stream()).toArray(String[]::new);
+  }
+
+  /**
+   * Determines the outdated packages with a single "npm outdated" call
+   *
+   * @param pNpm      executor for npm commands
+   * @param pPackages packages to check
+   * @return the outdated packages by their name, empty if the check failed
+   */
+  @NonNull
+  private static Map<String, PackageParser.OutdatedPackage> _getOutdatedPackages(@NonNull NPMCommandExecutor pNpm, @NonNull List<String> pPackages)
+  {
+    try
+    {
+      return pNpm.outdatedPackages(pPackages.toArray(new String[0]));
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return Map.of();
+    }
+    catch (Exception e)
+    {
+      // a failed check must not prevent the installation, the packages are checked again with the next start
+      _LOGGER.log(Level.WARNING, "Failed to check for outdated packages", e);
+      return Map.of();
     }
   }
 
@@ -335,6 +556,59 @@ public class NodeJSInstaller implements Runnable
     }
   }
 
+  /**
+   * Reports the phases of a task as determinate progress and logs the duration of each phase
+   */
+  private static class _Phases
+  {
+    private final ProgressHandle handle;
+    private final long started = System.currentTimeMillis();
+    private String phase;
+    private long phaseStarted;
+    private int done = -1;
+
+    public _Phases(@NonNull ProgressHandle pHandle, int pCount)
+    {
+      handle = pHandle;
+      handle.start(pCount);
+    }
+
+    /**
+     * Finishes the current phase and starts the next one
+     *
+     * @param pName name of the next phase, shown in the progress
+     */
+    public void next(@NonNull String pName)
+    {
+      _finishPhase();
+      phase = pName;
+      phaseStarted = System.currentTimeMillis();
+      handle.progress(pName, done);
+    }
+
+    /**
+     * Finishes the last phase
+     */
+    public void finish()
+    {
+      _finishPhase();
+      phase = null;
+      _LOGGER.fine(() -> "took " + (System.currentTimeMillis() - started) + " ms in total");
+    }
+
+    private void _finishPhase()
+    {
+      done++;
+      if (phase == null)
+        return;
+
+      String finished = phase;
+      long duration = System.currentTimeMillis() - phaseStarted;
+      _LOGGER.fine(() -> finished + " took " + duration + " ms");
+      handle.progress(done);
+    }
+  }
+
   /**
    * Extra class, so we can count and analyze the retries for downloading bundled nodejs
    */
@@ -0,0 +1,189 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.INodeJSEnvironment;
+import lombok.*;
+import org.openide.util.BaseUtilities;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides the environment variables for processes started by the {@link NodeJSExecutorImpl}.
+ * The variables are computed once per nodejs installation and cached, until the cache gets invalidated explicitly
+ * (e.g. because the options changed). Changes of system properties after the first execution are not passed to new processes
+ * before the next invalidation, only a change of the allowlist mode is noticed immediately.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class NodeJSProcessEnvironment
+{
+
+  /**
+   * If this property is set to true, only the environment variables that are needed by node and npm are passed to the child process.
+   * System properties will not be passed in this mode.
+   */
+  static final String ALLOWLIST_PROPERTY = "adito.nodejs.environment.allowlist";
+
+  /**
+   * Comma separated list of additional variable names, that should be passed in allowlist mode
+   */
+  static final String ALLOWLIST_ADDITIONAL_PROPERTY = "adito.nodejs.environment.allowlist.additional";
+
+  private static final String _PATH_ENVIRONMENT = "PATH";
+  private static final Set<String> _ALLOWED_VARIABLES = Set.of("HOME", "USER", "USERNAME", "USERPROFILE", "LOGNAME", "SHELL", "TERM", "LANG", "TZ",
+                                                               "TEMP", "TMP", "TMPDIR", "APPDATA", "LOCALAPPDATA", "PROGRAMDATA", "PROGRAMFILES",
+                                                               "PROGRAMFILES(X86)", "SYSTEMROOT", "SYSTEMDRIVE", "WINDIR", "COMSPEC", "PATHEXT",
+                                                               "NUMBER_OF_PROCESSORS", "PROCESSOR_ARCHITECTURE", "HTTP_PROXY", "HTTPS_PROXY",
+                                                               "NO_PROXY", "ALL_PROXY", "XDG_CONFIG_HOME", "XDG_CACHE_HOME", "XDG_DATA_HOME");
+  private static final List<String> _ALLOWED_PREFIXES = List.of("NODE_", "NPM_CONFIG_", "LC_");
+  private static final NodeJSProcessEnvironment _INSTANCE = new NodeJSProcessEnvironment();
+
+  private final Map<_Key, Map<String, String>> cache = new ConcurrentHashMap<>();
+
+  /**
+   * @return the shared instance
+   */
+  @NonNull
+  public static NodeJSProcessEnvironment getInstance()
+  {
+    return _INSTANCE;
+  }
+
+  @VisibleForTesting
+  NodeJSProcessEnvironment()
+  {
+  }
+
+  /**
+   * Returns the environment variables for a process that should be executed with the given nodejs environment.
+   *
+   * @param pEnv nodejs environment, whose binary directory will be prepended to the PATH
+   * @return the immutable environment variables
+   */
+  @NonNull
+  public Map<String, String> get(@NonNull INodeJSEnvironment pEnv)
+  {
+    return _get(pEnv, Boolean.getBoolean(ALLOWLIST_PROPERTY));
+  }
+
+  /**
+   * Sets the environment variables of the given builder for a process, that should be executed with the given nodejs environment.
+   * In allowlist mode, the variables inherited from this process are removed first, so the process only gets the allowed variables.
+   *
+   * @param pBuilder builder of the process
+   * @param pEnv     nodejs environment, whose binary directory will be prepended to the PATH
+   */
+  public void applyTo(@NonNull ProcessBuilder pBuilder, @NonNull INodeJSEnvironment pEnv)
+  {
+    boolean allowlist = Boolean.getBoolean(ALLOWLIST_PROPERTY);
+    Map<String, String> variables = _get(pEnv, allowlist);
+    Map<String, String> environment = pBuilder.environment();
+    if (allowlist)
+      environment.clear();
+    environment.putAll(variables);
+  }
+
+  /**
+   * Invalidates all cached environments
+   */
+  public void invalidate()
+  {
+    cache.clear();
+  }
+
+  /**
+   * Returns the cached environment variables
+   *
+   * @param pEnv       nodejs environment
+   * @param pAllowlist true, if only the allowed variables should be returned
+   * @return the immutable environment variables
+   */
+  @NonNull
+  private Map<String, String> _get(@NonNull INodeJSEnvironment pEnv, boolean pAllowlist)
+  {
+    return cache.computeIfAbsent(new _Key(pEnv.getPath().getParent(), pAllowlist), this::_create);
+  }
+
+  /**
+   * Creates the environment variables for the given key
+   *
+   * @param pKey key, containing the node binary directory and the mode
+   * @return the immutable environment variables
+   */
+  @NonNull
+  private Map<String, String> _create(@NonNull _Key pKey)
+  {
+    Set<String> additional = _getAdditionalAllowedVariables();
+    Map<String, String> variables = new LinkedHashMap<>();
+
+    // set all environments variables
+    for (Map.Entry<String, String> entry : System.getenv().entrySet())
+    {
+      String key = entry.getKey();
+      // modify path with our node environment
+      if (key.equalsIgnoreCase(_PATH_ENVIRONMENT))
+        variables.put(_PATH_ENVIRONMENT, pKey.getBinaryDirectory() + File.pathSeparator + entry.getValue());
+      else if (!pKey.isAllowlist() || _isAllowed(key, additional))
+        variables.put(key, entry.getValue());
+    }
+
+    // add all system properties
+    for (String property : System.getProperties().stringPropertyNames())
+    {
+      // dots are not allowed as key => replacing with underscore
+      String key = property.replace('.', '_').toUpperCase(Locale.ROOT);
+      if (!pKey.isAllowlist() || additional.contains(key))
+        variables.put(key, System.getProperty(property));
+    }
+
+    return Collections.unmodifiableMap(variables);
+  }
+
+  /**
+   * Determines, if the environment variable with the given name should be passed in allowlist mode
+   *
+   * @param pName       name of the variable
+   * @param pAdditional additional names, that are allowed
+   * @return true, if the variable should be passed
+   */
+  private static boolean _isAllowed(@NonNull String pName, @NonNull Set<String> pAdditional)
+  {
+    String upperName = pName.toUpperCase(Locale.ROOT);
+    if (_ALLOWED_VARIABLES.contains(upperName) || _ALLOWED_PREFIXES.stream().anyMatch(upperName::startsWith))
+      return true;
+
+    // variables are case insensitive on windows
+    return pAdditional.contains(BaseUtilities.isWindows() ? upperName : pName);
+  }
+
+  /**
+   * @return the additional variable names, that should be passed in allowlist mode
+   */
+  @NonNull
+  private static Set<String> _getAdditionalAllowedVariables()
+  {
+    String value = System.getProperty(ALLOWLIST_ADDITIONAL_PROPERTY);
+    if (Strings.isNullOrEmpty(value))
+      return Set.of();
+
+    Set<String> result = new HashSet<>();
+    for (String name : value.split(","))
+      if (!name.trim().isEmpty())
+        result.add(BaseUtilities.isWindows() ? name.trim().toUpperCase(Locale.ROOT) : name.trim());
+    return result;
+  }
+
+  /**
+   * Key of the cached environments
+   */
+  @Value
+  private static class _Key
+  {
+    String binaryDirectory;
+    boolean allowlist;
+  }
+
+}
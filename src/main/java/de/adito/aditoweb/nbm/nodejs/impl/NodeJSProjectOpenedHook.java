@@ -1,11 +1,15 @@
 package de.adito.aditoweb.nbm.nodejs.impl;
 
 import de.adito.aditoweb.nbm.nbide.nbaditointerface.project.IProjectVisibility;
+import de.adito.aditoweb.nbm.nodejs.impl.util.NPMCommandScheduler;
 import lombok.NonNull;
 import org.netbeans.api.project.Project;
 import org.netbeans.spi.project.ui.ProjectOpenedHook;
+import org.openide.filesystems.FileUtil;
 import org.openide.util.lookup.ServiceProvider;
 
+import java.io.File;
+
 /**
  * @author p.neub, 14.09.2022
  */
@@ -41,5 +45,11 @@ public class NodeJSProjectOpenedHook extends ProjectOpenedHook
     if (project == null)
       return;
     NPMInstallRequired.delete(project);
+    NPMCommandScheduler.delete(project);
+
+    // the node_modules folders of the project do not have to be watched anymore
+    File projectDirectory = FileUtil.toFile(project.getProjectDirectory());
+    if (projectDirectory != null)
+      InstalledPackagesIndex.release(projectDirectory);
   }
 }
@@ -7,6 +7,7 @@ import org.openide.util.NbBundle;
 import javax.swing.*;
 import java.util.Set;
 import java.util.concurrent.*;
+import java.util.logging.Logger;
 
 /**
  * Hook that is executed when the designer closes.
@@ -18,6 +19,7 @@ import java.util.concurrent.*;
 @OnStop
 public class NodeJSScriptExitHook implements Callable<Boolean>
 {
+  private static final long _TERMINATION_TIMEOUT_MS = 10_000;
   private static final Set<CompletableFuture<Integer>> running = ConcurrentHashMap.newKeySet();
 
   @NbBundle.Messages({
@@ -32,7 +34,7 @@ public class NodeJSScriptExitHook implements Callable<Boolean>
   {
     int count = running.size();
     if (count == 0)
-      return Boolean.TRUE;
+      return _shutdown();
     NotifyDescriptor descriptor = new NotifyDescriptor.Confirmation(
         Bundle.LBL_ScriptExitConfirmMessage(count),
         Bundle.LBL_ScriptExitConfirmTitle(count));
@@ -45,10 +47,41 @@ public class NodeJSScriptExitHook implements Callable<Boolean>
     if (NotifyDescriptor.CLOSED_OPTION.equals(selected) || Bundle.LBL_ScriptExitConfirmCancelBtn().equals(selected))
       return Boolean.FALSE;
     if (Bundle.LBL_ScriptExitConfirmTerminateBtn().equals(selected))
+    {
+      // cancelling terminates the whole process tree, give the processes some time to exit
       running.forEach(f -> f.cancel(false));
+      _awaitTermination();
+    }
+    return _shutdown();
+  }
+
+  /**
+   * Stops the pooled nodejs workers, because the designer is allowed to close now
+   *
+   * @return always true
+   */
+  private Boolean _shutdown()
+  {
+    NodeJSExecutorImpl.shutdownWorkers();
     return Boolean.TRUE;
   }
 
+  /**
+   * Waits until all processes, that are terminated right now, have exited
+   */
+  private void _awaitTermination()
+  {
+    try
+    {
+      if (!ProcessTreeTerminator.getInstance().awaitPending(_TERMINATION_TIMEOUT_MS))
+        Logger.getLogger(NodeJSScriptExitHook.class.getName()).warning("NodeJS scripts did not terminate in time");
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   /**
    * Adds a running NodeJS process,
    * so that it can be terminated cleanly when the Designer is closed
@@ -0,0 +1,310 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.*;
+import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.*;
+import de.adito.aditoweb.nbm.nodejs.impl.util.ProcessExecutorService;
+import lombok.NonNull;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+/**
+ * Pool of long-lived nodejs processes, that execute small helper commands (see worker.js) without starting a new process each time.
+ * The workers communicate via a line based JSON protocol on stdin / stdout.
+ * <p>
+ * The output of each worker is read by a task of the {@link ProcessExecutorService}, so a worker occupies one thread of the shared pool
+ * like any other running process and is visible in its statistics. Workers are only started, if the pool has a free thread.
+ * A worker exits by itself, if it was idle for some time, which also releases its thread.
+ * If no worker is available, the caller should fall back to spawning a new process.
+ *
+ * @author agent, 18.10.2026
+ */
+final class NodeJSWorkerPool
+{
+
+  private static final Logger _LOGGER = Logger.getLogger(NodeJSWorkerPool.class.getName());
+  private static final long _IDLE_TIMEOUT_MS = 60_000;
+
+  private final ProcessExecutorService executor;
+  private final int maxWorkersPerBinary;
+  private final Map<File, Deque<_Worker>> idleWorkers = new ConcurrentHashMap<>();
+  private final Map<File, AtomicInteger> workerCounts = new ConcurrentHashMap<>();
+  private String script;
+
+  /**
+   * @param pExecutor            pool, whose threads read the output of the workers
+   * @param pMaxWorkersPerBinary maximum number of workers per node binary
+   */
+  NodeJSWorkerPool(@NonNull ProcessExecutorService pExecutor, int pMaxWorkersPerBinary)
+  {
+    executor = pExecutor;
+    maxWorkersPerBinary = Math.max(1, pMaxWorkersPerBinary);
+  }
+
+  /**
+   * Executes a command of the worker script with the node binary of the given environment
+   *
+   * @param pEnv     environment, whose node binary should execute the command
+   * @param pTimeout timeout in milliseconds, -1 for no timeout
+   * @param pCommand command of the worker script
+   * @param pArgs    arguments of the command
+   * @return the result of the command
+   * @throws IOException if no worker is available or the command failed - the caller should spawn a separate process in this case
+   */
+  @NonNull
+  JsonElement call(@NonNull INodeJSEnvironment pEnv, long pTimeout, @NonNull String pCommand, @NonNull String... pArgs)
+      throws IOException, InterruptedException, TimeoutException
+  {
+    File binary = pEnv.resolveExecBase(INodeJSExecBase.node()).getAbsoluteFile();
+    _Worker worker = _acquire(pEnv, binary);
+    boolean reusable = false;
+    try
+    {
+      JsonElement result = worker.call(pTimeout, pCommand, pArgs);
+      reusable = true;
+      return result;
+    }
+    finally
+    {
+      if (reusable)
+        idleWorkers.computeIfAbsent(binary, pKey -> new ConcurrentLinkedDeque<>()).addFirst(worker);
+      else
+        worker.destroy();
+    }
+  }
+
+  /**
+   * Destroys all workers, that are currently not in use
+   */
+  void shutdown()
+  {
+    idleWorkers.values().forEach(pWorkers -> {
+      _Worker worker;
+      while ((worker = pWorkers.pollFirst()) != null)
+        worker.destroy();
+    });
+  }
+
+  /**
+   * @return the number of running workers of all binaries
+   */
+  @VisibleForTesting
+  int getWorkerCount()
+  {
+    return workerCounts.values().stream()
+        .mapToInt(AtomicInteger::get)
+        .sum();
+  }
+
+  /**
+   * Returns an idle worker or starts a new one, if the maximum number of workers is not reached and the shared pool has a free thread
+   *
+   * @param pEnv    environment, to determine the process environment
+   * @param pBinary node binary
+   * @return the worker, that is exclusively used by the caller
+   */
+  @NonNull
+  private _Worker _acquire(@NonNull INodeJSEnvironment pEnv, @NonNull File pBinary) throws IOException
+  {
+    Deque<_Worker> idle = idleWorkers.computeIfAbsent(pBinary, pKey -> new ConcurrentLinkedDeque<>());
+    _Worker worker;
+    while ((worker = idle.pollFirst()) != null)
+      if (worker.isAlive())
+        return worker;
+
+    // the reader of a new worker would wait behind other processes otherwise
+    if (executor.getActiveCount() >= executor.getMaximumPoolSize())
+      throw new IOException("No free thread for a nodejs worker available");
+
+    AtomicInteger count = workerCounts.computeIfAbsent(pBinary, pKey -> new AtomicInteger(0));
+    if (count.incrementAndGet() > maxWorkersPerBinary)
+    {
+      count.decrementAndGet();
+      throw new IOException("No idle nodejs worker available for " + pBinary);
+    }
+
+    try
+    {
+      ProcessBuilder builder = new ProcessBuilder(pBinary.getAbsolutePath(), "-e", _getScript(), String.valueOf(_IDLE_TIMEOUT_MS))
+          .redirectError(ProcessBuilder.Redirect.DISCARD);
+      NodeJSProcessEnvironment.getInstance().applyTo(builder, pEnv);
+      worker = new _Worker(builder.start());
+    }
+    catch (IOException | RuntimeException e)
+    {
+      count.decrementAndGet();
+      throw e;
+    }
+
+    _Worker started = worker;
+    try
+    {
+      executor.execute(() -> {
+        try
+        {
+          started.read();
+        }
+        finally
+        {
+          // the worker exited, e.g. because it was idle for too long
+          idle.remove(started);
+          count.decrementAndGet();
+        }
+      });
+    }
+    catch (RejectedExecutionException e)
+    {
+      started.destroy();
+      count.decrementAndGet();
+      throw new IOException("Failed to start the reader of a nodejs worker", e);
+    }
+
+    return started;
+  }
+
+  /**
+   * @return the source of the worker script
+   */
+  @NonNull
+  private synchronized String _getScript() throws IOException
+  {
+    if (script == null)
+    {
+      try (InputStream is = NodeJSWorkerPool.class.getResourceAsStream("worker.js"))
+      {
+        if (is == null)
+          throw new FileNotFoundException("worker.js");
+        script = IOUtils.toString(is, StandardCharsets.UTF_8);
+      }
+    }
+
+    return script;
+  }
+
+  /**
+   * A single worker process
+   */
+  private static class _Worker
+  {
+    private final Process process;
+    private final BufferedWriter writer;
+    private final Map<Long, CompletableFuture<JsonElement>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(0);
+    private volatile boolean terminated = false;
+
+    public _Worker(@NonNull Process pProcess)
+    {
+      process = pProcess;
+      writer = new BufferedWriter(new OutputStreamWriter(pProcess.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a request to the worker and waits for the response
+     *
+     * @param pTimeout timeout in milliseconds, -1 for no timeout
+     * @param pCommand command
+     * @param pArgs    arguments
+     * @return the result
+     */
+    @NonNull
+    public JsonElement call(long pTimeout, @NonNull String pCommand, @NonNull String... pArgs) throws IOException, InterruptedException, TimeoutException
+    {
+      long id = nextId.incrementAndGet();
+      JsonObject request = new JsonObject();
+      request.addProperty("id", id);
+      request.addProperty("command", pCommand);
+      JsonArray args = new JsonArray();
+      for (String arg : pArgs)
+        args.add(arg);
+      request.add("args", args);
+
+      CompletableFuture<JsonElement> response = new CompletableFuture<>();
+      pending.put(id, response);
+      try
+      {
+        // the reader may have stopped, before the request was registered
+        if (terminated)
+          throw new IOException("nodejs worker terminated unexpectedly");
+
+        writer.write(request.toString());
+        writer.newLine();
+        writer.flush();
+
+        return pTimeout > -1 ? response.get(pTimeout, TimeUnit.MILLISECONDS) : response.get();
+      }
+      catch (ExecutionException e)
+      {
+        throw new IOException(e.getCause());
+      }
+      finally
+      {
+        pending.remove(id);
+      }
+    }
+
+    /**
+     * Reads the responses of the worker, until the worker exits
+     */
+    public void read()
+    {
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)))
+      {
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+          JsonObject response = JsonParser.parseString(line).getAsJsonObject();
+          CompletableFuture<JsonElement> future = response.has("id") ? pending.get(response.get("id").getAsLong()) : null;
+          if (future == null)
+            _LOGGER.fine("Unexpected response of nodejs worker: " + line);
+          else if (response.has("error"))
+            future.completeExceptionally(new IOException(response.get("error").getAsString()));
+          else
+            future.complete(response.has("result") ? response.get("result") : JsonNull.INSTANCE);
+        }
+      }
+      catch (IOException | RuntimeException e)
+      {
+        _LOGGER.log(Level.FINE, "Failed to read the output of a nodejs worker", e);
+      }
+      finally
+      {
+        terminated = true;
+        pending.values().forEach(pFuture -> pFuture.completeExceptionally(new IOException("nodejs worker terminated unexpectedly")));
+        process.destroy();
+      }
+    }
+
+    /**
+     * @return true, if the process of the worker is still running
+     */
+    public boolean isAlive()
+    {
+      return !terminated && process.isAlive();
+    }
+
+    /**
+     * Destroys the worker process, its reader stops as soon as the output is closed
+     */
+    public void destroy()
+    {
+      try
+      {
+        // closing stdin terminates the worker gracefully
+        writer.close();
+      }
+      catch (IOException e)
+      {
+        _LOGGER.log(Level.FINE, "Failed to close nodejs worker", e);
+      }
+
+      process.destroy();
+    }
+  }
+
+}
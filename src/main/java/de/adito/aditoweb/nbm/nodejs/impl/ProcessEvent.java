@@ -0,0 +1,83 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import lombok.*;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Event of a process, that was started via {@link NodeJSExecutorImpl#executeStreaming(de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.INodeJSEnvironment,
+ * de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.INodeJSExecBase, String...)}.
+ * Contains either a decoded line of the output or the exit code of the process.
+ *
+ * @author agent, 18.10.2026
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ProcessEvent
+{
+
+  /**
+   * Type of the event
+   */
+  public enum Type
+  {
+    /**
+     * Line of the default output
+     */
+    STDOUT,
+
+    /**
+     * Line of the error output
+     */
+    STDERR,
+
+    /**
+     * The process exited, this is always the last event
+     */
+    EXIT
+  }
+
+  @NonNull
+  Type type;
+
+  /**
+   * Line without the line break, NULL for {@link Type#EXIT}
+   */
+  @Nullable
+  String line;
+
+  /**
+   * Exit code of the process, only set for {@link Type#EXIT}
+   */
+  int exitCode;
+
+  /**
+   * @param pLine line of the default output
+   * @return the event
+   */
+  @NonNull
+  public static ProcessEvent stdout(@NonNull String pLine)
+  {
+    return new ProcessEvent(Type.STDOUT, pLine, 0);
+  }
+
+  /**
+   * @param pLine line of the error output
+   * @return the event
+   */
+  @NonNull
+  public static ProcessEvent stderr(@NonNull String pLine)
+  {
+    return new ProcessEvent(Type.STDERR, pLine, 0);
+  }
+
+  /**
+   * @param pExitCode exit code of the process
+   * @return the event
+   */
+  @NonNull
+  public static ProcessEvent exit(int pExitCode)
+  {
+    return new ProcessEvent(Type.EXIT, null, pExitCode);
+  }
+
+}
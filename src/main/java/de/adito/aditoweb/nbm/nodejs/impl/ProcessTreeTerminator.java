@@ -0,0 +1,196 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+import java.util.stream.Collectors;
+
+/**
+ * Terminates a process together with all of its descendants (e.g. the webpack or tsc watchers, that were started by a npm script).
+ * The termination is escalated step by step, until all processes of the tree have exited:
+ * <ol>
+ *   <li>ctrl+c (SIGINT) is sent to the whole tree, so the processes are able to shut down gracefully</li>
+ *   <li>after the grace period, all processes that are still alive get destroyed (SIGTERM on unix)</li>
+ *   <li>after the destroy period, all processes that are still alive get destroyed forcibly</li>
+ * </ol>
+ *
+ * @author agent, 18.10.2026
+ */
+public final class ProcessTreeTerminator
+{
+
+  /**
+   * Time in milliseconds, that the processes have to exit after ctrl+c was sent
+   */
+  static final String GRACE_PERIOD_PROPERTY = "adito.nodejs.terminate.gracePeriod";
+
+  /**
+   * Time in milliseconds, that the processes have to exit after they were destroyed, before they are destroyed forcibly
+   */
+  static final String DESTROY_PERIOD_PROPERTY = "adito.nodejs.terminate.destroyPeriod";
+
+  private static final Logger _LOGGER = Logger.getLogger(ProcessTreeTerminator.class.getName());
+  private static final ProcessTreeTerminator _INSTANCE = new ProcessTreeTerminator(Long.getLong(GRACE_PERIOD_PROPERTY, 5000),
+                                                                                   Long.getLong(DESTROY_PERIOD_PROPERTY, 2000));
+
+  private final long gracePeriod;
+  private final long destroyPeriod;
+  private final Set<CompletableFuture<Void>> pending = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                                                                                                    .setDaemon(true)
+                                                                                                    .setNameFormat("tNodeJSTerminator-%d")
+                                                                                                    .build());
+
+  /**
+   * @return the shared instance
+   */
+  @NonNull
+  public static ProcessTreeTerminator getInstance()
+  {
+    return _INSTANCE;
+  }
+
+  @VisibleForTesting
+  ProcessTreeTerminator(long pGracePeriod, long pDestroyPeriod)
+  {
+    gracePeriod = Math.max(0, pGracePeriod);
+    destroyPeriod = Math.max(0, pDestroyPeriod);
+  }
+
+  /**
+   * Terminates the given process and all of its descendants
+   *
+   * @param pRoot process to terminate
+   * @return a future that completes, as soon as all processes of the tree have exited
+   */
+  @NonNull
+  public CompletableFuture<Void> terminate(@NonNull ProcessHandle pRoot)
+  {
+    // the tree has to be determined now, because the descendants can not be found anymore, after the root process exited
+    List<ProcessHandle> tree = _collectTree(pRoot, List.of());
+    CompletableFuture<Void> exited = CompletableFuture.allOf(tree.stream()
+                                                                 .map(ProcessHandle::onExit)
+                                                                 .toArray(CompletableFuture[]::new));
+    pending.add(exited);
+    exited.whenComplete((pResult, pThrowable) -> pending.remove(exited));
+
+    try
+    {
+      SendCtrlC.getInstance().send(tree.stream()
+                                       .filter(ProcessHandle::isAlive)
+                                       .map(ProcessHandle::pid)
+                                       .collect(Collectors.toList()));
+      _schedule(exited, gracePeriod, () -> _destroy(pRoot, tree, exited));
+    }
+    catch (IOException e)
+    {
+      // unable to send ctrl+c, so go directly to the next step
+      _LOGGER.log(Level.FINE, "Failed to send ctrl+c to process " + pRoot.pid(), e);
+      _destroy(pRoot, tree, exited);
+    }
+
+    return exited;
+  }
+
+  /**
+   * Waits, until all processes that are currently terminated have exited
+   *
+   * @param pTimeout maximum time to wait in milliseconds
+   * @return true, if all processes have exited
+   */
+  public boolean awaitPending(long pTimeout) throws InterruptedException
+  {
+    try
+    {
+      CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).get(pTimeout, TimeUnit.MILLISECONDS);
+      return true;
+    }
+    catch (ExecutionException e)
+    {
+      return true;
+    }
+    catch (TimeoutException e)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * @return the number of process trees, that are currently terminated
+   */
+  @VisibleForTesting
+  int getPendingCount()
+  {
+    return pending.size();
+  }
+
+  /**
+   * Second step: destroys all processes of the tree, that are still alive
+   *
+   * @param pRoot   root of the tree
+   * @param pKnown  processes, that were part of the tree when the termination started
+   * @param pExited future, that completes if all processes have exited
+   */
+  private void _destroy(@NonNull ProcessHandle pRoot, @NonNull List<ProcessHandle> pKnown, @NonNull CompletableFuture<Void> pExited)
+  {
+    List<ProcessHandle> tree = _collectTree(pRoot, pKnown);
+    // destroy the children first, so the parent is not able to restart them
+    for (int i = tree.size() - 1; i >= 0; i--)
+      tree.get(i).destroy();
+    _schedule(pExited, destroyPeriod, () -> _destroyForcibly(pRoot, tree));
+  }
+
+  /**
+   * Third step: destroys all processes of the tree forcibly, that are still alive
+   *
+   * @param pRoot  root of the tree
+   * @param pKnown processes, that were part of the tree when the termination started
+   */
+  private void _destroyForcibly(@NonNull ProcessHandle pRoot, @NonNull List<ProcessHandle> pKnown)
+  {
+    List<ProcessHandle> tree = _collectTree(pRoot, pKnown);
+    for (int i = tree.size() - 1; i >= 0; i--)
+      tree.get(i).destroyForcibly();
+  }
+
+  /**
+   * Executes the given step after the given delay, if the processes have not exited until then
+   *
+   * @param pExited future, that completes if all processes have exited
+   * @param pDelay  delay in milliseconds
+   * @param pStep   next step of the termination
+   */
+  private void _schedule(@NonNull CompletableFuture<Void> pExited, long pDelay, @NonNull Runnable pStep)
+  {
+    ScheduledFuture<?> step = scheduler.schedule(() -> {
+      if (!pExited.isDone())
+        pStep.run();
+    }, pDelay, TimeUnit.MILLISECONDS);
+    pExited.whenComplete((pResult, pThrowable) -> step.cancel(false));
+  }
+
+  /**
+   * Collects all processes of the tree, that are still alive
+   *
+   * @param pRoot  root of the tree
+   * @param pKnown processes, that were part of the tree before - they are kept even if the root process has exited in the meantime
+   * @return the alive processes, the root comes first
+   */
+  @NonNull
+  private static List<ProcessHandle> _collectTree(@NonNull ProcessHandle pRoot, @NonNull List<ProcessHandle> pKnown)
+  {
+    Set<ProcessHandle> tree = new LinkedHashSet<>();
+    tree.add(pRoot);
+    tree.addAll(pKnown);
+    pRoot.descendants().forEach(tree::add);
+    return tree.stream()
+        .filter(ProcessHandle::isAlive)
+        .collect(Collectors.toList());
+  }
+
+}
@@ -1,9 +1,12 @@
 package de.adito.aditoweb.nbm.nodejs.impl;
 
+import lombok.NonNull;
+
 import java.io.*;
 import java.net.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.*;
 import java.util.regex.Pattern;
 
 /**
@@ -23,11 +26,29 @@ public class SendCtrlC
 
   public void send(long pProcessId) throws IOException
   {
-    String pid = String.valueOf(pProcessId);
+    send(List.of(pProcessId));
+  }
+
+  /**
+   * Sends ctrl+c to all given processes.
+   * On unix all processes get the SIGINT signal with a single "kill" call.
+   * On windows the signal is only sent to the first process, because all processes of its console receive it.
+   *
+   * @param pProcessIds ids of the processes, the first one is the root process
+   */
+  public void send(@NonNull List<Long> pProcessIds) throws IOException
+  {
+    if (pProcessIds.isEmpty())
+      return;
+
     if (System.getProperty("os.name").toLowerCase().startsWith("windows"))
-      new ProcessBuilder(Paths.get(nativePath, "sendctrlc.x64.exe").toString(), pid).start();
+      new ProcessBuilder(Paths.get(nativePath, "sendctrlc.x64.exe").toString(), String.valueOf(pProcessIds.get(0))).start();
     else
-      new ProcessBuilder("kill", "-2", pid).start();
+    {
+      List<String> command = new ArrayList<>(List.of("kill", "-2"));
+      pProcessIds.forEach(pPid -> command.add(String.valueOf(pPid)));
+      new ProcessBuilder(command).start();
+    }
   }
 
   protected String getNativePath()
@@ -0,0 +1,42 @@
+package de.adito.aditoweb.nbm.nodejs.impl.actions.io;
+
+import de.adito.aditoweb.nbm.vaadinicons.IVaadinIconsProvider;
+import de.adito.swing.icon.IconAttributes;
+import lombok.NonNull;
+import org.openide.util.*;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.util.function.*;
+
+/**
+ * Action for toggling, if the output of a NodeJS-Script should be written directly into a file,
+ * instead of being copied into the output window. The new mode is used for the next execution of the script.
+ *
+ * @author agent, 18.10.2026
+ */
+public class FileOutputAction extends AbstractAction
+{
+  private final BooleanSupplier getter;
+  private final Consumer<Boolean> setter;
+
+  @NbBundle.Messages("CTL_FileOutputAction=Write output to file (for large outputs, takes effect on next start)")
+  public FileOutputAction(@NonNull BooleanSupplier pGetter, @NonNull Consumer<Boolean> pSetter)
+  {
+    super(Bundle.CTL_FileOutputAction(), new ImageIcon(Lookup.getDefault().lookup(IVaadinIconsProvider.class).getImage(IVaadinIconsProvider.VaadinIcon.FILE_TEXT,
+                                                                                                                        new IconAttributes(16f))));
+    getter = pGetter;
+    setter = pSetter;
+    putValue(SHORT_DESCRIPTION, Bundle.CTL_FileOutputAction());
+    putValue(SELECTED_KEY, pGetter.getAsBoolean());
+  }
+
+  @Override
+  public void actionPerformed(ActionEvent e)
+  {
+    // the output window shows a plain button, that does not toggle the selected state on its own
+    boolean fileOutput = !getter.getAsBoolean();
+    putValue(SELECTED_KEY, fileOutput);
+    setter.accept(fileOutput);
+  }
+}
@@ -0,0 +1,442 @@
+package de.adito.aditoweb.nbm.nodejs.impl.options.downloader;
+
+import lombok.NonNull;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Extracts the archives of the nodejs distributions while they are read, e.g. directly from the http stream of the download.
+ * So the archive itself never has to be written to disk and no external process (like "tar") is necessary.
+ * Symbolic links, hard links and the executable bits of tar archives are preserved.
+ * <p>
+ * The archives of nodejs contain a single root folder, its name is determined from the first entry.
+ *
+ * @author agent, 18.10.2026
+ */
+final class ArchiveStreamExtractor
+{
+
+  private static final int _BLOCK_SIZE = 512;
+
+  private final File target;
+  private File root;
+
+  private ArchiveStreamExtractor(@NonNull File pTarget)
+  {
+    target = pTarget.getAbsoluteFile();
+  }
+
+  /**
+   * Extracts an archive
+   *
+   * @param pArchive    stream of the archive, it is not closed
+   * @param pTarget     folder to extract into
+   * @param pFileEnding file ending of the archive, ".tar.gz" or ".zip"
+   * @return the root folder of the extracted archive
+   */
+  @NonNull
+  static File extract(@NonNull InputStream pArchive, @NonNull File pTarget, @NonNull String pFileEnding) throws IOException
+  {
+    ArchiveStreamExtractor extractor = new ArchiveStreamExtractor(pTarget);
+    try
+    {
+      if (".zip".equals(pFileEnding))
+        extractor._extractZip(pArchive);
+      else if (".tar.gz".equals(pFileEnding))
+        extractor._extractTar(new GZIPInputStream(pArchive, 64 * 1024));
+      else
+        throw new IOException("Unsupported archive type " + pFileEnding);
+    }
+    catch (IOException | RuntimeException e)
+    {
+      // do not leave a partially extracted installation
+      if (extractor.root != null)
+        FileUtils.deleteQuietly(extractor.root);
+      throw e;
+    }
+
+    if (extractor.root == null)
+      throw new IOException("Archive does not contain any entry");
+    return extractor.root;
+  }
+
+  /**
+   * Extracts a zip archive
+   *
+   * @param pArchive stream of the archive
+   */
+  private void _extractZip(@NonNull InputStream pArchive) throws IOException
+  {
+    ZipInputStream zip = new ZipInputStream(pArchive);
+    ZipEntry entry;
+    while ((entry = zip.getNextEntry()) != null)
+    {
+      Path path = _resolve(entry.getName());
+      if (entry.isDirectory())
+        Files.createDirectories(path);
+      else
+        _writeFile(path, zip, -1, -1);
+    }
+  }
+
+  /**
+   * Extracts a tar archive, that may contain GNU and PAX extensions
+   *
+   * @param pArchive stream of the uncompressed archive
+   */
+  private void _extractTar(@NonNull InputStream pArchive) throws IOException
+  {
+    InputStream in = new BufferedInputStream(pArchive, 64 * 1024);
+    byte[] header = new byte[_BLOCK_SIZE];
+    String longName = null;
+    String longLink = null;
+
+    while (_readFully(in, header))
+    {
+      // the archive ends with two empty blocks
+      if (_isEmpty(header))
+        break;
+
+      char type = (char) header[156];
+      long size = _parseNumber(header, 124, 12);
+      String name = longName != null ? longName : _parseName(header);
+      String link = longLink != null ? longLink : _parseString(header, 157, 100);
+      int mode = (int) _parseNumber(header, 100, 8);
+
+      switch (type)
+      {
+        case 'L': // GNU long name of the next entry
+          longName = _trimNull(new String(_readContent(in, size), StandardCharsets.UTF_8));
+          continue;
+        case 'K': // GNU long link of the next entry
+          longLink = _trimNull(new String(_readContent(in, size), StandardCharsets.UTF_8));
+          continue;
+        case 'x': // PAX header of the next entry
+          Map<String, String> pax = _parsePax(_readContent(in, size));
+          longName = pax.getOrDefault("path", longName);
+          longLink = pax.getOrDefault("linkpath", longLink);
+          continue;
+        case 'g': // global PAX header, nothing of interest
+          _readContent(in, size);
+          continue;
+        case '5':
+          Files.createDirectories(_resolve(name));
+          break;
+        case '2':
+          _createSymbolicLink(_resolve(name), link);
+          break;
+        case '1':
+          _createHardLink(_resolve(name), _resolve(link));
+          break;
+        case '0':
+        case '\0':
+        case '7':
+          _writeFile(_resolve(name), in, size, mode);
+          _skip(in, _padding(size));
+          break;
+        default:
+          // devices, fifos etc. are not part of a nodejs distribution
+          _skip(in, size + _padding(size));
+          break;
+      }
+
+      longName = null;
+      longLink = null;
+    }
+  }
+
+  /**
+   * Resolves the path of an entry and determines the root folder of the archive with the first entry
+   *
+   * @param pName name of the entry
+   * @return the path to extract the entry to
+   */
+  @NonNull
+  private Path _resolve(@NonNull String pName) throws IOException
+  {
+    Path path = target.toPath().resolve(pName).normalize();
+    if (!path.startsWith(target.toPath()))
+      throw new IOException("Archive entry is outside of the target folder: " + pName);
+
+    // entries like "./" do not belong to the root folder
+    if (root == null && !path.equals(target.toPath()))
+    {
+      root = target.toPath().resolve(target.toPath().relativize(path).getName(0)).toFile();
+      // remainders of an interrupted extraction must not be mixed with the new files
+      if (root.exists())
+        FileUtils.deleteDirectory(root);
+    }
+
+    return path;
+  }
+
+  /**
+   * Writes a single file
+   *
+   * @param pPath   path of the file
+   * @param pIn     stream, that is positioned at the content of the file
+   * @param pLength length of the content, -1 to read until the end of the stream
+   * @param pMode   unix file mode, -1 if unknown
+   */
+  private void _writeFile(@NonNull Path pPath, @NonNull InputStream pIn, long pLength, int pMode) throws IOException
+  {
+    Files.createDirectories(pPath.getParent());
+    try (OutputStream out = Files.newOutputStream(pPath))
+    {
+      if (pLength < 0)
+        pIn.transferTo(out);
+      else
+        _copy(pIn, out, pLength);
+    }
+
+    if (pMode >= 0 && (pMode & 0111) != 0)
+      _setExecutable(pPath, pMode);
+  }
+
+  /**
+   * Creates a symbolic link, that has to point to a file within the root folder
+   *
+   * @param pPath link to create
+   * @param pLink target of the link, as contained in the archive
+   */
+  private void _createSymbolicLink(@NonNull Path pPath, @NonNull String pLink) throws IOException
+  {
+    Path linkTarget = pPath.getParent().resolve(pLink).normalize();
+    if (!linkTarget.startsWith(root.toPath()))
+      throw new IOException("Archive contains a link to the outside of the archive: " + pPath + " -> " + pLink);
+
+    Files.createDirectories(pPath.getParent());
+    Files.deleteIfExists(pPath);
+    try
+    {
+      Files.createSymbolicLink(pPath, Paths.get(pLink));
+    }
+    catch (UnsupportedOperationException | IOException e)
+    {
+      // file systems without symbolic links (e.g. windows without the necessary privileges) get a copy, if the target already exists
+      if (!Files.isRegularFile(linkTarget))
+        throw e instanceof IOException ? (IOException) e : new IOException(e);
+      Files.copy(linkTarget, pPath, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+  }
+
+  /**
+   * Creates a hard link to a file, that was extracted before
+   *
+   * @param pPath   link to create
+   * @param pTarget extracted file
+   */
+  private void _createHardLink(@NonNull Path pPath, @NonNull Path pTarget) throws IOException
+  {
+    Files.createDirectories(pPath.getParent());
+    Files.deleteIfExists(pPath);
+    try
+    {
+      Files.createLink(pPath, pTarget);
+    }
+    catch (UnsupportedOperationException | IOException e)
+    {
+      Files.copy(pTarget, pPath, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+  }
+
+  /**
+   * Sets the executable bits of a file, if the file system supports it
+   *
+   * @param pPath file
+   * @param pMode unix file mode
+   */
+  private static void _setExecutable(@NonNull Path pPath, int pMode) throws IOException
+  {
+    if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+      return;
+
+    Set<PosixFilePermission> permissions = EnumSet.copyOf(Files.getPosixFilePermissions(pPath));
+    if ((pMode & 0100) != 0)
+      permissions.add(PosixFilePermission.OWNER_EXECUTE);
+    if ((pMode & 0010) != 0)
+      permissions.add(PosixFilePermission.GROUP_EXECUTE);
+    if ((pMode & 0001) != 0)
+      permissions.add(PosixFilePermission.OTHERS_EXECUTE);
+    Files.setPosixFilePermissions(pPath, permissions);
+  }
+
+  /**
+   * Parses the name of a tar entry, including the prefix of the ustar format
+   *
+   * @param pHeader header block
+   * @return the name
+   */
+  @NonNull
+  private static String _parseName(@NonNull byte[] pHeader)
+  {
+    String name = _parseString(pHeader, 0, 100);
+    boolean ustar = "ustar".equals(_parseString(pHeader, 257, 5));
+    String prefix = ustar ? _parseString(pHeader, 345, 155) : "";
+    return prefix.isEmpty() ? name : prefix + "/" + name;
+  }
+
+  /**
+   * Parses a null-terminated string of a tar header
+   */
+  @NonNull
+  private static String _parseString(@NonNull byte[] pHeader, int pOffset, int pLength)
+  {
+    int end = pOffset;
+    while (end < pOffset + pLength && pHeader[end] != 0)
+      end++;
+    return new String(pHeader, pOffset, end - pOffset, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parses a number of a tar header, either octal or base-256 for big values
+   */
+  private static long _parseNumber(@NonNull byte[] pHeader, int pOffset, int pLength) throws IOException
+  {
+    if ((pHeader[pOffset] & 0x80) != 0)
+    {
+      long value = pHeader[pOffset] & 0x7F;
+      for (int i = 1; i < pLength; i++)
+        value = (value << 8) | (pHeader[pOffset + i] & 0xFF);
+      return value;
+    }
+
+    String octal = _parseString(pHeader, pOffset, pLength).trim();
+    try
+    {
+      return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+    }
+    catch (NumberFormatException e)
+    {
+      throw new IOException("Invalid tar header", e);
+    }
+  }
+
+  /**
+   * Parses the records of a PAX header, each has the format "length key=value\n"
+   *
+   * @param pContent content of the header
+   * @return the records
+   */
+  @NonNull
+  private static Map<String, String> _parsePax(@NonNull byte[] pContent)
+  {
+    Map<String, String> records = new HashMap<>();
+    int position = 0;
+    while (position < pContent.length)
+    {
+      int space = position;
+      while (space < pContent.length && pContent[space] != ' ')
+        space++;
+      if (space >= pContent.length)
+        break;
+
+      int length = Integer.parseInt(new String(pContent, position, space - position, StandardCharsets.UTF_8));
+      if (length <= 0 || position + length > pContent.length)
+        break;
+
+      String record = new String(pContent, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+      int separator = record.indexOf('=');
+      if (separator > 0)
+        records.put(record.substring(0, separator), record.substring(separator + 1));
+      position += length;
+    }
+    return records;
+  }
+
+  /**
+   * Reads the content of an entry, that is small enough to be held in memory, including the padding
+   */
+  @NonNull
+  private static byte[] _readContent(@NonNull InputStream pIn, long pSize) throws IOException
+  {
+    if (pSize > 1024 * 1024)
+      throw new IOException("Tar header too big: " + pSize);
+
+    byte[] content = new byte[(int) pSize];
+    if (!_readFully(pIn, content))
+      throw new EOFException("Unexpected end of tar archive");
+    _skip(pIn, _padding(pSize));
+    return content;
+  }
+
+  /**
+   * Copies exactly pLength bytes
+   */
+  private static void _copy(@NonNull InputStream pIn, @NonNull OutputStream pOut, long pLength) throws IOException
+  {
+    byte[] buffer = new byte[64 * 1024];
+    long remaining = pLength;
+    while (remaining > 0)
+    {
+      int read = pIn.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+      if (read < 0)
+        throw new EOFException("Unexpected end of tar archive");
+      pOut.write(buffer, 0, read);
+      remaining -= read;
+    }
+  }
+
+  /**
+   * Skips exactly pLength bytes
+   */
+  private static void _skip(@NonNull InputStream pIn, long pLength) throws IOException
+  {
+    _copy(pIn, OutputStream.nullOutputStream(), pLength);
+  }
+
+  /**
+   * Reads the buffer completely
+   *
+   * @return false, if the stream ended before the first byte
+   */
+  private static boolean _readFully(@NonNull InputStream pIn, @NonNull byte[] pBuffer) throws IOException
+  {
+    int offset = 0;
+    while (offset < pBuffer.length)
+    {
+      int read = pIn.read(pBuffer, offset, pBuffer.length - offset);
+      if (read < 0)
+      {
+        if (offset == 0)
+          return false;
+        throw new EOFException("Unexpected end of tar archive");
+      }
+      offset += read;
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of bytes, that fill the content of an entry up to the next block
+   */
+  private static long _padding(long pSize)
+  {
+    return (_BLOCK_SIZE - pSize % _BLOCK_SIZE) % _BLOCK_SIZE;
+  }
+
+  private static boolean _isEmpty(@NonNull byte[] pBlock)
+  {
+    for (byte b : pBlock)
+      if (b != 0)
+        return false;
+    return true;
+  }
+
+  @Nullable
+  private static String _trimNull(@Nullable String pValue)
+  {
+    if (pValue == null)
+      return null;
+    int end = pValue.indexOf('\0');
+    return end < 0 ? pValue : pValue.substring(0, end);
+  }
+
+}
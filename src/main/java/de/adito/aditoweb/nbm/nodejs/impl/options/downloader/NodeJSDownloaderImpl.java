@@ -1,19 +1,19 @@
 package de.adito.aditoweb.nbm.nodejs.impl.options.downloader;
 
+import com.google.common.io.BaseEncoding;
 import lombok.Getter;
 import lombok.NonNull;
-import org.apache.commons.io.IOUtils;
-import org.buildobjects.process.ProcBuilder;
+import org.apache.commons.io.*;
 import org.jetbrains.annotations.*;
 import org.openide.util.BaseUtilities;
-import org.rauschig.jarchivelib.*;
 
 import java.io.*;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.security.*;
 import java.util.*;
 import java.util.function.UnaryOperator;
+import java.util.logging.*;
 import java.util.regex.*;
 import java.util.stream.Collectors;
 
@@ -23,7 +23,13 @@ import java.util.stream.Collectors;
 public class NodeJSDownloaderImpl implements INodeJSDownloader
 {
 
+  /**
+   * Base url of the nodejs distributions, e.g. a local mirror (also "file:" urls), defaults to the official one
+   */
+  static final String MIRROR_PROPERTY = "adito.nodejs.mirror";
+
   protected static final NodeJSDownloaderImpl INSTANCE = new NodeJSDownloaderImpl();
+  private static final Logger _LOGGER = Logger.getLogger(NodeJSDownloaderImpl.class.getName());
   private static final String _NODEJS_URL = "https://nodejs.org/dist/";
   private static final Pattern _VERSION_REGEX = Pattern.compile("<a href=\"([^\"]*)\">");
   private static final Set<String> _IGNORED_VERSIONS = Set.of("v6.", "v5.", "v4.", "v0.");
@@ -35,19 +41,13 @@ public class NodeJSDownloaderImpl implements INodeJSDownloader
     try
     {
       Set<String> result = new HashSet<>();
-      String versions = IOUtils.toString(URI.create(_NODEJS_URL), StandardCharsets.UTF_8);
-      Matcher matcher = _VERSION_REGEX.matcher(versions);
-      int position = 0;
-      while (matcher.find(position))
+      for (String name : _listMirror())
       {
-        String name = matcher.group(1);
         name = name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
 
         // only list real versions
         if (name.startsWith("v"))
           result.add(name);
-
-        position = matcher.end();
       }
 
       // sort
@@ -83,6 +83,25 @@ public class NodeJSDownloaderImpl implements INodeJSDownloader
     return _downloadVersion(pVersion, pTarget, OS_SUFFIX.getCurrent());
   }
 
+  /**
+   * @return the base url of all versions, ends with a slash
+   */
+  @NonNull
+  protected String getMirrorURL()
+  {
+    String mirror = System.getProperty(MIRROR_PROPERTY, _NODEJS_URL);
+    return mirror.endsWith("/") ? mirror : mirror + "/";
+  }
+
+  /**
+   * @return the store, that contains the downloaded versions
+   */
+  @NonNull
+  NodeJSStore getStore()
+  {
+    return NodeJSStore.getInstance();
+  }
+
   /**
    * Constructs a download url to download the appropriate version
    *
@@ -93,11 +112,24 @@ public class NodeJSDownloaderImpl implements INodeJSDownloader
   @NonNull
   protected String getDownloadURL(@NonNull String pVersion, @NonNull OS_SUFFIX pOS)
   {
-    return _NODEJS_URL + pVersion + "/node-" + pVersion + "-" + pOS.getSuffix() + pOS.getFileEnding();
+    return getMirrorURL() + pVersion + "/node-" + pVersion + "-" + pOS.getSuffix() + pOS.getFileEnding();
+  }
+
+  /**
+   * Constructs the url of the checksums of all downloads of a version
+   *
+   * @param pVersion Version (from getAvailableVersions())
+   * @return the URL
+   */
+  @NonNull
+  protected String getChecksumURL(@NonNull String pVersion)
+  {
+    return getMirrorURL() + pVersion + "/SHASUMS256.txt";
   }
 
   /**
    * Downloads a nodejs version to pTarget.
+   * The distribution is downloaded into the {@link NodeJSStore} first, so each version is only downloaded once per machine.
    *
    * @param pVersion Version to download (has to be a version from getAvailableVersions())
    * @param pTarget  Target Folder
@@ -107,26 +139,47 @@ public class NodeJSDownloaderImpl implements INodeJSDownloader
   @NonNull
   private File _downloadVersion(@NonNull String pVersion, @NonNull File pTarget, @NonNull OS_SUFFIX pOsType) throws IOException
   {
-    File downloadedFile = new File(pTarget, pVersion + pOsType.getFileEnding());
-
     //noinspection ResultOfMethodCallIgnored
-    downloadedFile.getParentFile().mkdirs();
+    pTarget.mkdirs();
+
+    String fileName = "node-" + pVersion + "-" + pOsType.getSuffix() + pOsType.getFileEnding();
+    String key = pVersion + "-" + pOsType.getSuffix();
+    NodeJSStore store = getStore();
 
-    // Download
-    try (FileOutputStream fos = new FileOutputStream(downloadedFile);
-         InputStream is = URI.create(getDownloadURL(pVersion, pOsType)).toURL().openStream())
+    String checksums;
+    try
     {
-      IOUtils.copy(is, fos);
+      checksums = IOUtils.toString(URI.create(getChecksumURL(pVersion)), StandardCharsets.UTF_8);
+    }
+    catch (IOException e)
+    {
+      // without network access, an already stored version is still fine
+      File stored = store.findAny(key);
+      if (stored == null)
+        throw e;
+      _LOGGER.log(Level.INFO, "Failed to load checksums of " + pVersion + ", using stored version " + stored, e);
+      return _install(stored, pTarget, pOsType);
     }
 
-    if (!downloadedFile.exists() || !downloadedFile.canRead())
-      throw new IOException("Failed to extract downloaded archive, because it does not exist (" + downloadedFile + ")");
-
-    // Extract
-    File extractedFolder = _extractWithLinks(downloadedFile, pTarget);
+    String checksum = parseChecksum(checksums, fileName);
+    if (checksum == null)
+      throw new IOException("No checksum available for " + fileName);
+    return _install(store.provide(key, checksum, (pStaging, pWorkDirectory) -> _download(pVersion, pOsType, checksum, pStaging, pWorkDirectory)),
+                    pTarget, pOsType);
+  }
 
-    // Delete Download
-    Files.delete(downloadedFile.toPath());
+  /**
+   * Creates an installation from a stored distribution
+   *
+   * @param pStored root folder of the stored distribution
+   * @param pTarget Target Folder
+   * @param pOsType OS-Type
+   * @return the binary nodejs target
+   */
+  @NonNull
+  private File _install(@NonNull File pStored, @NonNull File pTarget, @NonNull OS_SUFFIX pOsType) throws IOException
+  {
+    File extractedFolder = NodeJSStore.materialize(pStored, pTarget);
 
     // find nodeJS binary
     File binary = _findBinary(extractedFolder, pOsType);
@@ -137,42 +190,114 @@ public class NodeJSDownloaderImpl implements INodeJSDownloader
   }
 
   /**
-   * Extracts the given file to pTarget and respects links in the downloaded zip
+   * Downloads and extracts a nodejs distribution and verifies its checksum
    *
-   * @param pFile   File to extract
-   * @param pTarget Target folder
-   * @return the extracted folder
+   * @param pVersion       Version to download
+   * @param pOsType        OS-Type
+   * @param pChecksum      expected sha-256 checksum of the archive
+   * @param pTarget        Target Folder, the distribution is extracted into
+   * @param pWorkDirectory Folder for the parts of the archive, that are kept to resume an interrupted download
    */
-  @NonNull
-  private File _extractWithLinks(@NonNull File pFile, @NonNull File pTarget) throws IOException
+  private void _download(@NonNull String pVersion, @NonNull OS_SUFFIX pOsType, @NonNull String pChecksum, @NonNull File pTarget,
+                         @NonNull File pWorkDirectory) throws IOException
   {
-    Archiver factory = ArchiverFactory.createArchiver(pFile);
+    String fileName = "node-" + pVersion + "-" + pOsType.getSuffix() + pOsType.getFileEnding();
 
-    //noinspection ResultOfMethodCallIgnored
-    pTarget.mkdirs();
+    // download and extract at once, the archive is only kept in parts to resume an interrupted download
+    File extractedFolder;
+    try (RangedDownloader.Download download = RangedDownloader.create().start(URI.create(getDownloadURL(pVersion, pOsType)).toURL(),
+                                                                              new File(pWorkDirectory, "." + fileName)))
+    {
+      MessageDigest digest = _createDigest();
+      try (InputStream is = new DigestInputStream(download.getInputStream(), digest))
+      {
+        extractedFolder = ArchiveStreamExtractor.extract(is, pTarget, pOsType.getFileEnding());
 
-    try
+        // trailing data (e.g. the central directory of a zip) is part of the checksum too
+        is.transferTo(OutputStream.nullOutputStream());
+      }
+      catch (IOException e)
+      {
+        // only a failed transfer can be resumed, a broken archive has to be downloaded again
+        download.close();
+        if (!download.isFailed() && !(e instanceof InterruptedIOException))
+          download.deleteParts();
+        throw e;
+      }
+
+      // the parts are useless after a mismatch, so the next attempt starts from scratch
+      download.deleteParts();
+      String actual = BaseEncoding.base16().lowerCase().encode(digest.digest());
+      if (!actual.equalsIgnoreCase(pChecksum))
+      {
+        FileUtils.deleteQuietly(extractedFolder);
+        throw new IOException("Checksum of " + fileName + " does not match (expected " + pChecksum + ", got " + actual + ")");
+      }
+    }
+  }
+
+  /**
+   * Lists the entries of the mirror, a remote mirror provides an html index and a local mirror is a folder
+   *
+   * @return the names of all entries
+   */
+  @NonNull
+  private List<String> _listMirror() throws IOException
+  {
+    URI mirror = URI.create(getMirrorURL());
+    if ("file".equalsIgnoreCase(mirror.getScheme()))
     {
-      // try "tar" command on linux and mac, because of symlinks
-      new ProcBuilder("tar", "-xzf", pFile.getAbsolutePath())
-          .withWorkingDirectory(pTarget)
-          .withNoTimeout()
-          .run();
+      String[] names = new File(mirror).list();
+      if (names == null)
+        throw new IOException("Mirror " + mirror + " is not a directory");
+      return Arrays.asList(names);
     }
-    catch (Exception e)
+
+    List<String> names = new ArrayList<>();
+    Matcher matcher = _VERSION_REGEX.matcher(IOUtils.toString(mirror, StandardCharsets.UTF_8));
+    int position = 0;
+    while (matcher.find(position))
     {
-      // if an exception happens, then use jarchivelib - we should now be on windows (and windows does not have something like symlinks)
-      factory.extract(pFile, pTarget);
+      names.add(matcher.group(1));
+      position = matcher.end();
     }
+    return names;
+  }
 
-    // Get first extracted folder, because the node zip contains a subfolder..
-    File extractedFolder;
-    try (ArchiveStream stream = factory.stream(pFile))
+  /**
+   * Searches the checksum of a file in the content of a SHASUMS256.txt
+   *
+   * @param pChecksums content of the SHASUMS256.txt, each line contains a checksum and a file name
+   * @param pFileName  name of the file
+   * @return the hex encoded sha-256 checksum, or null if the file is not listed
+   */
+  @Nullable
+  static String parseChecksum(@NonNull String pChecksums, @NonNull String pFileName)
+  {
+    for (String line : pChecksums.split("\\R"))
     {
-      extractedFolder = new File(pTarget, stream.getNextEntry().getName());
+      String[] parts = line.trim().split("\\s+");
+      if (parts.length == 2 && parts[1].replaceFirst("^\\*", "").equals(pFileName))
+        return parts[0];
     }
 
-    return extractedFolder;
+    return null;
+  }
+
+  /**
+   * @return a new sha-256 digest
+   */
+  @NonNull
+  private static MessageDigest _createDigest() throws IOException
+  {
+    try
+    {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      throw new IOException(e);
+    }
   }
 
   /**
@@ -0,0 +1,405 @@
+package de.adito.aditoweb.nbm.nodejs.impl.options.downloader;
+
+import com.google.common.annotations.VisibleForTesting;
+import lombok.NonNull;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.*;
+import java.util.stream.Stream;
+
+/**
+ * Machine-wide store of extracted nodejs distributions, shared by all userdirs.
+ * Each distribution is stored once, keyed by its version, os and the sha-256 checksum of its archive.
+ * Installations are created from the store with hardlinks, so that additional installations of the same version
+ * are available instantly and (nearly) need no additional disk space. If the file system does not support hardlinks,
+ * the files are copied instead. The folders, that npm writes into (e.g. with "npm install -g"), are always copied,
+ * so that an installation can not modify the stored files.
+ * <p>
+ * Entries are extracted into a staging folder and moved into place atomically, so an existing entry is always complete.
+ * Concurrent downloads of the same distribution by multiple processes are serialized with a file lock.
+ * Entries, that were not used for a long time and are not linked by any installation anymore, are pruned.
+ *
+ * @author agent, 18.10.2026
+ */
+final class NodeJSStore
+{
+
+  /**
+   * Folder of the store, defaults to a folder in the user home
+   */
+  static final String STORE_PROPERTY = "adito.nodejs.store";
+
+  private static final Logger _LOGGER = Logger.getLogger(NodeJSStore.class.getName());
+  private static final String _LOCK_FILE = ".lock";
+  private static final String _STAGING_PREFIX = ".staging";
+  private static final String _USED_SUFFIX = ".used";
+  private static final long _MAX_UNUSED_MS = TimeUnit.DAYS.toMillis(30);
+  private static final List<Path> _WRITABLE_FOLDERS = List.of(Paths.get("lib", "node_modules"), Paths.get("node_modules"), Paths.get("etc"));
+  private static NodeJSStore _INSTANCE;
+
+  private final File directory;
+
+  /**
+   * @return the shared instance
+   */
+  @NonNull
+  static synchronized NodeJSStore getInstance()
+  {
+    if (_INSTANCE == null)
+    {
+      String store = System.getProperty(STORE_PROPERTY);
+      _INSTANCE = new NodeJSStore(store != null ? new File(store) : new File(System.getProperty("user.home"), ".nodejs-store"));
+    }
+    return _INSTANCE;
+  }
+
+  @VisibleForTesting
+  NodeJSStore(@NonNull File pDirectory)
+  {
+    directory = pDirectory.getAbsoluteFile();
+  }
+
+  /**
+   * Searches a stored distribution
+   *
+   * @param pKey  version and os of the distribution, e.g. "v18.14.0-linux-x64"
+   * @param pHash sha-256 checksum of the archive
+   * @return the root folder of the distribution, or null if it is not stored
+   */
+  @Nullable
+  File find(@NonNull String pKey, @NonNull String pHash) throws IOException
+  {
+    File entry = new File(_getKeyDirectory(pKey), _validateHash(pHash));
+    File root = _getRoot(entry);
+    if (root != null)
+      _touch(entry);
+    return root;
+  }
+
+  /**
+   * Searches any stored distribution of the given version and os, e.g. if the checksum can not be determined without network access
+   *
+   * @param pKey version and os of the distribution, e.g. "v18.14.0-linux-x64"
+   * @return the root folder of the most recently stored distribution, or null if none is stored
+   */
+  @Nullable
+  File findAny(@NonNull String pKey) throws IOException
+  {
+    File[] entries = _getKeyDirectory(pKey).listFiles(pFile -> pFile.isDirectory() && !pFile.getName().startsWith("."));
+    if (entries == null)
+      return null;
+
+    File root = Arrays.stream(entries)
+        .sorted(Comparator.comparingLong(File::lastModified).reversed())
+        .map(NodeJSStore::_getRoot)
+        .filter(Objects::nonNull)
+        .findFirst()
+        .orElse(null);
+    if (root != null)
+      _touch(root.getParentFile());
+    return root;
+  }
+
+  /**
+   * Returns a stored distribution, it is loaded into the store if it is not stored yet
+   *
+   * @param pKey    version and os of the distribution, e.g. "v18.14.0-linux-x64"
+   * @param pHash   sha-256 checksum of the archive
+   * @param pLoader loads the distribution, if it is not stored yet
+   * @return the root folder of the distribution
+   */
+  @NonNull
+  File provide(@NonNull String pKey, @NonNull String pHash, @NonNull ILoader pLoader) throws IOException
+  {
+    File stored = find(pKey, pHash);
+    if (stored != null)
+      return stored;
+
+    File keyDirectory = _getKeyDirectory(pKey);
+    Files.createDirectories(keyDirectory.toPath());
+
+    // file locks are held by the whole jvm, so threads have to be serialized separately
+    synchronized (this)
+    {
+      try (FileChannel channel = FileChannel.open(new File(keyDirectory, _LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+           FileLock ignored = channel.lock())
+      {
+        // another process may have loaded it in the meantime
+        stored = find(pKey, pHash);
+        if (stored != null)
+          return stored;
+
+        // leftovers of processes, that were killed while loading
+        File[] leftovers = keyDirectory.listFiles(pFile -> pFile.isDirectory() && pFile.getName().startsWith(_STAGING_PREFIX));
+        if (leftovers != null)
+          Arrays.stream(leftovers).forEach(FileUtils::deleteQuietly);
+
+        Path staging = Files.createTempDirectory(keyDirectory.toPath(), _STAGING_PREFIX);
+        try
+        {
+          pLoader.load(staging.toFile(), keyDirectory);
+          Files.move(staging, keyDirectory.toPath().resolve(_validateHash(pHash)), StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+          FileUtils.deleteQuietly(staging.toFile());
+        }
+      }
+    }
+
+    stored = find(pKey, pHash);
+    if (stored == null)
+      throw new IOException("Failed to store " + pKey + " (" + pHash + ")");
+
+    // the store only grows with new distributions, so this is the time to get rid of the old ones
+    prune();
+    return stored;
+  }
+
+  /**
+   * Deletes the stored distributions, that were not used for a long time and are not linked by any installation anymore.
+   * Linked files are only counted on file systems, that provide the number of links of a file.
+   * Folders, that are currently locked by another process, are skipped.
+   */
+  void prune()
+  {
+    File[] keyDirectories = directory.listFiles(pFile -> pFile.isDirectory() && !pFile.getName().startsWith("."));
+    if (keyDirectories == null)
+      return;
+
+    long oldest = System.currentTimeMillis() - _MAX_UNUSED_MS;
+    synchronized (this)
+    {
+      for (File keyDirectory : keyDirectories)
+      {
+        try (FileChannel channel = FileChannel.open(new File(keyDirectory, _LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock())
+        {
+          if (lock == null)
+            continue;
+
+          File[] entries = keyDirectory.listFiles(pFile -> pFile.isDirectory() && !pFile.getName().startsWith("."));
+          for (File entry : entries == null ? new File[0] : entries)
+          {
+            if (_getLastUse(entry) >= oldest || _isLinked(entry))
+              continue;
+
+            // moved away first, so that other processes never see a partially deleted entry
+            Path staging = keyDirectory.toPath().resolve(_STAGING_PREFIX + entry.getName());
+            Files.move(entry.toPath(), staging, StandardCopyOption.ATOMIC_MOVE);
+            FileUtils.deleteQuietly(staging.toFile());
+            Files.deleteIfExists(_getUsedMarker(entry).toPath());
+          }
+        }
+        catch (IOException | OverlappingFileLockException e)
+        {
+          _LOGGER.log(Level.WARNING, "Failed to prune " + keyDirectory, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates an installation from a stored distribution.
+   * Files are hardlinked, symbolic links are recreated and directories are created.
+   * Files within the folders, that are written by npm, are copied, because npm would modify the stored files otherwise.
+   *
+   * @param pRoot   root folder of the stored distribution
+   * @param pTarget folder, that should contain the installation
+   * @return the root folder of the installation, named like the stored root folder
+   */
+  @NonNull
+  static File materialize(@NonNull File pRoot, @NonNull File pTarget) throws IOException
+  {
+    Path source = pRoot.toPath();
+    Path target = pTarget.toPath().resolve(pRoot.getName());
+    if (Files.exists(target, LinkOption.NOFOLLOW_LINKS))
+      FileUtils.forceDelete(target.toFile());
+
+    Files.walkFileTree(source, new SimpleFileVisitor<>()
+    {
+      private boolean linksSupported = true;
+
+      @Override
+      public FileVisitResult preVisitDirectory(Path pDirectory, BasicFileAttributes pAttributes) throws IOException
+      {
+        Files.createDirectories(_resolve(pDirectory));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path pFile, BasicFileAttributes pAttributes) throws IOException
+      {
+        Path link = _resolve(pFile);
+        if (pAttributes.isSymbolicLink())
+        {
+          try
+          {
+            Files.createSymbolicLink(link, Files.readSymbolicLink(pFile));
+          }
+          catch (IOException | UnsupportedOperationException e)
+          {
+            // e.g. windows without the privilege to create symlinks
+            Files.copy(pFile, link);
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        if (linksSupported && _WRITABLE_FOLDERS.stream().noneMatch(source.relativize(pFile)::startsWith))
+        {
+          try
+          {
+            Files.createLink(link, pFile);
+            return FileVisitResult.CONTINUE;
+          }
+          catch (IOException | UnsupportedOperationException e)
+          {
+            // e.g. the store is on another file system, so all other files have to be copied too
+            _LOGGER.log(Level.FINE, "Failed to link " + pFile + ", copying the installation instead", e);
+            linksSupported = false;
+          }
+        }
+
+        Files.copy(pFile, link, StandardCopyOption.COPY_ATTRIBUTES);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @NonNull
+      private Path _resolve(@NonNull Path pPath)
+      {
+        return target.resolve(source.relativize(pPath).toString());
+      }
+    });
+
+    return target.toFile();
+  }
+
+  /**
+   * @param pKey version and os of the distribution
+   * @return the folder, that contains all distributions of the key
+   */
+  @NonNull
+  private File _getKeyDirectory(@NonNull String pKey) throws IOException
+  {
+    if (!pKey.matches("[A-Za-z0-9._-]+") || pKey.startsWith("."))
+      throw new IOException("Invalid store key: " + pKey);
+    return new File(directory, pKey);
+  }
+
+  /**
+   * @param pHash hex encoded checksum
+   * @return the checksum in lower case
+   */
+  @NonNull
+  private static String _validateHash(@NonNull String pHash) throws IOException
+  {
+    if (!pHash.matches("[0-9a-fA-F]+"))
+      throw new IOException("Invalid checksum: " + pHash);
+    return pHash.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Remembers the use of a stored distribution, so that it is not pruned
+   *
+   * @param pEntry folder of a stored distribution
+   */
+  private static void _touch(@NonNull File pEntry)
+  {
+    File marker = _getUsedMarker(pEntry);
+    try
+    {
+      if (!marker.createNewFile() && !marker.setLastModified(System.currentTimeMillis()))
+        throw new IOException("Failed to update the modification time of " + marker);
+    }
+    catch (IOException e)
+    {
+      // e.g. a read-only store, which is never pruned anyway
+      _LOGGER.log(Level.FINE, "Failed to remember the use of " + pEntry, e);
+    }
+  }
+
+  /**
+   * @param pEntry folder of a stored distribution
+   * @return the time of the last use of the distribution
+   */
+  private static long _getLastUse(@NonNull File pEntry)
+  {
+    File marker = _getUsedMarker(pEntry);
+    return marker.isFile() ? marker.lastModified() : pEntry.lastModified();
+  }
+
+  /**
+   * @param pEntry folder of a stored distribution
+   * @return the file, whose modification time is the time of the last use.
+   * It is located next to the entry, so that the modification time of the entry stays the time it was stored
+   */
+  @NonNull
+  private static File _getUsedMarker(@NonNull File pEntry)
+  {
+    return new File(pEntry.getParentFile(), "." + pEntry.getName() + _USED_SUFFIX);
+  }
+
+  /**
+   * @param pEntry folder of a stored distribution
+   * @return true, if a file of the distribution is still hardlinked by an installation
+   */
+  private static boolean _isLinked(@NonNull File pEntry) throws IOException
+  {
+    try (Stream<Path> files = Files.walk(pEntry.toPath()))
+    {
+      return files
+          .filter(pPath -> Files.isRegularFile(pPath, LinkOption.NOFOLLOW_LINKS))
+          .anyMatch(NodeJSStore::_hasLinks);
+    }
+  }
+
+  /**
+   * @param pFile regular file
+   * @return true, if the file has more than one link. False, if the number of links is not available (e.g. on windows)
+   */
+  private static boolean _hasLinks(@NonNull Path pFile)
+  {
+    try
+    {
+      return ((Number) Files.getAttribute(pFile, "unix:nlink", LinkOption.NOFOLLOW_LINKS)).intValue() > 1;
+    }
+    catch (IOException | UnsupportedOperationException | IllegalArgumentException e)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * @param pEntry folder of a stored distribution
+   * @return the root folder of the extracted distribution, or null if the entry does not exist
+   */
+  @Nullable
+  private static File _getRoot(@NonNull File pEntry)
+  {
+    File[] children = pEntry.listFiles(File::isDirectory);
+    return children == null || children.length != 1 ? null : children[0];
+  }
+
+  /**
+   * Loads a distribution into the store
+   */
+  @FunctionalInterface
+  interface ILoader
+  {
+    /**
+     * Extracts the distribution into the given folder
+     *
+     * @param pStaging       empty folder, the distribution has to be extracted into
+     * @param pWorkDirectory folder for temporary files, that should survive a failed attempt (e.g. to resume a download)
+     */
+    void load(@NonNull File pStaging, @NonNull File pWorkDirectory) throws IOException;
+  }
+
+}
@@ -0,0 +1,477 @@
+package de.adito.aditoweb.nbm.nodejs.impl.options.downloader;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.NonNull;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+import java.util.regex.*;
+
+/**
+ * Downloads a file with multiple parallel http range requests.
+ * Each range (chunk) is written into its own part file next to the target, so that an interrupted download is resumed
+ * with the next attempt. The content is available in order as a stream while the chunks are still downloading,
+ * so it can be processed (e.g. hashed and extracted) without waiting for the whole download.
+ * <p>
+ * If the server does not support range requests or the url is not a http url (e.g. a local file),
+ * the download can not be resumed, so the connection is streamed directly without writing any part files.
+ *
+ * @author agent, 18.10.2026
+ */
+final class RangedDownloader
+{
+
+  /**
+   * Number of parallel connections per download
+   */
+  static final String CONNECTIONS_PROPERTY = "adito.nodejs.download.connections";
+
+  private static final Logger _LOGGER = Logger.getLogger(RangedDownloader.class.getName());
+  private static final Pattern _CONTENT_RANGE_PATTERN = Pattern.compile("^bytes\\s+\\d+-\\d+/(\\d+)$");
+  private static final long _MIN_CHUNK_SIZE = 1024 * 1024;
+  private static final int _RETRIES = 3;
+  private static final int _TIMEOUT_MS = 30000;
+
+  private final int connections;
+
+  /**
+   * @return a downloader with the configured number of connections
+   */
+  @NonNull
+  static RangedDownloader create()
+  {
+    return new RangedDownloader(Integer.getInteger(CONNECTIONS_PROPERTY, 4));
+  }
+
+  RangedDownloader(int pConnections)
+  {
+    connections = Math.max(1, pConnections);
+  }
+
+  /**
+   * Starts a download
+   *
+   * @param pUrl  url to download
+   * @param pFile file, whose name is used for the part files of the chunks
+   * @return the running download, has to be closed
+   */
+  @NonNull
+  Download start(@NonNull URL pUrl, @NonNull File pFile) throws IOException
+  {
+    Download download = new Download(pUrl, pFile);
+    try
+    {
+      download._start();
+      return download;
+    }
+    catch (IOException | RuntimeException e)
+    {
+      download.close();
+      throw e;
+    }
+  }
+
+  /**
+   * A single running download
+   */
+  final class Download implements Closeable
+  {
+    private final URL url;
+    private final File file;
+    private final File metaFile;
+    private final List<_Chunk> chunks = new ArrayList<>();
+    private ExecutorService executor;
+    private URLConnection direct;
+    private volatile boolean closed = false;
+    private IOException failure;
+
+    private Download(@NonNull URL pUrl, @NonNull File pFile)
+    {
+      url = pUrl;
+      file = pFile;
+      metaFile = new File(pFile.getPath() + ".parts");
+    }
+
+    /**
+     * @return the content of the download in order, blocks until the requested data is downloaded
+     */
+    @NonNull
+    InputStream getInputStream() throws IOException
+    {
+      if (direct != null)
+        return direct.getInputStream();
+      return new _OrderedInputStream();
+    }
+
+    /**
+     * Deletes all part files, so that the next download starts from scratch
+     */
+    void deleteParts()
+    {
+      // also contains the parts of an older download, if the current one is streamed directly
+      File[] parts = file.getAbsoluteFile().getParentFile().listFiles((pDir, pName) -> pName.startsWith(file.getName() + ".part"));
+      for (File part : parts == null ? new File[0] : parts)
+        //noinspection ResultOfMethodCallIgnored
+        part.delete();
+    }
+
+    /**
+     * @return true, if a chunk could not be downloaded
+     */
+    synchronized boolean isFailed()
+    {
+      return failure != null;
+    }
+
+    @Override
+    public void close()
+    {
+      closed = true;
+      synchronized (this)
+      {
+        notifyAll();
+      }
+
+      if (executor != null)
+      {
+        // the part files must not be written anymore, after the download was closed
+        executor.shutdownNow();
+        try
+        {
+          if (!executor.awaitTermination(_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+            _LOGGER.warning("Download of " + url + " did not stop in time");
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      if (direct != null)
+      {
+        try
+        {
+          _close(direct);
+        }
+        catch (IOException e)
+        {
+          _LOGGER.log(Level.FINE, "Failed to close the download of " + url, e);
+        }
+      }
+    }
+
+    /**
+     * Determines the size of the file, splits it into chunks and starts downloading them.
+     * If the download can not be resumed, the connection of the probe is kept and streamed directly instead.
+     */
+    private void _start() throws IOException
+    {
+      //noinspection ResultOfMethodCallIgnored
+      file.getAbsoluteFile().getParentFile().mkdirs();
+
+      boolean rangesSupported = false;
+      long length = -1;
+      String validator = "";
+      URLConnection probe = _open();
+      try
+      {
+        if (probe instanceof HttpURLConnection)
+        {
+          probe.setRequestProperty("Range", "bytes=0-0");
+          int code = ((HttpURLConnection) probe).getResponseCode();
+          if (code == HttpURLConnection.HTTP_PARTIAL)
+          {
+            Matcher matcher = _CONTENT_RANGE_PATTERN.matcher(String.valueOf(probe.getHeaderField("Content-Range")).trim());
+            if (matcher.matches())
+            {
+              rangesSupported = true;
+              length = Long.parseLong(matcher.group(1));
+            }
+          }
+          else if (code != HttpURLConnection.HTTP_OK)
+            throw new IOException("Failed to download " + url + ", server responded with " + code);
+        }
+
+        // other protocols (e.g. file) and servers without range support already answered with the whole content
+        if (!rangesSupported)
+          direct = probe;
+        validator = Objects.toString(probe.getHeaderField("ETag"), Objects.toString(probe.getHeaderField("Last-Modified"), ""));
+      }
+      finally
+      {
+        if (direct == null)
+          _close(probe);
+      }
+
+      if (direct != null)
+      {
+        // parts of an older download are useless, because they can not be resumed anymore
+        deleteParts();
+        return;
+      }
+
+      int count = (int) Math.max(1, Math.min(connections, length / _MIN_CHUNK_SIZE));
+      long chunkLength = (length + count - 1) / count;
+      for (int i = 0; i < count; i++)
+      {
+        long start = i * chunkLength;
+        chunks.add(new _Chunk(start, Math.min(length, start + chunkLength) - start, new File(file.getPath() + ".part" + i)));
+      }
+
+      // parts of an older download can only be resumed, if the file did not change in between
+      String meta = length + " " + count + " " + validator;
+      if (!metaFile.isFile() || !meta.equals(Files.readString(metaFile.toPath(), StandardCharsets.UTF_8)))
+      {
+        deleteParts();
+        Files.writeString(metaFile.toPath(), meta, StandardCharsets.UTF_8);
+      }
+
+      executor = Executors.newFixedThreadPool(count, new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("tNodeJSDownload-%d")
+          .build());
+      for (_Chunk chunk : chunks)
+        executor.execute(() -> _download(chunk));
+      executor.shutdown();
+    }
+
+    /**
+     * Downloads a single chunk, retries if the connection drops
+     *
+     * @param pChunk chunk to download
+     */
+    private void _download(@NonNull _Chunk pChunk)
+    {
+      for (int attempt = 1; !closed; attempt++)
+      {
+        try
+        {
+          _transfer(pChunk);
+          return;
+        }
+        catch (IOException e)
+        {
+          if (attempt >= _RETRIES)
+          {
+            _fail(e);
+            return;
+          }
+          _LOGGER.log(Level.FINE, "Resuming download of " + url + " after failure", e);
+        }
+      }
+    }
+
+    /**
+     * Transfers the missing part of a chunk into its part file
+     *
+     * @param pChunk chunk to download
+     */
+    private void _transfer(@NonNull _Chunk pChunk) throws IOException
+    {
+      long offset = pChunk.file.length();
+      if (offset > pChunk.length)
+      {
+        // does not belong to this chunk
+        Files.delete(pChunk.file.toPath());
+        offset = 0;
+      }
+      _progress(pChunk, offset, false);
+      if (offset >= pChunk.length)
+      {
+        _progress(pChunk, offset, true);
+        return;
+      }
+
+      URLConnection connection = _open();
+      try
+      {
+        connection.setRequestProperty("Range", "bytes=" + (pChunk.start + offset) + "-" + (pChunk.start + pChunk.length - 1));
+        int code = ((HttpURLConnection) connection).getResponseCode();
+        if (code != HttpURLConnection.HTTP_PARTIAL)
+          throw new IOException("Server did not respond with the requested range: " + code);
+
+        try (InputStream in = connection.getInputStream();
+             OutputStream out = new FileOutputStream(pChunk.file, offset > 0))
+        {
+          byte[] buffer = new byte[64 * 1024];
+          long written = offset;
+          while (!closed && written < pChunk.length)
+          {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, pChunk.length - written));
+            if (read < 0)
+              throw new EOFException("Connection closed after " + written + " of " + pChunk.length + " bytes");
+            out.write(buffer, 0, read);
+            written += read;
+            _progress(pChunk, written, false);
+          }
+          _progress(pChunk, written, !closed);
+        }
+      }
+      finally
+      {
+        _close(connection);
+      }
+    }
+
+    /**
+     * @return a new connection to the url of this download
+     */
+    @NonNull
+    private URLConnection _open() throws IOException
+    {
+      URLConnection connection = url.openConnection();
+      connection.setConnectTimeout(_TIMEOUT_MS);
+      connection.setReadTimeout(_TIMEOUT_MS);
+      return connection;
+    }
+
+    /**
+     * Releases a connection, that was opened with {@link #_open()}
+     *
+     * @param pConnection connection to release
+     */
+    private void _close(@NonNull URLConnection pConnection) throws IOException
+    {
+      if (pConnection instanceof HttpURLConnection)
+        ((HttpURLConnection) pConnection).disconnect();
+      else
+        // e.g. a file connection holds the opened file
+        pConnection.getInputStream().close();
+    }
+
+    /**
+     * Updates the progress of a chunk and wakes up the reader
+     */
+    private synchronized void _progress(@NonNull _Chunk pChunk, long pWritten, boolean pComplete)
+    {
+      pChunk.written = pWritten;
+      pChunk.complete = pComplete;
+      notifyAll();
+    }
+
+    /**
+     * Remembers the failure of a chunk and wakes up the reader
+     */
+    private synchronized void _fail(@NonNull IOException pFailure)
+    {
+      if (failure == null)
+        failure = pFailure;
+      notifyAll();
+    }
+
+    /**
+     * Waits until data after the given position of a chunk is available
+     *
+     * @param pChunk    chunk
+     * @param pPosition position within the chunk
+     * @return the number of available bytes, 0 if the chunk is complete and everything was read
+     */
+    private synchronized long _await(@NonNull _Chunk pChunk, long pPosition) throws IOException
+    {
+      while (pChunk.written <= pPosition && !pChunk.complete)
+      {
+        if (failure != null)
+          throw new IOException("Failed to download " + url, failure);
+        if (closed)
+          throw new IOException("Download of " + url + " was closed");
+        try
+        {
+          wait();
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+
+      return pChunk.written - pPosition;
+    }
+
+    /**
+     * Returns the content of all chunks in order
+     */
+    private final class _OrderedInputStream extends InputStream
+    {
+      private int index = 0;
+      private long position = 0;
+      private InputStream current;
+
+      @Override
+      public int read() throws IOException
+      {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read < 0 ? -1 : single[0] & 0xFF;
+      }
+
+      @Override
+      public int read(@NonNull byte[] pBuffer, int pOffset, int pLength) throws IOException
+      {
+        if (pLength == 0)
+          return 0;
+
+        while (index < chunks.size())
+        {
+          _Chunk chunk = chunks.get(index);
+          long available = _await(chunk, position);
+          if (available <= 0)
+          {
+            _closeCurrent();
+            index++;
+            position = 0;
+            continue;
+          }
+
+          if (current == null)
+            current = new BufferedInputStream(new FileInputStream(chunk.file));
+          int read = current.read(pBuffer, pOffset, (int) Math.min(pLength, available));
+          if (read < 0)
+            throw new EOFException("Part file " + chunk.file + " is shorter than expected");
+          position += read;
+          return read;
+        }
+
+        return -1;
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+        _closeCurrent();
+      }
+
+      private void _closeCurrent() throws IOException
+      {
+        if (current != null)
+          current.close();
+        current = null;
+      }
+    }
+  }
+
+  /**
+   * A range of the downloaded file
+   */
+  private static class _Chunk
+  {
+    private final long start;
+    private final long length;
+    private final File file;
+    private long written;
+    private boolean complete;
+
+    public _Chunk(long pStart, long pLength, @NonNull File pFile)
+    {
+      start = pStart;
+      length = pLength;
+      file = pFile;
+    }
+  }
+
+}
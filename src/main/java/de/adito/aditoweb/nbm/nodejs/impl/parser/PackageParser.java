@@ -1,6 +1,6 @@
 package de.adito.aditoweb.nbm.nodejs.impl.parser;
 
-import com.google.gson.Gson;
+import com.google.gson.*;
 import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.INodeJSExecBase;
 import lombok.*;
 
@@ -73,11 +73,24 @@ public class PackageParser
    */
   @NonNull
   public static Map<String, INodeJSExecBase> parseBinaries(@NonNull String pJsonData)
+  {
+    return parseBinaries(new StringReader(pJsonData));
+  }
+
+  /**
+   * Parses the output of "npm list -j -l" and returns the binaries,
+   * so that we don't have to use the ".cmd" wrapper.
+   *
+   * @param pJsonReader reader of the output of "npm list -j -l"
+   * @return a map of binaries and their INodeJSExecBase, pointing to the resolved javascript file
+   */
+  @NonNull
+  public static Map<String, INodeJSExecBase> parseBinaries(@NonNull Reader pJsonReader)
   {
     try
     {
-      NpmListType root = new Gson().fromJson(pJsonData, NpmListType.class);
-      if (root.dependencies != null)
+      NpmListType root = new Gson().fromJson(pJsonReader, NpmListType.class);
+      if (root != null && root.dependencies != null)
       {
         Map<String, INodeJSExecBase> res = new HashMap<>();
         for (Map.Entry<String, NpmListType> dep : root.dependencies.entrySet())
@@ -99,6 +112,84 @@ public class PackageParser
     return Map.of();
   }
 
+  /**
+   * Parses the output of "npm outdated --json"
+   *
+   * @param pJsonReader reader of the output of "npm outdated --json"
+   * @return a map of the outdated packages by their name
+   */
+  @NonNull
+  public static Map<String, OutdatedPackage> parseOutdated(@NonNull Reader pJsonReader)
+  {
+    try
+    {
+      JsonElement root = JsonParser.parseReader(pJsonReader);
+      if (root != null && root.isJsonObject())
+      {
+        Map<String, OutdatedPackage> res = new HashMap<>();
+        for (Map.Entry<String, JsonElement> entry : root.getAsJsonObject().entrySet())
+        {
+          JsonElement value = entry.getValue();
+          // packages, that are installed at multiple locations, are reported once per location
+          if (value.isJsonArray() && value.getAsJsonArray().size() > 0)
+            value = value.getAsJsonArray().get(0);
+          if (!value.isJsonObject())
+            continue;
+
+          NpmOutdatedType outdated = new Gson().fromJson(value, NpmOutdatedType.class);
+          res.put(entry.getKey(), new OutdatedPackage(entry.getKey(), outdated.current, outdated.wanted, outdated.latest));
+        }
+        return res;
+      }
+    }
+    catch (Exception pE)
+    {
+      // just return empty map, but log the exception
+      logger.log(Level.WARNING, pE.getMessage(), pE);
+    }
+
+    return Map.of();
+  }
+
+  /**
+   * Extracts the name of a package from its specification
+   *
+   * @param pSpec package specification, e.g. "typescript", "typescript@4.5.2" or "@scope/name@1.x"
+   * @return the name of the package
+   */
+  @NonNull
+  public static String getPackageName(@NonNull String pSpec)
+  {
+    // the first character may be the @ of a scope
+    int separator = pSpec.indexOf('@', 1);
+    return separator < 0 ? pSpec : pSpec.substring(0, separator);
+  }
+
+  /**
+   * A package, that is reported by "npm outdated"
+   */
+  @Value
+  public static class OutdatedPackage
+  {
+    @NonNull
+    String name;
+
+    /**
+     * installed version, null if the package is not installed
+     */
+    String current;
+
+    /**
+     * version, that would be installed by "npm update"
+     */
+    String wanted;
+
+    /**
+     * latest version in the registry
+     */
+    String latest;
+  }
+
   /**
    * gson type of package.json
    */
@@ -116,4 +207,14 @@ public class PackageParser
     public Map<String, String> bin;
   }
 
+  /**
+   * gson type of a single package in the result of {@code npm outdated --json}
+   */
+  private static class NpmOutdatedType
+  {
+    public String current;
+    public String wanted;
+    public String latest;
+  }
+
 }
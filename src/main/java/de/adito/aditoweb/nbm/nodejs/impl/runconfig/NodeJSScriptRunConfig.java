@@ -1,8 +1,10 @@
 package de.adito.aditoweb.nbm.nodejs.impl.runconfig;
 
+import com.google.common.annotations.VisibleForTesting;
 import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.*;
-import de.adito.aditoweb.nbm.nodejs.impl.NodeJSScriptExitHook;
+import de.adito.aditoweb.nbm.nodejs.impl.*;
 import de.adito.aditoweb.nbm.nodejs.impl.actions.io.*;
+import de.adito.aditoweb.nbm.nodejs.impl.util.*;
 import de.adito.nbm.runconfig.api.*;
 import de.adito.nbm.runconfig.spi.IActiveConfigComponentProvider;
 import de.adito.notification.INotificationFacade;
@@ -10,18 +12,18 @@ import de.adito.observables.netbeans.*;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.subjects.*;
 import lombok.NonNull;
-import org.apache.commons.io.output.WriterOutputStream;
 import org.netbeans.api.progress.ProgressHandle;
 import org.netbeans.api.project.*;
 import org.netbeans.core.output2.adito.InputOutputExt;
 import org.openide.*;
+import org.openide.filesystems.FileUtil;
+import org.openide.modules.Places;
 import org.openide.util.NbBundle;
 import org.openide.windows.*;
 
 import javax.swing.*;
 import java.beans.PropertyChangeListener;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -34,6 +36,8 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 class NodeJSScriptRunConfig implements IRunConfig
 {
+  private static final String _FILE_OUTPUT_PREFIX = "fileOutput.";
+
   private final Project project;
   private final INodeJSEnvironment environment;
   private final String scriptName;
@@ -83,7 +87,8 @@ class NodeJSScriptRunConfig implements IRunConfig
       AtomicReference<InputOutput> ioRef = new AtomicReference<>();
       StartAction start = new StartAction(futureObservable, () -> run(ioRef.get(), executor, futureObservable));
       StopAction stop = new StopAction(futureObservable);
-      ioRef.set(_createIO(start, stop));
+      FileOutputAction fileOutput = new FileOutputAction(this::_isFileOutput, this::_setFileOutput);
+      ioRef.set(_createIO(start, stop, fileOutput));
 
       // execute nonblocking, so that other runconfigs can be run in parallel
       run(ioRef.get(), executor, futureObservable);
@@ -109,13 +114,18 @@ class NodeJSScriptRunConfig implements IRunConfig
       INotificationFacade.INSTANCE.error(pE);
     }
 
-    OutputStream out = new WriterOutputStream(pIo.getOut(), StandardCharsets.UTF_8); //NOSONAR will be closed in future
-    OutputStream err = new WriterOutputStream(pIo.getErr(), StandardCharsets.UTF_8); //NOSONAR will be closed in future
-
     try
     {
       String npmScript = Paths.get(environment.getPath().getParent(), "node_modules", "npm", "bin", "npm-cli.js").toString();
-      CompletableFuture<Integer> future = pExecutor.executeAsync(environment, INodeJSExecBase.node(), out, err, null, npmScript, "run", scriptName);
+      CompletableFuture<Integer> future;
+      if (_isFileOutput() && pExecutor instanceof NodeJSExecutorImpl)
+        future = _executeToFile(pIo, (NodeJSExecutorImpl) pExecutor, npmScript, "run", scriptName);
+      else
+      {
+        OutputStream out = new BatchedOutputSink(pIo.getOut()); //NOSONAR will be closed in future
+        OutputStream err = new BatchedOutputSink(pIo.getErr()); //NOSONAR will be closed in future
+        future = pExecutor.executeAsync(environment, INodeJSExecBase.node(), out, err, null, npmScript, "run", scriptName);
+      }
       pSubject.onNext(Optional.of(future));
 
       PropertyChangeListener ioListener = evt -> {
@@ -153,6 +163,69 @@ class NodeJSScriptRunConfig implements IRunConfig
   }
 
 
+  /**
+   * Executes the script and lets the operating system write its output into a file.
+   * The file is shown in the output window, but only the latest part, if there is too much output.
+   *
+   * @param pIo       IO to show the output in
+   * @param pExecutor executor
+   * @param pParams   parameters for node
+   * @return the future of the execution
+   */
+  @NonNull
+  private CompletableFuture<Integer> _executeToFile(@NonNull InputOutput pIo, @NonNull NodeJSExecutorImpl pExecutor, @NonNull String... pParams)
+      throws IOException
+  {
+    String projectName = FileUtil.toFile(project.getProjectDirectory()).getName();
+    File outputFile = new File(Places.getUserDirectory(), "var/log/nodejs/scripts/" + (projectName + "_" + scriptName).replaceAll("[^\\w.-]", "_") + ".log");
+    return executeToFile(pExecutor, environment, outputFile, pIo.getOut(), pParams);
+  }
+
+  /**
+   * Executes node with its output written into the given file and tails the file into the given writer.
+   * The exit code and the path of the file are printed, after the whole file was shown.
+   *
+   * @param pExecutor   executor
+   * @param pEnv        environment to execute node with
+   * @param pOutputFile file, that should contain the output
+   * @param pOut        writer to show the output in
+   * @param pParams     parameters for node
+   * @return the future of the execution
+   */
+  @VisibleForTesting
+  @NonNull
+  static CompletableFuture<Integer> executeToFile(@NonNull NodeJSExecutorImpl pExecutor, @NonNull INodeJSEnvironment pEnv, @NonNull File pOutputFile,
+                                                  @NonNull PrintWriter pOut, @NonNull String... pParams) throws IOException
+  {
+    CompletableFuture<Integer> future = pExecutor.executeToFile(pEnv, INodeJSExecBase.node(), pOutputFile, pParams);
+    OutputFileTailer tailer = new OutputFileTailer(pOutputFile, pOut).start();
+    future.whenComplete((pExit, pEx) -> tailer.stop().whenComplete((pResult, pTailerEx) -> {
+      String message = "\nProcess finished";
+      if (pExit != null)
+        message = message + " with exit code " + pExit;
+      pOut.println(message);
+      pOut.println("The complete output is available in " + pOutputFile.getAbsolutePath());
+      pOut.flush();
+    }));
+    return future;
+  }
+
+  /**
+   * @return true, if the output of this script should be written to a file directly
+   */
+  private boolean _isFileOutput()
+  {
+    return ProjectUtils.getPreferences(project, NodeJSScriptRunConfig.class, false).getBoolean(_FILE_OUTPUT_PREFIX + scriptName, false);
+  }
+
+  /**
+   * @param pFileOutput true, if the output of this script should be written to a file directly
+   */
+  private void _setFileOutput(boolean pFileOutput)
+  {
+    ProjectUtils.getPreferences(project, NodeJSScriptRunConfig.class, false).putBoolean(_FILE_OUTPUT_PREFIX + scriptName, pFileOutput);
+  }
+
   /**
    * @return a new IO instance to write to
    */
@@ -0,0 +1,334 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.NonNull;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+/**
+ * OutputStream, that writes the received bytes as text into a writer (e.g. the output window) in batches.
+ * Written chunks are collected in a lock-free queue and written on a single, process-wide thread,
+ * either after a short delay or as soon as enough bytes were collected. This way the writer does not have to handle every small chunk separately.
+ * <p>
+ * Lines, that are redrawn via carriage return (e.g. progress bars of npm), are collapsed to their latest state within a batch.
+ * The unfinished last line of a batch is shown in its latest state and replaced via carriage return in the next batch,
+ * so a progress bar is updated once per batch instead of once per redraw.
+ * <p>
+ * If the writer falls behind, the number of collected bytes is bounded: {@link #write(byte[], int, int)} blocks,
+ * until the collected chunks were written. So the producer (e.g. the thread, that reads the output of a process) is slowed down,
+ * instead of buffering the output without limit.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class BatchedOutputSink extends OutputStream
+{
+
+  private static final Logger _LOGGER = Logger.getLogger(BatchedOutputSink.class.getName());
+  private static final long _INTERVAL_MS = 100;
+  private static final int _MAX_BATCH_SIZE = 64 * 1024;
+  private static final int _MAX_PENDING_BATCHES = 16;
+  private static final ScheduledExecutorService _SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                                                                                                             .setDaemon(true)
+                                                                                                             .setNameFormat("tNodeJSOutputSink-%d")
+                                                                                                             .build());
+
+  private final Writer writer;
+  private final long interval;
+  private final int maxBatchSize;
+  private final long maxPendingBytes;
+  private final Queue<byte[]> chunks = new ConcurrentLinkedQueue<>();
+  private final AtomicLong pendingBytes = new AtomicLong(0);
+  private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+  private final AtomicLong droppedLines = new AtomicLong(0);
+  private final AtomicLong writtenBatches = new AtomicLong(0);
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private byte[] incompleteCharacter = new byte[0];
+  private String redrawnLine = "";
+  private String shownLine = "";
+
+  /**
+   * @param pWriter writer to print the text to, it gets closed together with this stream
+   */
+  public BatchedOutputSink(@NonNull Writer pWriter)
+  {
+    this(pWriter, _INTERVAL_MS, _MAX_BATCH_SIZE);
+  }
+
+  @VisibleForTesting
+  BatchedOutputSink(@NonNull Writer pWriter, long pInterval, int pMaxBatchSize)
+  {
+    this(pWriter, pInterval, pMaxBatchSize, (long) _MAX_PENDING_BATCHES * pMaxBatchSize);
+  }
+
+  @VisibleForTesting
+  BatchedOutputSink(@NonNull Writer pWriter, long pInterval, int pMaxBatchSize, long pMaxPendingBytes)
+  {
+    writer = pWriter;
+    interval = pInterval;
+    maxBatchSize = Math.max(1, pMaxBatchSize);
+    maxPendingBytes = Math.max(maxBatchSize, pMaxPendingBytes);
+  }
+
+  @Override
+  public void write(int b) throws IOException
+  {
+    write(new byte[]{(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte @NonNull [] b, int off, int len) throws IOException
+  {
+    if (closed.get())
+      throw new IOException("Stream closed");
+    if (len == 0)
+      return;
+
+    // the writer fell behind, so the caller has to wait
+    if (pendingBytes.get() >= maxPendingBytes)
+      _awaitCapacity();
+
+    byte[] chunk = new byte[len];
+    System.arraycopy(b, off, chunk, 0, len);
+    chunks.offer(chunk);
+
+    // write immediately, if the batch is full - otherwise wait a moment for further chunks
+    if (pendingBytes.addAndGet(len) >= maxBatchSize)
+      _SCHEDULER.execute(() -> _drain(false));
+    else if (drainScheduled.compareAndSet(false, true))
+      _SCHEDULER.schedule(() -> _drain(false), interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Waits, until the collected chunks fell below the maximum or this stream was closed
+   */
+  private synchronized void _awaitCapacity() throws InterruptedIOException
+  {
+    // the drain may be waiting for further chunks, but it is needed right now
+    _SCHEDULER.execute(() -> _drain(false));
+    while (pendingBytes.get() >= maxPendingBytes && !closed.get())
+    {
+      try
+      {
+        wait();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+  }
+
+  /**
+   * Requests to write the collected chunks soon. This method does not block, so it can be called periodically.
+   */
+  @Override
+  public void flush()
+  {
+    if (!chunks.isEmpty() && !closed.get())
+      _SCHEDULER.execute(() -> _drain(false));
+  }
+
+  /**
+   * Writes all collected chunks, including a line that is still redrawn, and closes the writer
+   */
+  @Override
+  public void close() throws IOException
+  {
+    if (!closed.compareAndSet(false, true))
+      return;
+
+    try
+    {
+      // executed on the calling thread, the lock keeps the order of the output
+      _drain(true);
+    }
+    finally
+    {
+      writer.close();
+      _LOGGER.log(Level.FINE, "Output sink closed after {0} batches, {1} redrawn lines were dropped",
+                  new Object[]{writtenBatches.get(), droppedLines.get()});
+    }
+  }
+
+  /**
+   * @return the number of lines, that were dropped because they were redrawn via carriage return
+   */
+  public long getDroppedLines()
+  {
+    return droppedLines.get();
+  }
+
+  /**
+   * @return the number of batches, that were written to the writer
+   */
+  public long getWrittenBatches()
+  {
+    return writtenBatches.get();
+  }
+
+  /**
+   * Writes the collected chunks as one batch
+   *
+   * @param pEndOfInput true, if nothing will be written anymore
+   */
+  private synchronized void _drain(boolean pEndOfInput)
+  {
+    drainScheduled.set(false);
+
+    StringBuilder text = new StringBuilder(redrawnLine);
+    int batchSize = 0;
+    byte[] chunk;
+    // the last batch has to contain everything, because an incomplete character is decoded at the end of the input
+    while ((pEndOfInput || batchSize < maxBatchSize) && (chunk = chunks.poll()) != null)
+    {
+      batchSize += chunk.length;
+      text.append(_decode(chunk, false));
+    }
+    pendingBytes.addAndGet(-batchSize);
+    notifyAll();
+
+    // the batch was full, so continue with the rest afterwards
+    if (!pEndOfInput && !chunks.isEmpty())
+      _SCHEDULER.execute(() -> _drain(false));
+
+    if (pEndOfInput)
+      text.append(_decode(new byte[0], true));
+
+    String collapsed = _collapse(text, pEndOfInput);
+    if (collapsed.isEmpty())
+      return;
+
+    try
+    {
+      writer.write(collapsed);
+      writer.flush();
+      writtenBatches.incrementAndGet();
+    }
+    catch (IOException e)
+    {
+      _LOGGER.log(Level.WARNING, "Failed to write output", e);
+    }
+  }
+
+  /**
+   * Decodes the given chunk. Bytes of an incomplete character at the end are kept for the next chunk.
+   *
+   * @param pChunk      bytes to decode
+   * @param pEndOfInput true, if incomplete characters should be decoded too
+   * @return the decoded text
+   */
+  @NonNull
+  private CharSequence _decode(byte @NonNull [] pChunk, boolean pEndOfInput)
+  {
+    ByteBuffer in;
+    if (incompleteCharacter.length == 0)
+      in = ByteBuffer.wrap(pChunk);
+    else
+    {
+      in = ByteBuffer.allocate(incompleteCharacter.length + pChunk.length);
+      in.put(incompleteCharacter).put(pChunk).flip();
+    }
+
+    // utf-8 never decodes to more chars than bytes
+    CharBuffer out = CharBuffer.allocate(in.remaining() + 2);
+    decoder.decode(in, out, pEndOfInput);
+    if (pEndOfInput)
+    {
+      decoder.flush(out);
+      decoder.reset();
+    }
+
+    incompleteCharacter = new byte[in.remaining()];
+    in.get(incompleteCharacter);
+    out.flip();
+    return out;
+  }
+
+  /**
+   * Collapses all lines, that were redrawn via carriage return, to their latest state
+   *
+   * @param pText       text to collapse, starts with the unfinished line of the last batch
+   * @param pEndOfInput true, if nothing will be written anymore
+   * @return the text that should be written
+   */
+  @NonNull
+  private String _collapse(@NonNull CharSequence pText, boolean pEndOfInput)
+  {
+    String text = pText.toString();
+    StringBuilder result = new StringBuilder(text.length() + 1);
+    int start = 0;
+    int lineBreak;
+    while ((lineBreak = text.indexOf('\n', start)) >= 0)
+    {
+      result.append(_replaceShownLine(_collapseLine(text.substring(start, lineBreak)))).append('\n');
+      shownLine = "";
+      start = lineBreak + 1;
+    }
+
+    // the last line may be continued or redrawn in the next batch, so only its latest state is kept
+    String rest = text.substring(start);
+    String state = _collapseLine(rest);
+    result.append(_replaceShownLine(state));
+    if (pEndOfInput)
+    {
+      shownLine = "";
+      redrawnLine = "";
+    }
+    else
+    {
+      shownLine = state;
+      redrawnLine = rest.endsWith("\r") ? state + "\r" : state;
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Determines the text, that changes the currently shown unfinished line into the given state
+   *
+   * @param pState latest state of the line
+   * @return the missing part of the line, if the shown line is a prefix of the state - otherwise a carriage return and the whole state
+   */
+  @NonNull
+  private String _replaceShownLine(@NonNull String pState)
+  {
+    if (pState.startsWith(shownLine))
+      return pState.substring(shownLine.length());
+    return "\r" + pState;
+  }
+
+  /**
+   * Collapses a single line to the text after its last carriage return
+   *
+   * @param pLine line without the line break
+   * @return the latest state of the line
+   */
+  @NonNull
+  private String _collapseLine(@NonNull String pLine)
+  {
+    // trailing carriage returns (e.g. of a windows line break) do not remove anything
+    int end = pLine.length();
+    while (end > 0 && pLine.charAt(end - 1) == '\r')
+      end--;
+
+    int lastReturn = pLine.lastIndexOf('\r', end - 1);
+    if (lastReturn < 0)
+      return pLine.substring(0, end);
+
+    long redraws = pLine.substring(0, lastReturn + 1).chars().filter(pChar -> pChar == '\r').count();
+    droppedLines.addAndGet(redraws);
+    return pLine.substring(lastReturn + 1, end);
+  }
+
+}
@@ -0,0 +1,285 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import lombok.NonNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Captures the output of a process. The first bytes are kept in memory,
+ * everything beyond the memory limit is spilled to a temporary file.
+ * The captured output gets decoded lazily, if it is read via {@link #openReader()}.
+ * <p>
+ * The instance has to be closed, to delete the temporary file.
+ * Output that is written after the instance was closed, is discarded.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class CapturedOutput implements Closeable
+{
+
+  /**
+   * Maximum number of bytes, that should be kept in memory
+   */
+  static final String MEMORY_LIMIT_PROPERTY = "adito.nodejs.capture.memoryLimit";
+
+  private static final int _DEFAULT_MEMORY_LIMIT = 4 * 1024 * 1024;
+
+  private final int memoryLimit;
+  private final OutputStream outputStream = new _CaptureOutputStream();
+  private final List<Closeable> openedResources = new ArrayList<>();
+  private byte[] memory = new byte[256];
+  private int memorySize = 0;
+  private long size = 0;
+  private Path spillFile;
+  private FileChannel spillChannel;
+  private boolean closed = false;
+
+  // state to determine, if the trimmed output contains more than one line
+  private boolean contentStarted = false;
+  private boolean lineBreakAfterContent = false;
+  private boolean multipleLines = false;
+
+  /**
+   * Creates a new capture, with the memory limit that is configured via the system property {@link #MEMORY_LIMIT_PROPERTY}
+   */
+  public CapturedOutput()
+  {
+    this(Integer.getInteger(MEMORY_LIMIT_PROPERTY, _DEFAULT_MEMORY_LIMIT));
+  }
+
+  @VisibleForTesting
+  CapturedOutput(int pMemoryLimit)
+  {
+    memoryLimit = Math.max(0, pMemoryLimit);
+  }
+
+  /**
+   * Creates a capture, that contains the given string
+   *
+   * @param pValue content of the capture
+   * @return the capture
+   */
+  @NonNull
+  public static CapturedOutput of(@NonNull String pValue)
+  {
+    CapturedOutput output = new CapturedOutput();
+    try
+    {
+      output.getOutputStream().write(pValue.getBytes(StandardCharsets.UTF_8));
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException(e);
+    }
+    return output;
+  }
+
+  /**
+   * @return the stream, that writes into this capture. Closing the stream does not release the captured content.
+   */
+  @NonNull
+  public OutputStream getOutputStream()
+  {
+    return outputStream;
+  }
+
+  /**
+   * @return the number of captured bytes
+   */
+  public synchronized long size()
+  {
+    return size;
+  }
+
+  /**
+   * @return true, if the captured output exceeded the memory limit and was written to a temporary file
+   */
+  public synchronized boolean isSpilled()
+  {
+    return spillFile != null;
+  }
+
+  /**
+   * @return true, if the captured output, without leading and trailing whitespaces, contains more than one line
+   */
+  public synchronized boolean hasMultipleLines()
+  {
+    return multipleLines;
+  }
+
+  /**
+   * Opens a stream, that reads the captured bytes from the beginning.
+   * This should only be called, after the writing process has finished.
+   *
+   * @return the stream
+   */
+  @NonNull
+  public synchronized InputStream openInputStream() throws IOException
+  {
+    if (closed)
+      throw new IOException("Captured output was already closed");
+
+    InputStream memoryStream = new ByteArrayInputStream(memory, 0, memorySize);
+    if (spillChannel == null)
+      return memoryStream;
+
+    spillChannel.force(false);
+    FileChannel readChannel = FileChannel.open(spillFile, StandardOpenOption.READ);
+    openedResources.add(readChannel);
+    InputStream spillStream = Channels.newInputStream(readChannel);
+    return new SequenceInputStream(memoryStream, new BufferedInputStream(spillStream));
+  }
+
+  /**
+   * Opens a reader, that decodes the captured bytes as UTF-8 while reading
+   *
+   * @return the reader
+   */
+  @NonNull
+  public Reader openReader() throws IOException
+  {
+    return new BufferedReader(new InputStreamReader(openInputStream(), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes the whole captured output. This should only be used, if the caller really needs the whole output as string.
+   *
+   * @return the output as string
+   */
+  @Override
+  public String toString()
+  {
+    try (Reader reader = openReader())
+    {
+      StringWriter writer = new StringWriter();
+      reader.transferTo(writer);
+      return writer.toString();
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException
+  {
+    if (closed)
+      return;
+
+    closed = true;
+    memory = new byte[0];
+    memorySize = 0;
+
+    IOException exception = null;
+    for (Closeable resource : openedResources)
+    {
+      try
+      {
+        resource.close();
+      }
+      catch (IOException e)
+      {
+        exception = e;
+      }
+    }
+    openedResources.clear();
+
+    if (spillChannel != null)
+    {
+      spillChannel.close();
+      Files.deleteIfExists(spillFile);
+    }
+
+    if (exception != null)
+      throw exception;
+  }
+
+  /**
+   * Appends the given bytes to the capture
+   *
+   * @param pBytes  bytes to write
+   * @param pOffset offset in pBytes
+   * @param pLength number of bytes to write
+   */
+  private synchronized void _write(byte @NonNull [] pBytes, int pOffset, int pLength) throws IOException
+  {
+    if (closed || pLength == 0)
+      return;
+
+    _updateLineState(pBytes, pOffset, pLength);
+
+    // fill the memory first
+    int toMemory = (int) Math.min(pLength, Math.max(0, memoryLimit - memorySize));
+    if (toMemory > 0)
+    {
+      if (memorySize + toMemory > memory.length)
+        memory = Arrays.copyOf(memory, (int) Math.min(memoryLimit, Math.max((long) memory.length * 2, memorySize + toMemory)));
+      System.arraycopy(pBytes, pOffset, memory, memorySize, toMemory);
+      memorySize += toMemory;
+    }
+
+    // spill the rest
+    if (toMemory < pLength)
+    {
+      if (spillChannel == null)
+      {
+        spillFile = Files.createTempFile("nodejs_output", ".log");
+        spillChannel = FileChannel.open(spillFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      }
+
+      ByteBuffer buffer = ByteBuffer.wrap(pBytes, pOffset + toMemory, pLength - toMemory);
+      while (buffer.hasRemaining())
+        spillChannel.write(buffer);
+    }
+
+    size += pLength;
+  }
+
+  /**
+   * Updates the state to determine, if the trimmed output contains more than one line
+   *
+   * @param pBytes  bytes that were written
+   * @param pOffset offset in pBytes
+   * @param pLength number of bytes that were written
+   */
+  private void _updateLineState(byte @NonNull [] pBytes, int pOffset, int pLength)
+  {
+    for (int i = pOffset; i < pOffset + pLength && !multipleLines; i++)
+    {
+      int b = pBytes[i] & 0xFF;
+      if (b == '\n' && contentStarted)
+        lineBreakAfterContent = true;
+      else if (b > ' ')
+      {
+        multipleLines = lineBreakAfterContent;
+        contentStarted = true;
+      }
+    }
+  }
+
+  /**
+   * OutputStream that writes into this capture
+   */
+  private class _CaptureOutputStream extends OutputStream
+  {
+    @Override
+    public void write(int b) throws IOException
+    {
+      _write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte @NonNull [] b, int off, int len) throws IOException
+    {
+      _write(b, off, len);
+    }
+  }
+
+}
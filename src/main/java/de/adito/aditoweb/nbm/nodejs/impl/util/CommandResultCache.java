@@ -0,0 +1,269 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+import org.openide.modules.Places;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.*;
+
+/**
+ * Caches the output of commands, that always return the same result for an unchanged installation (e.g. "node --version" or "npm list").
+ * Each result is stored with a key, that contains the command and a fingerprint of all files the result depends on.
+ * If one of these files changes, the key changes too - so the old result is not used anymore and gets evicted eventually.
+ * <p>
+ * The results are persisted in the userdir, so they are available after a restart of the IDE.
+ * Each result is stored in its own file and streamed from and to a {@link CapturedOutput}, so large results are never held in memory as a whole.
+ * Results expire after their time to live, the least recently used results are evicted if there are too many.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class CommandResultCache
+{
+
+  /**
+   * Maximum number of cached results
+   */
+  static final String MAX_ENTRIES_PROPERTY = "adito.nodejs.cache.maxEntries";
+
+  /**
+   * Time to live for results, that only depend on the given files
+   */
+  public static final long DEFAULT_TTL = TimeUnit.DAYS.toMillis(7);
+
+  private static final Logger _LOGGER = Logger.getLogger(CommandResultCache.class.getName());
+  private static final String _TEMP_SUFFIX = ".tmp";
+  private static CommandResultCache _INSTANCE;
+
+  private final File directory;
+  private final int maxEntries;
+
+  /**
+   * @return the shared instance, that is persisted in the cache directory of the userdir
+   */
+  @NonNull
+  public static synchronized CommandResultCache getInstance()
+  {
+    if (_INSTANCE == null)
+    {
+      _INSTANCE = new CommandResultCache(new File(Places.getUserDirectory(), "var/cache/nodejs/command-results"),
+                                         Integer.getInteger(MAX_ENTRIES_PROPERTY, 256));
+    }
+    return _INSTANCE;
+  }
+
+  @VisibleForTesting
+  CommandResultCache(@NonNull File pDirectory, int pMaxEntries)
+  {
+    directory = pDirectory;
+    maxEntries = Math.max(1, pMaxEntries);
+  }
+
+  /**
+   * Creates the key for a command result
+   *
+   * @param pCommand          the command, including the executable and all other values the result depends on
+   * @param pFingerprintFiles files and folders, whose changes should invalidate the result. Folders include their direct children.
+   * @return the key
+   */
+  @NonNull
+  public static String key(@NonNull List<String> pCommand, @NonNull List<File> pFingerprintFiles)
+  {
+    StringBuilder content = new StringBuilder();
+    pCommand.forEach(pPart -> content.append(pPart).append('\0'));
+    for (File file : pFingerprintFiles)
+    {
+      _appendFingerprint(content, file);
+      File[] children = file.listFiles();
+      if (children != null)
+      {
+        Arrays.sort(children);
+        for (File child : children)
+          _appendFingerprint(content, child);
+      }
+    }
+
+    try
+    {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+      StringBuilder key = new StringBuilder();
+      for (byte b : hash)
+        key.append(String.format("%02x", b));
+      return key.toString();
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      // every java runtime has to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the cached result for the given key
+   *
+   * @param pKey key, created via {@link #key(List, List)}
+   * @return a copy of the result that has to be closed, or null if there is no valid result
+   */
+  @Nullable
+  public synchronized CapturedOutput get(@NonNull String pKey)
+  {
+    File entry = _getEntryFile(pKey);
+    if (!entry.isFile())
+      return null;
+
+    CapturedOutput output = new CapturedOutput();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry))))
+    {
+      long now = System.currentTimeMillis();
+      if (in.readLong() < now)
+      {
+        in.close();
+        _closeQuietly(output);
+        Files.deleteIfExists(entry.toPath());
+        return null;
+      }
+
+      in.transferTo(output.getOutputStream());
+
+      // the modification time is the time of the last access, it is used to evict the least recently used results
+      //noinspection ResultOfMethodCallIgnored
+      entry.setLastModified(now);
+      return output;
+    }
+    catch (IOException e)
+    {
+      // a broken entry is just a missing entry
+      _LOGGER.log(Level.FINE, "Failed to read command result " + entry, e);
+      _closeQuietly(output);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the result for the given key
+   *
+   * @param pKey    key, created via {@link #key(List, List)}
+   * @param pOutput result of the command, it is copied and stays open
+   * @param pTtl    time in milliseconds, how long the result is valid
+   */
+  public synchronized void put(@NonNull String pKey, @NonNull CapturedOutput pOutput, long pTtl)
+  {
+    Path temp = null;
+    try
+    {
+      Files.createDirectories(directory.toPath());
+
+      // write into a temporary file first, so that an entry is never read while it is written
+      temp = Files.createTempFile(directory.toPath(), pKey, _TEMP_SUFFIX);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+           InputStream in = pOutput.openInputStream())
+      {
+        out.writeLong(System.currentTimeMillis() + pTtl);
+        in.transferTo(out);
+      }
+      Files.move(temp, _getEntryFile(pKey).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e)
+    {
+      _LOGGER.log(Level.FINE, "Failed to write command result " + pKey, e);
+      if (temp != null)
+        //noinspection ResultOfMethodCallIgnored
+        temp.toFile().delete();
+    }
+
+    _evict();
+  }
+
+  /**
+   * Removes all cached results
+   */
+  public synchronized void clear()
+  {
+    for (File entry : _listEntries())
+      //noinspection ResultOfMethodCallIgnored
+      entry.delete();
+  }
+
+  /**
+   * @return the number of cached results
+   */
+  @VisibleForTesting
+  synchronized int size()
+  {
+    return _listEntries().size();
+  }
+
+  /**
+   * Removes the least recently used entries, if there are too many.
+   * Expired entries are removed as soon as they are requested.
+   */
+  private void _evict()
+  {
+    List<File> entries = _listEntries();
+    if (entries.size() <= maxEntries)
+      return;
+
+    entries.sort(Comparator.comparingLong(File::lastModified));
+    for (int i = 0; i < entries.size() - maxEntries; i++)
+      //noinspection ResultOfMethodCallIgnored
+      entries.get(i).delete();
+  }
+
+  /**
+   * @return the files of all entries, without temporary files
+   */
+  @NonNull
+  private List<File> _listEntries()
+  {
+    File[] files = directory.listFiles(pFile -> pFile.isFile() && !pFile.getName().endsWith(_TEMP_SUFFIX));
+    return files == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(files));
+  }
+
+  /**
+   * @param pKey key of the entry
+   * @return the file, that contains the expiration time and the output of the entry
+   */
+  @NonNull
+  private File _getEntryFile(@NonNull String pKey)
+  {
+    // keys are hex encoded hashes, so they are valid file names
+    return new File(directory, pKey);
+  }
+
+  /**
+   * Closes the given output and ignores failures
+   *
+   * @param pOutput output to close
+   */
+  private static void _closeQuietly(@NonNull CapturedOutput pOutput)
+  {
+    try
+    {
+      pOutput.close();
+    }
+    catch (IOException e)
+    {
+      // nothing to do, the output is not used anymore
+    }
+  }
+
+  /**
+   * Appends the fingerprint of a single file
+   *
+   * @param pContent content of the key
+   * @param pFile    file
+   */
+  private static void _appendFingerprint(@NonNull StringBuilder pContent, @NonNull File pFile)
+  {
+    pContent.append(pFile.getAbsolutePath()).append(':')
+        .append(pFile.lastModified()).append(':')
+        .append(pFile.isFile() ? pFile.length() : -1).append('\0');
+  }
+
+}
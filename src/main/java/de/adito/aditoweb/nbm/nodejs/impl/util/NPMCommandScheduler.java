@@ -0,0 +1,316 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+import org.netbeans.api.progress.*;
+import org.netbeans.api.project.*;
+import org.openide.util.NbBundle;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.logging.*;
+
+/**
+ * Schedules the npm commands of a single project.
+ * Commands that modify the node_modules folder (install, ci, update, publish) are executed one after another,
+ * so that they do not interfere with each other. If an identical command is already waiting for its execution,
+ * no additional process is started - the caller joins the queued command instead, its follow-up is executed
+ * after the queued command has finished.
+ * Read-only commands (e.g. outdated, list) are executed immediately.
+ * <p>
+ * Cancelling the future of a caller cancels the command as soon as no other caller waits for it anymore.
+ * A waiting command is then removed from the queue, a running command gets cancelled (which terminates its process).
+ * <p>
+ * All running commands of a project share a single progress handle.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class NPMCommandScheduler
+{
+
+  private static final Logger _LOGGER = Logger.getLogger(NPMCommandScheduler.class.getName());
+  private static final Map<Project, NPMCommandScheduler> _INSTANCES = new ConcurrentHashMap<>();
+  private static final Set<String> _MUTATING_COMMANDS = Set.of("install", "i", "ci", "clean-install", "update", "up", "upgrade", "publish");
+
+  private final String displayName;
+  private final Map<String, _Command> queued = new HashMap<>();
+  private CompletableFuture<?> lastMutatingCommand = CompletableFuture.completedFuture(null);
+  private final List<String> running = new ArrayList<>();
+  private ProgressHandle progressHandle;
+
+  @VisibleForTesting
+  NPMCommandScheduler(@NonNull String pDisplayName)
+  {
+    displayName = pDisplayName;
+  }
+
+  /**
+   * Returns the scheduler of the given project
+   *
+   * @param pProject the project
+   * @return the scheduler
+   */
+  @NonNull
+  public static NPMCommandScheduler forProject(@NonNull Project pProject)
+  {
+    return _INSTANCES.computeIfAbsent(pProject, pKey -> new NPMCommandScheduler(ProjectUtils.getInformation(pKey).getDisplayName()));
+  }
+
+  /**
+   * Deletes the scheduler of the given project. Commands that are already scheduled will still be executed.
+   *
+   * @param pProject the project
+   */
+  public static void delete(@NonNull Project pProject)
+  {
+    _INSTANCES.remove(pProject);
+  }
+
+  /**
+   * Schedules a npm command
+   *
+   * @param pParams   parameters of npm, the first one is the command
+   * @param pCommand  starts the command and returns a future, that completes with the exit code of npm.
+   *                  Cancelling this future has to stop the command.
+   * @param pFollowUp executed after the command has finished, even if the command was merged with an identical queued command
+   * @return a future that completes with the exit code, after the command and the follow-up were executed
+   */
+  @NonNull
+  public synchronized CompletableFuture<Integer> schedule(@NonNull String[] pParams, @NonNull Supplier<CompletableFuture<Integer>> pCommand,
+                                                          @NonNull Runnable pFollowUp)
+  {
+    String display = "npm " + String.join(" ", pParams);
+    if (!isMutating(pParams))
+    {
+      _Command command = new _Command(display, pCommand);
+      CompletableFuture<Integer> result = _join(command, pFollowUp);
+      _start(command);
+      return result;
+    }
+
+    // the same command is waiting already, so it will contain all changes that were made until now
+    _Command alreadyQueued = queued.get(display);
+    if (alreadyQueued != null)
+      return _join(alreadyQueued, pFollowUp);
+
+    // register before chaining, because the command may be started synchronously, if there is no other command
+    _Command command = new _Command(display, pCommand);
+    CompletableFuture<Integer> result = _join(command, pFollowUp);
+    queued.put(display, command);
+    CompletableFuture<?> previousCommand = lastMutatingCommand;
+    lastMutatingCommand = previousCommand
+        .handle((pResult, pThrowable) -> null) // a failed command must not prevent the next one
+        .thenCompose(pIgnored -> _start(command));
+    return result;
+  }
+
+  /**
+   * Determines, if the given npm command modifies the node_modules folder
+   *
+   * @param pParams parameters of npm, the first one is the command
+   * @return true, if the command has to be executed exclusively
+   */
+  public static boolean isMutating(@NonNull String[] pParams)
+  {
+    return pParams.length > 0 && _MUTATING_COMMANDS.contains(pParams[0]);
+  }
+
+  /**
+   * @return the number of mutating commands, that are waiting for their execution
+   */
+  @VisibleForTesting
+  synchronized int getQueuedCount()
+  {
+    return queued.size();
+  }
+
+  /**
+   * Adds a caller to a command, that is not finished yet
+   *
+   * @param pCommand  the command
+   * @param pFollowUp follow-up of the caller
+   * @return the future of the caller
+   */
+  @NonNull
+  private CompletableFuture<Integer> _join(@NonNull _Command pCommand, @NonNull Runnable pFollowUp)
+  {
+    CompletableFuture<Integer> result = new CompletableFuture<>();
+    pCommand.callers.put(result, pFollowUp);
+    result.whenComplete((pExitCode, pThrowable) -> {
+      if (result.isCancelled())
+        _leave(pCommand, result);
+    });
+    return result;
+  }
+
+  /**
+   * Removes a caller, that cancelled its future. The command is cancelled, if no caller is left.
+   *
+   * @param pCommand the command
+   * @param pCaller  future of the caller
+   */
+  private void _leave(@NonNull _Command pCommand, @NonNull CompletableFuture<Integer> pCaller)
+  {
+    CompletableFuture<Integer> execution;
+    synchronized (this)
+    {
+      if (pCommand.callers.remove(pCaller) == null || !pCommand.callers.isEmpty())
+        return;
+
+      // not started yet, so it does not have to be executed at all
+      if (queued.remove(pCommand.display, pCommand))
+        _updateProgress();
+      execution = pCommand.execution;
+    }
+
+    if (execution != null)
+      execution.cancel(false);
+  }
+
+  /**
+   * Starts the given command and shows its progress
+   *
+   * @param pCommand the command
+   * @return a future, that completes after the command and the follow-ups of all callers were executed
+   */
+  @NonNull
+  private CompletableFuture<Integer> _start(@NonNull _Command pCommand)
+  {
+    synchronized (this)
+    {
+      queued.remove(pCommand.display, pCommand);
+
+      // all callers cancelled, while the command was waiting
+      if (pCommand.callers.isEmpty())
+        return CompletableFuture.completedFuture(null);
+      _onStarted(pCommand.display);
+    }
+
+    CompletableFuture<Integer> execution;
+    try
+    {
+      execution = pCommand.supplier.get();
+    }
+    catch (RuntimeException e)
+    {
+      execution = CompletableFuture.failedFuture(e);
+    }
+
+    synchronized (this)
+    {
+      pCommand.execution = execution;
+
+      // the last caller cancelled, while the command was started
+      if (pCommand.callers.isEmpty())
+        execution.cancel(false);
+    }
+
+    return execution.whenComplete((pExitCode, pThrowable) -> {
+      _onFinished(pCommand.display);
+      _complete(pCommand, pExitCode, pThrowable);
+    });
+  }
+
+  /**
+   * Executes the follow-ups of all callers of a finished command and completes their futures
+   *
+   * @param pCommand   the finished command
+   * @param pExitCode  exit code of the command
+   * @param pThrowable failure of the command
+   */
+  private void _complete(@NonNull _Command pCommand, @Nullable Integer pExitCode, @Nullable Throwable pThrowable)
+  {
+    Map<CompletableFuture<Integer>, Runnable> callers;
+    synchronized (this)
+    {
+      callers = new LinkedHashMap<>(pCommand.callers);
+      pCommand.callers.clear();
+    }
+
+    Throwable failure = pThrowable instanceof CompletionException && pThrowable.getCause() != null ? pThrowable.getCause() : pThrowable;
+    callers.forEach((pCaller, pFollowUp) -> {
+      try
+      {
+        pFollowUp.run();
+      }
+      catch (RuntimeException e)
+      {
+        _LOGGER.log(Level.WARNING, "Follow-up of " + pCommand.display + " failed", e);
+      }
+
+      if (failure != null)
+        pCaller.completeExceptionally(failure);
+      else
+        pCaller.complete(pExitCode);
+    });
+  }
+
+  /**
+   * Updates the progress, because a command was started
+   *
+   * @param pDisplay display name of the command
+   */
+  @NbBundle.Messages("LBL_NPMCommands=npm ({0})")
+  private synchronized void _onStarted(@NonNull String pDisplay)
+  {
+    running.add(pDisplay);
+    if (progressHandle == null)
+    {
+      progressHandle = ProgressHandleFactory.createSystemHandle(Bundle.LBL_NPMCommands(displayName), null);
+      progressHandle.start();
+      progressHandle.switchToIndeterminate();
+    }
+    _updateProgress();
+  }
+
+  /**
+   * Updates the progress, because a command has finished
+   *
+   * @param pDisplay display name of the command
+   */
+  private synchronized void _onFinished(@NonNull String pDisplay)
+  {
+    running.remove(pDisplay);
+    if (running.isEmpty() && progressHandle != null)
+    {
+      progressHandle.finish();
+      progressHandle = null;
+    }
+    else
+      _updateProgress();
+  }
+
+  /**
+   * Shows the running commands in the progress handle
+   */
+  private void _updateProgress()
+  {
+    if (progressHandle == null)
+      return;
+
+    String message = Bundle.LBL_PerformAction(String.join(", ", running));
+    if (!queued.isEmpty())
+      message += " (+" + queued.size() + ")";
+    progressHandle.progress(message);
+  }
+
+  /**
+   * A command and all callers, that wait for it
+   */
+  private static final class _Command
+  {
+    private final String display;
+    private final Supplier<CompletableFuture<Integer>> supplier;
+    private final Map<CompletableFuture<Integer>, Runnable> callers = new LinkedHashMap<>();
+    private CompletableFuture<Integer> execution;
+
+    private _Command(@NonNull String pDisplay, @NonNull Supplier<CompletableFuture<Integer>> pSupplier)
+    {
+      display = pDisplay;
+      supplier = pSupplier;
+    }
+  }
+
+}
@@ -1,18 +1,19 @@
 package de.adito.aditoweb.nbm.nodejs.impl.util;
 
 import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.*;
-import de.adito.aditoweb.nbm.nodejs.impl.DesignerBusUtils;
+import de.adito.aditoweb.nbm.nodejs.impl.*;
+import io.reactivex.rxjava3.disposables.Disposable;
 import lombok.*;
-import org.apache.commons.io.output.WriterOutputStream;
 import org.jetbrains.annotations.*;
-import org.netbeans.api.progress.*;
 import org.netbeans.api.project.Project;
 import org.openide.util.NbBundle;
 import org.openide.windows.*;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.logging.*;
 
@@ -23,45 +24,75 @@ import java.util.logging.*;
 public final class NPMCommandUtil
 {
 
+  private static final AtomicInteger _WINDOW_USERS = new AtomicInteger(0);
+
   /**
-   * Utility function for running a npm command on a specific project
+   * Utility function for running a npm command on a specific project.
+   * The command is scheduled via the {@link NPMCommandScheduler} of the project, so it may be executed later
+   * or be merged with an identical command, that is already waiting.
    *
    * @param pProject          the project
    * @param pastCommandAction the command that should be executed after the node command was run
    * @param pParams           the npm parameters
+   * @return the future, that completes with the exit code after the command and the pastCommandAction were executed.
+   * Cancelling it terminates the command, unless another caller waits for the same command.
    */
   @NbBundle.Messages("LBL_PerformAction=Executing \"{0}\"")
-  public static void runCommand(@NonNull Project pProject, @NonNull Consumer<Project> pastCommandAction, @NonNull String... pParams)
+  @NonNull
+  public static CompletableFuture<Integer> runCommand(@NonNull Project pProject, @NonNull Consumer<Project> pastCommandAction, @NonNull String... pParams)
   {
     INodeJSEnvironment env = findEnvironment(pProject);
     INodeJSExecutor executor = findExecutor(pProject);
     if (env == null || executor == null)
-      return;
+      return CompletableFuture.completedFuture(null);
 
-    String display = "npm " + String.join(" ", pParams);
-    ProgressHandle handle = ProgressHandleFactory.createSystemHandle(Bundle.LBL_PerformAction(display), null);
-    handle.start();
-    handle.switchToIndeterminate();
+    // This action is called here and not in the designer project as result of a module change event,
+    // because it caused problems during the startup of the designer and was called multiple times for each event.
+    // Calling the action here avoids these problems.
+    return NPMCommandScheduler.forProject(pProject).schedule(pParams, () -> _execute(env, executor, pParams), () -> pastCommandAction.accept(pProject));
+  }
 
+  /**
+   * Executes a npm command on a specific project and prints the output.
+   * All commands write into the shared "NodeJS" output window, that is only cleared if no other execution writes into it at the moment,
+   * because read-only commands may run in parallel.
+   * If the executor supports it, the output is streamed with backpressure, so a slow output window pauses the process
+   * instead of buffering its whole output.
+   *
+   * @param pEnv      the environment to use
+   * @param pExecutor the executor to use
+   * @param pParams   the npm parameters
+   * @return the future, that completes after the command was executed. Cancelling it terminates the process.
+   */
+  @NonNull
+  private static CompletableFuture<Integer> _execute(@NonNull INodeJSEnvironment pEnv, @NonNull INodeJSExecutor pExecutor, @NonNull String... pParams)
+  {
+    String display = "npm " + String.join(" ", pParams);
     InputOutput io = IOProvider.get("nodejs_executor").getIO("NodeJS", false);
-    try
+    if (_acquireWindow())
     {
-      io.getOut().reset();
-      io.getErr().reset();
-      io.getIn().reset();
-    }
-    catch (Exception ex)
-    {
-      // do nothing
+      try
+      {
+        io.getOut().reset();
+        io.getErr().reset();
+        io.getIn().reset();
+      }
+      catch (Exception ex)
+      {
+        // do nothing
+      }
     }
     io.select();
 
-    OutputStream out = new WriterOutputStream(io.getOut(), StandardCharsets.UTF_8);
-    OutputStream err = new WriterOutputStream(io.getErr(), StandardCharsets.UTF_8);
+    OutputStream out = new BatchedOutputSink(io.getOut());
+    OutputStream err = new BatchedOutputSink(io.getErr());
 
     try
     {
-      executor.executeAsync(env, INodeJSExecBase.packageManager(), out, err, null, pParams)
+      CompletableFuture<Integer> process = pExecutor instanceof NodeJSExecutorImpl
+          ? _executeStreaming((NodeJSExecutorImpl) pExecutor, pEnv, display, out, err, pParams)
+          : pExecutor.executeAsync(pEnv, INodeJSExecBase.packageManager(), out, err, null, pParams);
+      CompletableFuture<Integer> result = process
           .handle((pExitCode, pEx) -> {
             try
             {
@@ -74,30 +105,95 @@ public final class NPMCommandUtil
             {
               // do nothing
             }
-
-            // do some action after the node command
-            // This action is called here and not in the designer project as result of a module change event,
-            // because it caused problems during the startup of the designer and was called multiple times for each event.
-            // Calling the action here avoids these problems.
-            pastCommandAction.accept(pProject);
+            _releaseWindow();
 
             DesignerBusUtils.fireModuleChange();
             return pExitCode;
-          }).handle((pV, pT) -> {
-            handle.finish();
-            return null;
           });
+
+      // the derived future does not cancel the execution on its own
+      result.whenComplete((pExitCode, pEx) -> {
+        if (result.isCancelled())
+          process.cancel(false);
+      });
+      return result;
     }
     catch (IOException e)
     {
-      handle.finish();
-
       // Print on err and in log
       e.printStackTrace(io.getErr());
       Logger.getLogger(NPMCommandUtil.class.getName()).log(Level.WARNING, display, e);
+      _releaseWindow();
+      return CompletableFuture.failedFuture(e);
     }
   }
 
+  /**
+   * Executes a npm command and writes its output line by line into the given streams.
+   * The streams block, if the output window falls behind, so the next lines are not read until the window caught up.
+   *
+   * @param pExecutor the executor to use
+   * @param pEnv      the environment to use
+   * @param pDisplay  the command, that is printed first
+   * @param pOut      stream for the default output
+   * @param pErr      stream for the error output
+   * @param pParams   the npm parameters
+   * @return the future, that completes with the exit code. Cancelling it terminates the process.
+   */
+  @NonNull
+  private static CompletableFuture<Integer> _executeStreaming(@NonNull NodeJSExecutorImpl pExecutor, @NonNull INodeJSEnvironment pEnv,
+                                                              @NonNull String pDisplay, @NonNull OutputStream pOut, @NonNull OutputStream pErr,
+                                                              @NonNull String... pParams) throws IOException
+  {
+    pOut.write((pDisplay + "\n").getBytes(StandardCharsets.UTF_8));
+
+    CompletableFuture<Integer> process = new CompletableFuture<>();
+    Disposable subscription = pExecutor.executeStreaming(pEnv, INodeJSExecBase.packageManager(), pParams)
+        .subscribe(pEvent -> {
+          switch (pEvent.getType())
+          {
+            case STDOUT:
+              pOut.write((pEvent.getLine() + "\n").getBytes(StandardCharsets.UTF_8));
+              break;
+            case STDERR:
+              pErr.write((pEvent.getLine() + "\n").getBytes(StandardCharsets.UTF_8));
+              break;
+            case EXIT:
+              pOut.write(("\nProcess finished with exit code " + pEvent.getExitCode() + "\n").getBytes(StandardCharsets.UTF_8));
+              process.complete(pEvent.getExitCode());
+              break;
+          }
+        }, pEx -> {
+          Logger.getLogger(NPMCommandUtil.class.getName()).log(Level.WARNING, pDisplay, pEx);
+          process.completeExceptionally(pEx);
+        });
+
+    // disposing the subscription terminates the process
+    process.whenComplete((pExitCode, pEx) -> {
+      if (process.isCancelled())
+        subscription.dispose();
+    });
+    return process;
+  }
+
+  /**
+   * Registers an execution, that writes into the output window
+   *
+   * @return true, if no other execution writes into the window, so that it may be cleared
+   */
+  private static boolean _acquireWindow()
+  {
+    return _WINDOW_USERS.incrementAndGet() == 1;
+  }
+
+  /**
+   * Unregisters an execution, that was registered with {@link #_acquireWindow()}
+   */
+  private static void _releaseWindow()
+  {
+    _WINDOW_USERS.decrementAndGet();
+  }
+
   /**
    * Finds a nodejs environment for the specified project
    *
@@ -0,0 +1,213 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.NonNull;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+/**
+ * Shows the content of a file, that is written by a process, in a writer (e.g. the output window).
+ * The file is polled periodically. If the writer falls too far behind, the content in between gets skipped
+ * and a notice with the path of the complete file is printed instead - so the output window only shows the latest part.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class OutputFileTailer
+{
+
+  private static final Logger _LOGGER = Logger.getLogger(OutputFileTailer.class.getName());
+  private static final long _INTERVAL_MS = 200;
+  private static final int _CHUNK_SIZE = 64 * 1024;
+  private static final long _MAX_LAG = 1024 * 1024;
+  private static final ScheduledExecutorService _SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                                                                                                             .setDaemon(true)
+                                                                                                             .setNameFormat("tNodeJSOutputTailer-%d")
+                                                                                                             .build());
+
+  private final File file;
+  private final Writer writer;
+  private final long maxLag;
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private final ByteBuffer bytes = ByteBuffer.allocate(_CHUNK_SIZE);
+  private final CharBuffer chars = CharBuffer.allocate(_CHUNK_SIZE);
+  private final CompletableFuture<Void> finished = new CompletableFuture<>();
+  private long position = 0;
+  private long skippedBytes = 0;
+  private volatile boolean stopRequested = false;
+  private ScheduledFuture<?> task;
+
+  /**
+   * @param pFile   file to tail
+   * @param pWriter writer to print the content of the file to
+   */
+  public OutputFileTailer(@NonNull File pFile, @NonNull Writer pWriter)
+  {
+    this(pFile, pWriter, _MAX_LAG);
+  }
+
+  @VisibleForTesting
+  OutputFileTailer(@NonNull File pFile, @NonNull Writer pWriter, long pMaxLag)
+  {
+    file = pFile;
+    writer = pWriter;
+    maxLag = pMaxLag;
+  }
+
+  /**
+   * Starts tailing the file
+   *
+   * @return this
+   */
+  @NonNull
+  public synchronized OutputFileTailer start()
+  {
+    if (task == null)
+      task = _SCHEDULER.scheduleWithFixedDelay(this::_poll, 0, _INTERVAL_MS, TimeUnit.MILLISECONDS);
+    return this;
+  }
+
+  /**
+   * Stops tailing, after the rest of the file was printed. This should be called, after the writing process has exited.
+   *
+   * @return a future that completes, as soon as the whole file was printed
+   */
+  @NonNull
+  public CompletableFuture<Void> stop()
+  {
+    stopRequested = true;
+    return finished;
+  }
+
+  /**
+   * @return the number of bytes, that were skipped because the writer was too slow
+   */
+  public synchronized long getSkippedBytes()
+  {
+    return skippedBytes;
+  }
+
+  /**
+   * Prints everything, that was appended to the file since the last poll
+   */
+  private synchronized void _poll()
+  {
+    // read the flag first, so that nothing that was written before the stop request is lost
+    boolean stop = stopRequested;
+    try
+    {
+      if (file.exists())
+      {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+          _skipIfLagging(channel.size());
+          channel.position(position);
+          int read;
+          while ((read = channel.read(bytes)) > 0)
+          {
+            position += read;
+            _decodeAndWrite(false);
+          }
+        }
+      }
+
+      if (stop)
+      {
+        _decodeAndWrite(true);
+        _finish(null);
+      }
+      else
+        writer.flush();
+    }
+    catch (Exception e)
+    {
+      _LOGGER.log(Level.WARNING, "Failed to read output file " + file, e);
+      _finish(e);
+    }
+  }
+
+  /**
+   * Skips the content, that the writer was not able to print in time
+   *
+   * @param pSize current size of the file
+   */
+  private void _skipIfLagging(long pSize) throws IOException
+  {
+    if (pSize - position <= maxLag)
+      return;
+
+    // only print the latest part of the output, the complete output is available in the file
+    long newPosition = pSize - maxLag / 2;
+    skippedBytes += newPosition - position;
+    _decodeAndWrite(true);
+    writer.write("\n[... skipped " + (newPosition - position) + " bytes, the complete output is available in " + file.getAbsolutePath() + " ...]\n");
+    position = newPosition;
+    bytes.clear();
+    decoder.reset();
+  }
+
+  /**
+   * Decodes the buffered bytes and writes them to the writer
+   *
+   * @param pEndOfInput true, if incomplete characters at the end should be written too
+   */
+  private void _decodeAndWrite(boolean pEndOfInput) throws IOException
+  {
+    bytes.flip();
+    CoderResult result;
+    do
+    {
+      result = decoder.decode(bytes, chars, pEndOfInput);
+      chars.flip();
+      writer.write(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+      chars.clear();
+    }
+    while (result.isOverflow());
+
+    if (pEndOfInput)
+    {
+      decoder.flush(chars);
+      chars.flip();
+      writer.write(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+      chars.clear();
+      decoder.reset();
+    }
+
+    // keep an incomplete character for the next read
+    bytes.compact();
+  }
+
+  /**
+   * Stops polling
+   *
+   * @param pError error, that stopped the polling
+   */
+  private void _finish(Exception pError)
+  {
+    if (task != null)
+      task.cancel(false);
+
+    try
+    {
+      writer.flush();
+    }
+    catch (IOException e)
+    {
+      // nothing to do, the writer is broken
+    }
+
+    if (pError == null)
+      finished.complete(null);
+    else
+      finished.completeExceptionally(pError);
+  }
+
+}
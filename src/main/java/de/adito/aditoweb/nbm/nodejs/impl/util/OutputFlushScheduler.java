@@ -0,0 +1,174 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.NonNull;
+
+import java.io.*;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.*;
+
+/**
+ * Flushes all registered output streams periodically on a single, process-wide thread.
+ * A stream only gets flushed, if something was written to it since the last flush.
+ * Streams are unregistered automatically, as soon as they are closed.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class OutputFlushScheduler
+{
+  private static final Logger _LOGGER = Logger.getLogger(OutputFlushScheduler.class.getName());
+  private static final OutputFlushScheduler _INSTANCE = new OutputFlushScheduler(500);
+
+  private final long interval;
+  private final Set<_FlushingOutputStream> registered = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                                                                                                    .setDaemon(true)
+                                                                                                    .setNameFormat("tNodeJSExecutorFlusher-%d")
+                                                                                                    .build());
+  private ScheduledFuture<?> flushTask;
+
+  /**
+   * @return the process-wide scheduler
+   */
+  @NonNull
+  public static OutputFlushScheduler getInstance()
+  {
+    return _INSTANCE;
+  }
+
+  @VisibleForTesting
+  OutputFlushScheduler(long pIntervalMs)
+  {
+    interval = pIntervalMs;
+  }
+
+  /**
+   * Registers the given stream, so that it gets flushed periodically.
+   * The returned stream has to be used for writing and has to be closed, if it is not used anymore.
+   *
+   * @param pDelegate stream that should be flushed
+   * @return the stream that delegates to pDelegate and unregisters itself on close
+   */
+  @NonNull
+  public OutputStream register(@NonNull OutputStream pDelegate)
+  {
+    _FlushingOutputStream stream = new _FlushingOutputStream(pDelegate);
+    registered.add(stream);
+    _updateFlushTask();
+    return stream;
+  }
+
+  /**
+   * @return the number of streams that are currently registered
+   */
+  @VisibleForTesting
+  int getRegisteredCount()
+  {
+    return registered.size();
+  }
+
+  /**
+   * Starts the periodic flush task if there are registered streams, or stops it if there are none left
+   */
+  private synchronized void _updateFlushTask()
+  {
+    if (!registered.isEmpty() && flushTask == null)
+      flushTask = scheduler.scheduleWithFixedDelay(this::_flushAll, interval, interval, TimeUnit.MILLISECONDS);
+    else if (registered.isEmpty() && flushTask != null)
+    {
+      flushTask.cancel(false);
+      flushTask = null;
+    }
+  }
+
+  /**
+   * Flushes all registered streams, that were written since their last flush
+   */
+  private void _flushAll()
+  {
+    for (_FlushingOutputStream stream : registered)
+    {
+      try
+      {
+        stream.flushIfDirty();
+      }
+      catch (Exception e)
+      {
+        // a broken stream must not stop the flushing of all others
+        _LOGGER.log(Level.WARNING, "Failed to flush output stream", e);
+      }
+    }
+  }
+
+  /**
+   * Delegating OutputStream, that remembers if something was written since the last flush
+   */
+  private class _FlushingOutputStream extends OutputStream
+  {
+    private final OutputStream delegate;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    public _FlushingOutputStream(@NonNull OutputStream pDelegate)
+    {
+      delegate = pDelegate;
+    }
+
+    @Override
+    public synchronized void write(byte @NonNull [] b) throws IOException
+    {
+      delegate.write(b);
+      dirty.set(true);
+    }
+
+    @Override
+    public synchronized void write(byte @NonNull [] b, int off, int len) throws IOException
+    {
+      delegate.write(b, off, len);
+      dirty.set(true);
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException
+    {
+      delegate.write(b);
+      dirty.set(true);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException
+    {
+      dirty.set(false);
+      delegate.flush();
+    }
+
+    /**
+     * Flushes this stream, if something was written since the last flush
+     */
+    public synchronized void flushIfDirty() throws IOException
+    {
+      if (dirty.get())
+        flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      if (!closed.compareAndSet(false, true))
+        return;
+
+      registered.remove(this);
+      _updateFlushTask();
+
+      synchronized (this)
+      {
+        flush();
+        delegate.close();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,295 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.*;
+import lombok.NonNull;
+import org.openide.modules.Places;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+import java.util.stream.*;
+
+/**
+ * Writes the error output of processes into separate log files. Each process gets its own log file,
+ * that is rotated as soon as it exceeds the maximum file size - so a single process never uses more than twice that size.
+ * Old log files are deleted, if there are too many or they are too large in total.
+ * <p>
+ * The file "index.jsonl" in the log directory maps the pid, command and start time of each process to its log file.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class ProcessErrorLogs
+{
+
+  /**
+   * Maximum size of a single log file in bytes
+   */
+  static final String MAX_FILE_SIZE_PROPERTY = "adito.nodejs.log.maxFileSize";
+
+  /**
+   * Maximum number of log files in the log directory
+   */
+  static final String MAX_FILES_PROPERTY = "adito.nodejs.log.maxFiles";
+
+  /**
+   * Maximum size of all log files in bytes
+   */
+  static final String MAX_TOTAL_SIZE_PROPERTY = "adito.nodejs.log.maxTotalSize";
+
+  private static final Logger _LOGGER = Logger.getLogger(ProcessErrorLogs.class.getName());
+  private static final String _INDEX_FILE = "index.jsonl";
+  private static final String _LOG_SUFFIX = ".log";
+  private static final String _ROTATED_SUFFIX = ".1";
+  private static ProcessErrorLogs _INSTANCE;
+
+  private final File directory;
+  private final long maxFileSize;
+  private final int maxFiles;
+  private final long maxTotalSize;
+  private final Set<File> activeFiles = ConcurrentHashMap.newKeySet();
+  private final ExecutorService pumpExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                                                                                 .setDaemon(true)
+                                                                                 .setNameFormat("tNodeJSErrorLog-%d")
+                                                                                 .build());
+
+  /**
+   * @return the shared instance, that writes into the log directory of the userdir
+   */
+  @NonNull
+  public static synchronized ProcessErrorLogs getInstance()
+  {
+    if (_INSTANCE == null)
+      _INSTANCE = new ProcessErrorLogs(new File(Places.getUserDirectory(), "var/log/nodejs"),
+                                       Long.getLong(MAX_FILE_SIZE_PROPERTY, 1024 * 1024),
+                                       Integer.getInteger(MAX_FILES_PROPERTY, 50),
+                                       Long.getLong(MAX_TOTAL_SIZE_PROPERTY, 20 * 1024 * 1024));
+    return _INSTANCE;
+  }
+
+  @VisibleForTesting
+  ProcessErrorLogs(@NonNull File pDirectory, long pMaxFileSize, int pMaxFiles, long pMaxTotalSize)
+  {
+    directory = pDirectory;
+    maxFileSize = Math.max(1, pMaxFileSize);
+    maxFiles = Math.max(2, pMaxFiles);
+    maxTotalSize = Math.max(2 * maxFileSize, pMaxTotalSize);
+  }
+
+  /**
+   * Reads the error output of the given process into a new log file, until the error stream is closed.
+   * The error output of the process must not be redirected.
+   *
+   * @param pProcess process, whose error output should be logged
+   * @param pCommand command of the process
+   * @return the log file of the process
+   */
+  @NonNull
+  public File attach(@NonNull Process pProcess, @NonNull List<String> pCommand) throws IOException
+  {
+    Files.createDirectories(directory.toPath());
+
+    long started = System.currentTimeMillis();
+    File logFile = new File(directory, new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(started)) + "-" + pProcess.pid() + _LOG_SUFFIX);
+    activeFiles.add(logFile);
+
+    // create the file before the index is written, so that pruning does not remove the new entry
+    OutputStream out = new FileOutputStream(logFile);
+    try
+    {
+      _appendIndex(pProcess.pid(), pCommand, started, logFile);
+      _prune();
+    }
+    catch (IOException e)
+    {
+      // the log itself is still usable
+      _LOGGER.log(Level.FINE, "Failed to update index of error logs", e);
+    }
+
+    pumpExecutor.execute(() -> {
+      try
+      {
+        _pump(pProcess.getErrorStream(), logFile, out);
+      }
+      catch (IOException e)
+      {
+        _LOGGER.log(Level.FINE, "Failed to write error log of process " + pProcess.pid(), e);
+      }
+      finally
+      {
+        activeFiles.remove(logFile);
+      }
+    });
+
+    return logFile;
+  }
+
+  /**
+   * Searches the log file of the latest process with the given pid
+   *
+   * @param pPid pid of the process
+   * @return the log file, empty if there is no log for this process anymore
+   */
+  @NonNull
+  public synchronized Optional<File> findLog(long pPid)
+  {
+    List<JsonObject> entries = _readIndex();
+    for (int i = entries.size() - 1; i >= 0; i--)
+    {
+      JsonObject entry = entries.get(i);
+      if (entry.get("pid").getAsLong() == pPid)
+      {
+        File logFile = new File(directory, entry.get("log").getAsString());
+        return logFile.exists() ? Optional.of(logFile) : Optional.empty();
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  /**
+   * Copies the given stream into the log file and rotates it, if it gets too large
+   *
+   * @param pStream  error stream of the process
+   * @param pLogFile log file
+   * @param pOut     opened stream of the log file
+   */
+  private void _pump(@NonNull InputStream pStream, @NonNull File pLogFile, @NonNull OutputStream pOut) throws IOException
+  {
+    File rotatedFile = new File(pLogFile.getPath() + _ROTATED_SUFFIX);
+    byte[] buffer = new byte[8192];
+    OutputStream out = pOut;
+    long size = 0;
+    try (InputStream in = pStream)
+    {
+      int read;
+      while ((read = in.read(buffer)) != -1)
+      {
+        int offset = 0;
+        while (offset < read)
+        {
+          // the current file is full, so it replaces the previously rotated file
+          if (size >= maxFileSize)
+          {
+            out.close();
+            Files.move(pLogFile.toPath(), rotatedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            out = new FileOutputStream(pLogFile);
+            size = 0;
+          }
+
+          int length = (int) Math.min(read - offset, maxFileSize - size);
+          out.write(buffer, offset, length);
+          size += length;
+          offset += length;
+        }
+      }
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+  /**
+   * Appends a new entry to the index
+   *
+   * @param pPid     pid of the process
+   * @param pCommand command of the process
+   * @param pStarted start time of the process
+   * @param pLogFile log file of the process
+   */
+  private synchronized void _appendIndex(long pPid, @NonNull List<String> pCommand, long pStarted, @NonNull File pLogFile) throws IOException
+  {
+    JsonObject entry = new JsonObject();
+    entry.addProperty("pid", pPid);
+    entry.addProperty("command", String.join(" ", pCommand));
+    entry.addProperty("started", pStarted);
+    entry.addProperty("log", pLogFile.getName());
+    Files.write(new File(directory, _INDEX_FILE).toPath(), List.of(entry.toString()), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * @return all entries of the index
+   */
+  @NonNull
+  private List<JsonObject> _readIndex()
+  {
+    Path index = new File(directory, _INDEX_FILE).toPath();
+    if (!Files.exists(index))
+      return List.of();
+
+    try (Stream<String> lines = Files.lines(index, StandardCharsets.UTF_8))
+    {
+      return lines
+          .filter(pLine -> !pLine.isBlank())
+          .map(pLine -> {
+            try
+            {
+              return JsonParser.parseString(pLine).getAsJsonObject();
+            }
+            catch (RuntimeException e)
+            {
+              // ignore broken lines, maybe the designer crashed while writing
+              return null;
+            }
+          })
+          .filter(Objects::nonNull)
+          .collect(Collectors.toList());
+    }
+    catch (IOException | UncheckedIOException e)
+    {
+      _LOGGER.log(Level.FINE, "Failed to read index of error logs", e);
+      return List.of();
+    }
+  }
+
+  /**
+   * Deletes the oldest log files, that are not written anymore, until the retention limits are met.
+   * Afterwards all index entries are removed, whose log file does not exist anymore.
+   */
+  private synchronized void _prune() throws IOException
+  {
+    File[] files = directory.listFiles(pFile -> pFile.isFile() && !_INDEX_FILE.equals(pFile.getName()));
+    if (files == null)
+      return;
+
+    List<File> logFiles = Arrays.stream(files)
+        .sorted(Comparator.comparingLong(File::lastModified))
+        .collect(Collectors.toList());
+    long totalSize = logFiles.stream().mapToLong(File::length).sum();
+    int count = logFiles.size();
+
+    boolean deleted = false;
+    for (File logFile : logFiles)
+    {
+      if (count <= maxFiles && totalSize <= maxTotalSize)
+        break;
+      if (activeFiles.contains(logFile) || activeFiles.contains(new File(logFile.getPath().replaceFirst("\\" + _ROTATED_SUFFIX + "$", ""))))
+        continue;
+
+      long length = logFile.length();
+      if (logFile.delete())
+      {
+        count--;
+        totalSize -= length;
+        deleted = true;
+      }
+    }
+
+    if (deleted)
+    {
+      List<String> remaining = _readIndex().stream()
+          .filter(pEntry -> new File(directory, pEntry.get("log").getAsString()).exists())
+          .map(JsonElement::toString)
+          .collect(Collectors.toList());
+      Files.write(new File(directory, _INDEX_FILE).toPath(), remaining, StandardCharsets.UTF_8);
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+/**
+ * Bounded thread pool, that executes the processes of all nodejs executors.
+ * Each running process occupies one thread. If the maximum number of threads is reached, further executions are queued,
+ * so timeouts of executions have to start when the execution is picked up by a thread and not when it is submitted.
+ * Idle threads are terminated after one minute.
+ * If executions have to be queued, because all threads are busy, the statistics of the pool are logged (at most once per minute).
+ *
+ * @author agent, 18.10.2026
+ */
+public final class ProcessExecutorService extends ThreadPoolExecutor
+{
+
+  private static final Logger _LOGGER = Logger.getLogger(ProcessExecutorService.class.getName());
+  private static final long _SATURATION_LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final AtomicLong lastSaturationLog = new AtomicLong(System.nanoTime() - _SATURATION_LOG_INTERVAL_NANOS);
+  private final AtomicLong submittedTasks = new AtomicLong(0);
+  private final AtomicLong totalQueueTimeNanos = new AtomicLong(0);
+  private final AtomicLong maxQueueTimeNanos = new AtomicLong(0);
+
+  /**
+   * @param pMaxThreads maximum number of concurrently executed processes
+   */
+  public ProcessExecutorService(int pMaxThreads)
+  {
+    super(Math.max(1, pMaxThreads), Math.max(1, pMaxThreads), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+          new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat("tNodeJSExecutor-%d")
+              .build());
+    allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void execute(@NonNull Runnable pCommand)
+  {
+    submittedTasks.incrementAndGet();
+    long submitted = System.nanoTime();
+
+    // the execution has to wait for a running process
+    if (getActiveCount() >= getMaximumPoolSize())
+      _logSaturation(submitted);
+
+    super.execute(() -> {
+      long queueTime = System.nanoTime() - submitted;
+      totalQueueTimeNanos.addAndGet(queueTime);
+      maxQueueTimeNanos.accumulateAndGet(queueTime, Math::max);
+      pCommand.run();
+    });
+  }
+
+  /**
+   * @return the current statistics of this pool
+   */
+  @NonNull
+  public PoolStatistics getStatistics()
+  {
+    long submitted = submittedTasks.get();
+    return new PoolStatistics(getMaximumPoolSize(), getPoolSize(), getLargestPoolSize(), getActiveCount(), getQueue().size(),
+                              submitted, getCompletedTaskCount(),
+                              submitted == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalQueueTimeNanos.get() / submitted),
+                              TimeUnit.NANOSECONDS.toMillis(maxQueueTimeNanos.get()));
+  }
+
+  /**
+   * Logs the statistics of this pool, because all threads are busy. The statistics are logged once per minute at most.
+   *
+   * @param pNow current value of {@link System#nanoTime()}
+   */
+  private void _logSaturation(long pNow)
+  {
+    long last = lastSaturationLog.get();
+    if (pNow - last >= _SATURATION_LOG_INTERVAL_NANOS && lastSaturationLog.compareAndSet(last, pNow))
+      _LOGGER.log(Level.INFO, "All threads of the nodejs process pool are busy, executions are queued: {0}", getStatistics());
+  }
+
+  /**
+   * Snapshot of the state of the pool
+   */
+  @Value
+  public static class PoolStatistics
+  {
+    int maxThreads;
+    int poolSize;
+    int largestPoolSize;
+    int activeThreads;
+    int queuedTasks;
+    long submittedTasks;
+    long completedTasks;
+    long averageQueueTimeMs;
+    long maxQueueTimeMs;
+  }
+
+}
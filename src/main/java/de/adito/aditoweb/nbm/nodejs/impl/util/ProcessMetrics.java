@@ -0,0 +1,593 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.adito.aditoweb.nbm.metrics.api.IMetricProxyFactory;
+import de.adito.aditoweb.nbm.metrics.api.types.Counted;
+import lombok.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.*;
+
+/**
+ * Records the resource usage of every process, that was started by the nodejs executor.
+ * Each finished process is counted via the metrics api, grouped by the kind of the command. Its spawn latency, wall time, exit code,
+ * output sizes, cpu time and peak memory usage are recorded via the metrics api, too. The api only counts invocations,
+ * so each value is recorded as histogram: one counter per range of values.
+ * The details of each process are logged (level FINE) and aggregated in a snapshot, that can be read via {@link #getSnapshot()}.
+ * <p>
+ * The peak memory usage is only available on linux, it is read from the proc filesystem while the process is running.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class ProcessMetrics
+{
+
+  private static final Logger _LOGGER = Logger.getLogger(ProcessMetrics.class.getName());
+  private static final long _SAMPLE_INTERVAL_MS = 500;
+  private static final Statistics _EMPTY = new Statistics(0, 0, 0, 0, 0, 0, -1);
+  private static final ProcessMetrics _INSTANCE = new ProcessMetrics();
+
+  private final _MetricsRecorder recorder = IMetricProxyFactory.proxy(new _MetricsRecorder());
+  private final _Histogram spawnLatencyHistogram = new _Histogram(new long[]{50, 200, 1000}, recorder::spawnLatencyBelow50ms,
+                                                                  recorder::spawnLatencyBelow200ms, recorder::spawnLatencyBelow1s,
+                                                                  recorder::spawnLatencyAbove1s);
+  private final _Histogram wallTimeHistogram = new _Histogram(new long[]{1000, 10_000, 60_000}, recorder::wallTimeBelow1s,
+                                                              recorder::wallTimeBelow10s, recorder::wallTimeBelow1min, recorder::wallTimeAbove1min);
+  private final _Histogram stdoutHistogram = new _Histogram(new long[]{1, 64 * 1024, 1024 * 1024}, recorder::stdoutEmpty,
+                                                            recorder::stdoutBelow64kb, recorder::stdoutBelow1mb, recorder::stdoutAbove1mb);
+  private final _Histogram stderrHistogram = new _Histogram(new long[]{1, 64 * 1024, 1024 * 1024}, recorder::stderrEmpty,
+                                                            recorder::stderrBelow64kb, recorder::stderrBelow1mb, recorder::stderrAbove1mb);
+  private final _Histogram cpuTimeHistogram = new _Histogram(new long[]{100, 1000, 10_000}, recorder::cpuTimeBelow100ms,
+                                                             recorder::cpuTimeBelow1s, recorder::cpuTimeBelow10s, recorder::cpuTimeAbove10s);
+  private final _Histogram peakRssHistogram = new _Histogram(new long[]{64L * 1024 * 1024, 256L * 1024 * 1024, 1024L * 1024 * 1024},
+                                                             recorder::peakRssBelow64mb, recorder::peakRssBelow256mb, recorder::peakRssBelow1gb,
+                                                             recorder::peakRssAbove1gb);
+  private final Map<CommandKind, Statistics> statistics = new ConcurrentHashMap<>();
+  private final Set<Tracker> running = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                                                                                                  .setDaemon(true)
+                                                                                                  .setNameFormat("tNodeJSMetrics-%d")
+                                                                                                  .build());
+  private ScheduledFuture<?> sampleTask;
+
+  /**
+   * @return the shared instance
+   */
+  @NonNull
+  public static ProcessMetrics getInstance()
+  {
+    return _INSTANCE;
+  }
+
+  @VisibleForTesting
+  ProcessMetrics()
+  {
+  }
+
+  /**
+   * Starts tracking a process, that was created right now
+   *
+   * @param pProcess         created process
+   * @param pCommand         command of the process, including the executable
+   * @param pSpawnStartNanos value of {@link System#nanoTime()}, before the process was started
+   * @return the tracker, that has to be finished as soon as the process exited
+   */
+  @NonNull
+  public Tracker track(@NonNull Process pProcess, @NonNull List<String> pCommand, long pSpawnStartNanos)
+  {
+    Tracker tracker = new Tracker(pProcess, CommandKind.of(pCommand), String.join(" ", pCommand), pSpawnStartNanos);
+    running.add(tracker);
+    _updateSampleTask();
+    return tracker;
+  }
+
+  /**
+   * @return the aggregated statistics of all finished processes, per kind of command
+   */
+  @NonNull
+  public Map<CommandKind, Statistics> getSnapshot()
+  {
+    return Map.copyOf(statistics);
+  }
+
+  /**
+   * Records the given sample
+   *
+   * @param pSample sample of a finished process
+   */
+  private void _record(@NonNull Sample pSample)
+  {
+    switch (pSample.getKind())
+    {
+      case NPM:
+        recorder.recordNpm(pSample);
+        break;
+      case TSC:
+        recorder.recordTsc(pSample);
+        break;
+      case LANGUAGE_SERVER:
+        recorder.recordLanguageServer(pSample);
+        break;
+      default:
+        recorder.recordNode(pSample);
+        break;
+    }
+
+    if (pSample.getExitCode() == 0)
+      recorder.exitSuccess();
+    else
+      recorder.exitFailure();
+
+    spawnLatencyHistogram.record(pSample.getSpawnLatencyMs());
+    wallTimeHistogram.record(pSample.getWallTimeMs());
+    stdoutHistogram.record(pSample.getStdoutBytes());
+    stderrHistogram.record(pSample.getStderrBytes());
+    cpuTimeHistogram.record(pSample.getCpuTimeMs());
+    peakRssHistogram.record(pSample.getPeakRssBytes());
+  }
+
+  /**
+   * Starts the periodic sampling if processes are running, or stops it if there are none left
+   */
+  private synchronized void _updateSampleTask()
+  {
+    if (!running.isEmpty() && sampleTask == null)
+      sampleTask = sampler.scheduleWithFixedDelay(this::_sampleAll, _SAMPLE_INTERVAL_MS, _SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    else if (running.isEmpty() && sampleTask != null)
+    {
+      sampleTask.cancel(false);
+      sampleTask = null;
+    }
+  }
+
+  /**
+   * Samples the resource usage of all running processes
+   */
+  private void _sampleAll()
+  {
+    for (Tracker tracker : running)
+      tracker.sample();
+  }
+
+  /**
+   * Reads the peak resident set size of the given process from the proc filesystem
+   *
+   * @param pPid pid of the process
+   * @return the peak rss in bytes, -1 if it is not available
+   */
+  private static long _readPeakRss(long pPid)
+  {
+    Path status = Paths.get("/proc", String.valueOf(pPid), "status");
+    if (!Files.isReadable(status))
+      return -1;
+
+    try (BufferedReader reader = Files.newBufferedReader(status, StandardCharsets.US_ASCII))
+    {
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        // format: "VmHWM:     12345 kB"
+        if (line.startsWith("VmHWM:"))
+          return Long.parseLong(line.substring(6).replace("kB", "").trim()) * 1024;
+      }
+    }
+    catch (IOException | RuntimeException e)
+    {
+      // process exited in the meantime
+    }
+
+    return -1;
+  }
+
+  /**
+   * Kind of a command, that is executed by nodejs
+   */
+  public enum CommandKind
+  {
+    NODE,
+    NPM,
+    TSC,
+    LANGUAGE_SERVER;
+
+    /**
+     * Determines the kind of the given command
+     *
+     * @param pCommand command of the process, including the executable
+     * @return the kind
+     */
+    @NonNull
+    public static CommandKind of(@NonNull List<String> pCommand)
+    {
+      CommandKind kind = NODE;
+      for (int i = 0; i < Math.min(2, pCommand.size()); i++)
+      {
+        // the executable or the script, that is executed by node
+        String name = new File(pCommand.get(i)).getName().toLowerCase(Locale.ROOT);
+        if (name.startsWith("typescript-language-server") || pCommand.get(i).contains("typescript-language-server"))
+          return LANGUAGE_SERVER;
+        if (name.equals("tsc") || name.startsWith("tsc."))
+          return TSC;
+        if (name.equals("npm") || name.startsWith("npm.") || name.startsWith("npm-cli"))
+          kind = NPM;
+      }
+
+      return kind;
+    }
+  }
+
+  /**
+   * Resource usage of a single finished process
+   */
+  @Value
+  @Builder
+  public static class Sample
+  {
+    @NonNull
+    CommandKind kind;
+    @NonNull
+    String command;
+    long spawnLatencyMs;
+    long wallTimeMs;
+    int exitCode;
+    long stdoutBytes;
+    long stderrBytes;
+    long cpuTimeMs;
+    long peakRssBytes;
+  }
+
+  /**
+   * Aggregated resource usage of all processes of one kind
+   */
+  @Value
+  public static class Statistics
+  {
+    long count;
+    long failures;
+    long totalSpawnLatencyMs;
+    long totalWallTimeMs;
+    long totalCpuTimeMs;
+    long totalOutputBytes;
+    long maxPeakRssBytes;
+
+    /**
+     * @param pSample sample to add
+     * @return new statistics, that contain the given sample
+     */
+    @NonNull
+    Statistics add(@NonNull Sample pSample)
+    {
+      return new Statistics(count + 1, failures + (pSample.getExitCode() == 0 ? 0 : 1),
+                            totalSpawnLatencyMs + pSample.getSpawnLatencyMs(),
+                            totalWallTimeMs + pSample.getWallTimeMs(),
+                            totalCpuTimeMs + Math.max(0, pSample.getCpuTimeMs()),
+                            totalOutputBytes + Math.max(0, pSample.getStdoutBytes()) + Math.max(0, pSample.getStderrBytes()),
+                            Math.max(maxPeakRssBytes, pSample.getPeakRssBytes()));
+    }
+  }
+
+  /**
+   * Tracks a single running process
+   */
+  public final class Tracker
+  {
+    private final Process process;
+    private final CommandKind kind;
+    private final String command;
+    private final long spawnLatencyMs;
+    private final long createdNanos = System.nanoTime();
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private volatile long cpuTimeMs = -1;
+    private volatile long peakRssBytes = -1;
+
+    private Tracker(@NonNull Process pProcess, @NonNull CommandKind pKind, @NonNull String pCommand, long pSpawnStartNanos)
+    {
+      process = pProcess;
+      kind = pKind;
+      command = pCommand;
+      spawnLatencyMs = TimeUnit.NANOSECONDS.toMillis(createdNanos - pSpawnStartNanos);
+    }
+
+    /**
+     * Records the sample of the process. Additional calls will be ignored.
+     *
+     * @param pExitCode    exit code of the process
+     * @param pStdoutBytes number of bytes of the default output, -1 if unknown
+     * @param pStderrBytes number of bytes of the error output, -1 if unknown
+     */
+    public void finish(int pExitCode, long pStdoutBytes, long pStderrBytes)
+    {
+      if (!finished.compareAndSet(false, true))
+        return;
+
+      running.remove(this);
+      _updateSampleTask();
+
+      // the process may still be readable, if it is a zombie
+      sample();
+
+      Sample sample = Sample.builder()
+          .kind(kind)
+          .command(command)
+          .spawnLatencyMs(spawnLatencyMs)
+          .wallTimeMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdNanos))
+          .exitCode(pExitCode)
+          .stdoutBytes(pStdoutBytes)
+          .stderrBytes(pStderrBytes)
+          .cpuTimeMs(cpuTimeMs)
+          .peakRssBytes(peakRssBytes)
+          .build();
+      statistics.merge(kind, _EMPTY.add(sample), (pOld, pNew) -> pOld.add(sample));
+
+      try
+      {
+        _record(sample);
+      }
+      catch (RuntimeException e)
+      {
+        // metrics must never break the execution
+        _LOGGER.log(Level.FINE, "Failed to record process metrics", e);
+      }
+    }
+
+    /**
+     * Reads the current resource usage of the process
+     */
+    void sample()
+    {
+      Optional<Duration> cpu = process.info().totalCpuDuration();
+      cpu.ifPresent(pDuration -> cpuTimeMs = pDuration.toMillis());
+      peakRssBytes = Math.max(peakRssBytes, _readPeakRss(process.pid()));
+    }
+
+    /**
+     * @return the pid of the tracked process
+     */
+    public long getPid()
+    {
+      return process.pid();
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Tracker(" + kind + ", " + process.pid() + ")";
+    }
+  }
+
+  /**
+   * Records a value via the metrics api, by counting the range of values, that contains the value
+   */
+  private static class _Histogram
+  {
+    private final long[] upperBounds;
+    private final Runnable[] counters;
+
+    /**
+     * @param pUpperBounds exclusive upper bounds of the ranges, ascending
+     * @param pCounters    counters of the ranges, one more than bounds - the last one counts all values above the last bound
+     */
+    public _Histogram(@NonNull long[] pUpperBounds, @NonNull Runnable... pCounters)
+    {
+      if (pCounters.length != pUpperBounds.length + 1)
+        throw new IllegalArgumentException("one counter per range expected");
+      upperBounds = pUpperBounds;
+      counters = pCounters;
+    }
+
+    /**
+     * @param pValue value to record, negative values are unknown and will be ignored
+     */
+    public void record(long pValue)
+    {
+      if (pValue < 0)
+        return;
+
+      int range = 0;
+      while (range < upperBounds.length && pValue >= upperBounds[range])
+        range++;
+      counters[range].run();
+    }
+  }
+
+  /**
+   * Extra class, so we can count the executed processes per kind and the ranges of their resource usage via the metrics api
+   */
+  private class _MetricsRecorder
+  {
+    @Counted(name = "nodejs.process.node")
+    public void recordNode(@NonNull Sample pSample)
+    {
+      _log(pSample);
+    }
+
+    @Counted(name = "nodejs.process.npm")
+    public void recordNpm(@NonNull Sample pSample)
+    {
+      _log(pSample);
+    }
+
+    @Counted(name = "nodejs.process.tsc")
+    public void recordTsc(@NonNull Sample pSample)
+    {
+      _log(pSample);
+    }
+
+    @Counted(name = "nodejs.process.languageserver")
+    public void recordLanguageServer(@NonNull Sample pSample)
+    {
+      _log(pSample);
+    }
+
+    @Counted(name = "nodejs.process.exit.success")
+    public void exitSuccess()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.exit.failure")
+    public void exitFailure()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.spawnlatency.below50ms")
+    public void spawnLatencyBelow50ms()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.spawnlatency.below200ms")
+    public void spawnLatencyBelow200ms()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.spawnlatency.below1s")
+    public void spawnLatencyBelow1s()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.spawnlatency.above1s")
+    public void spawnLatencyAbove1s()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.walltime.below1s")
+    public void wallTimeBelow1s()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.walltime.below10s")
+    public void wallTimeBelow10s()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.walltime.below1min")
+    public void wallTimeBelow1min()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.walltime.above1min")
+    public void wallTimeAbove1min()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.stdout.empty")
+    public void stdoutEmpty()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.stdout.below64kb")
+    public void stdoutBelow64kb()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.stdout.below1mb")
+    public void stdoutBelow1mb()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.stdout.above1mb")
+    public void stdoutAbove1mb()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.stderr.empty")
+    public void stderrEmpty()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.stderr.below64kb")
+    public void stderrBelow64kb()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.stderr.below1mb")
+    public void stderrBelow1mb()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.stderr.above1mb")
+    public void stderrAbove1mb()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.cputime.below100ms")
+    public void cpuTimeBelow100ms()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.cputime.below1s")
+    public void cpuTimeBelow1s()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.cputime.below10s")
+    public void cpuTimeBelow10s()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.cputime.above10s")
+    public void cpuTimeAbove10s()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.peakrss.below64mb")
+    public void peakRssBelow64mb()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.peakrss.below256mb")
+    public void peakRssBelow256mb()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.peakrss.below1gb")
+    public void peakRssBelow1gb()
+    {
+      // only counted
+    }
+
+    @Counted(name = "nodejs.process.peakrss.above1gb")
+    public void peakRssAbove1gb()
+    {
+      // only counted
+    }
+
+    /**
+     * @param pSample sample to log
+     */
+    private void _log(@NonNull Sample pSample)
+    {
+      _LOGGER.log(Level.FINE, "Process finished: {0}", pSample);
+    }
+  }
+
+}
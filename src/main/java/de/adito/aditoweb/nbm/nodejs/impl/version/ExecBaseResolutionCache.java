@@ -0,0 +1,171 @@
+package de.adito.aditoweb.nbm.nodejs.impl.version;
+
+import com.google.common.annotations.VisibleForTesting;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+import org.openide.filesystems.*;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.*;
+
+/**
+ * Caches the resolved paths of the execution bases of a single nodejs installation, so that the file system
+ * does not have to be asked every time a process is started. This is noticeable, if the installation is located on a network drive.
+ * <p>
+ * The cache is cleared, as soon as something is created or deleted in the folders of the installation, that contain the execution bases.
+ * Execution bases that could not be found are remembered for a few seconds only, because they may be located in deeper folders
+ * (e.g. within a package), that are not watched.
+ *
+ * @author agent, 18.10.2026
+ */
+final class ExecBaseResolutionCache
+{
+
+  private static final Logger _LOGGER = Logger.getLogger(ExecBaseResolutionCache.class.getName());
+  private static final long _NEGATIVE_TTL_MS = 5000;
+  private static final Map<File, ExecBaseResolutionCache> _INSTANCES = new ConcurrentHashMap<>();
+
+  private final long negativeTtl;
+  private final Map<String, _Resolution> resolutions = new ConcurrentHashMap<>();
+  private final FileChangeListener listener = new FileChangeAdapter()
+  {
+    @Override
+    public void fileFolderCreated(FileEvent fe)
+    {
+      invalidate();
+    }
+
+    @Override
+    public void fileDataCreated(FileEvent fe)
+    {
+      invalidate();
+    }
+
+    @Override
+    public void fileDeleted(FileEvent fe)
+    {
+      invalidate();
+    }
+
+    @Override
+    public void fileRenamed(FileRenameEvent fe)
+    {
+      invalidate();
+    }
+  };
+
+  /**
+   * Returns the cache of the installation, that contains the given binary
+   *
+   * @param pBinary nodejs binary
+   * @return the cache, that is shared by all environments of this binary
+   */
+  @NonNull
+  static ExecBaseResolutionCache forBinary(@NonNull File pBinary)
+  {
+    return _INSTANCES.computeIfAbsent(pBinary.getAbsoluteFile(), pKey -> {
+      ExecBaseResolutionCache cache = new ExecBaseResolutionCache(_NEGATIVE_TTL_MS);
+      cache._watch(pKey);
+      return cache;
+    });
+  }
+
+  @VisibleForTesting
+  ExecBaseResolutionCache(long pNegativeTtl)
+  {
+    negativeTtl = pNegativeTtl;
+  }
+
+  /**
+   * Returns the resolved path of an execution base
+   *
+   * @param pChild    path of the execution base, relative to the installation
+   * @param pResolver resolves the path via the file system, returns null if it does not exist
+   * @return the resolved path, or null if it does not exist
+   */
+  @Nullable
+  File resolve(@NonNull String pChild, @NonNull Function<String, File> pResolver)
+  {
+    _Resolution resolution = resolutions.get(pChild);
+    if (resolution == null || resolution.isExpired(negativeTtl))
+    {
+      resolution = new _Resolution(pResolver.apply(pChild), System.currentTimeMillis());
+      resolutions.put(pChild, resolution);
+    }
+
+    return resolution.file;
+  }
+
+  /**
+   * Removes all resolved paths
+   */
+  void invalidate()
+  {
+    resolutions.clear();
+  }
+
+  /**
+   * Watches all folders, that may contain an execution base of the given binary
+   *
+   * @param pBinary nodejs binary
+   */
+  private void _watch(@NonNull File pBinary)
+  {
+    // the folder structure is described in NodeJSEnvironmentFactory
+    Set<File> folders = new LinkedHashSet<>();
+    File parent = pBinary.getParentFile();
+    if (parent != null)
+    {
+      folders.add(parent);
+      folders.add(new File(parent, "node_modules"));
+      File grandParent = parent.getParentFile();
+      if (grandParent != null)
+      {
+        folders.add(grandParent);
+        folders.add(new File(grandParent, "lib"));
+        folders.add(new File(grandParent, "lib/node_modules"));
+      }
+    }
+
+    for (File folder : folders)
+    {
+      try
+      {
+        FileUtil.addFileChangeListener(listener, FileUtil.normalizeFile(folder));
+      }
+      catch (RuntimeException e)
+      {
+        // without a watch, only the resolutions of missing execution bases expire
+        _LOGGER.log(Level.FINE, "Failed to watch " + folder, e);
+      }
+    }
+  }
+
+  /**
+   * Result of a resolution
+   */
+  private static class _Resolution
+  {
+    private final File file;
+    private final long resolvedAt;
+
+    public _Resolution(@Nullable File pFile, long pResolvedAt)
+    {
+      file = pFile;
+      resolvedAt = pResolvedAt;
+    }
+
+    /**
+     * @param pNegativeTtl time in milliseconds, how long a missing execution base is remembered
+     * @return true, if the resolution has to be done again
+     */
+    public boolean isExpired(long pNegativeTtl)
+    {
+      return file == null && System.currentTimeMillis() - resolvedAt > pNegativeTtl;
+    }
+  }
+
+}
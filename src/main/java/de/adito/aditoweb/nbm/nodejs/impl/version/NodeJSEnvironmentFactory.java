@@ -44,12 +44,15 @@ public class NodeJSEnvironmentFactory
   private static class _BinaryEnvironment implements INodeJSEnvironment
   {
     private final File nodejsBinary;
+    @ToString.Exclude
+    private final ExecBaseResolutionCache resolutionCache;
     private Boolean valid = null;
     private Long validCheckBinaryLastModified = null;
 
     public _BinaryEnvironment(@NonNull File pNodejsBinary)
     {
       nodejsBinary = pNodejsBinary;
+      resolutionCache = ExecBaseResolutionCache.forBinary(pNodejsBinary);
     }
 
     @NonNull
@@ -93,28 +96,14 @@ public class NodeJSEnvironmentFactory
       //       - typescript
       //       - typescript-language-server
 
-      File parent = nodejsBinary.getParentFile();
       String child = pBase.getBasePath() + (Strings.isNullOrEmpty(extension) ? "" : "." + extension);
-
-      // first take a look in the direct parent - mostly correct under Windows
-      File executable = new File(parent, child);
-      if (executable.exists())
-        return executable;
-
-      // second take a look in the grandparents directory - mostly correct under Unix / Mac
-      executable = new File(parent.getParentFile(), child);
-      if (executable.exists())
-        return executable;
-
-      // third take a look in the grandparents directory under lib
-      // mostly correct under Unix / Mac, if the target is within the global node_modules folder
-      executable = new File(new File(parent.getParentFile(), "lib"), child);
-      if (executable.exists())
+      File executable = resolutionCache.resolve(child, this::_resolveExecutable);
+      if (executable != null)
         return executable;
 
       // not found
       throw new IllegalStateException("Unable to determine absolute path of execution base (" + pBase.getBasePath() + ", " +
-                                          parent.getAbsolutePath() + ")");
+                                          nodejsBinary.getParentFile().getAbsolutePath() + ")");
     }
 
     @NonNull
@@ -123,14 +112,25 @@ public class NodeJSEnvironmentFactory
     {
       _ensureValid();
 
+      String version = NodeJSVersionReader.getMemoized(nodejsBinary);
+      if (version != null)
+        return version;
+
       try
       {
-        return _readVersion();
+        // reading the files of the distribution is a lot faster than starting node
+        version = NodeJSVersionReader.readFromDistribution(nodejsBinary);
+        if (version == null)
+          version = _readVersion();
       }
       catch (Exception e)
       {
         throw new IllegalStateException("Failed to retrieve version from nodejs package (" + getPath() + ")", e);
       }
+
+      if (!version.isEmpty())
+        NodeJSVersionReader.memoize(nodejsBinary, version);
+      return version;
     }
 
     /**
@@ -155,6 +155,36 @@ public class NodeJSEnvironmentFactory
       return valid;
     }
 
+    /**
+     * Searches the executable within the installation
+     *
+     * @param pChild path of the executable, relative to the installation
+     * @return the executable, or null if it does not exist
+     */
+    @Nullable
+    private File _resolveExecutable(@NonNull String pChild)
+    {
+      File parent = nodejsBinary.getParentFile();
+
+      // first take a look in the direct parent - mostly correct under Windows
+      File executable = new File(parent, pChild);
+      if (executable.exists())
+        return executable;
+
+      // second take a look in the grandparents directory - mostly correct under Unix / Mac
+      executable = new File(parent.getParentFile(), pChild);
+      if (executable.exists())
+        return executable;
+
+      // third take a look in the grandparents directory under lib
+      // mostly correct under Unix / Mac, if the target is within the global node_modules folder
+      executable = new File(new File(parent.getParentFile(), "lib"), pChild);
+      if (executable.exists())
+        return executable;
+
+      return null;
+    }
+
     /**
      * Ensures, that this version is valid
      */
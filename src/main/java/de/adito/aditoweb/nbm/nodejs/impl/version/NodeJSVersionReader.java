@@ -0,0 +1,207 @@
+package de.adito.aditoweb.nbm.nodejs.impl.version;
+
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.*;
+
+/**
+ * Reads the version of a nodejs installation from the files of its distribution, so that node does not have to be started.
+ * The following files are used, in this order:
+ * <ol>
+ *   <li>include/node/node_version.h - contained in the linux and mac distributions</li>
+ *   <li>CHANGELOG.md - contained in all distributions, the current version is the highlighted one</li>
+ * </ol>
+ * The files are only used, if the binary is part of an extracted distribution (see {@link #readFromDistribution(File)}).
+ * The version of each binary is memoized, as long as the binary does not change its modification time and size.
+ *
+ * @author agent, 18.10.2026
+ */
+final class NodeJSVersionReader
+{
+
+  private static final Pattern _DEFINE_PATTERN = Pattern.compile("^#define\\s+NODE_(MAJOR|MINOR|PATCH)_VERSION\\s+(\\d+)\\s*$");
+  private static final Pattern _CHANGELOG_PATTERN = Pattern.compile("<b><a href=\"doc/changelogs/CHANGELOG_V\\d+\\.md#(\\d+\\.\\d+\\.\\d+)\">");
+  private static final int _MAX_CHANGELOG_LINES = 200;
+  private static final Map<File, _Version> _VERSIONS = new ConcurrentHashMap<>();
+
+  private NodeJSVersionReader()
+  {
+  }
+
+  /**
+   * Returns the memoized version of the given binary
+   *
+   * @param pBinary nodejs binary
+   * @return the version in the format of "node --version" (e.g. v18.17.0), or null if it was not determined yet or the binary changed
+   */
+  @Nullable
+  static String getMemoized(@NonNull File pBinary)
+  {
+    _Version version = _VERSIONS.get(pBinary.getAbsoluteFile());
+    return version != null && version.matches(pBinary) ? version.version : null;
+  }
+
+  /**
+   * Memoizes the version of the given binary, until the binary changes
+   *
+   * @param pBinary  nodejs binary
+   * @param pVersion version in the format of "node --version"
+   */
+  static void memoize(@NonNull File pBinary, @NonNull String pVersion)
+  {
+    _VERSIONS.put(pBinary.getAbsoluteFile(), new _Version(pBinary.lastModified(), pBinary.length(), pVersion));
+  }
+
+  /**
+   * Reads the version of the installation, that contains the given binary, from the files of its distribution.
+   * The files are only trusted, if the binary is located in the root folder of an extracted distribution.
+   * The folders of a system installation (e.g. /usr/bin/node) may contain headers of another version, so these return null.
+   *
+   * @param pBinary nodejs binary
+   * @return the version in the format of "node --version" (e.g. v18.17.0), or null if it could not be determined -
+   * the caller has to execute "node --version" in this case
+   */
+  @Nullable
+  static String readFromDistribution(@NonNull File pBinary)
+  {
+    File root = _getDistributionRoot(pBinary);
+    if (root == null)
+      return null;
+
+    String version = _readVersionHeader(new File(root, "include/node/node_version.h"));
+    if (version == null)
+      version = _readChangelog(new File(root, "CHANGELOG.md"));
+    return version;
+  }
+
+  /**
+   * Determines the root folder of the distribution, that contains the given binary
+   *
+   * @param pBinary nodejs binary
+   * @return the root folder, or null if the binary is not part of an extracted distribution
+   */
+  @Nullable
+  private static File _getDistributionRoot(@NonNull File pBinary)
+  {
+    File parent = pBinary.getAbsoluteFile().getParentFile();
+    if (parent == null)
+      return null;
+
+    // windows: <root>/node.exe and <root>/node_modules/npm
+    if (_isDistributionRoot(parent, "node_modules/npm"))
+      return parent;
+
+    // linux and mac: <root>/bin/node and <root>/lib/node_modules/npm
+    File grandParent = parent.getParentFile();
+    if (grandParent != null && parent.getName().equals("bin") && _isDistributionRoot(grandParent, "lib/node_modules/npm"))
+      return grandParent;
+
+    return null;
+  }
+
+  /**
+   * @param pRoot    folder to check
+   * @param pNpmPath relative path of the bundled npm package
+   * @return true, if the folder contains the license and the bundled npm of a distribution
+   */
+  private static boolean _isDistributionRoot(@NonNull File pRoot, @NonNull String pNpmPath)
+  {
+    return new File(pRoot, "LICENSE").isFile() && new File(pRoot, pNpmPath).isDirectory();
+  }
+
+  /**
+   * Reads the version from the defines in node_version.h
+   *
+   * @param pHeader header file
+   * @return the version, or null if it could not be read
+   */
+  @Nullable
+  private static String _readVersionHeader(@NonNull File pHeader)
+  {
+    if (!pHeader.isFile())
+      return null;
+
+    Map<String, String> parts = new HashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(pHeader.toPath(), StandardCharsets.UTF_8))
+    {
+      String line;
+      while ((line = reader.readLine()) != null && parts.size() < 3)
+      {
+        Matcher matcher = _DEFINE_PATTERN.matcher(line.trim());
+        if (matcher.matches())
+          parts.putIfAbsent(matcher.group(1), matcher.group(2));
+      }
+    }
+    catch (IOException e)
+    {
+      return null;
+    }
+
+    if (parts.size() < 3)
+      return null;
+    return "v" + parts.get("MAJOR") + "." + parts.get("MINOR") + "." + parts.get("PATCH");
+  }
+
+  /**
+   * Reads the version from the changelog, the current version is the first bold one in the table at the top
+   *
+   * @param pChangelog changelog file
+   * @return the version, or null if it could not be read
+   */
+  @Nullable
+  private static String _readChangelog(@NonNull File pChangelog)
+  {
+    if (!pChangelog.isFile())
+      return null;
+
+    try (BufferedReader reader = Files.newBufferedReader(pChangelog.toPath(), StandardCharsets.UTF_8))
+    {
+      String line;
+      for (int i = 0; i < _MAX_CHANGELOG_LINES && (line = reader.readLine()) != null; i++)
+      {
+        Matcher matcher = _CHANGELOG_PATTERN.matcher(line);
+        if (matcher.find())
+          return "v" + matcher.group(1);
+      }
+    }
+    catch (IOException e)
+    {
+      // not readable, so no version available
+    }
+
+    return null;
+  }
+
+  /**
+   * Version of a binary, with the attributes of the binary at the time the version was determined
+   */
+  private static class _Version
+  {
+    private final long lastModified;
+    private final long length;
+    private final String version;
+
+    public _Version(long pLastModified, long pLength, @NonNull String pVersion)
+    {
+      lastModified = pLastModified;
+      length = pLength;
+      version = pVersion;
+    }
+
+    /**
+     * @param pBinary nodejs binary
+     * @return true, if the binary did not change since the version was determined
+     */
+    public boolean matches(@NonNull File pBinary)
+    {
+      return lastModified == pBinary.lastModified() && length == pBinary.length();
+    }
+  }
+
+}
@@ -0,0 +1,292 @@
+package de.adito.aditoweb.nbm.nodejs.impl.version;
+
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * Version range of npm (semver), e.g. "^1.2.3", "~1.2", "&gt;=1.0.0 &lt;2.0.0", "1.x || 2.1.0 - 2.3.0".
+ * Versions with a prerelease tag only match, if one of the comparators of the same set contains a prerelease of the same version.
+ *
+ * @author agent, 18.10.2026
+ */
+public final class VersionRange
+{
+
+  private static final Pattern _PARTIAL_PATTERN = Pattern.compile("^[=v]*(\\d+|[xX*])(?:\\.(\\d+|[xX*]))?(?:\\.(\\d+|[xX*]))?(?:-([0-9A-Za-z.-]+))?(?:\\+[0-9A-Za-z.-]+)?$");
+  private static final Pattern _HYPHEN_PATTERN = Pattern.compile("^(\\S+)\\s+-\\s+(\\S+)$");
+  private static final Pattern _OPERATOR_PATTERN = Pattern.compile("(<=|>=|<|>|=|\\^|~>?)\\s+");
+
+  private final List<List<_Comparator>> sets;
+
+  private VersionRange(@NonNull List<List<_Comparator>> pSets)
+  {
+    sets = pSets;
+  }
+
+  /**
+   * Parses the given range
+   *
+   * @param pRange range, an empty range or "latest" matches every version
+   * @return the range
+   * @throws IllegalArgumentException if the range is not valid
+   */
+  @NonNull
+  public static VersionRange parse(@NonNull String pRange)
+  {
+    List<List<_Comparator>> sets = new ArrayList<>();
+    for (String set : pRange.split("\\|\\|"))
+    {
+      String trimmed = _OPERATOR_PATTERN.matcher(set.trim()).replaceAll("$1");
+      List<_Comparator> comparators = new ArrayList<>();
+      Matcher hyphen = _HYPHEN_PATTERN.matcher(trimmed);
+      if (hyphen.matches())
+      {
+        comparators.addAll(_desugar(">=", hyphen.group(1)));
+        comparators.addAll(_desugar("<=", hyphen.group(2)));
+      }
+      else if (!trimmed.isEmpty() && !"latest".equals(trimmed))
+      {
+        for (String part : trimmed.split("\\s+"))
+        {
+          int operatorLength = 0;
+          while (operatorLength < part.length() && "<>=^~".indexOf(part.charAt(operatorLength)) >= 0)
+            operatorLength++;
+          comparators.addAll(_desugar(part.substring(0, operatorLength), part.substring(operatorLength)));
+        }
+      }
+      sets.add(comparators);
+    }
+
+    return new VersionRange(sets);
+  }
+
+  /**
+   * Checks, if the given version is within this range
+   *
+   * @param pVersion version, e.g. "1.2.3" or "v1.2.3-beta.1"
+   * @return true, if it matches
+   */
+  public boolean matches(@NonNull String pVersion)
+  {
+    _Version version = _Version.parse(pVersion);
+    if (version == null)
+      return false;
+
+    for (List<_Comparator> set : sets)
+    {
+      boolean matches = set.stream().allMatch(pComparator -> pComparator.test(version));
+      // prereleases are only allowed, if they were requested explicitly for this version
+      if (matches && !version.prerelease.isEmpty())
+        matches = set.stream().anyMatch(pComparator -> !pComparator.version.prerelease.isEmpty() && pComparator.version.hasSameNumbers(version));
+      if (matches)
+        return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Converts a single comparator with a partial version into primitive comparators
+   *
+   * @param pOperator operator, may be empty
+   * @param pVersion  partial version, e.g. "1.2" or "1.x"
+   * @return the primitive comparators
+   */
+  @NonNull
+  private static List<_Comparator> _desugar(@NonNull String pOperator, @NonNull String pVersion)
+  {
+    Matcher matcher = _PARTIAL_PATTERN.matcher(pVersion);
+    if (!matcher.matches())
+      throw new IllegalArgumentException("invalid version: " + pVersion);
+
+    int major = _number(matcher.group(1));
+    int minor = major < 0 ? -1 : _number(matcher.group(2));
+    int patch = minor < 0 ? -1 : _number(matcher.group(3));
+    String prerelease = patch < 0 || matcher.group(4) == null ? "" : matcher.group(4);
+    _Version lower = new _Version(Math.max(0, major), Math.max(0, minor), Math.max(0, patch), prerelease);
+
+    switch (pOperator)
+    {
+      case "^":
+        if (major < 0)
+          return List.of();
+        if (major > 0 || minor < 0)
+          return List.of(new _Comparator(">=", lower), new _Comparator("<", new _Version(major + 1, 0, 0, "")));
+        if (minor > 0 || patch < 0)
+          return List.of(new _Comparator(">=", lower), new _Comparator("<", new _Version(0, minor + 1, 0, "")));
+        return List.of(new _Comparator(">=", lower), new _Comparator("<", new _Version(0, 0, patch + 1, "")));
+      case "~":
+      case "~>":
+        if (major < 0)
+          return List.of();
+        if (minor < 0)
+          return List.of(new _Comparator(">=", lower), new _Comparator("<", new _Version(major + 1, 0, 0, "")));
+        return List.of(new _Comparator(">=", lower), new _Comparator("<", new _Version(major, minor + 1, 0, "")));
+      case ">":
+        if (major < 0)
+          return List.of(new _Comparator("<", new _Version(0, 0, 0, ""))); // nothing is greater than any version
+        if (minor < 0)
+          return List.of(new _Comparator(">=", new _Version(major + 1, 0, 0, "")));
+        if (patch < 0)
+          return List.of(new _Comparator(">=", new _Version(major, minor + 1, 0, "")));
+        return List.of(new _Comparator(">", lower));
+      case "<":
+        return major < 0 ? List.of(new _Comparator("<", new _Version(0, 0, 0, ""))) : List.of(new _Comparator("<", lower));
+      case ">=":
+        return List.of(new _Comparator(">=", lower));
+      case "<=":
+        if (major < 0)
+          return List.of();
+        if (minor < 0)
+          return List.of(new _Comparator("<", new _Version(major + 1, 0, 0, "")));
+        if (patch < 0)
+          return List.of(new _Comparator("<", new _Version(major, minor + 1, 0, "")));
+        return List.of(new _Comparator("<=", lower));
+      case "":
+      case "=":
+        if (major < 0)
+          return List.of();
+        if (minor < 0)
+          return List.of(new _Comparator(">=", lower), new _Comparator("<", new _Version(major + 1, 0, 0, "")));
+        if (patch < 0)
+          return List.of(new _Comparator(">=", lower), new _Comparator("<", new _Version(major, minor + 1, 0, "")));
+        return List.of(new _Comparator("=", lower));
+      default:
+        throw new IllegalArgumentException("invalid operator: " + pOperator);
+    }
+  }
+
+  /**
+   * @param pPart part of a version
+   * @return the number, or -1 if it is a wildcard or missing
+   */
+  private static int _number(@Nullable String pPart)
+  {
+    if (pPart == null || "x".equalsIgnoreCase(pPart) || "*".equals(pPart))
+      return -1;
+    return Integer.parseInt(pPart);
+  }
+
+  /**
+   * Compares a version with a fixed version
+   */
+  private static class _Comparator
+  {
+    private final String operator;
+    private final _Version version;
+
+    public _Comparator(@NonNull String pOperator, @NonNull _Version pVersion)
+    {
+      operator = pOperator;
+      version = pVersion;
+    }
+
+    /**
+     * @param pVersion version to test
+     * @return true, if the version satisfies this comparator
+     */
+    public boolean test(@NonNull _Version pVersion)
+    {
+      int result = pVersion.compareTo(version);
+      switch (operator)
+      {
+        case ">":
+          return result > 0;
+        case ">=":
+          return result >= 0;
+        case "<":
+          return result < 0;
+        case "<=":
+          return result <= 0;
+        default:
+          return result == 0;
+      }
+    }
+  }
+
+  /**
+   * A complete version
+   */
+  private static class _Version implements Comparable<_Version>
+  {
+    private final int major;
+    private final int minor;
+    private final int patch;
+    private final String prerelease;
+
+    public _Version(int pMajor, int pMinor, int pPatch, @NonNull String pPrerelease)
+    {
+      major = pMajor;
+      minor = pMinor;
+      patch = pPatch;
+      prerelease = pPrerelease;
+    }
+
+    /**
+     * @param pVersion version to parse
+     * @return the version, or null if it is not a complete version
+     */
+    @Nullable
+    public static _Version parse(@NonNull String pVersion)
+    {
+      Matcher matcher = _PARTIAL_PATTERN.matcher(pVersion.trim());
+      if (!matcher.matches() || _number(matcher.group(1)) < 0 || _number(matcher.group(2)) < 0 || _number(matcher.group(3)) < 0)
+        return null;
+      return new _Version(_number(matcher.group(1)), _number(matcher.group(2)), _number(matcher.group(3)),
+                          matcher.group(4) == null ? "" : matcher.group(4));
+    }
+
+    /**
+     * @param pOther other version
+     * @return true, if major, minor and patch are equal
+     */
+    public boolean hasSameNumbers(@NonNull _Version pOther)
+    {
+      return major == pOther.major && minor == pOther.minor && patch == pOther.patch;
+    }
+
+    @Override
+    public int compareTo(@NonNull _Version pOther)
+    {
+      int result = Integer.compare(major, pOther.major);
+      if (result == 0)
+        result = Integer.compare(minor, pOther.minor);
+      if (result == 0)
+        result = Integer.compare(patch, pOther.patch);
+      if (result == 0)
+        result = _comparePrerelease(prerelease, pOther.prerelease);
+      return result;
+    }
+
+    /**
+     * Compares two prerelease tags, a version without prerelease is greater than one with prerelease
+     */
+    private static int _comparePrerelease(@NonNull String pFirst, @NonNull String pSecond)
+    {
+      if (pFirst.isEmpty() || pSecond.isEmpty())
+        return Boolean.compare(pFirst.isEmpty(), pSecond.isEmpty());
+
+      String[] first = pFirst.split("\\.");
+      String[] second = pSecond.split("\\.");
+      for (int i = 0; i < Math.min(first.length, second.length); i++)
+      {
+        boolean firstNumeric = first[i].chars().allMatch(Character::isDigit);
+        boolean secondNumeric = second[i].chars().allMatch(Character::isDigit);
+        int result;
+        if (firstNumeric && secondNumeric)
+          result = Long.compare(Long.parseLong(first[i]), Long.parseLong(second[i]));
+        else if (firstNumeric || secondNumeric)
+          result = firstNumeric ? -1 : 1; // numeric identifiers are lower than alphanumeric ones
+        else
+          result = first[i].compareTo(second[i]);
+        if (result != 0)
+          return result;
+      }
+      return Integer.compare(first.length, second.length);
+    }
+  }
+
+}
@@ -0,0 +1,83 @@
+// Long-lived helper process for de.adito.aditoweb.nbm.nodejs.impl.NodeJSWorkerPool
+// Protocol: one JSON request per line on stdin ({"id": 1, "command": "version", "args": []}),
+//           one JSON response per line on stdout ({"id": 1, "result": ...} or {"id": 1, "error": "..."})
+// The worker exits, if stdin is closed or no request was received within the idle timeout (first argument, in milliseconds)
+const fs = require('fs');
+const path = require('path');
+const readline = require('readline');
+
+const idleTimeout = Number(process.argv[1]) || 60000;
+
+const readPackage = (nodeModules, name) => {
+  try {
+    return JSON.parse(fs.readFileSync(path.join(nodeModules, name, 'package.json'), 'utf8'));
+  } catch (e) {
+    // not installed or no valid package
+    return null;
+  }
+};
+
+const listPackages = (nodeModules) => {
+  const names = [];
+  for (const entry of fs.readdirSync(nodeModules)) {
+    if (entry.startsWith('@'))
+      fs.readdirSync(path.join(nodeModules, entry)).forEach((child) => names.push(entry + '/' + child));
+    else if (!entry.startsWith('.'))
+      names.push(entry);
+  }
+  return names;
+};
+
+const commands = {
+
+  // version of the running node binary, same as "node --version"
+  version: () => process.version,
+
+  // installed versions of the given packages in the given node_modules folder, package name -> version ("" if unknown)
+  // packages, that are not installed, are missing in the result
+  installed: (nodeModules, ...names) => {
+    const result = {};
+    names.forEach((name) => {
+      const pkg = readPackage(nodeModules, name);
+      if (pkg)
+        result[name] = typeof pkg.version === 'string' ? pkg.version : '';
+    });
+    return result;
+  },
+
+  // bin entries of all packages in the given node_modules folder, binary name -> [package name, relative path]
+  binaries: (nodeModules) => {
+    const result = {};
+    listPackages(nodeModules).forEach((name) => {
+      const pkg = readPackage(nodeModules, name);
+      if (pkg && typeof pkg.bin === 'string')
+        result[name.substring(name.lastIndexOf('/') + 1)] = [name, pkg.bin];
+      else if (pkg && pkg.bin)
+        Object.keys(pkg.bin).forEach((bin) => result[bin] = [name, pkg.bin[bin]]);
+    });
+    return result;
+  }
+
+};
+
+const respond = (response) => process.stdout.write(JSON.stringify(response) + '\n');
+
+let idleTimer = setTimeout(() => process.exit(0), idleTimeout);
+
+readline.createInterface({ input: process.stdin })
+  .on('line', (line) => {
+    clearTimeout(idleTimer);
+    idleTimer = setTimeout(() => process.exit(0), idleTimeout);
+
+    let request = {};
+    try {
+      request = JSON.parse(line);
+      const command = commands[request.command];
+      if (!command)
+        throw new Error('unknown command: ' + request.command);
+      respond({ id: request.id, result: command(...(request.args || [])) });
+    } catch (e) {
+      respond({ id: request.id, error: String((e && e.message) || e) });
+    }
+  })
+  .on('close', () => process.exit(0));
@@ -0,0 +1,203 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.INodeJSExecBase;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * @author agent, 18.10.2026
+ * @see InstalledPackagesIndex
+ */
+class InstalledPackagesIndexTest
+{
+
+  private File directory;
+  private File nodeModules;
+  private File indexFile;
+
+  @BeforeEach
+  void setUp() throws IOException
+  {
+    directory = new File("target/installed_packages_index");
+    FileUtils.deleteDirectory(directory);
+    nodeModules = new File(directory, "node_modules");
+    indexFile = new File(directory, "index.json");
+    Files.createDirectories(nodeModules.toPath());
+  }
+
+  @Test
+  void shouldAnswerInstalledPackages() throws IOException
+  {
+    _writePackage("typescript", "{\"name\": \"typescript\", \"version\": \"4.5.2\", \"bin\": {\"tsc\": \"./bin/tsc\"}}");
+    _writePackage("@scope/tool", "{\"version\": \"1.0.0-beta.1\", \"bin\": \"cli.js\"}");
+
+    InstalledPackagesIndex index = _createIndex();
+
+    Assertions.assertTrue(index.isInstalled("typescript"));
+    Assertions.assertTrue(index.isInstalled("typescript@4.5.2"));
+    Assertions.assertTrue(index.isInstalled("typescript@^4.5.0"));
+    Assertions.assertFalse(index.isInstalled("typescript@^5.0.0"));
+    Assertions.assertTrue(index.isInstalled("@scope/tool@1.0.0-beta.1"));
+    Assertions.assertFalse(index.isInstalled("@scope/other"));
+    Assertions.assertEquals(Set.of("tsc", "tool"), index.getBinaries().keySet());
+    Assertions.assertEquals(INodeJSExecBase.module("typescript", "./bin/tsc").getBasePath(), index.findBinary("tsc").orElseThrow().getBasePath());
+  }
+
+  @Test
+  void shouldIgnoreInvalidPackages() throws IOException
+  {
+    _writePackage("nobin", "{\"name\": \"nobin\", \"version\": \"1.0.0\", \"bin\": 5}");
+    _writePackage("broken", "{\"name\":");
+    Files.createDirectories(new File(nodeModules, "nopackage").toPath());
+    Files.writeString(new File(nodeModules, ".package-lock.json").toPath(), "{}");
+
+    InstalledPackagesIndex index = _createIndex();
+
+    Assertions.assertEquals(Set.of("nobin"), index.getPackages().keySet());
+    Assertions.assertEquals(Map.of(), index.getBinaries());
+
+    InstalledPackagesIndex missing = new InstalledPackagesIndex(new File(directory, "missing"), new File(directory, "missing.json"), false);
+    missing.refresh();
+    Assertions.assertEquals(Map.of(), missing.getPackages());
+  }
+
+  @Test
+  void shouldReportChanges() throws IOException
+  {
+    _writePackage("a", "{\"version\": \"1.0.0\"}");
+    _writePackage("b", "{\"version\": \"1.0.0\"}");
+    InstalledPackagesIndex index = _createIndex();
+    long generation = index.getGeneration();
+
+    _writePackage("a", "{\"version\": \"1.1.0\", \"description\": \"changed\"}");
+    FileUtils.deleteDirectory(new File(nodeModules, "b"));
+    _writePackage("c", "{\"version\": \"1.0.0\"}");
+    index.refresh();
+
+    List<InstalledPackagesIndex.Change> changes = index.getChangesSince(generation);
+    Assertions.assertEquals(List.of(new InstalledPackagesIndex.Change(generation + 1, "a", InstalledPackagesIndex.ChangeType.UPDATED),
+                                    new InstalledPackagesIndex.Change(generation + 1, "b", InstalledPackagesIndex.ChangeType.REMOVED),
+                                    new InstalledPackagesIndex.Change(generation + 1, "c", InstalledPackagesIndex.ChangeType.ADDED)),
+                            changes);
+    Assertions.assertTrue(index.getChangesSince(index.getGeneration()).isEmpty());
+    Assertions.assertTrue(index.isInstalled("a@1.1.0"));
+  }
+
+  @Test
+  void shouldLoadPersistedIndex() throws IOException
+  {
+    _writePackage("typescript", "{\"version\": \"4.5.2\"}");
+    InstalledPackagesIndex first = _createIndex();
+
+    // a new index reads the persisted one and only detects the changes in between
+    _writePackage("other", "{\"version\": \"2.0.0\"}");
+    InstalledPackagesIndex second = _createIndex();
+
+    Assertions.assertEquals(first.getGeneration() + 1, second.getGeneration());
+    Assertions.assertEquals(Set.of("typescript", "other"), second.getPackages().keySet());
+    Assertions.assertEquals(first.getPackage("typescript"), second.getPackage("typescript"));
+  }
+
+  @Test
+  void shouldRefreshOnlyChangedPackages() throws IOException
+  {
+    _writePackage("a", "{\"version\": \"1.0.0\"}");
+    _writePackage("b", "{\"version\": \"1.0.0\"}");
+    _writePackage("@scope/c", "{\"version\": \"1.0.0\"}");
+    InstalledPackagesIndex index = _createIndex();
+
+    _writePackage("a", "{\"version\": \"10.0.0\"}");
+    _writePackage("b", "{\"version\": \"10.0.0\"}");
+    _writePackage("@scope/c", "{\"version\": \"10.0.0\"}");
+    index.notifyChanged(new File(nodeModules, "a"));
+    index.notifyChanged(new File(nodeModules, "@scope/c"));
+    index.refreshChanged();
+
+    // the sizes of the package.json files changed, but b did not send an event, so it has not been read again
+    Assertions.assertTrue(index.isInstalled("a@10.0.0"));
+    Assertions.assertTrue(index.isInstalled("b@1.0.0"));
+    Assertions.assertTrue(index.isInstalled("@scope/c@10.0.0"));
+
+    FileUtils.deleteDirectory(new File(nodeModules, "a"));
+    index.notifyChanged(new File(nodeModules, "a"));
+    index.refreshChanged();
+    Assertions.assertFalse(index.isInstalled("a"));
+  }
+
+  @Test
+  void shouldRefreshPackagesChangedInLockFile() throws IOException
+  {
+    _writePackage("a", "{\"version\": \"1.0.0\"}");
+    _writePackage("b", "{\"version\": \"1.0.0\"}");
+    InstalledPackagesIndex index = _createIndex();
+
+    // npm updated a and installed c, the lock file does not know about the change of b
+    _writePackage("a", "{\"version\": \"10.0.0\"}");
+    _writePackage("b", "{\"version\": \"10.0.0\"}");
+    _writePackage("c", "{\"version\": \"1.0.0\"}");
+    File lockFile = new File(nodeModules, ".package-lock.json");
+    Files.writeString(lockFile.toPath(), "{\"name\": \"project\", \"packages\": {"
+        + "\"node_modules/a\": {\"version\": \"10.0.0\"}, "
+        + "\"node_modules/b\": {\"version\": \"1.0.0\"}, "
+        + "\"node_modules/b/node_modules/a\": {\"version\": \"3.0.0\"}, "
+        + "\"node_modules/c\": {\"version\": \"1.0.0\", \"dev\": true}}}");
+    index.notifyChanged(lockFile);
+    index.refreshChanged();
+
+    Assertions.assertTrue(index.isInstalled("a@10.0.0"));
+    Assertions.assertTrue(index.isInstalled("b@1.0.0"));
+    Assertions.assertTrue(index.isInstalled("c@1.0.0"));
+  }
+
+  @Test
+  void shouldServeStaleResultsWhileScanning() throws Exception
+  {
+    _writePackage("typescript", "{\"version\": \"4.5.2\"}");
+    _createIndex();
+    _writePackage("other", "{\"version\": \"2.0.0\"}");
+
+    InstalledPackagesIndex index = new InstalledPackagesIndex(nodeModules, indexFile, false);
+    Assertions.assertFalse(index.isAvailable());
+
+    // the scan in the background has to wait, until the monitor of the index is released
+    synchronized (index)
+    {
+      index.load();
+      Assertions.assertTrue(index.isAvailable());
+      Assertions.assertEquals(Set.of("typescript"), index.getPackages().keySet());
+    }
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!index.isInstalled("other"))
+    {
+      Assertions.assertTrue(System.currentTimeMillis() < deadline, "the index was not scanned in time");
+      //noinspection BusyWait
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * @return a new index, that is loaded and not watching
+   */
+  private InstalledPackagesIndex _createIndex()
+  {
+    InstalledPackagesIndex index = new InstalledPackagesIndex(nodeModules, indexFile, false);
+    index.refresh();
+    return index;
+  }
+
+  /**
+   * Writes the package.json of a package
+   */
+  private void _writePackage(String pName, String pPackageJson) throws IOException
+  {
+    File packageJson = new File(nodeModules, pName + "/package.json");
+    Files.createDirectories(packageJson.getParentFile().toPath());
+    Files.writeString(packageJson.toPath(), pPackageJson);
+  }
+
+}
@@ -0,0 +1,191 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * @author agent, 18.10.2026
+ * @see NPMOfflineCache
+ */
+class NPMOfflineCacheTest
+{
+
+  private static final String _PACKAGE = "typescript@4.5.2";
+
+  private File directory;
+  private File nodeModules;
+
+  @BeforeEach
+  void setUp() throws IOException
+  {
+    directory = new File("target/npm_offline_cache");
+    FileUtils.deleteDirectory(directory);
+    nodeModules = new File(directory, "node_modules");
+    Files.createDirectories(nodeModules.toPath());
+  }
+
+  @Test
+  void shouldPinInstalledPackage() throws Exception
+  {
+    NPMOfflineCache cache = new NPMOfflineCache(new File(directory, "cache"), null);
+    String integrity = _addTarball(cache.getDirectory(), "tarball");
+    _writeHiddenLock("typescript", "4.5.2", integrity);
+
+    Assertions.assertFalse(cache.isAvailable(List.of(_PACKAGE)));
+
+    cache.pin(nodeModules, List.of(_PACKAGE));
+
+    Assertions.assertTrue(cache.isAvailable(List.of(_PACKAGE)));
+    Assertions.assertEquals(Optional.of(new NPMOfflineCache.PinnedPackage("typescript", "4.5.2", integrity, Map.of())), cache.getPinned(_PACKAGE));
+
+    // the lock file is persisted
+    NPMOfflineCache reloaded = new NPMOfflineCache(new File(directory, "cache"), null);
+    Assertions.assertTrue(reloaded.isAvailable(List.of(_PACKAGE)));
+  }
+
+  @Test
+  void shouldNotPinPackageWithoutTarball() throws Exception
+  {
+    NPMOfflineCache cache = new NPMOfflineCache(new File(directory, "cache"), null);
+    _writeHiddenLock("typescript", "4.5.2", _integrity("tarball"));
+
+    cache.pin(nodeModules, List.of(_PACKAGE));
+
+    Assertions.assertTrue(cache.getPinned(_PACKAGE).isEmpty());
+  }
+
+  @Test
+  void shouldDetectCorruptedTarball() throws Exception
+  {
+    File seed = new File(directory, "seed");
+    NPMOfflineCache seedCache = new NPMOfflineCache(seed, null);
+    String integrity = _addTarball(seed, "tarball");
+    _writeHiddenLock("typescript", "4.5.2", integrity);
+    seedCache.pin(nodeModules, List.of(_PACKAGE));
+
+    // corrupt the tarball in the seed, after it was pinned
+    File content = Files.walk(new File(seed, "_cacache").toPath()).filter(Files::isRegularFile).findFirst().orElseThrow().toFile();
+    Files.writeString(content.toPath(), "corrupted");
+
+    NPMOfflineCache cache = new NPMOfflineCache(new File(directory, "cache"), seed);
+    cache.seed(List.of(_PACKAGE));
+
+    Assertions.assertTrue(cache.getPinned(_PACKAGE).isPresent());
+    Assertions.assertFalse(cache.isAvailable(List.of(_PACKAGE)));
+  }
+
+  @Test
+  void shouldImportSeed() throws Exception
+  {
+    File seed = new File(directory, "seed");
+    NPMOfflineCache seedCache = new NPMOfflineCache(seed, null);
+    _writeHiddenLock("typescript", "4.5.2", _addTarball(seed, "tarball"));
+    seedCache.pin(nodeModules, List.of(_PACKAGE));
+
+    NPMOfflineCache cache = new NPMOfflineCache(new File(directory, "cache"), seed);
+    Assertions.assertFalse(cache.isAvailable(List.of(_PACKAGE)));
+
+    cache.seed(List.of(_PACKAGE));
+
+    Assertions.assertTrue(cache.isAvailable(List.of(_PACKAGE)));
+    Assertions.assertTrue(cache.getArguments(true).contains("--offline"));
+    Assertions.assertTrue(cache.getArguments(true).contains(cache.getDirectory().getAbsolutePath()));
+  }
+
+  @Test
+  void shouldPinDependencies() throws Exception
+  {
+    NPMOfflineCache cache = new NPMOfflineCache(new File(directory, "cache"), null);
+    String integrity = _addTarball(cache.getDirectory(), "tarball");
+    String shared = _addTarball(cache.getDirectory(), "shared");
+    String nested = _addTarball(cache.getDirectory(), "nested");
+    String transitive = _integrity("transitive");
+    Files.writeString(new File(nodeModules, ".package-lock.json").toPath(),
+                      "{\"lockfileVersion\": 3, \"packages\": {" +
+                          "\"node_modules/typescript\": {\"version\": \"4.5.2\", \"integrity\": \"" + integrity + "\", " +
+                          "\"dependencies\": {\"shared\": \"^1.0.0\", \"nested\": \"^2.0.0\"}, \"optionalDependencies\": {\"other-os\": \"1.0.0\"}}, " +
+                          "\"node_modules/typescript/node_modules/nested\": {\"version\": \"2.0.0\", \"integrity\": \"" + nested + "\", " +
+                          "\"dependencies\": {\"transitive\": \"1.0.0\"}}, " +
+                          "\"node_modules/shared\": {\"version\": \"1.0.0\", \"integrity\": \"" + shared + "\"}, " +
+                          "\"node_modules/nested\": {\"version\": \"1.0.0\", \"integrity\": \"" + _integrity("unused") + "\"}, " +
+                          "\"node_modules/transitive\": {\"version\": \"1.0.0\", \"integrity\": \"" + transitive + "\"}}}");
+
+    // the tarball of the transitive dependency is missing
+    cache.pin(nodeModules, List.of(_PACKAGE));
+    Assertions.assertTrue(cache.getPinned(_PACKAGE).isEmpty());
+
+    _addTarball(cache.getDirectory(), "transitive");
+    cache.pin(nodeModules, List.of(_PACKAGE));
+    Assertions.assertEquals(Map.of("node_modules/shared", shared,
+                                   "node_modules/typescript/node_modules/nested", nested,
+                                   "node_modules/transitive", transitive),
+                            cache.getPinned(_PACKAGE).orElseThrow().getDependencies());
+    Assertions.assertTrue(new NPMOfflineCache(new File(directory, "cache"), null).isAvailable(List.of(_PACKAGE)));
+
+    // a corrupted dependency prevents the offline installation
+    Files.writeString(_getContentFile(cache.getDirectory(), "shared").toPath(), "corrupted");
+    Assertions.assertFalse(new NPMOfflineCache(new File(directory, "cache"), null).isAvailable(List.of(_PACKAGE)));
+  }
+
+  @Test
+  void shouldVerifyAnyStoredHash() throws Exception
+  {
+    NPMOfflineCache cache = new NPMOfflineCache(new File(directory, "cache"), null);
+    String integrity = _integrity("missing") + " " + _addTarball(cache.getDirectory(), "tarball");
+    _writeHiddenLock("typescript", "4.5.2", integrity);
+
+    cache.pin(nodeModules, List.of(_PACKAGE));
+
+    Assertions.assertTrue(cache.isAvailable(List.of(_PACKAGE)));
+  }
+
+  /**
+   * Adds a tarball to the content-addressed folder of a npm cache
+   *
+   * @return the integrity of the tarball
+   */
+  private static String _addTarball(File pCache, String pContent) throws Exception
+  {
+    File file = _getContentFile(pCache, pContent);
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.writeString(file.toPath(), pContent);
+    return _integrity(pContent);
+  }
+
+  /**
+   * @return the file of the tarball with the given content, in the content-addressed folder of a npm cache
+   */
+  private static File _getContentFile(File pCache, String pContent) throws Exception
+  {
+    byte[] hash = MessageDigest.getInstance("SHA-512").digest(pContent.getBytes(StandardCharsets.UTF_8));
+    StringBuilder hex = new StringBuilder();
+    for (byte b : hash)
+      hex.append(String.format("%02x", b));
+    return new File(pCache, "_cacache/content-v2/sha512/" + hex.substring(0, 2) + "/" + hex.substring(2, 4) + "/" + hex.substring(4));
+  }
+
+  /**
+   * @return the integrity of the content, in the format of npm
+   */
+  private static String _integrity(String pContent) throws Exception
+  {
+    return "sha512-" + Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-512").digest(pContent.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Writes the hidden lock file, that npm creates in node_modules
+   */
+  private void _writeHiddenLock(String pName, String pVersion, String pIntegrity) throws IOException
+  {
+    Files.writeString(new File(nodeModules, ".package-lock.json").toPath(),
+                      "{\"lockfileVersion\": 3, \"requires\": true, \"packages\": {\"node_modules/" + pName + "\": " +
+                          "{\"version\": \"" + pVersion + "\", \"integrity\": \"" + pIntegrity + "\"}}}");
+  }
+
+}
@@ -3,10 +3,17 @@ package de.adito.aditoweb.nbm.nodejs.impl;
 import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.*;
 import de.adito.aditoweb.nbm.nodejs.impl.options.downloader.INodeJSDownloader;
 import de.adito.aditoweb.nbm.nodejs.impl.version.NodeJSEnvironmentFactory;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
 import org.junit.jupiter.api.*;
 
-import java.io.File;
-import java.util.stream.Stream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.*;
 
 /**
  * @author w.glanzer, 19.03.2021
@@ -14,6 +21,8 @@ import java.util.stream.Stream;
 class NodeJSExecutorImplTest
 {
 
+  private static final Logger _LOGGER = Logger.getLogger(NodeJSExecutorImplTest.class.getName());
+
   private INodeJSEnvironment env;
   private NodeJSExecutorImpl executor;
 
@@ -51,4 +60,156 @@ class NodeJSExecutorImplTest
     Assertions.assertTrue(env.resolveExecBase(INodeJSExecBase.packageManager()).exists());
   }
 
+  /**
+   * Starts a lot of short commands concurrently and checks, that every process only occupies a single task of the bounded pool
+   * and that the futures are completed by this task - no additional task has to wait for or poll the execution.
+   * The former implementation needed a second waiting thread per process.
+   */
+  @Test
+  void shouldCompleteConcurrentExecutionsWithOneThreadPerProcess() throws Exception
+  {
+    int count = 200;
+    int poolSize = NodeJSExecutorImpl.getPoolStatistics().getMaxThreads();
+    long submittedBefore = NodeJSExecutorImpl.getPoolStatistics().getSubmittedTasks();
+    int threadsBefore = _countExecutorThreads();
+    AtomicInteger maxThreads = new AtomicInteger(0);
+    ScheduledExecutorService threadCounter = Executors.newSingleThreadScheduledExecutor();
+    threadCounter.scheduleAtFixedRate(() -> maxThreads.accumulateAndGet(_countExecutorThreads(), Math::max), 0, 5, TimeUnit.MILLISECONDS);
+
+    try
+    {
+      List<CompletableFuture<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < count; i++)
+        futures.add(executor.executeAsync(env, INodeJSExecBase.node(), new ByteArrayOutputStream(), null, null, "-e", "console.log('done')"));
+
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.MINUTES);
+      for (CompletableFuture<Integer> future : futures)
+        Assertions.assertEquals(0, future.get());
+
+      long submittedTasks = NodeJSExecutorImpl.getPoolStatistics().getSubmittedTasks() - submittedBefore;
+      int usedThreads = maxThreads.get() - threadsBefore;
+      _LOGGER.info("Executed " + count + " processes with " + submittedTasks + " tasks on " + usedThreads + " executor threads");
+
+      // exactly one task per process, the futures are completed by it and not by a polling task
+      Assertions.assertEquals(count, submittedTasks);
+
+      // never more threads than processes or than the shared pool allows - the former implementation used two per process
+      Assertions.assertTrue(usedThreads <= Math.min(count, poolSize), () -> "too many executor threads: " + usedThreads);
+    }
+    finally
+    {
+      threadCounter.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldShareUnboundExecutorPerDirectory()
+  {
+    Assertions.assertSame(NodeJSExecutorImpl.getInternalUnboundExecutor(new File("target")),
+                          NodeJSExecutorImpl.getInternalUnboundExecutor(new File("target").getAbsoluteFile()));
+    Assertions.assertNotSame(NodeJSExecutorImpl.getInternalUnboundExecutor(new File("target")),
+                             NodeJSExecutorImpl.getInternalUnboundExecutor(new File("src")));
+  }
+
+  @Test
+  void shouldCountExecutionsInPoolStatistics() throws Exception
+  {
+    long submittedBefore = NodeJSExecutorImpl.getPoolStatistics().getSubmittedTasks();
+    executor.executeSync(env, INodeJSExecBase.node(), 30000, "-e", "");
+
+    Assertions.assertTrue(NodeJSExecutorImpl.getPoolStatistics().getSubmittedTasks() > submittedBefore);
+    Assertions.assertTrue(NodeJSExecutorImpl.getPoolStatistics().getMaxThreads() > 0);
+  }
+
+  @Test
+  void shouldExecuteToFileWithExitCode() throws Exception
+  {
+    File output = new File("target/executor_test_output/output.log");
+    //noinspection ResultOfMethodCallIgnored
+    output.getParentFile().mkdirs();
+
+    int exitCode = executor.executeToFile(env, INodeJSExecBase.node(), output, "-e", "console.log('out'); console.error('err'); process.exitCode = 3")
+        .get(30, TimeUnit.SECONDS);
+
+    Assertions.assertEquals(3, exitCode);
+    String content = Files.readString(output.toPath(), StandardCharsets.UTF_8);
+    Assertions.assertTrue(content.contains("out\n"), content);
+    Assertions.assertTrue(content.contains("err\n"), content);
+  }
+
+  @Test
+  void shouldTerminateProcessOnTimeout() throws Exception
+  {
+    File pidFile = new File("target/executor_test_output/timeout.pid");
+    //noinspection ResultOfMethodCallIgnored
+    pidFile.getParentFile().mkdirs();
+    Files.deleteIfExists(pidFile.toPath());
+
+    String script = "require('fs').writeFileSync(process.argv[1], String(process.pid)); setTimeout(() => {}, 60000)";
+    Assertions.assertThrows(TimeoutException.class, () -> executor.executeSync(env, INodeJSExecBase.node(), 2000, false, "-e", script,
+                                                                                 pidFile.getAbsolutePath()));
+
+    long pid = Long.parseLong(Files.readString(pidFile.toPath(), StandardCharsets.UTF_8));
+    ProcessHandle process = ProcessHandle.of(pid).orElse(null);
+    if (process != null)
+      Assertions.assertDoesNotThrow(() -> process.onExit().get(10, TimeUnit.SECONDS), "process was not terminated after the timeout");
+  }
+
+  @Test
+  void shouldStreamLinesAndExitCode()
+  {
+    List<ProcessEvent> events = executor.executeStreaming(env, INodeJSExecBase.node(), "-e",
+                                                          "for (let i = 0; i < 1000; i++) console.log(i); console.error('failed'); process.exitCode = 3")
+        .toList()
+        .blockingGet();
+
+    Assertions.assertEquals(1000, events.stream().filter(pEvent -> pEvent.getType() == ProcessEvent.Type.STDOUT).count());
+    Assertions.assertEquals("999", events.stream().filter(pEvent -> pEvent.getType() == ProcessEvent.Type.STDOUT).reduce((pA, pB) -> pB)
+        .map(ProcessEvent::getLine).orElse(null));
+    Assertions.assertEquals(List.of("failed"), events.stream().filter(pEvent -> pEvent.getType() == ProcessEvent.Type.STDERR)
+        .map(ProcessEvent::getLine).collect(Collectors.toList()));
+    Assertions.assertEquals(ProcessEvent.exit(3), events.get(events.size() - 1));
+  }
+
+  /**
+   * Checks, that the output is not read, if the subscriber does not request it - so the process blocks as soon as the pipe is full
+   */
+  @Test
+  void shouldPauseProcessWithoutRequests() throws Exception
+  {
+    File marker = new File("target/streaming_marker");
+    //noinspection ResultOfMethodCallIgnored
+    marker.delete();
+
+    // writes about 10 MB synchronously, the marker is created after everything was written
+    String script = "const fs = require('fs'); const line = 'x'.repeat(100) + '\\n';"
+        + "for (let i = 0; i < 100000; i++) fs.writeSync(1, line);"
+        + "fs.writeFileSync(process.argv[1], 'done');";
+    TestSubscriber<ProcessEvent> subscriber = executor.executeStreaming(env, INodeJSExecBase.node(), "-e", script, marker.getAbsolutePath())
+        .test(10);
+
+    subscriber.awaitCount(10);
+    Thread.sleep(2000);
+    Assertions.assertFalse(marker.exists(), "the process should block, because the output was not requested");
+    subscriber.assertValueCount(10);
+
+    // request everything, so that the process is able to finish
+    subscriber.request(Long.MAX_VALUE);
+    subscriber.await(1, TimeUnit.MINUTES);
+    subscriber.assertComplete();
+    Assertions.assertTrue(marker.exists());
+    Assertions.assertEquals(100001, subscriber.values().size());
+  }
+
+  /**
+   * @return the number of currently alive threads of the executor
+   */
+  private static int _countExecutorThreads()
+  {
+    return (int) Thread.getAllStackTraces().keySet().stream()
+        .filter(Thread::isAlive)
+        .filter(pThread -> pThread.getName().startsWith("tNodeJSExecutor-"))
+        .count();
+  }
+
 }
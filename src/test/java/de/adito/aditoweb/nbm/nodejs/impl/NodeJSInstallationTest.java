@@ -0,0 +1,151 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.INodeJSEnvironment;
+import de.adito.aditoweb.nbm.nodejs.impl.options.NodeJSOptions;
+import de.adito.aditoweb.nbm.nodejs.impl.version.NodeJSEnvironmentFactory;
+import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.subjects.PublishSubject;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author agent, 18.10.2026
+ * @see NodeJSInstallation
+ */
+class NodeJSInstallationTest
+{
+
+  private File target;
+  private PublishSubject<NodeJSOptions> options;
+  private PublishSubject<Long> installation;
+  private MockedStatic<NodeJSOptions> optionsMock;
+  private MockedStatic<NodeJSInstaller> installerMock;
+
+  @BeforeEach
+  void setUp() throws IOException
+  {
+    target = new File("target/nodejs_installation");
+    FileUtils.deleteDirectory(target);
+    Files.createDirectories(target.toPath());
+
+    options = PublishSubject.create();
+    installation = PublishSubject.create();
+    optionsMock = Mockito.mockStatic(NodeJSOptions.class);
+    optionsMock.when(NodeJSOptions::observe).thenReturn(options);
+    installerMock = Mockito.mockStatic(NodeJSInstaller.class);
+    installerMock.when(NodeJSInstaller::observeInstallation).thenReturn(installation);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException
+  {
+    optionsMock.close();
+    installerMock.close();
+    FileUtils.deleteDirectory(target);
+  }
+
+  /**
+   * Checks that the snapshot is only determined again, if the options or the installation change
+   */
+  @Test
+  void shouldRecomputeSnapshotOnChanges()
+  {
+    AtomicInteger calls = new AtomicInteger();
+    NodeJSInstallation.CurrentSnapshot snapshot = new NodeJSInstallation.CurrentSnapshot(
+        () -> new NodeJSInstallation(new File(target, "root" + calls.incrementAndGet()), true));
+    TestObserver<NodeJSInstallation> observer = snapshot.observe().test();
+
+    Assertions.assertEquals(new File(target, "root1"), snapshot.get().getRootFolder());
+    Assertions.assertSame(snapshot.get(), snapshot.get());
+    Assertions.assertEquals(1, calls.get());
+
+    options.onNext(Mockito.mock(NodeJSOptions.class));
+    Assertions.assertEquals(new File(target, "root2"), snapshot.get().getRootFolder());
+
+    installation.onNext(System.currentTimeMillis());
+    Assertions.assertEquals(new File(target, "root3"), snapshot.get().getRootFolder());
+    Assertions.assertEquals(3, calls.get());
+    observer.assertValueCount(3);
+  }
+
+  /**
+   * Checks that the previous snapshot is kept, if the installation can not be determined
+   */
+  @Test
+  void shouldKeepSnapshotIfProviderFails()
+  {
+    AtomicInteger calls = new AtomicInteger();
+    NodeJSInstallation.CurrentSnapshot snapshot = new NodeJSInstallation.CurrentSnapshot(() -> {
+      if (calls.incrementAndGet() == 2)
+        throw new IllegalStateException("options are not available");
+      return new NodeJSInstallation(new File(target, "root" + calls.get()), true);
+    });
+
+    options.onNext(Mockito.mock(NodeJSOptions.class));
+    Assertions.assertEquals(new File(target, "root1"), snapshot.get().getRootFolder());
+
+    // the failure did not end the observation
+    installation.onNext(System.currentTimeMillis());
+    Assertions.assertEquals(new File(target, "root3"), snapshot.get().getRootFolder());
+  }
+
+  /**
+   * Checks that the bundled installation is used, if the first snapshot can not be determined
+   */
+  @Test
+  void shouldUseBundledInstallationIfFirstSnapshotFails()
+  {
+    AtomicInteger calls = new AtomicInteger();
+    NodeJSInstallation.CurrentSnapshot snapshot = new NodeJSInstallation.CurrentSnapshot(() -> {
+      if (calls.incrementAndGet() == 1)
+        throw new IllegalStateException("options are not available");
+      return new NodeJSInstallation(new File(target, "root" + calls.get()), false);
+    });
+
+    Assertions.assertEquals(new NodeJSInstallation.BundledInstallationProvider().get(), snapshot.get());
+
+    // the next change uses the provider again
+    options.onNext(Mockito.mock(NodeJSOptions.class));
+    Assertions.assertEquals(new File(target, "root2"), snapshot.get().getRootFolder());
+  }
+
+  /**
+   * Checks that the environment is resolved once and resolved again, after it became invalid
+   */
+  @Test
+  void shouldResolveInvalidatedEnvironmentAgain() throws IOException
+  {
+    // the binary is searched in the os specific location
+    File root = new File(target, "root");
+    Files.createDirectories(new File(root, "bin").toPath());
+    Files.writeString(new File(root, "bin/node").toPath(), "");
+    Files.writeString(new File(root, "node.exe").toPath(), "");
+
+    INodeJSEnvironment first = Mockito.mock(INodeJSEnvironment.class);
+    Mockito.when(first.isValid()).thenReturn(true);
+    INodeJSEnvironment second = Mockito.mock(INodeJSEnvironment.class);
+    Mockito.when(second.isValid()).thenReturn(true);
+
+    try (MockedStatic<NodeJSEnvironmentFactory> factoryMock = Mockito.mockStatic(NodeJSEnvironmentFactory.class))
+    {
+      factoryMock.when(() -> NodeJSEnvironmentFactory.create(Mockito.any())).thenReturn(first, second);
+      NodeJSInstallation nodeJSInstallation = new NodeJSInstallation(root, true);
+
+      Assertions.assertSame(first, nodeJSInstallation.getEnvironment());
+      Assertions.assertSame(first, nodeJSInstallation.getEnvironment());
+      factoryMock.verify(() -> NodeJSEnvironmentFactory.create(Mockito.any()), Mockito.times(1));
+
+      // e.g. the binary was deleted
+      Mockito.when(first.isValid()).thenReturn(false);
+      Assertions.assertSame(second, nodeJSInstallation.getEnvironment());
+      Assertions.assertSame(second, nodeJSInstallation.getEnvironment());
+      factoryMock.verify(() -> NodeJSEnvironmentFactory.create(Mockito.any()), Mockito.times(2));
+    }
+  }
+
+}
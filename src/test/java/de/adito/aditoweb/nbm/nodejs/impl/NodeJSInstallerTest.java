@@ -1,7 +1,9 @@
 package de.adito.aditoweb.nbm.nodejs.impl;
 
 import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.INodeJSEnvironment;
+import de.adito.aditoweb.nbm.nodejs.impl.options.NodeJSOptions;
 import de.adito.aditoweb.nbm.nodejs.impl.options.downloader.INodeJSDownloader;
+import io.reactivex.rxjava3.subjects.PublishSubject;
 import lombok.NonNull;
 import org.apache.commons.io.FileUtils;
 import org.jetbrains.annotations.*;
@@ -12,6 +14,9 @@ import org.mockito.*;
 import org.openide.util.BaseUtilities;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.stream.Stream;
 
 /**
@@ -168,4 +173,139 @@ class NodeJSInstallerTest
     }
   }
 
+  /**
+   * Checks that the offline cache is verified while nodejs is downloaded, and that the dependent tasks wait for their inputs
+   */
+  @Test
+  void shouldVerifyOfflineCacheWhileNodeJsIsDownloaded() throws Exception
+  {
+    CountDownLatch cacheVerifying = new CountDownLatch(1);
+    List<String> finished = Collections.synchronizedList(new ArrayList<>());
+    AtomicReference<Boolean> cacheVerified = new AtomicReference<>();
+    NodeJSInstaller graphInstaller = new NodeJSInstaller()
+    {
+      @Override
+      boolean isInvalidInstallation()
+      {
+        return false;
+      }
+
+      @Override
+      protected void downloadBundledNodeJS() throws IOException
+      {
+        // only finishes, if the cache is verified at the same time
+        try
+        {
+          Assertions.assertTrue(cacheVerifying.await(5, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e)
+        {
+          throw new InterruptedIOException();
+        }
+        finished.add("nodejs");
+      }
+
+      @Override
+      boolean verifyOfflineCache()
+      {
+        finished.add("cache");
+        cacheVerifying.countDown();
+        return true;
+      }
+
+      @Override
+      void downloadRequiredGlobalPackages(@NonNull CompletableFuture<Boolean> pCacheVerified)
+      {
+        cacheVerified.set(pCacheVerified.join());
+        finished.add("packages");
+      }
+
+      @Override
+      void disableSymlinksIfNodeMeetsTheRequiredVersion()
+      {
+        finished.add("symlinks");
+      }
+    };
+
+    graphInstaller.runTasks().get(10, TimeUnit.SECONDS);
+
+    Assertions.assertEquals(Boolean.TRUE, cacheVerified.get());
+    Assertions.assertEquals(Set.of("cache", "nodejs", "packages", "symlinks"), Set.copyOf(finished));
+    Assertions.assertEquals(0, finished.indexOf("cache"));
+    Assertions.assertTrue(finished.indexOf("packages") > finished.indexOf("nodejs"));
+    Assertions.assertTrue(finished.indexOf("symlinks") > finished.indexOf("nodejs"));
+  }
+
+  /**
+   * Checks that all requests during a run result in a single additional run
+   */
+  @Test
+  void shouldRerunOnceIfRequestedDuringRun()
+  {
+    List<CompletableFuture<Void>> runs = Collections.synchronizedList(new ArrayList<>());
+    NodeJSInstaller rerunInstaller = new NodeJSInstaller()
+    {
+      @NonNull
+      @Override
+      CompletableFuture<Void> runTasks()
+      {
+        CompletableFuture<Void> run = new CompletableFuture<>();
+        runs.add(run);
+        return run;
+      }
+    };
+
+    rerunInstaller.downloadLibraries();
+    rerunInstaller.downloadLibraries();
+    rerunInstaller.downloadLibraries();
+    Assertions.assertEquals(1, runs.size());
+
+    runs.get(0).complete(null);
+    Assertions.assertEquals(2, runs.size());
+
+    runs.get(1).complete(null);
+    Assertions.assertEquals(2, runs.size());
+
+    // the installer is idle again, so the next request starts a run immediately
+    rerunInstaller.downloadLibraries();
+    Assertions.assertEquals(3, runs.size());
+  }
+
+  /**
+   * Checks that multiple changes of the options in a short time result in a single run
+   */
+  @Test
+  void shouldDebounceOptionChanges() throws Exception
+  {
+    PublishSubject<NodeJSOptions> options = PublishSubject.create();
+    AtomicInteger runs = new AtomicInteger();
+    NodeJSInstaller debouncedInstaller = new NodeJSInstaller()
+    {
+      @NonNull
+      @Override
+      CompletableFuture<Void> runTasks()
+      {
+        runs.incrementAndGet();
+        return CompletableFuture.completedFuture(null);
+      }
+    };
+
+    try (MockedStatic<NodeJSOptions> optionsMock = Mockito.mockStatic(NodeJSOptions.class))
+    {
+      optionsMock.when(NodeJSOptions::observe).thenReturn(options);
+      debouncedInstaller.run();
+
+      // e.g. while the options are edited
+      for (int i = 0; i < 5; i++)
+      {
+        options.onNext(Mockito.mock(NodeJSOptions.class));
+        Thread.sleep(100);
+      }
+      Assertions.assertEquals(0, runs.get());
+
+      Thread.sleep(1000);
+      Assertions.assertEquals(1, runs.get());
+    }
+  }
+
 }
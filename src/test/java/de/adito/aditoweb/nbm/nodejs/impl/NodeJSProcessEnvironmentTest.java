@@ -0,0 +1,197 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.INodeJSEnvironment;
+import de.adito.aditoweb.nbm.nodejs.impl.options.downloader.INodeJSDownloader;
+import de.adito.aditoweb.nbm.nodejs.impl.version.NodeJSEnvironmentFactory;
+import lombok.NonNull;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.*;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * @author agent, 18.10.2026
+ * @see NodeJSProcessEnvironment
+ */
+class NodeJSProcessEnvironmentTest
+{
+
+  private static final Logger _LOGGER = Logger.getLogger(NodeJSProcessEnvironmentTest.class.getName());
+  private static final String _TEST_PROPERTY = "adito.nodejs.environment.test";
+  private NodeJSProcessEnvironment environment;
+  private INodeJSEnvironment nodeEnv;
+
+  @BeforeEach
+  void setUp()
+  {
+    environment = new NodeJSProcessEnvironment();
+    nodeEnv = Mockito.mock(INodeJSEnvironment.class);
+    Mockito.when(nodeEnv.getPath()).thenReturn(new File("nodejs/bin/node"));
+  }
+
+  @AfterEach
+  void tearDown()
+  {
+    System.clearProperty(_TEST_PROPERTY);
+    System.clearProperty(NodeJSProcessEnvironment.ALLOWLIST_PROPERTY);
+    System.clearProperty(NodeJSProcessEnvironment.ALLOWLIST_ADDITIONAL_PROPERTY);
+  }
+
+  @Test
+  void shouldPrependNodeDirectoryToPath()
+  {
+    String path = environment.get(nodeEnv).get("PATH");
+    Assertions.assertNotNull(path);
+    Assertions.assertTrue(path.startsWith(new File("nodejs/bin").getPath() + File.pathSeparator), path);
+  }
+
+  @Test
+  void shouldPassSystemProperties()
+  {
+    System.setProperty(_TEST_PROPERTY, "value");
+    Assertions.assertEquals("value", environment.get(nodeEnv).get("ADITO_NODEJS_ENVIRONMENT_TEST"));
+  }
+
+  @Test
+  void shouldOnlyRecomputeAfterInvalidation()
+  {
+    System.setProperty(_TEST_PROPERTY, "first");
+    Assertions.assertEquals("first", environment.get(nodeEnv).get("ADITO_NODEJS_ENVIRONMENT_TEST"));
+
+    System.setProperty(_TEST_PROPERTY, "second");
+    Assertions.assertEquals("first", environment.get(nodeEnv).get("ADITO_NODEJS_ENVIRONMENT_TEST"));
+
+    environment.invalidate();
+    Assertions.assertEquals("second", environment.get(nodeEnv).get("ADITO_NODEJS_ENVIRONMENT_TEST"));
+  }
+
+  @Test
+  void shouldNoticeChangedAllowlistModeWithoutInvalidation()
+  {
+    System.setProperty(_TEST_PROPERTY, "value");
+    Assertions.assertEquals("value", environment.get(nodeEnv).get("ADITO_NODEJS_ENVIRONMENT_TEST"));
+
+    System.setProperty(NodeJSProcessEnvironment.ALLOWLIST_PROPERTY, "true");
+    Assertions.assertNull(environment.get(nodeEnv).get("ADITO_NODEJS_ENVIRONMENT_TEST"));
+  }
+
+  @Test
+  void shouldReturnCachedEnvironment()
+  {
+    Assertions.assertSame(environment.get(nodeEnv), environment.get(nodeEnv));
+  }
+
+  @Test
+  void shouldOnlyPassAllowedVariablesInAllowlistMode()
+  {
+    System.setProperty(_TEST_PROPERTY, "value");
+    System.setProperty(NodeJSProcessEnvironment.ALLOWLIST_PROPERTY, "true");
+
+    Map<String, String> variables = environment.get(nodeEnv);
+    Assertions.assertNotNull(variables.get("PATH"));
+    Assertions.assertNull(variables.get("ADITO_NODEJS_ENVIRONMENT_TEST"));
+    Assertions.assertTrue(variables.size() <= System.getenv().size());
+
+    // explicitly allowed
+    System.setProperty(NodeJSProcessEnvironment.ALLOWLIST_ADDITIONAL_PROPERTY, "ADITO_NODEJS_ENVIRONMENT_TEST");
+    environment.invalidate();
+    Assertions.assertEquals("value", environment.get(nodeEnv).get("ADITO_NODEJS_ENVIRONMENT_TEST"));
+  }
+
+  @Test
+  void shouldClearInheritedVariablesInAllowlistMode()
+  {
+    System.setProperty(NodeJSProcessEnvironment.ALLOWLIST_PROPERTY, "true");
+
+    ProcessBuilder builder = new ProcessBuilder();
+    builder.environment().put("ADITO_NODEJS_ENVIRONMENT_TEST", "value");
+    environment.applyTo(builder, nodeEnv);
+
+    Assertions.assertEquals(environment.get(nodeEnv), builder.environment());
+  }
+
+  @Test
+  void shouldKeepInheritedVariablesWithoutAllowlistMode()
+  {
+    ProcessBuilder builder = new ProcessBuilder();
+    environment.applyTo(builder, nodeEnv);
+
+    Assertions.assertTrue(builder.environment().keySet().containsAll(System.getenv().keySet()));
+    Assertions.assertEquals(environment.get(nodeEnv).get("PATH"), builder.environment().get("PATH"));
+  }
+
+  /**
+   * Compares the time to spawn a process with the former implementation, that copied all variables and system properties on every execution.
+   * The processes of the allowlist mode only get the allowed variables.
+   */
+  @Test
+  void benchmarkProcessSpawn() throws Exception
+  {
+    INodeJSEnvironment realEnv = NodeJSEnvironmentFactory.create(INodeJSDownloader.getInstance().downloadVersion("v15.12.0", new File("target/executor_test_version")));
+    int iterations = 20;
+
+    // warmup
+    _spawn(realEnv, 5, pBuilder -> pBuilder.environment().putAll(_createUncached()));
+
+    long uncached = _spawn(realEnv, iterations, pBuilder -> pBuilder.environment().putAll(_createUncached()));
+    long cached = _spawn(realEnv, iterations, pBuilder -> environment.applyTo(pBuilder, realEnv));
+    System.setProperty(NodeJSProcessEnvironment.ALLOWLIST_PROPERTY, "true");
+    long allowlist = _spawn(realEnv, iterations, pBuilder -> environment.applyTo(pBuilder, realEnv));
+
+    _LOGGER.info(String.format("Spawn latency per process: uncached %.1f ms, cached %.1f ms, allowlist %.1f ms",
+                               uncached / 1_000_000d, cached / 1_000_000d, allowlist / 1_000_000d));
+
+    // the child really gets only the allowed variables
+    ProcessBuilder builder = new ProcessBuilder(realEnv.getPath().getAbsolutePath(), "-e", "process.stdout.write(Object.keys(process.env).join('\\n'))");
+    environment.applyTo(builder, realEnv);
+    Process process = builder.start();
+    Set<String> childVariables = new HashSet<>(Arrays.asList(IOUtils.toString(process.getInputStream(), StandardCharsets.UTF_8).split("\n")));
+    Assertions.assertEquals(0, process.waitFor());
+    Assertions.assertTrue(environment.get(realEnv).keySet().containsAll(childVariables), () -> "variables of the child: " + childVariables);
+  }
+
+  /**
+   * Spawns empty node processes
+   *
+   * @param pEnv         environment, whose node binary is executed
+   * @param pIterations  number of processes
+   * @param pEnvironment sets the environment of a process
+   * @return the average time in nanoseconds to start and finish a process
+   */
+  private static long _spawn(@NonNull INodeJSEnvironment pEnv, int pIterations, @NonNull Consumer<ProcessBuilder> pEnvironment) throws Exception
+  {
+    long start = System.nanoTime();
+    for (int i = 0; i < pIterations; i++)
+    {
+      ProcessBuilder builder = new ProcessBuilder(pEnv.getPath().getAbsolutePath(), "-e", "")
+          .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+          .redirectError(ProcessBuilder.Redirect.DISCARD);
+      pEnvironment.accept(builder);
+      Assertions.assertEquals(0, builder.start().waitFor());
+    }
+    return (System.nanoTime() - start) / pIterations;
+  }
+
+  /**
+   * @return the environment, created like before it was cached
+   */
+  private Map<String, String> _createUncached()
+  {
+    Map<String, String> result = new HashMap<>();
+    for (Map.Entry<String, String> entry : System.getenv().entrySet())
+    {
+      if (entry.getKey().equalsIgnoreCase("PATH"))
+        result.put("PATH", nodeEnv.getPath().getParent() + File.pathSeparator + entry.getValue());
+      else
+        result.put(entry.getKey(), entry.getValue());
+    }
+    System.getProperties().forEach((pKey, pValue) -> result.put(((String) pKey).replaceAll("\\.", "_").toUpperCase(), (String) pValue));
+    return result;
+  }
+
+}
@@ -0,0 +1,149 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import com.google.gson.JsonObject;
+import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.INodeJSEnvironment;
+import de.adito.aditoweb.nbm.nodejs.impl.options.downloader.INodeJSDownloader;
+import de.adito.aditoweb.nbm.nodejs.impl.util.ProcessExecutorService;
+import de.adito.aditoweb.nbm.nodejs.impl.version.NodeJSEnvironmentFactory;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+/**
+ * @author agent, 18.10.2026
+ * @see NodeJSWorkerPool
+ */
+class NodeJSWorkerPoolTest
+{
+
+  private INodeJSEnvironment env;
+  private ProcessExecutorService executor;
+  private NodeJSWorkerPool pool;
+
+  @BeforeEach
+  void setUp() throws Exception
+  {
+    env = NodeJSEnvironmentFactory.create(INodeJSDownloader.getInstance().downloadVersion("v15.12.0", new File("target/executor_test_version")));
+    executor = new ProcessExecutorService(4);
+    pool = new NodeJSWorkerPool(executor, 1);
+  }
+
+  @AfterEach
+  void tearDown()
+  {
+    pool.shutdown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldReturnVersion() throws Exception
+  {
+    Assertions.assertEquals("v15.12.0", pool.call(env, 30000, "version").getAsString());
+  }
+
+  @Test
+  void shouldReuseWorker() throws Exception
+  {
+    // the pool only allows one worker, so the second call fails if the worker was not released
+    for (int i = 0; i < 10; i++)
+      Assertions.assertEquals("v15.12.0", pool.call(env, 30000, "version").getAsString());
+    Assertions.assertEquals(1, pool.getWorkerCount());
+  }
+
+  @Test
+  void shouldReadOnThreadOfSharedPool() throws Exception
+  {
+    pool.call(env, 30000, "version");
+    Assertions.assertEquals(1, executor.getActiveCount());
+
+    // the thread is released, as soon as the worker exits
+    pool.shutdown();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (executor.getActiveCount() > 0 || pool.getWorkerCount() > 0)
+    {
+      Assertions.assertTrue(System.currentTimeMillis() < deadline, "worker did not exit");
+      //noinspection BusyWait
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  void shouldNotStartWorkerWithoutFreeThread() throws Exception
+  {
+    CountDownLatch release = new CountDownLatch(1);
+    ProcessExecutorService busyExecutor = new ProcessExecutorService(1);
+    try
+    {
+      CountDownLatch running = new CountDownLatch(1);
+      busyExecutor.execute(() -> {
+        running.countDown();
+        try
+        {
+          release.await();
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+      });
+      Assertions.assertTrue(running.await(5, TimeUnit.SECONDS));
+
+      NodeJSWorkerPool busyPool = new NodeJSWorkerPool(busyExecutor, 1);
+      Assertions.assertThrows(IOException.class, () -> busyPool.call(env, 30000, "version"));
+      Assertions.assertEquals(0, busyPool.getWorkerCount());
+    }
+    finally
+    {
+      release.countDown();
+      busyExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldReadInstalledPackages() throws Exception
+  {
+    File nodeModules = _createNodeModules();
+
+    JsonObject installed = pool.call(env, 30000, "installed", nodeModules.getAbsolutePath(), "typescript", "@scope/tool", "missing").getAsJsonObject();
+
+    Assertions.assertEquals(2, installed.size());
+    Assertions.assertEquals("4.5.2", installed.get("typescript").getAsString());
+    Assertions.assertEquals("", installed.get("@scope/tool").getAsString());
+  }
+
+  @Test
+  void shouldReadBinaries() throws Exception
+  {
+    File nodeModules = _createNodeModules();
+
+    JsonObject binaries = pool.call(env, 30000, "binaries", nodeModules.getAbsolutePath()).getAsJsonObject();
+
+    Assertions.assertEquals(2, binaries.size());
+    Assertions.assertEquals("typescript", binaries.getAsJsonArray("tsc").get(0).getAsString());
+    Assertions.assertEquals("./bin/tsc", binaries.getAsJsonArray("tsc").get(1).getAsString());
+    Assertions.assertEquals("@scope/tool", binaries.getAsJsonArray("tool").get(0).getAsString());
+  }
+
+  @Test
+  void shouldFailOnUnknownCommand()
+  {
+    Assertions.assertThrows(IOException.class, () -> pool.call(env, 30000, "unknown"));
+  }
+
+  /**
+   * Creates a node_modules folder with two packages
+   */
+  private File _createNodeModules() throws IOException
+  {
+    File nodeModules = new File("target/worker_pool_node_modules");
+    FileUtils.deleteDirectory(nodeModules);
+    FileUtils.write(new File(nodeModules, "typescript/package.json"), "{\"name\":\"typescript\",\"version\":\"4.5.2\",\"bin\":{\"tsc\":\"./bin/tsc\"}}",
+                    StandardCharsets.UTF_8);
+    FileUtils.write(new File(nodeModules, "@scope/tool/package.json"), "{\"name\":\"@scope/tool\",\"bin\":\"cli.js\"}", StandardCharsets.UTF_8);
+    return nodeModules;
+  }
+
+}
@@ -0,0 +1,91 @@
+package de.adito.aditoweb.nbm.nodejs.impl;
+
+import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.*;
+import de.adito.aditoweb.nbm.nodejs.impl.options.downloader.INodeJSDownloader;
+import de.adito.aditoweb.nbm.nodejs.impl.version.NodeJSEnvironmentFactory;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent, 18.10.2026
+ * @see ProcessTreeTerminator
+ */
+class ProcessTreeTerminatorTest
+{
+
+  private INodeJSEnvironment env;
+
+  @BeforeEach
+  void setUp() throws Exception
+  {
+    File target = new File("target/executor_test_version");
+    target.deleteOnExit();
+    env = NodeJSEnvironmentFactory.create(INodeJSDownloader.getInstance().downloadVersion("v15.12.0", target));
+  }
+
+  @Test
+  void shouldTerminateGracefully() throws Exception
+  {
+    ProcessTreeTerminator terminator = new ProcessTreeTerminator(10_000, 10_000);
+    Process root = _startTree(false);
+    ProcessHandle child = _readChild(root);
+
+    long start = System.currentTimeMillis();
+    terminator.terminate(root.toHandle()).get(1, TimeUnit.MINUTES);
+
+    // ctrl+c was enough, so the grace period was not needed
+    Assertions.assertTrue(System.currentTimeMillis() - start < 10_000);
+    Assertions.assertFalse(root.isAlive());
+    Assertions.assertFalse(child.isAlive());
+  }
+
+  @Test
+  void shouldEscalateIfProcessesIgnoreCtrlC() throws Exception
+  {
+    ProcessTreeTerminator terminator = new ProcessTreeTerminator(500, 500);
+    Process root = _startTree(true);
+    ProcessHandle child = _readChild(root);
+
+    terminator.terminate(root.toHandle()).get(1, TimeUnit.MINUTES);
+
+    Assertions.assertFalse(root.isAlive());
+    Assertions.assertFalse(child.isAlive());
+    Assertions.assertTrue(terminator.awaitPending(1000));
+    Assertions.assertEquals(0, terminator.getPendingCount());
+  }
+
+  /**
+   * Starts a node process, that starts another node process and prints the pid of its child
+   *
+   * @param pIgnoreCtrlC true, if both processes should ignore ctrl+c
+   * @return the root process
+   */
+  private Process _startTree(boolean pIgnoreCtrlC) throws IOException
+  {
+    String ignore = pIgnoreCtrlC ? "process.on('SIGINT', () => {});" : "";
+    String childCode = ignore + "setInterval(() => undefined, 1000);";
+    String rootCode = ignore + "const child = require('child_process').spawn(process.execPath, ['-e', process.argv[1]], { stdio: 'ignore' });"
+        + "console.log(child.pid); setInterval(() => undefined, 1000);";
+    return new ProcessBuilder(env.resolveExecBase(INodeJSExecBase.node()).getAbsolutePath(), "-e", rootCode, childCode)
+        .redirectError(ProcessBuilder.Redirect.DISCARD)
+        .start();
+  }
+
+  /**
+   * Reads the pid of the child from the output of the root process
+   *
+   * @param pRoot root process
+   * @return the handle of the child
+   */
+  private static ProcessHandle _readChild(Process pRoot) throws IOException
+  {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(pRoot.getInputStream(), StandardCharsets.UTF_8));
+    ProcessHandle child = ProcessHandle.of(Long.parseLong(reader.readLine().trim())).orElseThrow();
+    Assertions.assertTrue(child.isAlive());
+    return child;
+  }
+
+}
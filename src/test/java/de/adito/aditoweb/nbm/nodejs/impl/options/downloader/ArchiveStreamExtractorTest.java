@@ -0,0 +1,141 @@
+package de.adito.aditoweb.nbm.nodejs.impl.options.downloader;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+import org.openide.util.BaseUtilities;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.*;
+
+/**
+ * @author agent, 18.10.2026
+ * @see ArchiveStreamExtractor
+ */
+class ArchiveStreamExtractorTest
+{
+
+  private File target;
+
+  @BeforeEach
+  void setUp() throws IOException
+  {
+    target = new File("target/archive_stream_extractor");
+    FileUtils.deleteDirectory(target);
+    Files.createDirectories(target.toPath());
+  }
+
+  @Test
+  void shouldExtractTarWhileReading() throws IOException
+  {
+    String longName = "node-v1/lib/" + "a".repeat(120) + "/" + "b".repeat(120) + ".js";
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(archive))
+    {
+      writeTarEntry(out, "node-v1/", '5', 0755, "", new byte[0]);
+      writeTarEntry(out, "node-v1/bin/node", '0', 0755, "", "binary".getBytes(StandardCharsets.UTF_8));
+      writeTarEntry(out, "node-v1/README.md", '0', 0644, "", "readme".getBytes(StandardCharsets.UTF_8));
+      writeTarEntry(out, "././@PaxHeader", 'x', 0644, "", _paxRecord("path", longName));
+      writeTarEntry(out, "shortened", '0', 0644, "", "long".getBytes(StandardCharsets.UTF_8));
+      writeTarEntry(out, "node-v1/bin/npm", '2', 0777, "../lib/npm-cli.js", new byte[0]);
+      writeTarEntry(out, "node-v1/lib/npm-cli.js", '0', 0755, "", "npm".getBytes(StandardCharsets.UTF_8));
+      out.write(new byte[1024]);
+    }
+
+    File root = ArchiveStreamExtractor.extract(new ByteArrayInputStream(archive.toByteArray()), target, ".tar.gz");
+
+    Assertions.assertEquals(new File(target, "node-v1").getAbsoluteFile(), root);
+    Assertions.assertEquals("binary", Files.readString(new File(root, "bin/node").toPath()));
+    Assertions.assertEquals("long", Files.readString(new File(target, longName).toPath()));
+    if (!BaseUtilities.isWindows())
+    {
+      Assertions.assertTrue(new File(root, "bin/node").canExecute());
+      Assertions.assertFalse(new File(root, "README.md").canExecute());
+      Assertions.assertTrue(Files.isSymbolicLink(new File(root, "bin/npm").toPath()));
+      Assertions.assertEquals("npm", Files.readString(new File(root, "bin/npm").toPath()));
+    }
+  }
+
+  @Test
+  void shouldExtractZipWhileReading() throws IOException
+  {
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(archive))
+    {
+      out.putNextEntry(new ZipEntry("node-v1-win/"));
+      out.putNextEntry(new ZipEntry("node-v1-win/node.exe"));
+      out.write("binary".getBytes(StandardCharsets.UTF_8));
+    }
+
+    File root = ArchiveStreamExtractor.extract(new ByteArrayInputStream(archive.toByteArray()), target, ".zip");
+
+    Assertions.assertEquals(new File(target, "node-v1-win").getAbsoluteFile(), root);
+    Assertions.assertEquals("binary", Files.readString(new File(root, "node.exe").toPath()));
+  }
+
+  @Test
+  void shouldRejectEntriesOutsideOfTarget() throws IOException
+  {
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(archive))
+    {
+      writeTarEntry(out, "node-v1/bin/node", '0', 0755, "", "binary".getBytes(StandardCharsets.UTF_8));
+      writeTarEntry(out, "node-v1/../../evil", '0', 0644, "", "evil".getBytes(StandardCharsets.UTF_8));
+      out.write(new byte[1024]);
+    }
+
+    Assertions.assertThrows(IOException.class, () -> ArchiveStreamExtractor.extract(new ByteArrayInputStream(archive.toByteArray()), target, ".tar.gz"));
+
+    // the partially extracted folder is removed
+    Assertions.assertFalse(new File(target, "node-v1").exists());
+  }
+
+  /**
+   * Writes a single entry of a tar archive in the ustar format
+   */
+  static void writeTarEntry(OutputStream pOut, String pName, char pType, int pMode, String pLink, byte[] pContent) throws IOException
+  {
+    byte[] header = new byte[512];
+    _put(header, 0, pName);
+    _put(header, 100, String.format("%07o", pMode));
+    _put(header, 108, "0000000");
+    _put(header, 116, "0000000");
+    _put(header, 124, String.format("%011o", pContent.length));
+    _put(header, 136, "00000000000");
+    header[156] = (byte) pType;
+    _put(header, 157, pLink);
+    _put(header, 257, "ustar");
+    _put(header, 263, "00");
+
+    // the checksum is calculated with spaces in the checksum field
+    _put(header, 148, "        ");
+    int checksum = 0;
+    for (byte b : header)
+      checksum += b & 0xFF;
+    _put(header, 148, String.format("%06o", checksum) + "\0 ");
+
+    pOut.write(header);
+    pOut.write(pContent);
+    pOut.write(new byte[(512 - pContent.length % 512) % 512]);
+  }
+
+  private static void _put(byte[] pHeader, int pOffset, String pValue)
+  {
+    byte[] bytes = pValue.getBytes(StandardCharsets.UTF_8);
+    System.arraycopy(bytes, 0, pHeader, pOffset, bytes.length);
+  }
+
+  /**
+   * @return a single record of a PAX header
+   */
+  private static byte[] _paxRecord(String pKey, String pValue)
+  {
+    String record = " " + pKey + "=" + pValue + "\n";
+    int length = record.length() + String.valueOf(record.length()).length();
+    if (String.valueOf(length).length() != String.valueOf(record.length()).length())
+      length++;
+    return (length + record).getBytes(StandardCharsets.UTF_8);
+  }
+
+}
@@ -1,16 +1,21 @@
 package de.adito.aditoweb.nbm.nodejs.impl.options.downloader;
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.*;
 import org.openide.util.Pair;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
 import java.util.logging.*;
 import java.util.stream.*;
+import java.util.zip.*;
 
 /**
  * @author w.glanzer, 10.03.2021
@@ -76,6 +81,19 @@ class NodeJSDownloaderImplTest
     List<String> invalidDownloads = new ArrayList<>();
     ExecutorService executor = Executors.newSingleThreadExecutor();
 
+    // the store of the user must not be filled with all versions
+    File storeDirectory = new File("target/nodejsdownload_store");
+    FileUtils.deleteDirectory(storeDirectory);
+    NodeJSStore store = new NodeJSStore(storeDirectory);
+    NodeJSDownloaderImpl storeDownloader = new NodeJSDownloaderImpl()
+    {
+      @Override
+      NodeJSStore getStore()
+      {
+        return store;
+      }
+    };
+
     // test
     Consumer<String> testDownload = (pVersion) -> {
       File target = new File("target/nodejsdownload_test/");
@@ -84,7 +102,7 @@ class NodeJSDownloaderImplTest
       try
       {
         _LOGGER.info("Downloading version " + pVersion + " into " + target.getAbsolutePath());
-        binary = downloader.downloadVersion(pVersion, target);
+        binary = storeDownloader.downloadVersion(pVersion, target);
         if (binary.exists() && binary.isFile())
         {
           _LOGGER.info("Download valid, binary exists and is valid: " + pVersion);
@@ -122,9 +140,84 @@ class NodeJSDownloaderImplTest
 
     //noinspection ResultOfMethodCallIgnored we do not need this
     executor.awaitTermination(30, TimeUnit.MINUTES);
+    FileUtils.deleteDirectory(storeDirectory);
 
     // check
     Assertions.assertTrue(invalidDownloads.isEmpty(), invalidDownloads::toString);
     Assertions.assertTrue(validDownloads.containsAll(availableVersions), () -> validDownloads + " should contain all " + availableVersions);
   }
+
+  @Test
+  void shouldParseChecksum()
+  {
+    String checksums = "a1b2  node-v18.14.0-darwin-x64.tar.gz\n" +
+        "c3d4  node-v18.14.0-linux-x64.tar.gz\r\n" +
+        "e5f6 *node-v18.14.0-win-x64.zip\n";
+
+    Assertions.assertEquals("c3d4", NodeJSDownloaderImpl.parseChecksum(checksums, "node-v18.14.0-linux-x64.tar.gz"));
+    Assertions.assertEquals("e5f6", NodeJSDownloaderImpl.parseChecksum(checksums, "node-v18.14.0-win-x64.zip"));
+    Assertions.assertNull(NodeJSDownloaderImpl.parseChecksum(checksums, "node-v18.14.0-linux-x64.tar"));
+  }
+
+  @Test
+  void shouldDownloadFromLocalMirrorIntoStore() throws Exception
+  {
+    File root = new File("target/nodejs_mirror");
+    FileUtils.deleteDirectory(root);
+    NodeJSDownloaderImpl.OS_SUFFIX os = NodeJSDownloaderImpl.OS_SUFFIX.getCurrent();
+    String name = "node-v1.0.0-" + os.getSuffix();
+    String binaryPath = os == NodeJSDownloaderImpl.OS_SUFFIX.WINDOWS_X64 ? "node.exe" : "bin/node";
+
+    // a mirror with a single version
+    File archive = new File(root, "mirror/v1.0.0/" + name + os.getFileEnding());
+    Files.createDirectories(archive.getParentFile().toPath());
+    try (OutputStream out = new FileOutputStream(archive))
+    {
+      if (os.getFileEnding().equals(".zip"))
+        try (ZipOutputStream zip = new ZipOutputStream(out))
+        {
+          zip.putNextEntry(new ZipEntry(name + "/" + binaryPath));
+          zip.write("node".getBytes(StandardCharsets.UTF_8));
+        }
+      else
+        try (GZIPOutputStream tar = new GZIPOutputStream(out))
+        {
+          ArchiveStreamExtractorTest.writeTarEntry(tar, name + "/" + binaryPath, '0', 0755, "", "node".getBytes(StandardCharsets.UTF_8));
+          tar.write(new byte[1024]);
+        }
+    }
+    String checksum = BaseEncoding.base16().lowerCase().encode(Hashing.sha256().hashBytes(Files.readAllBytes(archive.toPath())).asBytes());
+    Files.writeString(new File(archive.getParentFile(), "SHASUMS256.txt").toPath(), checksum + "  " + archive.getName() + "\n");
+
+    NodeJSStore store = new NodeJSStore(new File(root, "store"));
+    NodeJSDownloaderImpl mirrorDownloader = new NodeJSDownloaderImpl()
+    {
+      @Override
+      protected String getMirrorURL()
+      {
+        return new File(root, "mirror").toURI().toString();
+      }
+
+      @Override
+      NodeJSStore getStore()
+      {
+        return store;
+      }
+    };
+
+    Assertions.assertEquals(List.of("v1.0.0"), mirrorDownloader.getAvailableVersions());
+
+    // both installations share the stored files
+    File first = mirrorDownloader.downloadVersion("v1.0.0", new File(root, "userdir1"));
+    File second = mirrorDownloader.downloadVersion("v1.0.0", new File(root, "userdir2"));
+    Assertions.assertEquals(new File(root, "userdir1/" + name + "/" + binaryPath).getAbsoluteFile(), first.getAbsoluteFile());
+    Assertions.assertEquals("node", Files.readString(second.toPath()));
+    Assertions.assertTrue(Files.isSameFile(first.toPath(), second.toPath()));
+    Assertions.assertNotNull(store.find("v1.0.0-" + os.getSuffix(), checksum));
+
+    // an archive, that does not match its checksum, is rejected
+    Files.writeString(new File(archive.getParentFile(), "SHASUMS256.txt").toPath(), "00ff  " + archive.getName() + "\n");
+    Assertions.assertThrows(IOException.class, () -> mirrorDownloader.downloadVersion("v1.0.0", new File(root, "userdir3")));
+    Assertions.assertNull(store.find("v1.0.0-" + os.getSuffix(), "00ff"));
+  }
 }
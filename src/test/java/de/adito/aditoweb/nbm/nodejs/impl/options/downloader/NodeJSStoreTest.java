@@ -0,0 +1,158 @@
+package de.adito.aditoweb.nbm.nodejs.impl.options.downloader;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+import org.openide.util.BaseUtilities;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author agent, 18.10.2026
+ * @see NodeJSStore
+ */
+class NodeJSStoreTest
+{
+
+  private static final String _HASH = "ab12cd34";
+  private File target;
+  private NodeJSStore store;
+  private AtomicInteger loads;
+
+  @BeforeEach
+  void setUp() throws IOException
+  {
+    target = new File("target/nodejs_store");
+    FileUtils.deleteDirectory(target);
+    store = new NodeJSStore(new File(target, "store"));
+    loads = new AtomicInteger();
+  }
+
+  @Test
+  void shouldLoadOnlyOnce() throws IOException
+  {
+    File first = store.provide("v1-linux-x64", _HASH, this::_load);
+    File second = store.provide("v1-linux-x64", _HASH, this::_load);
+
+    Assertions.assertEquals(1, loads.get());
+    Assertions.assertEquals(first, second);
+    Assertions.assertEquals("node-v1", first.getName());
+    Assertions.assertEquals(first, store.find("v1-linux-x64", _HASH));
+    Assertions.assertEquals(first, store.findAny("v1-linux-x64"));
+    Assertions.assertNull(store.find("v1-linux-x64", "ffff"));
+    Assertions.assertNull(store.findAny("v2-linux-x64"));
+  }
+
+  @Test
+  void shouldNotStoreFailedLoads() throws IOException
+  {
+    Assertions.assertThrows(IOException.class, () -> store.provide("v1-linux-x64", _HASH, (pStaging, pWorkDirectory) -> {
+      _load(pStaging, pWorkDirectory);
+      throw new IOException("broken");
+    }));
+
+    Assertions.assertNull(store.findAny("v1-linux-x64"));
+    File[] staging = new File(target, "store/v1-linux-x64").listFiles(pFile -> pFile.getName().startsWith(".staging"));
+    Assertions.assertNotNull(staging);
+    Assertions.assertEquals(0, staging.length);
+
+    // the next attempt loads again
+    store.provide("v1-linux-x64", _HASH, this::_load);
+    Assertions.assertEquals(2, loads.get());
+  }
+
+  @Test
+  void shouldRejectInvalidKeysAndHashes()
+  {
+    Assertions.assertThrows(IOException.class, () -> store.find("../v1", _HASH));
+    Assertions.assertThrows(IOException.class, () -> store.find("v1-linux-x64", "../" + _HASH));
+  }
+
+  @Test
+  void shouldMaterializeWithLinks() throws IOException
+  {
+    File stored = store.provide("v1-linux-x64", _HASH, this::_load);
+    File first = NodeJSStore.materialize(stored, new File(target, "userdir1"));
+    File second = NodeJSStore.materialize(stored, new File(target, "userdir2"));
+
+    Assertions.assertEquals(new File(target, "userdir1/node-v1").getAbsoluteFile(), first.getAbsoluteFile());
+    Assertions.assertEquals("node", Files.readString(new File(second, "bin/node").toPath()));
+    Assertions.assertTrue(Files.isSameFile(new File(stored, "bin/node").toPath(), new File(first, "bin/node").toPath()));
+    Assertions.assertTrue(Files.isSameFile(new File(first, "bin/node").toPath(), new File(second, "bin/node").toPath()));
+    Assertions.assertTrue(new File(first, "lib/empty").isDirectory());
+    if (!BaseUtilities.isWindows())
+    {
+      Assertions.assertTrue(Files.isSymbolicLink(new File(first, "bin/npm").toPath()));
+      Assertions.assertEquals("npm", Files.readString(new File(first, "bin/npm").toPath()));
+    }
+
+    // an existing installation is replaced
+    Files.writeString(new File(first, "obsolete").toPath(), "obsolete");
+    first = NodeJSStore.materialize(stored, new File(target, "userdir1"));
+    Assertions.assertFalse(new File(first, "obsolete").exists());
+  }
+
+  @Test
+  void shouldCopyFoldersWrittenByNpm() throws IOException
+  {
+    File stored = store.provide("v1-linux-x64", _HASH, this::_load);
+    File installation = NodeJSStore.materialize(stored, new File(target, "userdir1"));
+
+    // e.g. "npm update -g npm" writes into the installation
+    File npmPackage = new File(installation, "lib/node_modules/npm/package.json");
+    Assertions.assertFalse(Files.isSameFile(new File(stored, "lib/node_modules/npm/package.json").toPath(), npmPackage.toPath()));
+    Files.writeString(npmPackage.toPath(), "{\"version\": \"2\"}");
+    Files.writeString(new File(installation, "etc/npmrc").toPath(), "changed");
+
+    Assertions.assertEquals("{\"version\": \"1\"}", Files.readString(new File(stored, "lib/node_modules/npm/package.json").toPath()));
+    Assertions.assertEquals("prefix=", Files.readString(new File(stored, "etc/npmrc").toPath()));
+  }
+
+  @Test
+  void shouldPruneUnusedEntries() throws IOException
+  {
+    File unused = store.provide("v1-linux-x64", _HASH, this::_load).getParentFile();
+    File linked = store.provide("v2-linux-x64", _HASH, this::_load).getParentFile();
+    File used = store.provide("v3-linux-x64", _HASH, this::_load).getParentFile();
+    NodeJSStore.materialize(new File(linked, "node-v1"), new File(target, "userdir1"));
+
+    long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31);
+    for (File entry : new File[]{unused, linked})
+      Assertions.assertTrue(new File(entry.getParentFile(), "." + entry.getName() + ".used").setLastModified(old));
+    store.prune();
+
+    Assertions.assertFalse(unused.exists());
+    Assertions.assertNull(store.findAny("v1-linux-x64"));
+    Assertions.assertTrue(used.isDirectory());
+    // the number of links is not available on windows
+    Assertions.assertEquals(!BaseUtilities.isWindows(), linked.isDirectory());
+
+    // the next use loads it again
+    store.provide("v1-linux-x64", _HASH, this::_load);
+    Assertions.assertEquals(4, loads.get());
+  }
+
+  /**
+   * Creates a small distribution in the staging folder
+   */
+  private void _load(File pStaging, File pWorkDirectory) throws IOException
+  {
+    loads.incrementAndGet();
+    Assertions.assertTrue(pWorkDirectory.isDirectory());
+
+    File root = new File(pStaging, "node-v1");
+    Files.createDirectories(new File(root, "bin").toPath());
+    Files.createDirectories(new File(root, "lib/empty").toPath());
+    Files.createDirectories(new File(root, "lib/node_modules/npm").toPath());
+    Files.createDirectories(new File(root, "etc").toPath());
+    Files.writeString(new File(root, "bin/node").toPath(), "node");
+    Files.writeString(new File(root, "lib/npm-cli.js").toPath(), "npm");
+    Files.writeString(new File(root, "lib/node_modules/npm/package.json").toPath(), "{\"version\": \"1\"}");
+    Files.writeString(new File(root, "etc/npmrc").toPath(), "prefix=");
+    if (!BaseUtilities.isWindows())
+      Files.createSymbolicLink(new File(root, "bin/npm").toPath(), Paths.get("../lib/npm-cli.js"));
+  }
+
+}
@@ -0,0 +1,231 @@
+package de.adito.aditoweb.nbm.nodejs.impl.options.downloader;
+
+import com.sun.net.httpserver.*;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.regex.*;
+
+/**
+ * @author agent, 18.10.2026
+ * @see RangedDownloader
+ */
+class RangedDownloaderTest
+{
+
+  private static final Pattern _RANGE_PATTERN = Pattern.compile("^bytes=(\\d+)-(\\d+)$");
+  private File target;
+  private HttpServer server;
+  private byte[] content;
+  private boolean rangesSupported;
+  private String etag;
+  private final Queue<String> requestedRanges = new ConcurrentLinkedQueue<>();
+  private final AtomicLong servedBytes = new AtomicLong();
+  private final AtomicInteger failuresLeft = new AtomicInteger();
+
+  @BeforeEach
+  void setUp() throws IOException
+  {
+    target = new File("target/rangeddownloader_test");
+    FileUtils.deleteDirectory(target);
+    Files.createDirectories(target.toPath());
+
+    content = new byte[5 * 1024 * 1024 + 123];
+    new Random(42).nextBytes(content);
+    rangesSupported = true;
+    etag = "\"v1\"";
+
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/node.tar.gz", this::_handle);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException
+  {
+    server.stop(0);
+    FileUtils.deleteDirectory(target);
+  }
+
+  @Test
+  void shouldDownloadInParallelChunks() throws IOException
+  {
+    Assertions.assertArrayEquals(content, _download(4));
+
+    // probe and one request per chunk
+    Assertions.assertEquals(5, requestedRanges.size(), requestedRanges::toString);
+    Assertions.assertEquals(content.length + 1, servedBytes.get());
+  }
+
+  @Test
+  void shouldResumeAfterConnectionDrops() throws IOException
+  {
+    failuresLeft.set(2);
+
+    Assertions.assertArrayEquals(content, _download(4));
+
+    // nothing was transferred twice
+    Assertions.assertEquals(content.length + 1, servedBytes.get());
+  }
+
+  @Test
+  void shouldResumeFromExistingParts() throws IOException
+  {
+    // first attempt fails completely
+    failuresLeft.set(100);
+    try (RangedDownloader.Download download = new RangedDownloader(2).start(_getURL(), new File(target, "node.tar.gz")))
+    {
+      Assertions.assertThrows(IOException.class, () -> download.getInputStream().transferTo(OutputStream.nullOutputStream()));
+      Assertions.assertTrue(download.isFailed());
+    }
+    long transferred = 0;
+    for (File part : Objects.requireNonNull(target.listFiles((pDir, pName) -> pName.contains(".part") && !pName.endsWith(".parts"))))
+      transferred += part.length();
+    Assertions.assertTrue(transferred > 0);
+
+    // second attempt only transfers the rest
+    failuresLeft.set(0);
+    servedBytes.set(0);
+    Assertions.assertArrayEquals(content, _download(2));
+    Assertions.assertEquals(content.length + 1 - transferred, servedBytes.get());
+  }
+
+  @Test
+  void shouldDiscardPartsOfChangedFile() throws IOException
+  {
+    failuresLeft.set(100);
+    try (RangedDownloader.Download download = new RangedDownloader(2).start(_getURL(), new File(target, "node.tar.gz")))
+    {
+      Assertions.assertThrows(IOException.class, () -> download.getInputStream().transferTo(OutputStream.nullOutputStream()));
+    }
+
+    // another file with the same size
+    failuresLeft.set(0);
+    servedBytes.set(0);
+    etag = "\"v2\"";
+    new Random(7).nextBytes(content);
+    Assertions.assertArrayEquals(content, _download(2));
+    Assertions.assertEquals(content.length + 1, servedBytes.get());
+  }
+
+  @Test
+  void shouldDownloadWithoutRangeSupport() throws IOException
+  {
+    rangesSupported = false;
+
+    Assertions.assertArrayEquals(content, _download(4));
+    Assertions.assertTrue(requestedRanges.isEmpty());
+
+    // the response of the probe is streamed directly, without any part files
+    Assertions.assertEquals(content.length, servedBytes.get());
+    Assertions.assertEquals(0, Objects.requireNonNull(target.list()).length);
+  }
+
+  @Test
+  void shouldStreamLocalFileWithoutParts() throws IOException
+  {
+    File source = new File(target, "source/node.tar.gz");
+    FileUtils.writeByteArrayToFile(source, content);
+
+    // leftovers of an older download can not be resumed
+    File download = new File(target, "download/node.tar.gz");
+    FileUtils.writeStringToFile(new File(download.getPath() + ".part0"), "stale", "UTF-8");
+
+    try (RangedDownloader.Download running = new RangedDownloader(4).start(source.toURI().toURL(), download);
+         InputStream in = running.getInputStream())
+    {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      in.transferTo(out);
+      Assertions.assertArrayEquals(content, out.toByteArray());
+      Assertions.assertFalse(running.isFailed());
+    }
+    Assertions.assertEquals(0, Objects.requireNonNull(download.getParentFile().list()).length);
+  }
+
+  @Test
+  void shouldDeleteParts() throws IOException
+  {
+    try (RangedDownloader.Download download = new RangedDownloader(4).start(_getURL(), new File(target, "node.tar.gz")))
+    {
+      download.getInputStream().transferTo(OutputStream.nullOutputStream());
+      Assertions.assertNotEquals(0, Objects.requireNonNull(target.list()).length);
+
+      download.deleteParts();
+      Assertions.assertEquals(0, Objects.requireNonNull(target.list()).length);
+    }
+  }
+
+  /**
+   * Downloads the content of the server
+   *
+   * @param pConnections number of connections
+   * @return the downloaded content, read from the stream of the download
+   */
+  private byte[] _download(int pConnections) throws IOException
+  {
+    try (RangedDownloader.Download download = new RangedDownloader(pConnections).start(_getURL(), new File(target, "node.tar.gz"));
+         InputStream in = download.getInputStream())
+    {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      in.transferTo(out);
+      Assertions.assertFalse(download.isFailed());
+      return out.toByteArray();
+    }
+  }
+
+  private URL _getURL() throws MalformedURLException
+  {
+    return URI.create("http://localhost:" + server.getAddress().getPort() + "/node.tar.gz").toURL();
+  }
+
+  /**
+   * Answers a request like a static file server, optionally drops the connection in the middle of a range
+   */
+  private void _handle(HttpExchange pExchange) throws IOException
+  {
+    try
+    {
+      pExchange.getResponseHeaders().add("ETag", etag);
+
+      int start = 0;
+      int end = content.length - 1;
+      String range = pExchange.getRequestHeaders().getFirst("Range");
+      if (rangesSupported && range != null)
+      {
+        requestedRanges.add(range);
+        Matcher matcher = _RANGE_PATTERN.matcher(range);
+        Assertions.assertTrue(matcher.matches(), range);
+        start = Integer.parseInt(matcher.group(1));
+        end = Math.min(end, Integer.parseInt(matcher.group(2)));
+        pExchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+      }
+
+      // counted before the response is sent, so that the client can not finish before
+      int length = end - start + 1;
+      boolean fail = length > 1 && failuresLeft.getAndUpdate(pLeft -> Math.max(0, pLeft - 1)) > 0;
+      int served = fail ? length / 2 : length;
+      servedBytes.addAndGet(served);
+
+      pExchange.sendResponseHeaders(range != null && rangesSupported ? 206 : 200, length);
+      OutputStream out = pExchange.getResponseBody();
+      out.write(content, start, served);
+      out.flush();
+
+      // the client notices the missing bytes, because the content length was announced
+      if (fail)
+        throw new IOException("dropped connection");
+    }
+    finally
+    {
+      pExchange.close();
+    }
+  }
+
+}
@@ -174,5 +174,51 @@ class PackageParserTest
     }
   }
 
-}
+  /**
+   * Tests the method {@link PackageParser#parseOutdated(Reader)}
+   */
+  @Nested
+  class ParseOutdated
+  {
+    @Test
+    void shouldParseOutdatedPackages()
+    {
+      String jsonData = "{\n" +
+          "  \"typescript\": {\n" +
+          "    \"current\": \"4.5.2\",\n" +
+          "    \"wanted\": \"4.9.5\",\n" +
+          "    \"latest\": \"5.2.2\",\n" +
+          "    \"location\": \"/usr/lib/node_modules/typescript\"\n" +
+          "  },\n" +
+          "  \"@scope/tool\": [\n" +
+          "    {\"current\": \"1.0.0\", \"wanted\": \"1.0.1\", \"latest\": \"1.0.1\"},\n" +
+          "    {\"current\": \"0.9.0\", \"wanted\": \"0.9.0\", \"latest\": \"1.0.1\"}\n" +
+          "  ]\n" +
+          "}";
 
+      Map<String, PackageParser.OutdatedPackage> result = PackageParser.parseOutdated(new StringReader(jsonData));
+
+      assertAll(
+          () -> assertEquals(Set.of("typescript", "@scope/tool"), result.keySet()),
+          () -> assertEquals(new PackageParser.OutdatedPackage("typescript", "4.5.2", "4.9.5", "5.2.2"), result.get("typescript")),
+          () -> assertEquals(new PackageParser.OutdatedPackage("@scope/tool", "1.0.0", "1.0.1", "1.0.1"), result.get("@scope/tool")));
+    }
+
+    @Test
+    void shouldParseNoOutdatedPackages()
+    {
+      assertEquals(Map.of(), PackageParser.parseOutdated(new StringReader("{}")));
+      assertEquals(Map.of(), PackageParser.parseOutdated(new StringReader("")));
+    }
+  }
+
+  @Test
+  void shouldExtractPackageName()
+  {
+    assertEquals("typescript", PackageParser.getPackageName("typescript"));
+    assertEquals("typescript", PackageParser.getPackageName("typescript@4.5.2"));
+    assertEquals("@scope/tool", PackageParser.getPackageName("@scope/tool"));
+    assertEquals("@scope/tool", PackageParser.getPackageName("@scope/tool@^1.0.0"));
+  }
+
+}
@@ -0,0 +1,68 @@
+package de.adito.aditoweb.nbm.nodejs.impl.runconfig;
+
+import de.adito.aditoweb.nbm.nbide.nbaditointerface.javascript.node.INodeJSEnvironment;
+import de.adito.aditoweb.nbm.nodejs.impl.NodeJSExecutorImpl;
+import de.adito.aditoweb.nbm.nodejs.impl.options.downloader.INodeJSDownloader;
+import de.adito.aditoweb.nbm.nodejs.impl.version.NodeJSEnvironmentFactory;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent, 18.10.2026
+ * @see NodeJSScriptRunConfig
+ */
+class NodeJSScriptRunConfigTest
+{
+
+  private File target;
+  private INodeJSEnvironment env;
+
+  @BeforeEach
+  void setUp() throws Exception
+  {
+    target = new File("target/runconfig_test");
+    FileUtils.deleteDirectory(target);
+    Files.createDirectories(target.toPath());
+    env = NodeJSEnvironmentFactory.create(INodeJSDownloader.getInstance().downloadVersion("v15.12.0", new File("target/executor_test_version")));
+  }
+
+  @AfterEach
+  void tearDown() throws IOException
+  {
+    FileUtils.deleteDirectory(target);
+  }
+
+  @Test
+  void shouldTailOutputFileAndPrintExitCode() throws Exception
+  {
+    File outputFile = new File(target, "script.log");
+    StringWriter shown = new StringWriter();
+
+    // writes its output in multiple steps, so that it is tailed while the process is running
+    int exitCode = NodeJSScriptRunConfig.executeToFile(new NodeJSExecutorImpl(), env, outputFile, new PrintWriter(shown), "-e",
+                                                       "let i = 0; const timer = setInterval(() => { console.log('line ' + i); "
+                                                           + "if (++i === 5) { clearInterval(timer); process.exitCode = 2; } }, 100)")
+        .get(30, TimeUnit.SECONDS);
+    Assertions.assertEquals(2, exitCode);
+
+    // the summary is printed, after the tailer has printed the whole file
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!shown.toString().contains("Process finished"))
+    {
+      Assertions.assertTrue(System.currentTimeMillis() < deadline, shown::toString);
+      //noinspection BusyWait
+      Thread.sleep(10);
+    }
+
+    String output = shown.toString();
+    Assertions.assertTrue(output.contains("line 0\nline 1\nline 2\nline 3\nline 4\n"), output);
+    Assertions.assertTrue(output.contains("Process finished with exit code 2"), output);
+    Assertions.assertTrue(output.endsWith("The complete output is available in " + outputFile.getAbsolutePath() + System.lineSeparator()), output);
+    Assertions.assertTrue(output.indexOf("line 4") < output.indexOf("Process finished"), output);
+  }
+
+}
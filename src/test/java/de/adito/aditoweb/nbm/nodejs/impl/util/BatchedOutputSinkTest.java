@@ -0,0 +1,196 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author agent, 18.10.2026
+ * @see BatchedOutputSink
+ */
+class BatchedOutputSinkTest
+{
+
+  private _RecordingWriter writer;
+
+  @BeforeEach
+  void setUp()
+  {
+    writer = new _RecordingWriter();
+  }
+
+  @Test
+  void shouldWriteSmallChunksInOneBatch() throws Exception
+  {
+    BatchedOutputSink sink = new BatchedOutputSink(writer, 50, 1024);
+    for (int i = 0; i < 100; i++)
+      sink.write(("line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+    Thread.sleep(300);
+
+    Assertions.assertEquals(1, sink.getWrittenBatches());
+    Assertions.assertTrue(writer.toString().startsWith("line 0\nline 1\n"));
+
+    sink.close();
+    Assertions.assertEquals(1, writer.closes.get());
+  }
+
+  @Test
+  void shouldWriteFullBatchImmediately() throws Exception
+  {
+    BatchedOutputSink sink = new BatchedOutputSink(writer, 60_000, 16);
+    sink.write("0123456789abcdef\n".getBytes(StandardCharsets.UTF_8));
+    Thread.sleep(200);
+
+    Assertions.assertEquals("0123456789abcdef\n", writer.toString());
+    sink.close();
+  }
+
+  @Test
+  void shouldCollapseCarriageReturnRedraws() throws Exception
+  {
+    BatchedOutputSink sink = new BatchedOutputSink(writer, 60_000, 1024);
+    sink.write("start\n10%\r".getBytes(StandardCharsets.UTF_8));
+    sink.write("50%\r".getBytes(StandardCharsets.UTF_8));
+    sink.write("100%\r\ndone\r\n".getBytes(StandardCharsets.UTF_8));
+    sink.close();
+
+    Assertions.assertEquals("start\n100%\ndone\n", writer.toString());
+    Assertions.assertEquals(2, sink.getDroppedLines());
+  }
+
+  @Test
+  void shouldShowLatestStateOfRedrawnLinePerBatch() throws Exception
+  {
+    BatchedOutputSink sink = new BatchedOutputSink(writer, 20, 1024);
+    sink.write("done\nprogress 1\rprogress 2".getBytes(StandardCharsets.UTF_8));
+    Thread.sleep(200);
+    Assertions.assertEquals("done\nprogress 2", writer.toString());
+
+    // replaced in the next batch
+    sink.write("\rprogress 3".getBytes(StandardCharsets.UTF_8));
+    Thread.sleep(200);
+    Assertions.assertEquals("done\nprogress 2\rprogress 3", writer.toString());
+
+    sink.write("\rfinished\n".getBytes(StandardCharsets.UTF_8));
+    sink.close();
+    Assertions.assertEquals("done\nprogress 2\rprogress 3\rfinished\n", writer.toString());
+    Assertions.assertEquals(3, sink.getDroppedLines());
+  }
+
+  @Test
+  void shouldContinueUnfinishedLineInNextBatch() throws Exception
+  {
+    BatchedOutputSink sink = new BatchedOutputSink(writer, 20, 1024);
+    sink.write("abc".getBytes(StandardCharsets.UTF_8));
+    Thread.sleep(200);
+    Assertions.assertEquals("abc", writer.toString());
+
+    sink.write("def\r".getBytes(StandardCharsets.UTF_8));
+    Thread.sleep(200);
+    Assertions.assertEquals("abcdef", writer.toString());
+
+    // a windows line break, that is split between two batches
+    sink.write("\nnext".getBytes(StandardCharsets.UTF_8));
+    sink.close();
+    Assertions.assertEquals("abcdef\nnext", writer.toString());
+    Assertions.assertEquals(0, sink.getDroppedLines());
+  }
+
+  @Test
+  void shouldDecodeCharactersSplitBetweenChunks() throws Exception
+  {
+    byte[] bytes = "größe\n".getBytes(StandardCharsets.UTF_8);
+    BatchedOutputSink sink = new BatchedOutputSink(writer, 20, 3);
+    for (byte b : bytes)
+      sink.write(b);
+    sink.close();
+
+    Assertions.assertEquals("größe\n", writer.toString());
+  }
+
+  @Test
+  void shouldRejectWritesAfterClose() throws Exception
+  {
+    BatchedOutputSink sink = new BatchedOutputSink(writer);
+    sink.close();
+    sink.close();
+
+    Assertions.assertThrows(IOException.class, () -> sink.write(42));
+    Assertions.assertEquals(1, writer.closes.get());
+  }
+
+  @Test
+  void shouldBlockWriteWhileWriterFallsBehind() throws Exception
+  {
+    CountDownLatch release = new CountDownLatch(1);
+    _RecordingWriter slowWriter = new _RecordingWriter()
+    {
+      @Override
+      public synchronized void write(String str)
+      {
+        try
+        {
+          Assertions.assertTrue(release.await(10, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+        super.write(str);
+      }
+    };
+    BatchedOutputSink sink = new BatchedOutputSink(slowWriter, 10, 4, 8);
+    ExecutorService producer = Executors.newSingleThreadExecutor();
+    try
+    {
+      // the first chunk is taken by the blocked writer, two further chunks fill the sink
+      Future<?> writing = producer.submit(() -> {
+        for (String chunk : new String[]{"aaaa", "bbbb", "cccc", "dddd"})
+          sink.write(chunk.getBytes(StandardCharsets.UTF_8));
+        return null;
+      });
+      Thread.sleep(300);
+      Assertions.assertFalse(writing.isDone());
+
+      release.countDown();
+      writing.get(5, TimeUnit.SECONDS);
+      sink.close();
+      Assertions.assertEquals("aaaabbbbccccdddd", slowWriter.toString());
+    }
+    finally
+    {
+      release.countDown();
+      producer.shutdownNow();
+    }
+  }
+
+  /**
+   * Writer that records the text and counts closes
+   */
+  private static class _RecordingWriter extends StringWriter
+  {
+    private final AtomicInteger closes = new AtomicInteger(0);
+
+    @Override
+    public void close()
+    {
+      closes.incrementAndGet();
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+      return getBuffer().toString();
+    }
+
+    @Override
+    public synchronized void write(String str)
+    {
+      super.write(str);
+    }
+  }
+
+}
@@ -0,0 +1,73 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author agent, 18.10.2026
+ * @see CapturedOutput
+ */
+class CapturedOutputTest
+{
+
+  @Test
+  void shouldKeepSmallOutputInMemory() throws IOException
+  {
+    try (CapturedOutput output = new CapturedOutput(1024))
+    {
+      output.getOutputStream().write("hello world".getBytes(StandardCharsets.UTF_8));
+
+      Assertions.assertFalse(output.isSpilled());
+      Assertions.assertEquals(11, output.size());
+      Assertions.assertEquals("hello world", output.toString());
+    }
+  }
+
+  @Test
+  void shouldSpillLargeOutputToDisk() throws IOException
+  {
+    StringBuilder expected = new StringBuilder();
+    try (CapturedOutput output = new CapturedOutput(16))
+    {
+      for (int i = 0; i < 100; i++)
+      {
+        String line = "line " + i + " äöü\n";
+        expected.append(line);
+        output.getOutputStream().write(line.getBytes(StandardCharsets.UTF_8));
+      }
+
+      Assertions.assertTrue(output.isSpilled());
+      Assertions.assertEquals(expected.toString(), output.toString());
+
+      try (BufferedReader reader = new BufferedReader(output.openReader()))
+      {
+        Assertions.assertEquals(100, reader.lines().count());
+      }
+    }
+  }
+
+  @Test
+  void shouldDetectMultipleLines() throws IOException
+  {
+    try (CapturedOutput singleLine = CapturedOutput.of("\n  command line \n\n");
+         CapturedOutput multipleLines = CapturedOutput.of("command line\nresult\n"))
+    {
+      Assertions.assertFalse(singleLine.hasMultipleLines());
+      Assertions.assertTrue(multipleLines.hasMultipleLines());
+    }
+  }
+
+  @Test
+  void shouldDiscardOutputAfterClose() throws IOException
+  {
+    CapturedOutput output = new CapturedOutput(4);
+    output.getOutputStream().write("some output".getBytes(StandardCharsets.UTF_8));
+    output.close();
+
+    output.getOutputStream().write("more output".getBytes(StandardCharsets.UTF_8));
+    Assertions.assertThrows(IOException.class, output::openInputStream);
+  }
+
+}
@@ -0,0 +1,145 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * @author agent, 18.10.2026
+ * @see CommandResultCache
+ */
+class CommandResultCacheTest
+{
+
+  private File directory;
+
+  @BeforeEach
+  void setUp() throws IOException
+  {
+    directory = new File("target/command_result_cache");
+    FileUtils.deleteDirectory(directory);
+    Files.createDirectories(directory.toPath());
+  }
+
+  @AfterEach
+  void tearDown() throws IOException
+  {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Test
+  void shouldPersistResults() throws IOException
+  {
+    File cacheDirectory = new File(directory, "cache");
+    _put(new CommandResultCache(cacheDirectory, 10), "key", "v18.0.0", 60_000);
+
+    Assertions.assertEquals("v18.0.0", _get(new CommandResultCache(cacheDirectory, 10), "key"));
+    Assertions.assertEquals(1, new CommandResultCache(cacheDirectory, 10).size());
+  }
+
+  @Test
+  void shouldNotReturnExpiredResults() throws IOException
+  {
+    CommandResultCache cache = new CommandResultCache(new File(directory, "cache"), 10);
+    _put(cache, "key", "output", -1);
+
+    Assertions.assertNull(cache.get("key"));
+    Assertions.assertEquals(0, cache.size());
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsed() throws Exception
+  {
+    CommandResultCache cache = new CommandResultCache(new File(directory, "cache"), 2);
+    _put(cache, "first", "1", 60_000);
+    Thread.sleep(50);
+    _put(cache, "second", "2", 60_000);
+    Thread.sleep(50);
+    _get(cache, "first");
+    Thread.sleep(50);
+    _put(cache, "third", "3", 60_000);
+
+    Assertions.assertEquals(2, cache.size());
+    Assertions.assertEquals("1", _get(cache, "first"));
+    Assertions.assertNull(cache.get("second"));
+  }
+
+  @Test
+  void shouldStreamLargeResults() throws IOException
+  {
+    System.setProperty(CapturedOutput.MEMORY_LIMIT_PROPERTY, "1024");
+    try (CapturedOutput output = new CapturedOutput())
+    {
+      byte[] line = "0123456789abcdef\n".getBytes(StandardCharsets.UTF_8);
+      for (int i = 0; i < 1000; i++)
+        output.getOutputStream().write(line);
+      Assertions.assertTrue(output.isSpilled());
+
+      CommandResultCache cache = new CommandResultCache(new File(directory, "cache"), 10);
+      cache.put("key", output, 60_000);
+      try (CapturedOutput cached = cache.get("key"))
+      {
+        Assertions.assertNotNull(cached);
+        Assertions.assertTrue(cached.isSpilled());
+        Assertions.assertEquals(output.size(), cached.size());
+        Assertions.assertEquals(output.toString(), cached.toString());
+      }
+    }
+    finally
+    {
+      System.clearProperty(CapturedOutput.MEMORY_LIMIT_PROPERTY);
+    }
+  }
+
+  @Test
+  void shouldChangeKeyIfFingerprintChanges() throws Exception
+  {
+    File nodeModules = new File(directory, "node_modules");
+    Files.createDirectories(nodeModules.toPath());
+    String before = CommandResultCache.key(List.of("npm", "list"), List.of(nodeModules));
+
+    Assertions.assertEquals(before, CommandResultCache.key(List.of("npm", "list"), List.of(nodeModules)));
+
+    File lockFile = new File(nodeModules, ".package-lock.json");
+    Files.writeString(lockFile.toPath(), "{}");
+
+    Assertions.assertNotEquals(before, CommandResultCache.key(List.of("npm", "list"), List.of(nodeModules)));
+  }
+
+  @Test
+  void shouldIgnoreBrokenEntry() throws Exception
+  {
+    File cacheDirectory = new File(directory, "cache");
+    Files.createDirectories(cacheDirectory.toPath());
+    Files.writeString(new File(cacheDirectory, "key").toPath(), "1");
+
+    Assertions.assertNull(new CommandResultCache(cacheDirectory, 10).get("key"));
+  }
+
+  /**
+   * Stores the given value in the cache
+   */
+  private static void _put(CommandResultCache pCache, String pKey, String pValue, long pTtl) throws IOException
+  {
+    try (CapturedOutput output = CapturedOutput.of(pValue))
+    {
+      pCache.put(pKey, output, pTtl);
+    }
+  }
+
+  /**
+   * @return the cached value, or null if there is none
+   */
+  private static String _get(CommandResultCache pCache, String pKey) throws IOException
+  {
+    try (CapturedOutput output = pCache.get(pKey))
+    {
+      return output == null ? null : output.toString();
+    }
+  }
+
+}
@@ -0,0 +1,157 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author agent, 18.10.2026
+ * @see NPMCommandScheduler
+ */
+class NPMCommandSchedulerTest
+{
+
+  private static final Runnable _NO_FOLLOW_UP = () -> {
+  };
+  private NPMCommandScheduler scheduler;
+
+  @BeforeEach
+  void setUp()
+  {
+    scheduler = new NPMCommandScheduler("test");
+  }
+
+  @Test
+  void shouldExecuteMutatingCommandsOneAfterAnother() throws Exception
+  {
+    CompletableFuture<Integer> firstCommand = new CompletableFuture<>();
+    AtomicInteger secondStarted = new AtomicInteger(0);
+
+    CompletableFuture<Integer> first = scheduler.schedule(new String[]{"install"}, () -> firstCommand, _NO_FOLLOW_UP);
+    CompletableFuture<Integer> second = scheduler.schedule(new String[]{"update"}, () -> {
+      secondStarted.incrementAndGet();
+      return CompletableFuture.completedFuture(0);
+    }, _NO_FOLLOW_UP);
+
+    // update has to wait for install
+    Assertions.assertEquals(0, secondStarted.get());
+
+    firstCommand.complete(1);
+    Assertions.assertEquals(1, first.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, second.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(1, secondStarted.get());
+  }
+
+  @Test
+  void shouldCoalesceIdenticalQueuedCommands() throws Exception
+  {
+    CompletableFuture<Integer> runningCommand = new CompletableFuture<>();
+    AtomicInteger installs = new AtomicInteger(0);
+    List<String> followUps = Collections.synchronizedList(new ArrayList<>());
+
+    scheduler.schedule(new String[]{"ci"}, () -> runningCommand, _NO_FOLLOW_UP);
+    CompletableFuture<Integer> first = scheduler.schedule(new String[]{"install"}, () -> CompletableFuture.completedFuture(installs.incrementAndGet()),
+                                                          () -> followUps.add("first"));
+    CompletableFuture<Integer> second = scheduler.schedule(new String[]{"install"}, () -> CompletableFuture.completedFuture(installs.incrementAndGet()),
+                                                           () -> followUps.add("second"));
+
+    Assertions.assertNotSame(first, second);
+    Assertions.assertEquals(1, scheduler.getQueuedCount());
+
+    runningCommand.complete(0);
+    Assertions.assertEquals(1, first.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(1, second.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(1, installs.get());
+    Assertions.assertEquals(0, scheduler.getQueuedCount());
+
+    // the follow-up of the merged caller is not dropped
+    Assertions.assertEquals(List.of("first", "second"), followUps);
+  }
+
+  @Test
+  void shouldExecuteReadOnlyCommandsImmediately()
+  {
+    List<String> started = Collections.synchronizedList(new ArrayList<>());
+    scheduler.schedule(new String[]{"install"}, CompletableFuture::new, _NO_FOLLOW_UP);
+    scheduler.schedule(new String[]{"outdated"}, () -> {
+      started.add("outdated");
+      return new CompletableFuture<>();
+    }, _NO_FOLLOW_UP);
+    scheduler.schedule(new String[]{"list"}, () -> {
+      started.add("list");
+      return new CompletableFuture<>();
+    }, _NO_FOLLOW_UP);
+
+    Assertions.assertEquals(List.of("outdated", "list"), started);
+  }
+
+  @Test
+  void shouldContinueAfterFailedCommand() throws Exception
+  {
+    CompletableFuture<Integer> failed = scheduler.schedule(new String[]{"install"}, () -> CompletableFuture.failedFuture(new IllegalStateException()),
+                                                           _NO_FOLLOW_UP);
+    CompletableFuture<Integer> next = scheduler.schedule(new String[]{"update"}, () -> CompletableFuture.completedFuture(0), _NO_FOLLOW_UP);
+
+    Assertions.assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, next.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void shouldCancelRunningCommand()
+  {
+    CompletableFuture<Integer> process = new CompletableFuture<>();
+    CompletableFuture<Integer> outdated = scheduler.schedule(new String[]{"outdated"}, () -> process, _NO_FOLLOW_UP);
+
+    // cancelling the future of the caller reaches the process
+    outdated.cancel(false);
+    Assertions.assertTrue(process.isCancelled());
+  }
+
+  @Test
+  void shouldOnlyCancelCommandWithoutOtherCallers() throws Exception
+  {
+    CompletableFuture<Integer> runningCommand = new CompletableFuture<>();
+    CompletableFuture<Integer> process = new CompletableFuture<>();
+    AtomicInteger installs = new AtomicInteger(0);
+
+    scheduler.schedule(new String[]{"ci"}, () -> runningCommand, _NO_FOLLOW_UP);
+    CompletableFuture<Integer> first = scheduler.schedule(new String[]{"install"}, () -> {
+      installs.incrementAndGet();
+      return process;
+    }, _NO_FOLLOW_UP);
+    CompletableFuture<Integer> second = scheduler.schedule(new String[]{"install"}, CompletableFuture::new, _NO_FOLLOW_UP);
+
+    // the second caller still waits for the command
+    first.cancel(false);
+    Assertions.assertEquals(1, scheduler.getQueuedCount());
+    runningCommand.complete(0);
+    Assertions.assertEquals(1, installs.get());
+    process.complete(0);
+    Assertions.assertEquals(0, second.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void shouldNotStartCancelledQueuedCommand() throws Exception
+  {
+    CompletableFuture<Integer> runningCommand = new CompletableFuture<>();
+    AtomicInteger installs = new AtomicInteger(0);
+
+    CompletableFuture<Integer> ci = scheduler.schedule(new String[]{"ci"}, () -> runningCommand, _NO_FOLLOW_UP);
+    CompletableFuture<Integer> install = scheduler.schedule(new String[]{"install"}, () -> {
+      installs.incrementAndGet();
+      return CompletableFuture.completedFuture(0);
+    }, _NO_FOLLOW_UP);
+    CompletableFuture<Integer> update = scheduler.schedule(new String[]{"update"}, () -> CompletableFuture.completedFuture(0), _NO_FOLLOW_UP);
+
+    install.cancel(false);
+    Assertions.assertEquals(1, scheduler.getQueuedCount());
+
+    runningCommand.complete(0);
+    Assertions.assertEquals(0, ci.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, update.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, installs.get());
+  }
+
+}
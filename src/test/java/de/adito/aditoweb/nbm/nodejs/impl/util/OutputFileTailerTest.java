@@ -0,0 +1,160 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * @author agent, 18.10.2026
+ * @see OutputFileTailer
+ */
+class OutputFileTailerTest
+{
+
+  private File target;
+  private File file;
+  private StringWriter output;
+  private ExecutorService writerThread;
+
+  @BeforeEach
+  void setUp() throws IOException
+  {
+    target = new File("target/outputfiletailer_test");
+    FileUtils.deleteDirectory(target);
+    Files.createDirectories(target.toPath());
+    file = new File(target, "output.log");
+    output = new StringWriter();
+    writerThread = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException
+  {
+    writerThread.shutdownNow();
+    FileUtils.deleteDirectory(target);
+  }
+
+  @Test
+  void shouldTailIncrementally() throws Exception
+  {
+    CountDownLatch firstLinesShown = new CountDownLatch(1);
+    OutputFileTailer tailer = new OutputFileTailer(file, output).start();
+
+    // the writer waits, until the first lines were shown, so the tailer has to print them while the file is still written
+    Future<?> writing = writerThread.submit(() -> {
+      _append("first\nsecond\n");
+      Assertions.assertTrue(firstLinesShown.await(5, TimeUnit.SECONDS));
+      _append("third\n");
+      return null;
+    });
+    _await(() -> output.toString().contains("second\n"));
+    Assertions.assertFalse(output.toString().contains("third"));
+    firstLinesShown.countDown();
+
+    writing.get(5, TimeUnit.SECONDS);
+    tailer.stop().get(5, TimeUnit.SECONDS);
+    Assertions.assertEquals("first\nsecond\nthird\n", output.toString());
+    Assertions.assertEquals(0, tailer.getSkippedBytes());
+  }
+
+  @Test
+  void shouldDecodeCharacterSplitAcrossReads() throws Exception
+  {
+    byte[] euro = "\u20AC".getBytes(StandardCharsets.UTF_8);
+    OutputFileTailer tailer = new OutputFileTailer(file, output).start();
+
+    writerThread.submit(() -> {
+      _append("a".getBytes(StandardCharsets.UTF_8));
+      _append(new byte[]{euro[0]});
+      return null;
+    }).get(5, TimeUnit.SECONDS);
+
+    // the first byte of the character has been read, but must not be printed on its own
+    _await(() -> output.toString().equals("a"));
+    Thread.sleep(500);
+    Assertions.assertEquals("a", output.toString());
+
+    writerThread.submit(() -> {
+      _append(new byte[]{euro[1], euro[2]});
+      _append("b".getBytes(StandardCharsets.UTF_8));
+      return null;
+    }).get(5, TimeUnit.SECONDS);
+
+    tailer.stop().get(5, TimeUnit.SECONDS);
+    Assertions.assertEquals("a\u20ACb", output.toString());
+  }
+
+  @Test
+  void shouldPrintSkipNoticeIfLagging() throws Exception
+  {
+    // written completely, before the tailer starts
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 1000; i++)
+      content.append("line ").append(i).append('\n');
+    writerThread.submit(() -> _append(content.toString())).get(5, TimeUnit.SECONDS);
+
+    OutputFileTailer tailer = new OutputFileTailer(file, output, 1024).start();
+    tailer.stop().get(5, TimeUnit.SECONDS);
+
+    String shown = output.toString();
+    Assertions.assertTrue(shown.startsWith("\n[... skipped "), shown);
+    Assertions.assertTrue(shown.contains(file.getAbsolutePath()), shown);
+    Assertions.assertTrue(shown.endsWith("line 999\n"), shown);
+    Assertions.assertFalse(shown.contains("line 0\n"), shown);
+    Assertions.assertEquals(content.length() - 512, tailer.getSkippedBytes());
+  }
+
+  @Test
+  void shouldPrintRestOfFileOnStop() throws Exception
+  {
+    OutputFileTailer tailer = new OutputFileTailer(file, output).start();
+
+    // written right before the stop, so that the periodic poll most likely did not see it
+    writerThread.submit(() -> {
+      for (int i = 0; i < 100; i++)
+        _append("line " + i + "\n");
+      return null;
+    }).get(5, TimeUnit.SECONDS);
+    tailer.stop().get(5, TimeUnit.SECONDS);
+
+    Assertions.assertTrue(output.toString().endsWith("line 99\n"), output::toString);
+    Assertions.assertEquals(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), output.toString());
+  }
+
+  /**
+   * Appends text to the tailed file, like a process would do
+   */
+  private Void _append(String pText) throws IOException
+  {
+    return _append(pText.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Appends bytes to the tailed file, like a process would do
+   */
+  private Void _append(byte[] pBytes) throws IOException
+  {
+    Files.write(file.toPath(), pBytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    return null;
+  }
+
+  /**
+   * Waits until the given condition is fulfilled
+   */
+  private static void _await(BooleanSupplier pCondition) throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!pCondition.getAsBoolean())
+    {
+      Assertions.assertTrue(System.currentTimeMillis() < deadline, "condition was not fulfilled in time");
+      //noinspection BusyWait
+      Thread.sleep(10);
+    }
+  }
+
+}
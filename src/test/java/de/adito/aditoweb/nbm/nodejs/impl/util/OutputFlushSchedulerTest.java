@@ -0,0 +1,82 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author agent, 18.10.2026
+ * @see OutputFlushScheduler
+ */
+class OutputFlushSchedulerTest
+{
+
+  private OutputFlushScheduler scheduler;
+  private _CountingStream delegate;
+
+  @BeforeEach
+  void setUp()
+  {
+    scheduler = new OutputFlushScheduler(20);
+    delegate = new _CountingStream();
+  }
+
+  @Test
+  void shouldFlushWrittenStream() throws Exception
+  {
+    try (OutputStream out = scheduler.register(delegate))
+    {
+      out.write(42);
+      Thread.sleep(200);
+
+      Assertions.assertEquals(1, delegate.flushes.get());
+    }
+  }
+
+  @Test
+  void shouldNotFlushIdleStream() throws Exception
+  {
+    try (OutputStream ignored = scheduler.register(delegate))
+    {
+      Thread.sleep(200);
+
+      Assertions.assertEquals(0, delegate.flushes.get());
+    }
+  }
+
+  @Test
+  void shouldUnregisterOnClose() throws Exception
+  {
+    OutputStream out = scheduler.register(delegate);
+    Assertions.assertEquals(1, scheduler.getRegisteredCount());
+
+    out.close();
+    out.close();
+
+    Assertions.assertEquals(0, scheduler.getRegisteredCount());
+    Assertions.assertEquals(1, delegate.closes.get());
+  }
+
+  /**
+   * Stream that counts flushes and closes
+   */
+  private static class _CountingStream extends ByteArrayOutputStream
+  {
+    private final AtomicInteger flushes = new AtomicInteger(0);
+    private final AtomicInteger closes = new AtomicInteger(0);
+
+    @Override
+    public void flush()
+    {
+      flushes.incrementAndGet();
+    }
+
+    @Override
+    public void close()
+    {
+      closes.incrementAndGet();
+    }
+  }
+
+}
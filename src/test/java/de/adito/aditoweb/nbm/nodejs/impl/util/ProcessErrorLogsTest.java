@@ -0,0 +1,148 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * @author agent, 18.10.2026
+ * @see ProcessErrorLogs
+ */
+class ProcessErrorLogsTest
+{
+
+  private File directory;
+
+  @BeforeEach
+  void setUp() throws IOException
+  {
+    directory = new File("target/process_error_logs");
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Test
+  void shouldWriteErrorOutputIntoIndexedLog() throws Exception
+  {
+    ProcessErrorLogs logs = new ProcessErrorLogs(directory, 1024, 10, 10 * 1024);
+    File logFile = logs.attach(new _FakeProcess(42, "error output"), List.of("node", "--version"));
+
+    _awaitContent(logFile, "error output");
+    Assertions.assertEquals(Optional.of(logFile), logs.findLog(42));
+    Assertions.assertEquals(Optional.empty(), logs.findLog(43));
+  }
+
+  @Test
+  void shouldRotateLargeLog() throws Exception
+  {
+    ProcessErrorLogs logs = new ProcessErrorLogs(directory, 100, 10, 10 * 1024);
+    String output = "x".repeat(1000);
+    File logFile = logs.attach(new _FakeProcess(42, output), List.of("node"));
+
+    File rotatedFile = new File(logFile.getPath() + ".1");
+    long deadline = System.currentTimeMillis() + 10_000;
+    while ((logFile.length() + rotatedFile.length()) < 100 && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+    Thread.sleep(200);
+
+    Assertions.assertTrue(rotatedFile.exists());
+    Assertions.assertTrue(logFile.length() <= 100);
+    Assertions.assertTrue(rotatedFile.length() <= 100);
+  }
+
+  @Test
+  void shouldDeleteOldLogs() throws Exception
+  {
+    ProcessErrorLogs logs = new ProcessErrorLogs(directory, 1024, 3, 10 * 1024);
+    List<File> logFiles = new ArrayList<>();
+    for (int i = 0; i < 6; i++)
+    {
+      File logFile = logs.attach(new _FakeProcess(i, "output " + i), List.of("node"));
+      _awaitContent(logFile, "output " + i);
+      //noinspection ResultOfMethodCallIgnored
+      logFile.setLastModified(System.currentTimeMillis() - (10 - i) * 1000L);
+      logFiles.add(logFile);
+    }
+
+    // the limit is checked before a new log gets written, so the newest logs remain
+    File[] remaining = directory.listFiles(pFile -> pFile.getName().endsWith(".log"));
+    Assertions.assertNotNull(remaining);
+    Assertions.assertTrue(remaining.length <= 4, () -> "too many logs: " + remaining.length);
+    Assertions.assertFalse(logFiles.get(0).exists());
+    Assertions.assertTrue(logFiles.get(5).exists());
+    Assertions.assertEquals(Optional.empty(), logs.findLog(0));
+  }
+
+  /**
+   * Waits until the given file contains the given content
+   *
+   * @param pFile    file
+   * @param pContent expected content
+   */
+  private static void _awaitContent(File pFile, String pContent) throws Exception
+  {
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (!pContent.equals(FileUtils.readFileToString(pFile, StandardCharsets.UTF_8)) && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+    Assertions.assertEquals(pContent, FileUtils.readFileToString(pFile, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Process, that only has an error output
+   */
+  private static class _FakeProcess extends Process
+  {
+    private final long pid;
+    private final InputStream errorStream;
+
+    public _FakeProcess(long pPid, String pErrorOutput)
+    {
+      pid = pPid;
+      errorStream = new ByteArrayInputStream(pErrorOutput.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public long pid()
+    {
+      return pid;
+    }
+
+    @Override
+    public OutputStream getOutputStream()
+    {
+      return OutputStream.nullOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream()
+    {
+      return InputStream.nullInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream()
+    {
+      return errorStream;
+    }
+
+    @Override
+    public int waitFor()
+    {
+      return 0;
+    }
+
+    @Override
+    public int exitValue()
+    {
+      return 0;
+    }
+
+    @Override
+    public void destroy()
+    {
+    }
+  }
+
+}
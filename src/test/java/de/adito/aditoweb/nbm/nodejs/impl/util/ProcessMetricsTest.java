@@ -0,0 +1,50 @@
+package de.adito.aditoweb.nbm.nodejs.impl.util;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+/**
+ * @author agent, 18.10.2026
+ * @see ProcessMetrics
+ */
+class ProcessMetricsTest
+{
+
+  @Test
+  void shouldDetermineCommandKind()
+  {
+    Assertions.assertEquals(ProcessMetrics.CommandKind.NODE, ProcessMetrics.CommandKind.of(List.of("/opt/node/bin/node", "-e", "")));
+    Assertions.assertEquals(ProcessMetrics.CommandKind.NPM, ProcessMetrics.CommandKind.of(List.of("/opt/node/bin/npm", "install")));
+    Assertions.assertEquals(ProcessMetrics.CommandKind.NPM, ProcessMetrics.CommandKind.of(List.of("C:\\node\\npm.cmd", "install")));
+    Assertions.assertEquals(ProcessMetrics.CommandKind.TSC, ProcessMetrics.CommandKind.of(List.of("/opt/node/bin/node", "/opt/node/lib/node_modules/typescript/bin/tsc")));
+    Assertions.assertEquals(ProcessMetrics.CommandKind.LANGUAGE_SERVER,
+                            ProcessMetrics.CommandKind.of(List.of("/opt/node/bin/node", "/opt/node/lib/node_modules/typescript-language-server/lib/cli.js",
+                                                                  "--stdio")));
+  }
+
+  @Test
+  void shouldAggregateFinishedProcesses() throws Exception
+  {
+    ProcessMetrics metrics = new ProcessMetrics();
+    String java = ProcessHandle.current().info().command().orElseThrow();
+
+    long spawnStart = System.nanoTime();
+    Process process = new ProcessBuilder(java, "-version").start();
+    ProcessMetrics.Tracker tracker = metrics.track(process, List.of(java, "-version"), spawnStart);
+    byte[] error = process.getErrorStream().readAllBytes();
+    int exitCode = process.waitFor();
+    tracker.finish(exitCode, 0, error.length);
+
+    // additional calls must be ignored
+    tracker.finish(exitCode, 0, error.length);
+
+    ProcessMetrics.Statistics statistics = metrics.getSnapshot().get(ProcessMetrics.CommandKind.NODE);
+    Assertions.assertNotNull(statistics);
+    Assertions.assertEquals(1, statistics.getCount());
+    Assertions.assertEquals(0, statistics.getFailures());
+    Assertions.assertEquals(error.length, statistics.getTotalOutputBytes());
+    Assertions.assertTrue(statistics.getTotalWallTimeMs() >= 0);
+  }
+
+}
@@ -0,0 +1,70 @@
+package de.adito.aditoweb.nbm.nodejs.impl.version;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * @author agent, 18.10.2026
+ * @see ExecBaseResolutionCache
+ */
+class ExecBaseResolutionCacheTest
+{
+
+  private final AtomicInteger lookups = new AtomicInteger(0);
+
+  @Test
+  void shouldResolveExistingBaseOnlyOnce()
+  {
+    ExecBaseResolutionCache cache = new ExecBaseResolutionCache(60_000);
+    Function<String, File> resolver = _resolver(new File("node"));
+
+    Assertions.assertEquals(new File("node"), cache.resolve("node", resolver));
+    Assertions.assertEquals(new File("node"), cache.resolve("node", resolver));
+    Assertions.assertEquals(1, lookups.get());
+  }
+
+  @Test
+  void shouldRememberMissingBaseUntilExpired() throws Exception
+  {
+    ExecBaseResolutionCache cache = new ExecBaseResolutionCache(50);
+    Function<String, File> resolver = _resolver(null);
+
+    Assertions.assertNull(cache.resolve("tsc", resolver));
+    Assertions.assertNull(cache.resolve("tsc", resolver));
+    Assertions.assertEquals(1, lookups.get());
+
+    Thread.sleep(100);
+
+    Assertions.assertNull(cache.resolve("tsc", resolver));
+    Assertions.assertEquals(2, lookups.get());
+  }
+
+  @Test
+  void shouldResolveAgainAfterInvalidation()
+  {
+    ExecBaseResolutionCache cache = new ExecBaseResolutionCache(60_000);
+    Function<String, File> resolver = _resolver(new File("npm"));
+
+    cache.resolve("npm", resolver);
+    cache.invalidate();
+    cache.resolve("npm", resolver);
+
+    Assertions.assertEquals(2, lookups.get());
+  }
+
+  /**
+   * @param pResult result of each lookup
+   * @return a resolver that counts its lookups
+   */
+  private Function<String, File> _resolver(File pResult)
+  {
+    return pChild -> {
+      lookups.incrementAndGet();
+      return pResult;
+    };
+  }
+
+}
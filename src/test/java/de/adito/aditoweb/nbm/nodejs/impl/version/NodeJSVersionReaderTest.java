@@ -0,0 +1,107 @@
+package de.adito.aditoweb.nbm.nodejs.impl.version;
+
+import lombok.NonNull;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.file.Files;
+
+/**
+ * @author agent, 18.10.2026
+ * @see NodeJSVersionReader
+ */
+class NodeJSVersionReaderTest
+{
+
+  private File directory;
+
+  @BeforeEach
+  void setUp() throws IOException
+  {
+    directory = new File("target/nodejs_version_reader");
+    FileUtils.deleteDirectory(directory);
+    Files.createDirectories(new File(directory, "bin").toPath());
+  }
+
+  @Test
+  void shouldReadVersionHeader() throws Exception
+  {
+    _createDistribution("lib/node_modules/npm");
+    _writeVersionHeader();
+
+    Assertions.assertEquals("v18.17.1", NodeJSVersionReader.readFromDistribution(new File(directory, "bin/node")));
+  }
+
+  @Test
+  void shouldReadChangelog() throws Exception
+  {
+    _createDistribution("node_modules/npm");
+    Files.writeString(new File(directory, "CHANGELOG.md").toPath(), "# Node.js Changelog\n\n" +
+        "<table>\n<tr>\n<td valign=\"top\">\n" +
+        "<b><a href=\"doc/changelogs/CHANGELOG_V16.md#16.20.2\">16.20.2</a></b><br/>\n" +
+        "<a href=\"doc/changelogs/CHANGELOG_V16.md#16.20.1\">16.20.1</a><br/>\n");
+
+    Assertions.assertEquals("v16.20.2", NodeJSVersionReader.readFromDistribution(new File(directory, "node.exe")));
+  }
+
+  @Test
+  void shouldReturnNullWithoutMetadata() throws Exception
+  {
+    _createDistribution("lib/node_modules/npm");
+
+    Assertions.assertNull(NodeJSVersionReader.readFromDistribution(new File(directory, "bin/node")));
+  }
+
+  /**
+   * The headers of a system installation (e.g. /usr/include/node) may belong to another version than /usr/bin/node
+   */
+  @Test
+  void shouldIgnoreMetadataOfSystemInstallation() throws Exception
+  {
+    Files.createDirectories(new File(directory, "lib/node_modules/npm").toPath());
+    _writeVersionHeader();
+
+    Assertions.assertNull(NodeJSVersionReader.readFromDistribution(new File(directory, "bin/node")));
+  }
+
+  @Test
+  void shouldForgetMemoizedVersionIfBinaryChanges() throws Exception
+  {
+    File binary = new File(directory, "bin/node");
+    Files.writeString(binary.toPath(), "binary");
+    NodeJSVersionReader.memoize(binary, "v18.0.0");
+
+    Assertions.assertEquals("v18.0.0", NodeJSVersionReader.getMemoized(binary));
+
+    Files.writeString(binary.toPath(), "changed binary");
+
+    Assertions.assertNull(NodeJSVersionReader.getMemoized(binary));
+  }
+
+  /**
+   * Creates the files, that every extracted distribution contains
+   *
+   * @param pNpmPath relative path of the bundled npm package
+   */
+  private void _createDistribution(@NonNull String pNpmPath) throws IOException
+  {
+    Files.createDirectories(new File(directory, pNpmPath).toPath());
+    Files.writeString(new File(directory, "LICENSE").toPath(), "Node.js is licensed for use as follows:");
+  }
+
+  /**
+   * Writes the version header of version 18.17.1
+   */
+  private void _writeVersionHeader() throws IOException
+  {
+    File header = new File(directory, "include/node/node_version.h");
+    Files.createDirectories(header.getParentFile().toPath());
+    Files.writeString(header.toPath(), "#ifndef SRC_NODE_VERSION_H_\n" +
+        "#define SRC_NODE_VERSION_H_\n\n" +
+        "#define NODE_MAJOR_VERSION 18\n" +
+        "#define NODE_MINOR_VERSION 17\n" +
+        "#define NODE_PATCH_VERSION 1\n");
+  }
+
+}
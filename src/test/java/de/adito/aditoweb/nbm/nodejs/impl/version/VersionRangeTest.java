@@ -0,0 +1,72 @@
+package de.adito.aditoweb.nbm.nodejs.impl.version;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * @author agent, 18.10.2026
+ * @see VersionRange
+ */
+class VersionRangeTest
+{
+
+  @Test
+  void shouldMatchExactVersion()
+  {
+    Assertions.assertTrue(VersionRange.parse("4.5.2").matches("4.5.2"));
+    Assertions.assertTrue(VersionRange.parse("=v4.5.2").matches("v4.5.2"));
+    Assertions.assertFalse(VersionRange.parse("4.5.2").matches("4.5.3"));
+  }
+
+  @Test
+  void shouldMatchCaretRange()
+  {
+    Assertions.assertTrue(VersionRange.parse("^4.5.2").matches("4.9.0"));
+    Assertions.assertFalse(VersionRange.parse("^4.5.2").matches("5.0.0"));
+    Assertions.assertFalse(VersionRange.parse("^4.5.2").matches("4.5.1"));
+    Assertions.assertTrue(VersionRange.parse("^0.7.1").matches("0.7.9"));
+    Assertions.assertFalse(VersionRange.parse("^0.7.1").matches("0.8.0"));
+    Assertions.assertFalse(VersionRange.parse("^0.0.3").matches("0.0.4"));
+  }
+
+  @Test
+  void shouldMatchTildeRange()
+  {
+    Assertions.assertTrue(VersionRange.parse("~1.2.3").matches("1.2.9"));
+    Assertions.assertFalse(VersionRange.parse("~1.2.3").matches("1.3.0"));
+    Assertions.assertTrue(VersionRange.parse("~1").matches("1.9.9"));
+  }
+
+  @Test
+  void shouldMatchComparatorsAndUnions()
+  {
+    VersionRange range = VersionRange.parse(">= 1.0.0 <2.0.0 || 3.x || 4.1.0 - 4.2");
+    Assertions.assertTrue(range.matches("1.5.0"));
+    Assertions.assertFalse(range.matches("2.0.0"));
+    Assertions.assertTrue(range.matches("3.7.1"));
+    Assertions.assertTrue(range.matches("4.2.9"));
+    Assertions.assertFalse(range.matches("4.3.0"));
+  }
+
+  @Test
+  void shouldMatchEveryVersionWithoutRange()
+  {
+    Assertions.assertTrue(VersionRange.parse("").matches("1.0.0"));
+    Assertions.assertTrue(VersionRange.parse("*").matches("1.0.0"));
+    Assertions.assertTrue(VersionRange.parse("latest").matches("1.0.0"));
+  }
+
+  @Test
+  void shouldOnlyMatchRequestedPrereleases()
+  {
+    Assertions.assertTrue(VersionRange.parse(">=1.2.3-beta.1").matches("1.2.3-beta.2"));
+    Assertions.assertFalse(VersionRange.parse(">=1.2.3-beta.1").matches("1.2.4-beta.1"));
+    Assertions.assertFalse(VersionRange.parse("^1.0.0").matches("1.1.0-rc.1"));
+  }
+
+  @Test
+  void shouldRejectInvalidRange()
+  {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> VersionRange.parse("github:user/repo"));
+  }
+
+}